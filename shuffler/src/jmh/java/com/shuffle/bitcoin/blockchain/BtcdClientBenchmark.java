@@ -0,0 +1,199 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.bitcoin.blockchain;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.commons.codec.binary.Base64;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Address lookups per second against a stub btcd server on the loopback interface,
+ * which answers every searchrawtransactions request with no transactions.
+ *
+ * Each operation looks up the given number of addresses, either the way Btcd used
+ * to send requests, with one BtcdClient call per address, or with a single batch
+ * request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BtcdClientBenchmark {
+
+    private static final String rpcuser = "admin";
+    private static final String rpcpass = "pass";
+
+    private static class StubBtcd implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            InputStream in = exchange.getRequestBody();
+            StringBuilder body = new StringBuilder();
+            BufferedReader rd = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = rd.readLine()) != null) {
+                body.append(line);
+            }
+
+            String response;
+            if (body.charAt(0) == '[') {
+                JSONArray batch = new JSONArray(body.toString());
+                JSONArray results = new JSONArray();
+                for (int i = 0; i < batch.length(); i++) {
+                    results.put(empty(batch.getJSONObject(i).get("id")));
+                }
+                response = results.toString();
+            } else {
+                response = empty(new JSONObject(body.toString()).get("id")).toString();
+            }
+
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        static JSONObject empty(Object id) {
+            return new JSONObject().put("id", id).put("result", new JSONArray()).put("error", JSONObject.NULL);
+        }
+    }
+
+    @Param({"1", "10", "50"})
+    public int addresses;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private URL url;
+    private BtcdClient client;
+    private List<JSONArray> params;
+
+    @Setup
+    public void setup() throws IOException {
+        // Like btcd, the stub should not wait to fill a packet before responding.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        executor = Executors.newFixedThreadPool(4);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new StubBtcd());
+        server.setExecutor(executor);
+        server.start();
+
+        url = new URL("http://127.0.0.1:" + server.getAddress().getPort());
+        client = new BtcdClient(url, rpcuser, rpcpass);
+
+        params = new ArrayList<>();
+        for (int i = 0; i < addresses; i++) {
+            params.add(new JSONArray().put("address" + i));
+        }
+    }
+
+    @TearDown
+    public void shutdown() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public int legacy() throws IOException {
+        int found = 0;
+        for (JSONArray param : params) {
+            String requestBody = "{\"jsonrpc\":\"2.0\",\"id\":\"null\",\"method\":\"searchrawtransactions\", \"params\":[\"" + param.getString(0) + "\"]}";
+            found += new JSONObject(legacyPost(requestBody)).getJSONArray("result").length();
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int call() throws IOException {
+        int found = 0;
+        for (JSONArray param : params) {
+            found += client.call("searchrawtransactions", param).getJSONArray("result").length();
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int batch() throws IOException {
+        int found = 0;
+        for (JSONObject response : client.batch("searchrawtransactions", params)) {
+            found += response.getJSONArray("result").length();
+        }
+        return found;
+    }
+
+    // The way Btcd sent requests before BtcdClient.
+    private String legacyPost(String requestBody) throws IOException {
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setDoOutput(true);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setRequestProperty("Accept", "application/json");
+        Base64 b = new Base64();
+        String authString = rpcuser + ":" + rpcpass;
+        String encoding = b.encodeAsString(authString.getBytes());
+        connection.setRequestProperty("Authorization", "Basic " + encoding);
+        connection.setRequestProperty("Content-Length", Integer.toString(requestBody.getBytes().length));
+        connection.setDoInput(true);
+        OutputStream out = connection.getOutputStream();
+        out.write(requestBody.getBytes());
+
+        String result = null;
+        if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+            InputStream is = connection.getInputStream();
+            BufferedReader rd = new BufferedReader(new InputStreamReader(is));
+            String line;
+            StringBuffer response = new StringBuffer();
+            while ((line = rd.readLine()) != null) {
+                response.append(line);
+                response.append('\r');
+            }
+            rd.close();
+            result = response.toString();
+        }
+
+        out.flush();
+        out.close();
+
+        return result;
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.bitcoin.blockchain;
+
+import com.shuffle.p2p.Bytestring;
+
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.TransactionInput;
+import org.bitcoinj.core.TransactionOutput;
+import org.bitcoinj.core.VerificationException;
+import org.bitcoinj.params.TestNet3Params;
+import org.bitcoinj.script.Script;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to add every player's signature to a join transaction, as in the last phase
+ * of the protocol.
+ *
+ * scan is the way it used to be done, trying every input with each signature until
+ * one verifies. indexed goes straight to the input spent by each signature, and
+ * parallel does the same on a worker pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InputScriptBenchmark {
+
+    private static class NoNetwork extends Bitcoin {
+        NoNetwork(NetworkParameters params) {
+            super(params, 0);
+        }
+
+        @Override
+        protected List<Transaction> getAddressTransactionsInner(String address) throws IOException {
+            throw new IOException("No network.");
+        }
+
+        @Override
+        org.bitcoinj.core.Transaction getTransaction(String transactionHash) throws IOException {
+            throw new IOException("No network.");
+        }
+    }
+
+    @Param({"50", "100"})
+    public int players;
+
+    @Param({"scan", "indexed", "parallel"})
+    public String method;
+
+    private Bitcoin bitcoin;
+    private org.bitcoinj.core.Transaction tx;
+    private final List<Bytestring> signatures = new ArrayList<>();
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() {
+        NetworkParameters params = TestNet3Params.get();
+        bitcoin = new NoNetwork(params);
+        tx = new org.bitcoinj.core.Transaction(params);
+
+        List<ECKey> keys = new ArrayList<>();
+        for (int i = 0; i < players; i++) {
+            ECKey key = new ECKey();
+            keys.add(key);
+
+            org.bitcoinj.core.Transaction parent = new org.bitcoinj.core.Transaction(params);
+            parent.addOutput(Coin.COIN, key.toAddress(params));
+            tx.addInput(parent.getOutput(0));
+            tx.addOutput(Coin.CENT, new ECKey().toAddress(params));
+        }
+
+        for (ECKey key : keys) {
+            signatures.add(bitcoin.getSignature(tx, key));
+        }
+
+        // Signatures arrive in no particular order.
+        Collections.shuffle(signatures, new Random(0));
+
+        executor = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // The way signatures were added before inputs were indexed.
+    private static boolean scan(org.bitcoinj.core.Transaction signTx, Bytestring program) {
+        Script inScript = new Script(program.bytes);
+        for (int i = 0; i < signTx.getInputs().size(); i++) {
+            TransactionInput input = signTx.getInput(i);
+            TransactionOutput connectedOutput = input.getConnectedOutput();
+            byte[] originalScript = input.getScriptBytes().clone();
+            input.setScriptSig(inScript);
+            try {
+                input.verify(connectedOutput);
+                return true;
+            } catch (VerificationException e) {
+                input.setScriptSig(new Script(originalScript));
+            }
+        }
+
+        return false;
+    }
+
+    @Benchmark
+    public int addInputScripts() throws InterruptedException {
+        switch (method) {
+            case "scan": {
+                int valid = 0;
+                for (Bytestring signature : signatures) {
+                    if (scan(tx, signature)) valid++;
+                }
+                return valid;
+            }
+            case "indexed":
+                return bitcoin.addInputScripts(tx, signatures, null).size();
+            case "parallel":
+                return bitcoin.addInputScripts(tx, signatures, executor).size();
+            default:
+                throw new IllegalArgumentException(method);
+        }
+    }
+}
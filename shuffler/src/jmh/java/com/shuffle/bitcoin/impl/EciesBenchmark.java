@@ -0,0 +1,90 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.bitcoin.impl;
+
+import com.shuffle.p2p.Bytestring;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+
+/**
+ * Cost of one layer of the onion, encrypting or decrypting an address with
+ * ECIES. The uncached benchmarks get and initialize a new cipher every time,
+ * which is what EncryptionKeyImpl and DecryptionKeyImpl used to do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EciesBenchmark {
+    private static final BouncyCastleProvider provider = new BouncyCastleProvider();
+
+    private static final Bytestring address
+            = new Bytestring("mkKZRsUgMjcvRsCA2BJtXz5nvBRiUNtBQG".getBytes(StandardCharsets.UTF_8));
+
+    private KeyPair keys;
+    private EncryptionKeyImpl ek;
+    private DecryptionKeyImpl dk;
+    private Bytestring encrypted;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("ECIES", provider);
+        kpg.initialize(256, new SecureRandom());
+        keys = kpg.generateKeyPair();
+
+        dk = new DecryptionKeyImpl(keys);
+        ek = (EncryptionKeyImpl) dk.EncryptionKey();
+        encrypted = ek.encrypt(address);
+    }
+
+    @Benchmark
+    public Bytestring encrypt() {
+        return ek.encrypt(address);
+    }
+
+    @Benchmark
+    public Bytestring decrypt() {
+        return dk.decrypt(encrypted);
+    }
+
+    @Benchmark
+    public Bytestring encryptUncached() throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("ECIES", provider);
+        cipher.init(Cipher.ENCRYPT_MODE, keys.getPublic());
+        return new Bytestring(cipher.doFinal(address.bytes));
+    }
+
+    @Benchmark
+    public Bytestring decryptUncached() throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("ECIES", provider);
+        cipher.init(Cipher.DECRYPT_MODE, keys.getPrivate());
+        return new Bytestring(cipher.doFinal(encrypted.bytes));
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.bitcoin.impl;
+
+import com.shuffle.bitcoin.DecryptionKey;
+import com.shuffle.bitcoin.EncryptionKey;
+import com.shuffle.p2p.Bytestring;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bandwidth of the shuffle phase against the number of players N. Player i sends
+ * i ciphertexts to player i + 1, each with N - i layers of encryption left.
+ *
+ * The setup prints the total number of bytes of ciphertext sent in the shuffle phase.
+ * For comparison it also prints what it would have been when every layer was hex
+ * encoded before being encrypted again, which doubles the size of each layer. That
+ * number is calculated from the ECIES overhead rather than measured, since it gets
+ * too big to actually make.
+ *
+ * The benchmark itself is the time to make one onion with N layers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ShuffleBandwidthBenchmark {
+
+    private static final Bytestring address
+            = new Bytestring("mkKZRsUgMjcvRsCA2BJtXz5nvBRiUNtBQG".getBytes(StandardCharsets.UTF_8));
+
+    @Param({"3", "5", "10", "20", "50"})
+    public int n;
+
+    private EncryptionKey[] keys;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("ECIES", new BouncyCastleProvider());
+        kpg.initialize(256, new SecureRandom());
+
+        keys = new EncryptionKey[n];
+        for (int i = 0; i < n; i++) {
+            DecryptionKey dk = new DecryptionKeyImpl(kpg.generateKeyPair());
+            keys[i] = dk.EncryptionKey();
+        }
+
+        // size[k] is the size of a ciphertext with k layers.
+        long[] size = new long[n];
+        double[] hex = new double[n];
+        Bytestring encrypted = address;
+        size[0] = address.bytes.length;
+        hex[0] = address.bytes.length;
+        for (int k = 1; k < n; k++) {
+            encrypted = keys[k].encrypt(encrypted);
+            size[k] = encrypted.bytes.length;
+            hex[k] = 2 * (hex[k - 1] + size[k] - size[k - 1]);
+        }
+
+        long total = 0;
+        double totalHex = 0;
+        for (int i = 1; i < n; i++) {
+            total += i * size[n - i];
+            totalHex += i * hex[n - i];
+        }
+
+        System.out.println(n + " players: " + total + " bytes, " + totalHex + " bytes with hex encoding.");
+    }
+
+    @Benchmark
+    public Bytestring onion() {
+        Bytestring encrypted = address;
+        for (int k = n - 1; k > 0; k--) {
+            encrypted = keys[k].encrypt(encrypted);
+        }
+        return encrypted;
+    }
+}
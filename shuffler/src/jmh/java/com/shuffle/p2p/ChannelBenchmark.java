@@ -0,0 +1,140 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.p2p;
+
+import com.shuffle.chan.BasicChan;
+import com.shuffle.chan.Send;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages per second from one node to many others over the loopback interface, with
+ * TcpChannel and with NioChannel.
+ *
+ * One client channel opens a session to each of the server channels. The number of
+ * threads started to open these sessions is printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ChannelBenchmark {
+
+    private static final int messages = 1000;
+    private static final int port = 10100;
+
+    // Counts every message received by any of the servers.
+    private static class Counter implements Listener<InetSocketAddress, Bytestring>, Send<Bytestring> {
+        final Semaphore received = new Semaphore(0);
+
+        @Override
+        public Send<Bytestring> newSession(Session<InetSocketAddress, Bytestring> session) {
+            return this;
+        }
+
+        @Override
+        public boolean send(Bytestring bytestring) {
+            received.release();
+            return true;
+        }
+
+        @Override
+        public void close() {
+
+        }
+    }
+
+    @Param({"tcp", "nio"})
+    public String transport;
+
+    @Param({"1", "10", "100"})
+    public int sessions;
+
+    private final Counter counter = new Counter();
+    private final List<Connection<InetSocketAddress>> connections = new ArrayList<>();
+    private final List<Session<InetSocketAddress, Bytestring>> open = new ArrayList<>();
+    private final Bytestring message = new Bytestring(new byte[100]);
+
+    private Channel<InetSocketAddress, Bytestring> channel(InetSocketAddress address) {
+        switch (transport) {
+            case "tcp":
+                return new TcpChannel(address);
+            case "nio":
+                return new NioChannel(address);
+            default:
+                throw new IllegalArgumentException(transport);
+        }
+    }
+
+    private static InetSocketAddress address(int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        int threads = Thread.activeCount();
+
+        Channel<InetSocketAddress, Bytestring> client = channel(address(port));
+        connections.add(client.open(new Counter()));
+
+        for (int i = 1; i <= sessions; i++) {
+            InetSocketAddress address = address(port + i);
+            connections.add(channel(address).open(counter));
+
+            Session<InetSocketAddress, Bytestring> session
+                    = client.getPeer(address).openSession(new BasicChan<Bytestring>());
+            if (session == null) throw new IOException("Could not open session to " + address);
+            open.add(session);
+        }
+
+        System.out.println("\n" + transport + ": " + (Thread.activeCount() - threads)
+                + " threads started for " + sessions + " sessions.");
+    }
+
+    @TearDown
+    public void shutdown() {
+        for (Connection<InetSocketAddress> conn : connections) {
+            conn.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(messages)
+    public void send() throws IOException, InterruptedException {
+        for (int i = 0; i < messages; i++) {
+            if (!open.get(i % sessions).send(message)) throw new IOException("Session closed.");
+        }
+
+        if (!counter.received.tryAcquire(messages, 30, TimeUnit.SECONDS)) {
+            throw new IOException("Messages were lost.");
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.p2p;
+
+import com.shuffle.chan.Send;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trip time of a small protocol packet between two TcpChannels over the
+ * loopback interface, with and without TCP_NODELAY.
+ *
+ * When the header and the payload were written separately, the payload waited
+ * behind Nagle's algorithm for the header to be acknowledged.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TcpChannelBenchmark {
+
+    private static final int port = 10300;
+
+    // Sends every message back where it came from.
+    private static class Echo implements Listener<InetSocketAddress, Bytestring> {
+
+        @Override
+        public Send<Bytestring> newSession(final Session<InetSocketAddress, Bytestring> session) {
+            return new Send<Bytestring>() {
+                @Override
+                public boolean send(Bytestring message) throws InterruptedException, IOException {
+                    return session.send(message);
+                }
+
+                @Override
+                public void close() {
+
+                }
+            };
+        }
+    }
+
+    // Counts replies.
+    private static class Replies implements Send<Bytestring> {
+        final Semaphore received = new Semaphore(0);
+
+        @Override
+        public boolean send(Bytestring message) {
+            received.release();
+            return true;
+        }
+
+        @Override
+        public void close() {
+
+        }
+    }
+
+    @Param({"true", "false"})
+    public boolean noDelay;
+
+    @Param({"32", "256", "2048"})
+    public int size;
+
+    private Connection<InetSocketAddress> clientConn;
+    private Connection<InetSocketAddress> serverConn;
+    private Session<InetSocketAddress, Bytestring> session;
+    private final Replies replies = new Replies();
+    private Bytestring message;
+
+    private TcpChannel channel(int port) {
+        return new TcpChannel(TcpChannel.defaultHeader(),
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                noDelay, TcpChannel.defaultBufferSize);
+    }
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        message = new Bytestring(new byte[size]);
+
+        TcpChannel server = channel(port);
+        serverConn = server.open(new Echo());
+
+        TcpChannel client = channel(port + 1);
+        clientConn = client.open(new Echo());
+
+        session = client.getPeer(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port)).openSession(replies);
+        if (session == null) throw new IOException("Could not open session.");
+    }
+
+    @TearDown
+    public void shutdown() {
+        clientConn.close();
+        serverConn.close();
+    }
+
+    @Benchmark
+    public void roundTrip() throws IOException, InterruptedException {
+        if (!session.send(message)) throw new IOException("Session closed.");
+
+        if (!replies.received.tryAcquire(5, TimeUnit.SECONDS)) {
+            throw new IOException("No reply.");
+        }
+    }
+}
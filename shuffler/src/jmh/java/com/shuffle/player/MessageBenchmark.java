@@ -0,0 +1,103 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.player;
+
+import com.shuffle.bitcoin.Address;
+import com.shuffle.chan.packet.JavaMarshaller;
+import com.shuffle.mock.MockAddress;
+import com.shuffle.protocol.FormatException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building and reading a message of N addresses, as is done in the shuffle
+ * phase, against the linked list of atoms which was copied on every attach.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MessageBenchmark {
+
+    // The old representation of a message.
+    private static class Chain {
+        final Address addr;
+        final Chain next;
+
+        Chain(Address addr, Chain next) {
+            this.addr = addr;
+            this.next = next;
+        }
+
+        static Chain attach(Chain a, Address o) {
+            if (a == null) {
+                return new Chain(o, null);
+            }
+
+            return new Chain(a.addr, attach(a.next, o));
+        }
+    }
+
+    @Param({"10", "100", "1000"})
+    public int n;
+
+    private Address[] addrs;
+
+    @Setup
+    public void setup() {
+        addrs = new Address[n];
+        for (int i = 0; i < n; i++) {
+            addrs[i] = new MockAddress(i);
+        }
+    }
+
+    @Benchmark
+    public void chain(Blackhole bh) {
+        Chain c = null;
+        for (Address addr : addrs) {
+            c = Chain.attach(c, addr);
+        }
+
+        while (c != null) {
+            bh.consume(c.addr);
+            c = c.next;
+        }
+    }
+
+    @Benchmark
+    public void message(Blackhole bh) throws FormatException {
+        com.shuffle.protocol.message.Message m = new Message(
+                Collections.<Message.Atom>emptyList(), new JavaMarshaller<Address>(), null);
+
+        for (Address addr : addrs) {
+            m = m.attach(addr);
+        }
+
+        while (!m.isEmpty()) {
+            bh.consume(m.readAddress());
+            m = m.rest();
+        }
+    }
+}
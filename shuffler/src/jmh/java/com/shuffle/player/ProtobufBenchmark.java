@@ -0,0 +1,95 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.player;
+
+import com.shuffle.bitcoin.VerificationKey;
+import com.shuffle.chan.packet.Marshaller;
+import com.shuffle.chan.packet.Packet;
+import com.shuffle.mock.MockAddress;
+import com.shuffle.mock.MockProtobuf;
+import com.shuffle.mock.MockVerificationKey;
+import com.shuffle.p2p.Bytestring;
+import com.shuffle.protocol.FormatException;
+import com.shuffle.protocol.message.Phase;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding time of a packet of N addresses in the nested (version 1)
+ * and flat (version 2) wire formats. The encoded size is printed during setup.
+ *
+ * Version 1 cannot be decoded at all for N = 1000 because it is deeper than
+ * protobuf's recursion limit, so that combination fails in setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ProtobufBenchmark {
+
+    @Param({"1", "2"})
+    public int version;
+
+    @Param({"10", "90", "1000"})
+    public int n;
+
+    private Marshaller<Packet<VerificationKey, Payload>> marshaller;
+    private Packet<VerificationKey, Payload> packet;
+    private Bytestring encoded;
+
+    @Setup
+    public void setup() throws IOException, FormatException {
+        marshaller = new MockProtobuf(version).packetMarshaller();
+
+        com.shuffle.protocol.message.Message m = new Message(
+                Collections.<Message.Atom>emptyList(), new MockProtobuf().addressMarshaller(), null);
+
+        for (int i = 0; i < n; i++) {
+            m = m.attach(new MockAddress(i));
+        }
+
+        packet = new Packet<VerificationKey, Payload>(
+                new Bytestring("benchmark".getBytes()),
+                new MockVerificationKey(1), new MockVerificationKey(2), 1,
+                new Payload(Phase.BroadcastOutput, (Message) m, version));
+
+        encoded = marshaller.marshall(packet);
+
+        System.out.println("version " + version + ", " + n + " atoms: " + encoded.bytes.length + " bytes");
+
+        // Fails for deeply nested messages.
+        marshaller.unmarshall(encoded);
+    }
+
+    @Benchmark
+    public Bytestring encode() throws IOException {
+        return marshaller.marshall(packet);
+    }
+
+    @Benchmark
+    public Packet<VerificationKey, Payload> decode() throws FormatException {
+        return marshaller.unmarshall(encoded);
+    }
+}
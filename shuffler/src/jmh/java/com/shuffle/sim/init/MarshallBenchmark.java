@@ -0,0 +1,145 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.sim.init;
+
+import com.shuffle.bitcoin.SigningKey;
+import com.shuffle.bitcoin.VerificationKey;
+import com.shuffle.chan.Inbox;
+import com.shuffle.chan.Send;
+import com.shuffle.chan.packet.Packet;
+import com.shuffle.chan.packet.Signed;
+import com.shuffle.chan.packet.SigningSend;
+import com.shuffle.mock.MockAddress;
+import com.shuffle.mock.MockProtobuf;
+import com.shuffle.mock.MockSigningKey;
+import com.shuffle.p2p.Bytestring;
+import com.shuffle.player.Message;
+import com.shuffle.player.Messages;
+import com.shuffle.player.Payload;
+import com.shuffle.protocol.message.Phase;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rounds per second in which every player sends a packet to every other through the
+ * channels made by MarshallInitializer. Each packet is signed, marshalled, unmarshalled and has its
+ * signature checked on the way. Mock keys are used so that the time is spent on
+ * marshalling rather than on elliptic curves.
+ *
+ * Run with -prof gc to see the bytes allocated per round.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MarshallBenchmark {
+
+    private static final Bytestring session = new Bytestring("marshall benchmark".getBytes());
+
+    @Param({"3", "10"})
+    public int players;
+
+    // The number of addresses in each packet.
+    @Param({"1", "20"})
+    public int addresses;
+
+    private MockProtobuf proto;
+    private Payload payload;
+    private MarshallInitializer<Packet<VerificationKey, Payload>> init;
+    private final List<Send<Packet<VerificationKey, Payload>>> senders = new ArrayList<>();
+    private final List<Packet<VerificationKey, Payload>> packets = new ArrayList<>();
+    private final List<Communication<Packet<VerificationKey, Payload>>> comms = new ArrayList<>();
+
+    @Setup
+    public void setup() throws NoSuchAlgorithmException {
+        proto = new MockProtobuf(2);
+
+        Messages messages = new Messages(session, new MockSigningKey(0),
+                new HashMap<VerificationKey, Send<Signed<Packet<VerificationKey, Payload>>>>(),
+                new Inbox<VerificationKey, Signed<Packet<VerificationKey, Payload>>>(1),
+                proto);
+
+        com.shuffle.protocol.message.Message m = messages.make();
+        for (int i = 0; i < addresses; i++) {
+            m = m.attach(new MockAddress(i));
+        }
+
+        payload = new Payload(Phase.BroadcastOutput, (Message) m, 2);
+    }
+
+    // The initializer keeps a history of every packet, so it is made again for each iteration.
+    @Setup(Level.Iteration)
+    public void connect() throws IOException, InterruptedException {
+        init = new MarshallInitializer<>(session, 2 * players, proto.signedMarshaller);
+        senders.clear();
+        packets.clear();
+        comms.clear();
+
+        List<SigningKey> keys = new ArrayList<>();
+        for (int i = 1; i <= players; i++) {
+            SigningKey sk = new MockSigningKey(i);
+            keys.add(sk);
+            comms.add(init.connect(sk));
+        }
+
+        for (int i = 0; i < players; i++) {
+            SigningKey from = keys.get(i);
+            for (int j = 0; j < players; j++) {
+                if (i == j) continue;
+
+                VerificationKey to = keys.get(j).VerificationKey();
+                senders.add(new SigningSend<>(comms.get(i).send.get(to), proto.packetMarshaller, from));
+                packets.add(new Packet<>(session, from.VerificationKey(), to, 0, payload));
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void end() {
+        init.end();
+    }
+
+    @Benchmark
+    public int send() throws IOException, InterruptedException {
+        for (int i = 0; i < senders.size(); i++) {
+            if (!senders.get(i).send(packets.get(i))) throw new IOException("Packet not sent.");
+        }
+
+        int received = 0;
+        for (Communication<Packet<VerificationKey, Payload>> c : comms) {
+            for (int i = 1; i < players; i++) {
+                if (c.receive.receive() == null) throw new IOException("Packet not received.");
+                received++;
+            }
+        }
+
+        return received;
+    }
+}
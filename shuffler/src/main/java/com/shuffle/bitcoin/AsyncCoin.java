@@ -0,0 +1,45 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.bitcoin;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Like Coin, but none of the methods wait for the network. Each returns a future,
+ * which completes exceptionally with the exception that the corresponding method of
+ * Coin would have thrown, so that the protocol can do something else while it waits.
+ *
+ * AsyncCoinAdapter makes an AsyncCoin from a Coin, and BlockingCoin does the reverse.
+ */
+public interface AsyncCoin {
+    CompletableFuture<Transaction> shuffleTransaction(
+            long amount,
+            long fee,
+            List<VerificationKey> from,
+            Queue<Address> to,
+            Map<VerificationKey, Address> changeAddresses);
+
+    CompletableFuture<Long> valueHeld(Address addr);
+
+    CompletableFuture<Boolean> sufficientFunds(Address addr, long amount);
+
+    CompletableFuture<Transaction> getConflictingTransaction(Transaction transaction, Address addr, long amount);
+
+    CompletableFuture<Map<Address, Boolean>> sufficientFunds(Collection<Address> addrs, long amount);
+
+    CompletableFuture<Map<Address, Transaction>> getConflictingTransactions(
+            Transaction transaction, Collection<Address> addrs, long amount);
+
+    // Send the transaction into the network.
+    CompletableFuture<Void> send(Transaction t);
+}
@@ -0,0 +1,142 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.bitcoin;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Makes an AsyncCoin out of a Coin by calling its methods on an executor.
+ */
+public class AsyncCoinAdapter implements AsyncCoin {
+
+    // Runs everything on the calling thread, so that the futures are already
+    // complete when they are returned.
+    public static final Executor direct = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final Coin coin;
+    protected final Executor executor;
+
+    public AsyncCoinAdapter(Coin coin, Executor executor) {
+        if (coin == null || executor == null) throw new NullPointerException();
+
+        this.coin = coin;
+        this.executor = executor;
+    }
+
+    protected <X> CompletableFuture<X> call(final Callable<X> call) {
+        final CompletableFuture<X> future = new CompletableFuture<>();
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    future.complete(call.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Transaction> shuffleTransaction(
+            final long amount,
+            final long fee,
+            final List<VerificationKey> from,
+            final Queue<Address> to,
+            final Map<VerificationKey, Address> changeAddresses) {
+
+        return call(new Callable<Transaction>() {
+            @Override
+            public Transaction call() throws Exception {
+                return coin.shuffleTransaction(amount, fee, from, to, changeAddresses);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> valueHeld(final Address addr) {
+        return call(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return coin.valueHeld(addr);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sufficientFunds(final Address addr, final long amount) {
+        return call(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return coin.sufficientFunds(addr, amount);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Transaction> getConflictingTransaction(
+            final Transaction transaction, final Address addr, final long amount) {
+
+        return call(new Callable<Transaction>() {
+            @Override
+            public Transaction call() throws Exception {
+                return coin.getConflictingTransaction(transaction, addr, amount);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Map<Address, Boolean>> sufficientFunds(
+            final Collection<Address> addrs, final long amount) {
+
+        return call(new Callable<Map<Address, Boolean>>() {
+            @Override
+            public Map<Address, Boolean> call() throws Exception {
+                return coin.sufficientFunds(addrs, amount);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Map<Address, Transaction>> getConflictingTransactions(
+            final Transaction transaction, final Collection<Address> addrs, final long amount) {
+
+        return call(new Callable<Map<Address, Transaction>>() {
+            @Override
+            public Map<Address, Transaction> call() throws Exception {
+                return coin.getConflictingTransactions(transaction, addrs, amount);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> send(final Transaction t) {
+        return call(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                t.send();
+                return null;
+            }
+        });
+    }
+}
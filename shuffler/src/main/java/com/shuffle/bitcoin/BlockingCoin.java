@@ -0,0 +1,111 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.bitcoin;
+
+import org.bitcoinj.core.AddressFormatException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Makes a Coin out of an AsyncCoin by waiting for each result.
+ */
+public class BlockingCoin implements Coin {
+
+    private final AsyncCoin coin;
+
+    public BlockingCoin(AsyncCoin coin) {
+        if (coin == null) throw new NullPointerException();
+
+        this.coin = coin;
+    }
+
+    // Wait for a result and throw whatever it failed with.
+    public static <X> X get(CompletableFuture<X> future)
+            throws CoinNetworkException, AddressFormatException, IOException {
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CoinNetworkException) throw (CoinNetworkException) cause;
+            if (cause instanceof AddressFormatException) throw (AddressFormatException) cause;
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    // For methods of Coin which cannot throw an IOException.
+    private static <X> X getOrFail(CompletableFuture<X> future)
+            throws CoinNetworkException, AddressFormatException {
+
+        try {
+            return get(future);
+        } catch (IOException e) {
+            throw new CoinNetworkException(e.getMessage());
+        }
+    }
+
+    @Override
+    public Transaction shuffleTransaction(
+            long amount,
+            long fee,
+            List<VerificationKey> from,
+            Queue<Address> to,
+            Map<VerificationKey, Address> changeAddresses)
+            throws CoinNetworkException, AddressFormatException {
+
+        return getOrFail(coin.shuffleTransaction(amount, fee, from, to, changeAddresses));
+    }
+
+    @Override
+    public long valueHeld(Address addr) throws CoinNetworkException, AddressFormatException {
+        return getOrFail(coin.valueHeld(addr));
+    }
+
+    @Override
+    public boolean sufficientFunds(Address addr, long amount)
+            throws CoinNetworkException, AddressFormatException, IOException {
+
+        return get(coin.sufficientFunds(addr, amount));
+    }
+
+    @Override
+    public Transaction getConflictingTransaction(Transaction transaction, Address addr, long amount)
+            throws CoinNetworkException, AddressFormatException {
+
+        return getOrFail(coin.getConflictingTransaction(transaction, addr, amount));
+    }
+
+    @Override
+    public Map<Address, Boolean> sufficientFunds(Collection<Address> addrs, long amount)
+            throws CoinNetworkException, AddressFormatException, IOException {
+
+        return get(coin.sufficientFunds(addrs, amount));
+    }
+
+    @Override
+    public Map<Address, Transaction> getConflictingTransactions(
+            Transaction transaction, Collection<Address> addrs, long amount)
+            throws CoinNetworkException, AddressFormatException {
+
+        return getOrFail(coin.getConflictingTransactions(transaction, addrs, amount));
+    }
+}
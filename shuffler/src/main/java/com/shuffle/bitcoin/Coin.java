@@ -16,6 +16,7 @@ package com.shuffle.bitcoin;
  import org.bitcoinj.core.AddressFormatException;
 
  import java.io.IOException;
+ import java.util.Collection;
  import java.util.List;
  import java.util.Map;
  import java.util.Queue;
@@ -47,4 +48,12 @@ public interface Coin {
     // returns that transaction.
     Transaction getConflictingTransaction(Transaction transaction, Address addr, long amount) throws CoinNetworkException, AddressFormatException;
 
+    // Like sufficientFunds, but for many addresses at once. Returns whether each
+    // address has sufficient funds.
+    Map<Address, Boolean> sufficientFunds(Collection<Address> addrs, long amount) throws CoinNetworkException, AddressFormatException, IOException;
+
+    // Like getConflictingTransaction, but for many addresses at once. Addresses
+    // with no conflicting transaction are left out of the result.
+    Map<Address, Transaction> getConflictingTransactions(Transaction transaction, Collection<Address> addrs, long amount) throws CoinNetworkException, AddressFormatException;
+
 }
@@ -8,6 +8,8 @@
 
 package com.shuffle.bitcoin;
 
+import com.shuffle.p2p.Bytestring;
+
 /**
  *
  * A private key used for decryption.
@@ -17,5 +19,5 @@ package com.shuffle.bitcoin;
 public interface DecryptionKey {
     EncryptionKey EncryptionKey();
 
-    String decrypt(String m);
+    Bytestring decrypt(Bytestring m);
 }
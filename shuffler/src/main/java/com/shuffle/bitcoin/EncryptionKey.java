@@ -8,6 +8,8 @@
 
 package com.shuffle.bitcoin;
 
+import com.shuffle.p2p.Bytestring;
+
 /**
  *
  * A public encryption key.
@@ -15,5 +17,5 @@ package com.shuffle.bitcoin;
  * Created by Daniel Krawisz on 12/4/15.
  */
 public interface EncryptionKey {
-    String encrypt(String m);
+    Bytestring encrypt(Bytestring m);
 }
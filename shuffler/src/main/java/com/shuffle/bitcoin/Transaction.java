@@ -12,7 +12,10 @@ import com.shuffle.p2p.Bytestring;
 import com.shuffle.protocol.FormatException;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 /**
  * A representation of a Bitcoin or other cryptocurrency transaction.
@@ -30,6 +33,11 @@ public interface Transaction extends Serializable {
 
     boolean addInputScript(Bytestring b) throws FormatException;
 
+    // Add many input scripts at once. They may be checked in parallel on the executor,
+    // which can be null. Returns the scripts which are not valid.
+    Set<Bytestring> addInputScripts(Collection<Bytestring> b, Executor executor)
+            throws FormatException, InterruptedException;
+
     // Whether a transaction has enough signatures to be valid.
     boolean isValid();
 }
@@ -15,6 +15,7 @@ import com.shuffle.bitcoin.CoinNetworkException;
 import com.shuffle.bitcoin.SigningKey;
 import com.shuffle.bitcoin.VerificationKey;
 import com.shuffle.bitcoin.impl.SigningKeyImpl;
+import com.shuffle.chan.Cache;
 import com.shuffle.p2p.Bytestring;
 import com.shuffle.protocol.FormatException;
 
@@ -23,26 +24,41 @@ import org.bitcoinj.core.Context;
 import org.bitcoinj.core.ECKey;
 import org.bitcoinj.core.NetworkParameters;
 import org.bitcoinj.core.PeerGroup;
+import org.bitcoinj.core.ScriptException;
 import org.bitcoinj.core.Sha256Hash;
 import org.bitcoinj.core.TransactionInput;
+import org.bitcoinj.core.TransactionOutPoint;
 import org.bitcoinj.core.TransactionOutput;
+import org.bitcoinj.core.Utils;
 import org.bitcoinj.core.VerificationException;
 import org.bitcoinj.crypto.TransactionSignature;
 import org.bitcoinj.net.discovery.DnsDiscovery;
 import org.bitcoinj.script.Script;
 import org.bitcoinj.script.ScriptBuilder;
+import org.bitcoinj.script.ScriptChunk;
 import org.bitcoinj.store.BlockStoreException;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 public abstract class Bitcoin implements Coin {
     static long cach_expire = 10000; // Ten seconds.
+    static long transaction_expire = 600000; // Ten minutes. Transactions don't change.
+    static int cache_size = 1000;
 
     final NetworkParameters netParams;
     final PeerGroup peerGroup;
@@ -73,7 +89,7 @@ public abstract class Bitcoin implements Coin {
 
     public class Transaction implements com.shuffle.bitcoin.Transaction {
         final String hash;
-        private org.bitcoinj.core.Transaction bitcoinj;
+        private volatile org.bitcoinj.core.Transaction bitcoinj;
         final boolean canSend;
         boolean confirmed;
         boolean sent = false;
@@ -105,7 +121,7 @@ public abstract class Bitcoin implements Coin {
         // Get the underlying bitcoinj representation of this transaction.
         public org.bitcoinj.core.Transaction bitcoinj() throws BlockStoreException, IOException {
             if (bitcoinj == null) {
-                bitcoinj = getTransaction(hash);
+                bitcoinj = lookupTransaction(hash);
             }
 
             return bitcoinj;
@@ -151,6 +167,13 @@ public abstract class Bitcoin implements Coin {
             return true;
         }
 
+        @Override
+        public Set<Bytestring> addInputScripts(Collection<Bytestring> b, Executor executor)
+                throws InterruptedException {
+
+            return Bitcoin.this.addInputScripts(this.bitcoinj, b, executor);
+        }
+
         @Override
         public boolean isValid() {
             for (TransactionInput input : this.bitcoinj.getInputs()) {
@@ -182,19 +205,83 @@ public abstract class Bitcoin implements Coin {
         return new Transaction(tx.getHashAsString(), tx, false);
     }
 
-    protected class Cached {
-        public final String address;
-        public final List<Bitcoin.Transaction> txList;
-        public final long last;
+    // Since we rely on 3rd party services to query the blockchain, by
+    // default we cache the results.
+    protected final Cache<String, AddressHistory> addressCache
+            = new Cache<>(cache_size, cach_expire);
+    protected final Cache<String, org.bitcoinj.core.Transaction> transactionCache
+            = new Cache<>(cache_size, transaction_expire);
+
+    private final Cache.Loader<String, AddressHistory> addressLoader
+            = new Cache.Loader<String, AddressHistory>() {
+        @Override
+        public Map<String, AddressHistory> load(Collection<String> addresses) throws Exception {
+            Map<String, List<Bitcoin.Transaction>> txLists = getAddressTransactionsInner(addresses);
+
+            // An address that the backend knows nothing about has no transactions,
+            // which is what Btcd reports for it too.
+            Map<String, AddressHistory> histories = new HashMap<>();
+            for (String address : addresses) {
+                List<Bitcoin.Transaction> transactions = txLists.get(address);
+                histories.put(address, new AddressHistory(transactions == null
+                        ? new LinkedList<Bitcoin.Transaction>() : transactions));
+            }
+            return histories;
+        }
+    };
+
+    /**
+     * The transactions of an address, which are cached together with an index of
+     * the outputs that they spend. The index is built the first time it is needed,
+     * so that balance and conflict lookups take time linear in the number of
+     * transactions rather than comparing every pair.
+     */
+    protected class AddressHistory {
+        public final List<Bitcoin.Transaction> transactions;
+
+        // Guarded by this.
+        private Map<TransactionOutPoint, Bitcoin.Transaction> spent = null;
+
+        public AddressHistory(List<Bitcoin.Transaction> transactions) {
+            if (transactions == null) throw new NullPointerException();
+
+            this.transactions = transactions;
+        }
+
+        // Maps every outpoint spent by one of the transactions to the transaction
+        // which spends it. Transactions are looked up if they were not downloaded.
+        synchronized Map<TransactionOutPoint, Bitcoin.Transaction> spent() throws IOException {
+            if (spent != null) return spent;
+
+            Map<TransactionOutPoint, Bitcoin.Transaction> index = new HashMap<>();
+            for (Bitcoin.Transaction tx : transactions) {
+                if (tx.bitcoinj == null) {
+                    tx.bitcoinj = lookupTransaction(tx.hash);
+                }
+
+                for (TransactionInput input : tx.bitcoinj.getInputs()) {
+                    index.put(input.getOutpoint(), tx);
+                }
+            }
 
-        private Cached(String address, List<Bitcoin.Transaction> txList, long last) {
-            this.address = address;
-            this.txList = txList;
-            this.last = last;
+            spent = index;
+            return spent;
         }
     }
 
-    protected Map<String, Cached> cache = new HashMap<>();
+    private final Cache.Loader<String, org.bitcoinj.core.Transaction> transactionLoader
+            = new Cache.Loader<String, org.bitcoinj.core.Transaction>() {
+        @Override
+        public Map<String, org.bitcoinj.core.Transaction> load(Collection<String> hashes) throws Exception {
+            Map<String, org.bitcoinj.core.Transaction> transactions = new HashMap<>();
+            for (String hash : hashes) {
+                org.bitcoinj.core.Transaction tx = getTransaction(hash);
+                if (tx == null) throw new IOException("Could not find transaction " + hash);
+                transactions.put(hash, tx);
+            }
+            return transactions;
+        }
+    };
 
     public NetworkParameters getNetParams(){
         return netParams;
@@ -227,17 +314,37 @@ public abstract class Bitcoin implements Coin {
             throws CoinNetworkException, AddressFormatException {
 
 
+        // Look up the histories of every input and output address at once.
+        List<String> addresses = new LinkedList<>();
+        for (VerificationKey key : from) {
+            addresses.add(key.address().toString());
+        }
+        for (Address sendto : to) {
+            addresses.add(sendto.toString());
+        }
+
+        Map<String, AddressHistory> histories;
+        try {
+            histories = getAddressHistory(addresses);
+        } catch (IOException e) {
+            throw new CoinNetworkException("Could not generate shuffle tx: " + e.getMessage());
+        }
+
         // this section adds inputs to the transaction and adds outputs to the change addresses.
         org.bitcoinj.core.Transaction tx = new org.bitcoinj.core.Transaction(netParams);
         for (VerificationKey key : from) {
             try {
                 String address = key.address().toString();
-                List<Bitcoin.Transaction> transactions = getAddressTransactions(address);
-                if (transactions.size() > 1) return null;
-                org.bitcoinj.core.Transaction tx2 = getTransaction(transactions.get(0).hash);
+                List<Bitcoin.Transaction> transactions = histories.get(address).transactions;
+                if (transactions.size() != 1) return null;
+
+                // The history usually holds the transaction already.
+                Bitcoin.Transaction prev = transactions.get(0);
+                org.bitcoinj.core.Transaction tx2
+                        = prev.bitcoinj != null ? prev.bitcoinj : lookupTransaction(prev.hash);
                 for (TransactionOutput output : tx2.getOutputs()) {
-                    String addressP2pkh = output.getAddressFromP2PKHScript(netParams).toString();
-                    if (address.equals(addressP2pkh)) {
+                    org.bitcoinj.core.Address addressP2pkh = output.getAddressFromP2PKHScript(netParams);
+                    if (addressP2pkh != null && address.equals(addressP2pkh.toString())) {
                         tx.addInput(output);
                         if (!changeAddresses.containsKey(key) | changeAddresses.get(key) != null) {
                             try {
@@ -259,12 +366,7 @@ public abstract class Bitcoin implements Coin {
 
         for (Address sendto : to) {
             String address = sendto.toString();
-            try {
-                List<Bitcoin.Transaction> transactions = getAddressTransactions(address);
-                if (transactions.size() > 0) return null;
-            } catch (IOException e) {
-                throw new CoinNetworkException("Could not generate shuffle tx: " + e.getMessage());
-            }
+            if (histories.get(address).transactions.size() > 0) return null;
             try {
                 tx.addOutput(org.bitcoinj.core.Coin.SATOSHI.multiply(amount),
                         new org.bitcoinj.core.Address(netParams, address));
@@ -299,40 +401,24 @@ public abstract class Bitcoin implements Coin {
      *
      */
 
-    protected synchronized long getAddressBalance(String address) throws IOException, CoinNetworkException, AddressFormatException {
+    protected long getAddressBalance(String address) throws IOException, CoinNetworkException, AddressFormatException {
 
-        List<Bitcoin.Transaction> txList = getAddressTransactions(address);
+        AddressHistory history = getAddressHistory(address);
+        Map<TransactionOutPoint, Bitcoin.Transaction> spent = history.spent();
 
+        // Sum the outputs to our address which have not been spent by any other transaction.
         long sum = 0;
-        for (Bitcoin.Transaction tx : txList) {
+        for (Bitcoin.Transaction tx : history.transactions) {
             org.bitcoinj.core.Transaction tx2 = tx.bitcoinj;
-            String txhash = tx.hash;
-            boolean usedInput = false;
-
-            // check that txhash hasn't been used as input in any transactions, if it has, we discard.
-            outerloop:
-            for (Bitcoin.Transaction checkTx : txList) {
-                org.bitcoinj.core.Transaction tempTx = checkTx.bitcoinj;
-                for (TransactionInput input : tempTx.getInputs()) {
-                    if (input.getOutpoint().getHash().toString().equals(txhash)) {
-                        usedInput = true;
-                        break outerloop;
-                    }
-                }
-            }
 
-            // else, we find the specific output in the transaction pertaining to our address, and add the value to sum.
+            for (TransactionOutput output : tx2.getOutputs()) {
+                org.bitcoinj.core.Address addressP2pkh = output.getAddressFromP2PKHScript(netParams);
+                if (addressP2pkh == null || !address.equals(addressP2pkh.toString())) continue;
 
-            if (!usedInput) {
-                for (TransactionOutput output : tx2.getOutputs()) {
-                    String addressP2pkh = output.getAddressFromP2PKHScript(netParams).toString();
-                    if (address.equals(addressP2pkh)) {
-                        sum += output.getValue().getValue();
-                        break;
-                    }
+                if (!spent.containsKey(output.getOutPointFor())) {
+                    sum += output.getValue().getValue();
                 }
             }
-
         }
 
         return sum;
@@ -342,7 +428,25 @@ public abstract class Bitcoin implements Coin {
     public final boolean sufficientFunds(Address addr, long amount) throws CoinNetworkException, AddressFormatException, IOException {
         String address = addr.toString();
 
-        List<Bitcoin.Transaction> transactions = getAddressTransactions(address);
+        return sufficientFunds(address, getAddressTransactions(address), amount);
+    }
+
+    @Override
+    public final Map<Address, Boolean> sufficientFunds(Collection<Address> addrs, long amount)
+            throws CoinNetworkException, AddressFormatException, IOException {
+
+        Map<String, List<Bitcoin.Transaction>> transactions = getAddressTransactions(addresses(addrs));
+
+        Map<Address, Boolean> sufficient = new HashMap<>();
+        for (Address addr : addrs) {
+            String address = addr.toString();
+            sufficient.put(addr, sufficientFunds(address, transactions.get(address), amount));
+        }
+
+        return sufficient;
+    }
+
+    private boolean sufficientFunds(String address, List<Bitcoin.Transaction> transactions, long amount) {
 
         if (transactions.size() == 1) {
             Bitcoin.Transaction tx = transactions.get(0);
@@ -353,7 +457,7 @@ public abstract class Bitcoin implements Coin {
 
             if (tx.bitcoinj == null) {
                 try {
-                    tx.bitcoinj = getTransaction(tx.hash);
+                    tx.bitcoinj = lookupTransaction(tx.hash);
                 } catch (IOException e) {
                     return false;
                 }
@@ -377,7 +481,7 @@ public abstract class Bitcoin implements Coin {
     }
 
     @Override
-    public synchronized com.shuffle.bitcoin.Transaction getConflictingTransaction(
+    public com.shuffle.bitcoin.Transaction getConflictingTransaction(
             com.shuffle.bitcoin.Transaction t, Address addr, long amount) throws CoinNetworkException, AddressFormatException {
 
         if (!(t instanceof Transaction)) throw new IllegalArgumentException();
@@ -385,34 +489,63 @@ public abstract class Bitcoin implements Coin {
 
         String address = addr.toString();
 
-        List<Bitcoin.Transaction> transactions = null;
+        AddressHistory history = null;
         try {
-            transactions = getAddressTransactions(address);
+            history = getAddressHistory(address);
         } catch (IOException e) {
             // Can we return null here?
             return null;
         }
 
-        // Ensures that all transactions have the bitcoinj field set
-        for (Bitcoin.Transaction tx : transactions) {
-            if (tx.bitcoinj == null) {
-                try {
-                    tx.bitcoinj = getTransaction(tx.hash);
-                } catch (IOException e) {
-                    // We should not have an IOException
-                    return null;
-                }
+        return getConflictingTransaction(transaction, history);
+    }
+
+    @Override
+    public Map<Address, com.shuffle.bitcoin.Transaction> getConflictingTransactions(
+            com.shuffle.bitcoin.Transaction t, Collection<Address> addrs, long amount)
+            throws CoinNetworkException, AddressFormatException {
+
+        if (!(t instanceof Transaction)) throw new IllegalArgumentException();
+        Transaction transaction = (Transaction)t;
+
+        Map<Address, com.shuffle.bitcoin.Transaction> conflicts = new HashMap<>();
+
+        Map<String, AddressHistory> histories;
+        try {
+            histories = getAddressHistory(addresses(addrs));
+        } catch (IOException e) {
+            // Same as getConflictingTransaction.
+            return conflicts;
+        }
+
+        for (Address addr : addrs) {
+            Transaction conflict = getConflictingTransaction(transaction, histories.get(addr.toString()));
+            if (conflict != null) {
+                conflicts.put(addr, conflict);
             }
         }
 
-        for (Bitcoin.Transaction tx : transactions) {
-            for (TransactionInput input : tx.bitcoinj.getInputs()) {
-                // Can be multiple inputs for transaction parameter.
-                for (TransactionInput txInput : transaction.bitcoinj.getInputs()) {
-                    if (input.equals(txInput)) {
-                        return tx;
-                    }
-                }
+        return conflicts;
+    }
+
+    // Find a transaction in the history which spends one of the same outputs as the
+    // given transaction, other than the transaction itself.
+    private Transaction getConflictingTransaction(
+            Transaction transaction, AddressHistory history) {
+
+        Map<TransactionOutPoint, Bitcoin.Transaction> spent;
+        try {
+            spent = history.spent();
+        } catch (IOException e) {
+            // We should not have an IOException
+            return null;
+        }
+
+        // Can be multiple inputs for transaction parameter.
+        for (TransactionInput txInput : transaction.bitcoinj.getInputs()) {
+            Bitcoin.Transaction tx = spent.get(txInput.getOutpoint());
+            if (tx != null && !tx.bitcoinj.getHash().equals(transaction.bitcoinj.getHash())) {
+                return tx;
             }
         }
 
@@ -421,32 +554,150 @@ public abstract class Bitcoin implements Coin {
 
     public org.bitcoinj.core.Transaction signTransaction(org.bitcoinj.core.Transaction signTx, List<Bytestring> programSignatures) {
 
-        List<Script> inputScripts = new LinkedList<>();
-        for (Bytestring programs : programSignatures) {
-            if (!inputScripts.add(bytestringToInputScript(programs))) {
+        Map<Bytestring, List<Integer>> index = inputsByKeyHash(signTx);
+
+        for (Bytestring program : programSignatures) {
+            int i = findInput(signTx, program, index);
+            if (i < 0) {
                 return null;
             }
+
+            signTx.getInput(i).setScriptSig(bytestringToInputScript(program));
         }
 
-        for (Script inScript : inputScripts) {
-            for (int i = 0; i < signTx.getInputs().size(); i++) {
-                TransactionInput input = signTx.getInput(i);
-                TransactionOutput connectedOutput = input.getConnectedOutput();
-                byte[] originalScript = input.getScriptBytes().clone();
-                input.setScriptSig(inScript);
-                try {
-                    input.verify(connectedOutput);
-                    break;
-                } catch (VerificationException e) {
-                    input.setScriptSig(this.bytestringToInputScript(new Bytestring(originalScript)));
-                    if (i == signTx.getInputs().size() - 1) {
-                        return null;
+        return signTx;
+    }
+
+    /**
+     * Add many input scripts to a transaction at once. Each script is checked against
+     * the input which it spends, and if an executor is given, the scripts are checked
+     * in parallel. The transaction is only changed once every check is finished.
+     *
+     * Returns the scripts which do not spend any input.
+     */
+    public Set<Bytestring> addInputScripts(
+            final org.bitcoinj.core.Transaction signTx,
+            Collection<Bytestring> programSignatures,
+            Executor executor) throws InterruptedException {
+
+        final Map<Bytestring, List<Integer>> index = inputsByKeyHash(signTx);
+
+        List<Bytestring> programs = new ArrayList<>(new LinkedHashSet<>(programSignatures));
+        int[] inputs = new int[programs.size()];
+
+        if (executor == null || programs.size() < 2) {
+            for (int j = 0; j < programs.size(); j++) {
+                inputs[j] = findInput(signTx, programs.get(j), index);
+            }
+        } else {
+            List<FutureTask<Integer>> tasks = new ArrayList<>(programs.size());
+            for (final Bytestring program : programs) {
+                FutureTask<Integer> task = new FutureTask<>(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return findInput(signTx, program, index);
                     }
+                });
+
+                tasks.add(task);
+                executor.execute(task);
+            }
+
+            try {
+                for (int j = 0; j < tasks.size(); j++) {
+                    inputs[j] = tasks.get(j).get();
+                }
+            } catch (ExecutionException e) {
+                // Checking a script only throws unchecked exceptions.
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw new RuntimeException(e.getCause());
+            } finally {
+                for (FutureTask<Integer> task : tasks) {
+                    task.cancel(true);
                 }
             }
         }
 
-        return signTx;
+        Set<Bytestring> invalid = new HashSet<>();
+        for (int j = 0; j < programs.size(); j++) {
+            if (inputs[j] < 0) {
+                invalid.add(programs.get(j));
+            } else {
+                signTx.getInput(inputs[j]).setScriptSig(bytestringToInputScript(programs.get(j)));
+            }
+        }
+
+        return invalid;
+    }
+
+    // Index the inputs of a transaction by the hash of the public key that their
+    // connected outputs are sent to. Inputs which are not pay-to-pubkey-hash are
+    // indexed under null.
+    private static Map<Bytestring, List<Integer>> inputsByKeyHash(org.bitcoinj.core.Transaction tx) {
+        Map<Bytestring, List<Integer>> index = new HashMap<>();
+
+        for (int i = 0; i < tx.getInputs().size(); i++) {
+            TransactionOutput connectedOutput = tx.getInput(i).getConnectedOutput();
+            if (connectedOutput == null) continue;
+
+            Bytestring keyHash = null;
+            try {
+                Script scriptPubKey = connectedOutput.getScriptPubKey();
+                if (scriptPubKey.isSentToAddress()) {
+                    keyHash = new Bytestring(scriptPubKey.getPubKeyHash());
+                }
+            } catch (ScriptException e) {
+                // Indexed under null.
+            }
+
+            List<Integer> inputs = index.get(keyHash);
+            if (inputs == null) {
+                inputs = new LinkedList<>();
+                index.put(keyHash, inputs);
+            }
+            inputs.add(i);
+        }
+
+        return index;
+    }
+
+    // Find the input which is spent by an input script without changing the transaction,
+    // so that several scripts can be checked at once. Only the inputs which are sent to
+    // the hash of the script's public key are tried, along with any that are not
+    // pay-to-pubkey-hash. Returns -1 if there is no such input.
+    private int findInput(
+            org.bitcoinj.core.Transaction tx,
+            Bytestring program,
+            Map<Bytestring, List<Integer>> index) {
+
+        Script inScript;
+        List<Integer> candidates = new LinkedList<>();
+        try {
+            inScript = bytestringToInputScript(program);
+
+            List<ScriptChunk> chunks = inScript.getChunks();
+            if (chunks.size() == 2 && chunks.get(1).data != null) {
+                List<Integer> inputs = index.get(new Bytestring(Utils.sha256hash160(chunks.get(1).data)));
+                if (inputs != null) candidates.addAll(inputs);
+            }
+        } catch (ScriptException e) {
+            return -1;
+        }
+
+        List<Integer> other = index.get(null);
+        if (other != null) candidates.addAll(other);
+
+        for (int i : candidates) {
+            TransactionOutput connectedOutput = tx.getInput(i).getConnectedOutput();
+            try {
+                inScript.correctlySpends(tx, i, connectedOutput.getScriptPubKey());
+                return i;
+            } catch (VerificationException e) {
+                // Try the next one.
+            }
+        }
+
+        return -1;
     }
 
     /**
@@ -482,24 +733,88 @@ public abstract class Bitcoin implements Coin {
         return new Script(program.bytes);
     }
 
-    // Since we rely on 3rd party services to query the blockchain, by
-    // default we cache the result.
-    protected synchronized List<Bitcoin.Transaction> getAddressTransactions(String address)
+    protected List<Bitcoin.Transaction> getAddressTransactions(String address)
             throws IOException, CoinNetworkException, AddressFormatException {
 
-        long now = System.currentTimeMillis();
-        Cached cached = cache.get(address);
-        if (cached != null) {
-            if (now - cached.last < cach_expire) {
-                return cached.txList;
-            }
+        return getAddressHistory(address).transactions;
+    }
+
+    // Look up the transactions of many addresses. Those which are not
+    // in the cache are looked up together.
+    protected Map<String, List<Bitcoin.Transaction>> getAddressTransactions(
+            Collection<String> addresses)
+            throws IOException, CoinNetworkException, AddressFormatException {
+
+        Map<String, List<Bitcoin.Transaction>> transactions = new HashMap<>();
+        for (Map.Entry<String, AddressHistory> e : getAddressHistory(addresses).entrySet()) {
+            transactions.put(e.getKey(), e.getValue().transactions);
         }
 
-        List<Bitcoin.Transaction> txList = getAddressTransactionsInner(address);
+        return transactions;
+    }
+
+    protected AddressHistory getAddressHistory(String address)
+            throws IOException, CoinNetworkException, AddressFormatException {
+
+        try {
+            return addressCache.get(address, addressLoader);
+        } catch (InterruptedException e) {
+            throw interrupted();
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
 
-        cache.put(address, new Cached(address, txList, System.currentTimeMillis()));
+    protected Map<String, AddressHistory> getAddressHistory(Collection<String> addresses)
+            throws IOException, CoinNetworkException, AddressFormatException {
 
-        return txList;
+        try {
+            return addressCache.getAll(addresses, addressLoader);
+        } catch (InterruptedException e) {
+            throw interrupted();
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    // Look up a transaction by its hash.
+    org.bitcoinj.core.Transaction lookupTransaction(String hash) throws IOException {
+        try {
+            return transactionCache.get(hash, transactionLoader);
+        } catch (InterruptedException e) {
+            throw interrupted();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private static InterruptedIOException interrupted() {
+        Thread.currentThread().interrupt();
+        return new InterruptedIOException();
+    }
+
+    // Throw the exception which a cache loader failed with.
+    private static RuntimeException rethrow(Throwable cause)
+            throws IOException, CoinNetworkException, AddressFormatException {
+
+        if (cause instanceof IOException) throw (IOException) cause;
+        if (cause instanceof CoinNetworkException) throw (CoinNetworkException) cause;
+        if (cause instanceof AddressFormatException) throw (AddressFormatException) cause;
+        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if (cause instanceof Error) throw (Error) cause;
+        return new RuntimeException(cause);
+    }
+
+    private static List<String> addresses(Collection<Address> addrs) {
+        List<String> addresses = new LinkedList<>();
+        for (Address addr : addrs) {
+            addresses.add(addr.toString());
+        }
+
+        return addresses;
     }
 
     protected boolean send(Bitcoin.Transaction t) throws ExecutionException, InterruptedException, CoinNetworkException {
@@ -520,7 +835,21 @@ public abstract class Bitcoin implements Coin {
     abstract protected List<Bitcoin.Transaction> getAddressTransactionsInner(String address)
             throws IOException, CoinNetworkException, AddressFormatException;
 
-    // Should be synchronized.
+    // Look up the transactions of many addresses. By default this is done one
+    // address at a time, but implementations can do it with a single request.
+    protected Map<String, List<Bitcoin.Transaction>> getAddressTransactionsInner(
+            Collection<String> addresses)
+            throws IOException, CoinNetworkException, AddressFormatException {
+
+        Map<String, List<Bitcoin.Transaction>> txLists = new HashMap<>();
+        for (String address : addresses) {
+            txLists.put(address, getAddressTransactionsInner(address));
+        }
+
+        return txLists;
+    }
+
+    // Should be thread safe.
     abstract org.bitcoinj.core.Transaction getTransaction(String transactionHash)
             throws IOException;
 }
@@ -10,27 +10,24 @@ package com.shuffle.bitcoin.blockchain;
 
 import com.shuffle.bitcoin.CoinNetworkException;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 import javax.xml.bind.DatatypeConverter;
 import javax.xml.bind.annotation.adapters.HexBinaryAdapter;
 
-import org.bitcoinj.core.AddressFormatException;
 import org.bitcoinj.core.Context;
 import org.bitcoinj.core.NetworkParameters;
 
-import org.apache.commons.codec.binary.Base64;
-
 import org.bitcoinj.store.BlockStoreException;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -58,21 +55,25 @@ import org.json.JSONObject;
  */
 public class Btcd extends Bitcoin {
 
-    private final String rpcuser;
-    private final String rpcpass;
-    private final URL url;
+    private final BtcdClient client;
 
     public Btcd(NetworkParameters netParams, String rpcuser, String rpcpass)
             throws MalformedURLException {
 
+        this(netParams, defaultUrl(netParams), rpcuser, rpcpass);
+    }
+
+    public Btcd(NetworkParameters netParams, URL url, String rpcuser, String rpcpass) {
+
         super(netParams, 0);
-        this.rpcuser = rpcuser;
-        this.rpcpass = rpcpass;
+        client = new BtcdClient(url, rpcuser, rpcpass);
+    }
 
+    private static URL defaultUrl(NetworkParameters netParams) throws MalformedURLException {
         if (netParams.equals(NetworkParameters.fromID(NetworkParameters.ID_MAINNET))) {
-            url = new URL("http://127.0.0.1:8334");
+            return new URL("http://127.0.0.1:8334");
         } else if (netParams.equals(NetworkParameters.fromID(NetworkParameters.ID_TESTNET))) {
-            url = new URL("http://127.0.0.1:18334");
+            return new URL("http://127.0.0.1:18334");
         } else {
             throw new IllegalArgumentException("Invalid network parameters passed to btcd. ");
         }
@@ -81,207 +82,103 @@ public class Btcd extends Bitcoin {
     /**
      * This method takes in a transaction hash and returns a bitcoinj transaction object.
      */
-    synchronized org.bitcoinj.core.Transaction getTransaction(String transactionHash) throws IOException {
-
-        org.bitcoinj.core.Transaction tx = null;
-        String requestBody = "{\"jsonrpc\":\"2.0\",\"id\":\"null\",\"method\":\"getrawtransaction\", \"params\":[\"" + transactionHash + "\"]}";
-
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setDoOutput(true);
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setRequestProperty("Accept", "application/json");
-        Base64 b = new Base64();
-        String authString = rpcuser + ":" + rpcpass;
-        String encoding = b.encodeAsString(authString.getBytes());
-        connection.setRequestProperty("Authorization", "Basic " + encoding);
-        connection.setRequestProperty("Content-Length", Integer.toString(requestBody.getBytes().length));
-        connection.setDoInput(true);
-        OutputStream out = connection.getOutputStream();
-        out.write(requestBody.getBytes());
-
-        if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-            InputStream is = connection.getInputStream();
-            BufferedReader rd = new BufferedReader(new InputStreamReader(is));
-            String line;
-            StringBuffer response = new StringBuffer();
-            while ((line = rd.readLine()) != null) {
-                response.append(line);
-                response.append('\r');
-            }
-            rd.close();
-
-            JSONObject json = new JSONObject(response.toString());
-            String hexTx = (String) json.get("result");
-            HexBinaryAdapter adapter = new HexBinaryAdapter();
-            byte[] bytearray = adapter.unmarshal(hexTx);
-            Context context = Context.getOrCreate(netParams);
-            tx = new org.bitcoinj.core.Transaction(netParams, bytearray);
+    org.bitcoinj.core.Transaction getTransaction(String transactionHash) throws IOException {
 
+        JSONObject json = client.call("getrawtransaction", new JSONArray().put(transactionHash));
+        if (json.isNull("result")) {
+            return null;
         }
 
-        out.flush();
-        out.close();
-
-        return tx;
-
+        String hexTx = json.getString("result");
+        HexBinaryAdapter adapter = new HexBinaryAdapter();
+        byte[] bytearray = adapter.unmarshal(hexTx);
+        Context context = Context.getOrCreate(netParams);
+        return new org.bitcoinj.core.Transaction(netParams, bytearray);
     }
 
     /**
      * This method will take in an address hash and return a List of all transactions associated with
      * this address.  These transactions are in bitcoinj's Transaction format.
      */
-    public synchronized List<Transaction> getAddressTransactionsInner(String address) throws IOException {
-
-        List<Transaction> txList = null;
-        String requestBody = "{\"jsonrpc\":\"2.0\",\"id\":\"null\",\"method\":\"searchrawtransactions\", \"params\":[\"" + address + "\"]}";
-
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setDoOutput(true);
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setRequestProperty("Accept", "application/json");
-        Base64 b = new Base64();
-        String authString = rpcuser + ":" + rpcpass;
-        String encoding = b.encodeAsString(authString.getBytes());
-        connection.setRequestProperty("Authorization", "Basic " + encoding);
-        connection.setRequestProperty("Content-Length", Integer.toString(requestBody.getBytes().length));
-        connection.setDoInput(true);
-        OutputStream out = connection.getOutputStream();
-        out.write(requestBody.getBytes());
-
-        if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-            InputStream is = connection.getInputStream();
-            BufferedReader rd = new BufferedReader(new InputStreamReader(is));
-            String line;
-            StringBuffer response = new StringBuffer();
-            while ((line = rd.readLine()) != null) {
-                response.append(line);
-                response.append('\r');
-            }
-            rd.close();
+    public List<Transaction> getAddressTransactionsInner(String address) throws IOException {
 
-            JSONObject json = new JSONObject(response.toString());
-            JSONArray jsonarray = null;
-            txList = new LinkedList<>();
-            if (json.isNull("result")) {
-                return txList;
-            } else {
-                jsonarray = json.getJSONArray("result");
-            }
-            for (int i = 0; i < jsonarray.length(); i++) {
-                JSONObject currentJson = jsonarray.getJSONObject(i);
-                String txid = currentJson.get("txid").toString();
-                HexBinaryAdapter adapter = new HexBinaryAdapter();
-                byte[] bytearray = adapter.unmarshal(currentJson.get("hex").toString());
-                Context context = Context.getOrCreate(netParams);
-                int confirmations = Integer.parseInt(currentJson.get("confirmations").toString());
-                boolean confirmed;
-                if (confirmations == 0) {
-                    confirmed = false;
-                } else {
-                    confirmed = true;
-                }
-                org.bitcoinj.core.Transaction bitTx = new org.bitcoinj.core.Transaction(netParams, bytearray);
-                Transaction tx = new Transaction(txid, bitTx, false, confirmed);
-                txList.add(tx);
-            }
+        return readTransactions(client.call("searchrawtransactions", new JSONArray().put(address)));
+    }
 
+    /**
+     * Looks up the transactions of many addresses with a single JSON-RPC batch request
+     * rather than one request per address.
+     */
+    @Override
+    protected Map<String, List<Transaction>> getAddressTransactionsInner(Collection<String> addresses)
+            throws IOException {
+
+        List<String> requested = new ArrayList<>(new LinkedHashSet<>(addresses));
+        List<JSONArray> params = new ArrayList<>(requested.size());
+        for (String address : requested) {
+            params.add(new JSONArray().put(address));
         }
 
-        out.flush();
-        out.close();
+        List<JSONObject> responses = client.batch("searchrawtransactions", params);
 
-        return txList;
+        Map<String, List<Transaction>> txLists = new HashMap<>();
+        for (int i = 0; i < requested.size(); i++) {
+            txLists.put(requested.get(i), readTransactions(responses.get(i)));
+        }
 
+        return txLists;
     }
 
-    @Override
-    protected boolean send(Bitcoin.Transaction t) throws ExecutionException, InterruptedException, CoinNetworkException {
-        if (!t.canSend || t.sent) {
-            return false;
+    // Read the result of a searchrawtransactions request.
+    private List<Transaction> readTransactions(JSONObject json) {
+        List<Transaction> txList = new LinkedList<>();
+        if (json.isNull("result")) {
+            return txList;
         }
 
-        String hexTx = null;
-        try {
-            hexTx = DatatypeConverter.printHexBinary(t.bitcoinj().bitcoinSerialize());
-        } catch (BlockStoreException e) {
-            return false;
-        } catch (IOException er) {
-            return false;
+        JSONArray jsonarray = json.getJSONArray("result");
+        for (int i = 0; i < jsonarray.length(); i++) {
+            JSONObject currentJson = jsonarray.getJSONObject(i);
+            String txid = currentJson.get("txid").toString();
+            HexBinaryAdapter adapter = new HexBinaryAdapter();
+            byte[] bytearray = adapter.unmarshal(currentJson.get("hex").toString());
+            Context context = Context.getOrCreate(netParams);
+            int confirmations = Integer.parseInt(currentJson.get("confirmations").toString());
+            boolean confirmed;
+            if (confirmations == 0) {
+                confirmed = false;
+            } else {
+                confirmed = true;
+            }
+            org.bitcoinj.core.Transaction bitTx = new org.bitcoinj.core.Transaction(netParams, bytearray);
+            Transaction tx = new Transaction(txid, bitTx, false, confirmed);
+            txList.add(tx);
         }
-        String requestBody = "{\"jsonrpc\":\"2.0\",\"id\":\"null\",\"method\":\"sendrawtransaction\", \"params\":[\"" + hexTx + "\"]}";
 
-        HttpURLConnection connection = null;
-        try {
-            connection = (HttpURLConnection) url.openConnection();
-        } catch (IOException e) {
-            return false;
-        }
-        connection.setDoOutput(true);
-        try {
-            connection.setRequestMethod("POST");
-        } catch (java.net.ProtocolException e) {
-            return false;
-        }
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setRequestProperty("Accept", "application/json");
-        Base64 b = new Base64();
-        String authString = rpcuser + ":" + rpcpass;
-        String encoding = b.encodeAsString(authString.getBytes());
-        connection.setRequestProperty("Authorization", "Basic " + encoding);
-        connection.setRequestProperty("Content-Length", Integer.toString(requestBody.getBytes().length));
-        connection.setDoInput(true);
-        OutputStream out;
-        try {
-            out = connection.getOutputStream();
-        } catch (IOException e) {
-            return false;
-        }
-        try {
-            out.write(requestBody.getBytes());
-        } catch (IOException e) {
-            return false;
-        }
+        return txList;
+    }
 
-        try {
-            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) return false;
-        } catch (IOException e) {
+    @Override
+    protected boolean send(Bitcoin.Transaction t) throws ExecutionException, InterruptedException, CoinNetworkException {
+        if (!t.canSend || t.sent) {
             return false;
         }
 
-        InputStream is;
+        JSONObject json;
         try {
-            is = connection.getInputStream();
-        } catch (IOException e) {
+            String hexTx = DatatypeConverter.printHexBinary(t.bitcoinj().bitcoinSerialize());
+            json = client.call("sendrawtransaction", new JSONArray().put(hexTx));
+        } catch (BlockStoreException e) {
             return false;
-        }
-        BufferedReader rd = new BufferedReader(new InputStreamReader(is));
-        String line;
-        StringBuffer response = new StringBuffer();
-        while (true) {
-            try {
-                if ((line = rd.readLine()) == null) break;
-            } catch (IOException e) {
-                return false;
-            }
-            response.append(line);
-            response.append('\r');
-        }
-
-        try {
-            rd.close();
-        } catch (IOException e) {
+        } catch (IOException er) {
             return false;
         }
 
-        JSONObject json = new JSONObject(response.toString());
         if (json.isNull("result")) {
             JSONObject errorObj = json.getJSONObject("error");
             String errorMsg = errorObj.getString("message");
-            String parsed = errorMsg.substring(0,37);
             // transaction is already in mempool, return true
-            if (parsed.equals("TX rejected: already have transaction")) {
+            if (errorMsg.startsWith("TX rejected: already have transaction")) {
                 return true;
             }
             throw new CoinNetworkException(errorMsg);
@@ -290,9 +187,4 @@ public class Btcd extends Bitcoin {
         return true;
     }
 
-    @Override
-    protected synchronized List<Transaction> getAddressTransactions(String address) throws IOException, CoinNetworkException, AddressFormatException {
-        return getAddressTransactionsInner(address);
-    }
-
 }
@@ -0,0 +1,162 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.bitcoin.blockchain;
+
+import org.apache.commons.codec.binary.Base64;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A JSON-RPC client for btcd.
+ *
+ * Connections are kept alive and reused between requests. The JVM keeps a pool of idle
+ * connections for every host, and a connection is returned to it once its response has
+ * been read to the end and closed, which this class always does, even for errors.
+ *
+ * The client holds no lock, so any number of threads can have requests open at once,
+ * each on its own connection. Many calls can also be sent in a single round trip as a
+ * JSON-RPC 2.0 batch.
+ */
+public class BtcdClient {
+    private final URL url;
+    private final String authorization;
+
+    private final AtomicLong nextId = new AtomicLong();
+
+    public BtcdClient(URL url, String rpcuser, String rpcpass) {
+        if (url == null || rpcuser == null || rpcpass == null) throw new NullPointerException();
+
+        this.url = url;
+        authorization = "Basic " + Base64.encodeBase64String(
+                (rpcuser + ":" + rpcpass).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Make a single call. Returns the whole response object, which
+    // has either a result or an error.
+    public JSONObject call(String method, JSONArray params) throws IOException {
+        long id = nextId.getAndIncrement();
+        JSONObject response;
+        try {
+            response = new JSONObject(post(request(id, method, params).toString()));
+        } catch (JSONException e) {
+            throw new IOException("Could not read response from btcd: " + e.getMessage());
+        }
+
+        if (response.optLong("id", -1) != id) {
+            throw new IOException("Unexpected response id from btcd: " + response.opt("id"));
+        }
+
+        return response;
+    }
+
+    // Make a call to the same method for every set of parameters in a single request.
+    // The responses are returned in the same order as the parameters.
+    public List<JSONObject> batch(String method, List<JSONArray> params) throws IOException {
+        List<JSONObject> responses = new ArrayList<>(params.size());
+        if (params.isEmpty()) return responses;
+
+        // The id of each request is its index.
+        JSONArray batch = new JSONArray();
+        for (int i = 0; i < params.size(); i++) {
+            batch.put(request(i, method, params.get(i)));
+            responses.add(null);
+        }
+
+        JSONArray results;
+        try {
+            results = new JSONArray(post(batch.toString()));
+        } catch (JSONException e) {
+            throw new IOException("Could not read batch response from btcd: " + e.getMessage());
+        }
+
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            int id = result.optInt("id", -1);
+            if (id < 0 || id >= params.size() || responses.get(id) != null) {
+                throw new IOException("Unexpected response id from btcd: " + result.opt("id"));
+            }
+
+            responses.set(id, result);
+        }
+
+        if (responses.contains(null)) throw new IOException("Missing responses from btcd.");
+
+        return responses;
+    }
+
+    private static JSONObject request(long id, String method, JSONArray params) {
+        JSONObject request = new JSONObject();
+        request.put("jsonrpc", "2.0");
+        request.put("id", id);
+        request.put("method", method);
+        request.put("params", params);
+        return request;
+    }
+
+    // Send a request and return the body of the response. btcd sends JSON-RPC
+    // errors with a status of 500, so those are returned like any other response.
+    private String post(String requestBody) throws IOException {
+        byte[] body = requestBody.getBytes(StandardCharsets.UTF_8);
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setDoOutput(true);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setRequestProperty("Accept", "application/json");
+        connection.setRequestProperty("Authorization", authorization);
+
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+
+        int code = connection.getResponseCode();
+        InputStream in = code == HttpURLConnection.HTTP_OK
+                ? connection.getInputStream() : connection.getErrorStream();
+
+        // The response must be read to the end so that the connection can be reused.
+        String response = in == null ? "" : read(in);
+
+        if (code != HttpURLConnection.HTTP_OK && code != HttpURLConnection.HTTP_INTERNAL_ERROR) {
+            throw new IOException("btcd responded with " + code + " " + connection.getResponseMessage());
+        }
+
+        return response;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                response.write(buffer, 0, n);
+            }
+            return new String(response.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BtcdClient[" + url + "]";
+    }
+}
@@ -49,6 +49,9 @@ import javax.crypto.Cipher;
 
 public class BitcoinCrypto implements Crypto {
 
+   // The curve of the 256 bit keys made by the ECIES key pair generator.
+   public static final String ENCRYPTION_CURVE = "prime256v1";
+
    private final SecureRandom sr;
    // Figure out which network we should connect to. Each one gets its own set of files.
    NetworkParameters params;
@@ -84,6 +87,7 @@ public class BitcoinCrypto implements Crypto {
       //this.sr = SecureRandom.getInstance("SHA1PRNG", new BouncyCastleProvider());
       this.sr = SecureRandom.getInstance("SHA1PRNG");
       this.keyPG = KeyPairGenerator.getInstance("ECIES", new BouncyCastleProvider());
+      this.keyPG.initialize(256, sr);
       //this.kit = getKit();
       //this.wallet = getKit().wallet();
 
@@ -104,6 +108,7 @@ public class BitcoinCrypto implements Crypto {
       //this.sr = SecureRandom.getInstance("SHA1PRNG", new BouncyCastleProvider());
       this.sr = SecureRandom.getInstance("SHA1PRNG");
       this.keyPG = KeyPairGenerator.getInstance("ECIES", new BouncyCastleProvider());
+      this.keyPG.initialize(256, sr);
       //this.kit = initKit(seed);
       //this.wallet = kit.wallet();
    }
@@ -243,7 +248,6 @@ public class BitcoinCrypto implements Crypto {
       // ECKey newDecKey = keyChainGroup.getActiveKeyChain().getKeyByPath(HDUtils.parsePath(ppath),true);
       // decKeyCounter++;
       // return ECIES KeyPair
-      keyPG.initialize(256, sr);
       return new DecryptionKeyImpl(keyPG.generateKeyPair());
 
    }
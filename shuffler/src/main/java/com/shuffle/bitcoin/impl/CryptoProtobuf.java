@@ -1,5 +1,6 @@
 package com.shuffle.bitcoin.impl;
 
+import com.google.protobuf.ByteString;
 import com.shuffle.bitcoin.Address;
 import com.shuffle.bitcoin.DecryptionKey;
 import com.shuffle.bitcoin.EncryptionKey;
@@ -7,15 +8,25 @@ import com.shuffle.bitcoin.Transaction;
 import com.shuffle.bitcoin.VerificationKey;
 import com.shuffle.bitcoin.blockchain.Bitcoin;
 import com.shuffle.chan.packet.Marshaller;
+import com.shuffle.chan.packet.SignatureCache;
 import com.shuffle.p2p.Bytestring;
 import com.shuffle.player.Protobuf;
 import com.shuffle.protocol.FormatException;
 
+import org.bitcoinj.core.AddressFormatException;
 import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.params.Networks;
+import org.bouncycastle.jce.ECNamedCurveTable;
+import org.bouncycastle.jce.interfaces.ECPublicKey;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.jce.spec.ECNamedCurveParameterSpec;
+import org.bouncycastle.jce.spec.ECPublicKeySpec;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
 import java.security.spec.InvalidKeySpecException;
 
 /**
@@ -24,6 +35,25 @@ import java.security.spec.InvalidKeySpecException;
 public class CryptoProtobuf extends Protobuf {
     NetworkParameters params;
     Bitcoin bitcoin;
+    private final BouncyCastleProvider provider = new BouncyCastleProvider();
+    private final ECNamedCurveParameterSpec curve
+            = ECNamedCurveTable.getParameterSpec(BitcoinCrypto.ENCRYPTION_CURVE);
+
+    // Verification keys can only be read if we know the network parameters.
+    public CryptoProtobuf(NetworkParameters params) {
+        this(params, 1);
+    }
+
+    public CryptoProtobuf(NetworkParameters params, int version) {
+        this(params, version, null);
+    }
+
+    public CryptoProtobuf(NetworkParameters params, int version, SignatureCache signatures) {
+        super(version, signatures);
+        if (params == null) throw new NullPointerException();
+
+        this.params = params;
+    }
 
     @Override
     // Unmarshall an address from its string representation.
@@ -61,6 +91,83 @@ public class CryptoProtobuf extends Protobuf {
         return bitcoin.fromBytes(bytes);
     }
 
+    @Override
+    // A version byte followed by the hash160, 21 bytes in all.
+    public ByteString marshallAddress(Address addr) {
+        if (!(addr instanceof AddressImpl)) return super.marshallAddress(addr);
+
+        org.bitcoinj.core.Address a = ((AddressImpl) addr).address;
+        byte[] bytes = new byte[21];
+        bytes[0] = (byte) a.getVersion();
+        System.arraycopy(a.getHash160(), 0, bytes, 1, 20);
+        return ByteString.copyFrom(bytes);
+    }
+
+    @Override
+    public Address unmarshallAddress(ByteString bytes) throws FormatException {
+        if (bytes.size() != 21) throw new FormatException("Address must be 21 bytes.");
+
+        int version = bytes.byteAt(0) & 0xff;
+        for (NetworkParameters p : Networks.get()) {
+            for (int code : p.getAcceptableAddressCodes()) {
+                if (code != version) continue;
+
+                try {
+                    return new AddressImpl(new org.bitcoinj.core.Address(
+                            p, version, bytes.substring(1).toByteArray()));
+                } catch (AddressFormatException e) {
+                    throw new FormatException("Could not read address: " + e.getMessage());
+                }
+            }
+        }
+
+        throw new FormatException("Unknown address version " + version);
+    }
+
+    @Override
+    // The compressed point, 33 bytes, if the key is on the curve that we use
+    // for encryption keys. Otherwise, the string representation.
+    public ByteString marshallEncryptionKey(EncryptionKey ek) {
+        if (!(ek instanceof EncryptionKeyImpl)) return super.marshallEncryptionKey(ek);
+
+        PublicKey key = ((EncryptionKeyImpl) ek).getPublicKey();
+        if (!(key instanceof ECPublicKey)
+                || !((ECPublicKey) key).getParameters().getCurve().equals(curve.getCurve())) {
+            return super.marshallEncryptionKey(ek);
+        }
+
+        return ByteString.copyFrom(((ECPublicKey) key).getQ().getEncoded(true));
+    }
+
+    @Override
+    public EncryptionKey unmarshallEncryptionKey(ByteString bytes) throws FormatException {
+        if (bytes.size() != 33) return super.unmarshallEncryptionKey(bytes);
+
+        try {
+            return new EncryptionKeyImpl(KeyFactory.getInstance("ECDSA", provider).generatePublic(
+                    new ECPublicKeySpec(curve.getCurve().decodePoint(bytes.toByteArray()), curve)));
+        } catch (IllegalArgumentException | GeneralSecurityException e) {
+            throw new FormatException("Could not read encryption key: " + e.getMessage());
+        }
+    }
+
+    @Override
+    // The public key as it is used in Bitcoin, which is 33 bytes for compressed keys.
+    public ByteString marshallVerificationKey(VerificationKey vk) {
+        if (!(vk instanceof VerificationKeyImpl)) return super.marshallVerificationKey(vk);
+
+        return ByteString.copyFrom(((VerificationKeyImpl) vk).getPubKey());
+    }
+
+    @Override
+    public VerificationKey unmarshallVerificationKey(ByteString bytes) throws FormatException {
+        try {
+            return new VerificationKeyImpl(bytes.toByteArray(), params);
+        } catch (IllegalArgumentException e) {
+            throw new FormatException("Could not read verification key: " + e.getMessage());
+        }
+    }
+
     @Override
     public Marshaller<Address> addressMarshaller() {
         return new Marshaller<Address>() {
@@ -1,25 +1,19 @@
 package com.shuffle.bitcoin.impl;
 
-import com.google.inject.Guice;
-import com.shuffle.JvmModule;
 import com.shuffle.bitcoin.DecryptionKey;
 import com.shuffle.bitcoin.EncryptionKey;
+import com.shuffle.p2p.Bytestring;
 
 import org.bitcoinj.core.ECKey;
 import org.spongycastle.crypto.RuntimeCryptoException;
 import org.spongycastle.util.encoders.Hex;
 
-import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
-import java.security.InvalidKeyException;
 import java.security.KeyPair;
-import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 
-import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
 
 
 /**
@@ -31,11 +25,13 @@ public class DecryptionKeyImpl implements DecryptionKey {
     final ECKey key;
     final PrivateKey privateKey;
     private final EncryptionKey ek;
+    private final EciesCipher cipher;
 
     public DecryptionKeyImpl(KeyPair keyPair) {
         this.privateKey = keyPair.getPrivate();
         this.key = ECKey.fromPrivate(this.privateKey.getEncoded());
         ek = new EncryptionKeyImpl(keyPair.getPublic());
+        cipher = new EciesCipher(Cipher.DECRYPT_MODE, privateKey);
     }
 
     public DecryptionKeyImpl(String privString, String publicString) {
@@ -48,6 +44,7 @@ public class DecryptionKeyImpl implements DecryptionKey {
           e.printStackTrace();
           throw new RuntimeCryptoException();
        }
+       cipher = new EciesCipher(Cipher.DECRYPT_MODE, privateKey);
     }
 
     // returns encoded private key in hex format
@@ -66,34 +63,18 @@ public class DecryptionKeyImpl implements DecryptionKey {
 
 
     @Override
-    public String decrypt(String input) {
-        Guice.createInjector(new JvmModule()).injectMembers(this);
-
-        //encrypt cipher
-        Cipher cipher = null;
-        try {
-           cipher = Cipher.getInstance("ECIES");
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
-           e.printStackTrace();
-           throw new RuntimeException(e);
-        }
-        try {
-           cipher.init(Cipher.DECRYPT_MODE, privateKey);
-        } catch (InvalidKeyException e) {
-           e.printStackTrace();
-           throw new RuntimeException(e);
-        }
-        byte[] bytes = Hex.decode(input);
-        byte[] decrypted = new byte[0];
+    public Bytestring decrypt(Bytestring input) {
+        byte[] decrypted;
         try {
-           decrypted = cipher.doFinal(bytes);
+           decrypted = cipher.doFinal(input.bytes);
         } catch (IllegalBlockSizeException e) {
            e.printStackTrace();
-        } catch (BadPaddingException e) {
+           decrypted = new byte[0];
+        } catch (GeneralSecurityException e) {
            e.printStackTrace();
            throw new RuntimeException(e);
         }
-        return new String(decrypted, StandardCharsets.UTF_8);
+        return new Bytestring(decrypted);
     }
 
     @Override
@@ -0,0 +1,62 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.bitcoin.impl;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.Provider;
+
+import javax.crypto.Cipher;
+
+/**
+ * An ECIES cipher bound to a single key. Each thread gets its own cipher, which is
+ * looked up and initialized the first time the thread uses it and reused after that.
+ * An ECIES cipher returns to its initialized state after doFinal (encryption makes
+ * a new ephemeral key every time), so there is no need to call init again.
+ */
+class EciesCipher {
+    // Using the provider directly means we don't depend on it having been registered.
+    private static final Provider provider = new BouncyCastleProvider();
+
+    private final int mode;
+    private final Key key;
+
+    private final ThreadLocal<Cipher> cipher = new ThreadLocal<Cipher>() {
+        @Override
+        protected Cipher initialValue() {
+            try {
+                Cipher c = Cipher.getInstance("ECIES", provider);
+                c.init(mode, key);
+                return c;
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    EciesCipher(int mode, Key key) {
+        if (key == null) throw new NullPointerException();
+        if (mode != Cipher.ENCRYPT_MODE && mode != Cipher.DECRYPT_MODE) throw new IllegalArgumentException();
+
+        this.mode = mode;
+        this.key = key;
+    }
+
+    byte[] doFinal(byte[] input) throws GeneralSecurityException {
+        try {
+            return cipher.get().doFinal(input);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            // Don't reuse a cipher which might have been left in a bad state.
+            cipher.remove();
+            throw e;
+        }
+    }
+}
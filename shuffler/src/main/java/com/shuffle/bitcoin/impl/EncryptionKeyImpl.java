@@ -1,20 +1,14 @@
 package com.shuffle.bitcoin.impl;
 
 import com.shuffle.bitcoin.EncryptionKey;
+import com.shuffle.p2p.Bytestring;
 
-import org.apache.commons.codec.binary.Hex;
-
-import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
-import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.spec.InvalidKeySpecException;
 
-import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
 
 /**
  * Created by conta on 01.04.16.
@@ -22,9 +16,11 @@ import javax.crypto.NoSuchPaddingException;
 public class EncryptionKeyImpl implements EncryptionKey {
 
     private final PublicKey publicKey;
+    private final EciesCipher cipher;
 
     public EncryptionKeyImpl(PublicKey pubKey) {
         this.publicKey = pubKey;
+        cipher = new EciesCipher(Cipher.ENCRYPT_MODE, publicKey);
     }
 
     // takes a key in hex as string
@@ -38,6 +34,7 @@ public class EncryptionKeyImpl implements EncryptionKey {
             e.printStackTrace();
             throw new RuntimeException();
         }
+        cipher = new EciesCipher(Cipher.ENCRYPT_MODE, publicKey);
     }
 
     public PublicKey getPublicKey() {
@@ -49,36 +46,15 @@ public class EncryptionKeyImpl implements EncryptionKey {
     }
 
     @Override
-    public String encrypt(String input) {
+    public Bytestring encrypt(Bytestring input) {
 
         // encrypts the address passed for this encryption key
-
-        //get cipher cipher for ECIES encryption
-        Cipher cipher = null;
-        try {
-            cipher = Cipher.getInstance("ECIES");
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
-            e.printStackTrace();
-            throw new RuntimeException(e);
-        }
-        //init cipher with with our encryption key
         try {
-            cipher.init(Cipher.ENCRYPT_MODE, publicKey);
-        } catch (InvalidKeyException e) {
-            e.printStackTrace();
-        }
-        //get bytes of address passed
-        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
-        //encrypt
-        byte[] encrypted = new byte[0];
-        try {
-            encrypted = cipher.doFinal(bytes);
-        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            return new Bytestring(cipher.doFinal(input.bytes));
+        } catch (GeneralSecurityException e) {
             e.printStackTrace();
             throw new RuntimeException(e);
         }
-        //create new address with
-        return Hex.encodeHexString(encrypted);
     }
 
     @Override
@@ -0,0 +1,109 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.bitcoin.impl;
+
+import com.shuffle.bitcoin.Crypto;
+import com.shuffle.bitcoin.DecryptionKey;
+import com.shuffle.bitcoin.SigningKey;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps another Crypto and generates decryption keys ahead of time on a background
+ * thread, so that they are ready at the start of the announcement phase. Every key
+ * is handed out only once. If the pool is empty, a key is generated on the spot.
+ */
+public class PooledCrypto implements Crypto {
+    private static final Logger log = LogManager.getLogger(PooledCrypto.class);
+
+    private final Crypto crypto;
+    private final BlockingQueue<DecryptionKey> pool;
+    private final Thread filler;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public PooledCrypto(Crypto crypto, int size) {
+        if (crypto == null) throw new NullPointerException();
+        if (size < 1) throw new IllegalArgumentException();
+
+        this.crypto = crypto;
+        pool = new ArrayBlockingQueue<>(size);
+
+        filler = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        pool.put(PooledCrypto.this.crypto.makeDecryptionKey());
+                    }
+                } catch (InterruptedException e) {
+                    // We have been closed.
+                } catch (RuntimeException e) {
+                    // Keys will be made on demand from now on.
+                    log.error("Could not pre-generate decryption key: " + e);
+                }
+            }
+        }, "decryption key pool");
+        filler.setDaemon(true);
+        filler.start();
+    }
+
+    @Override
+    public SigningKey makeSigningKey() {
+        return crypto.makeSigningKey();
+    }
+
+    @Override
+    public DecryptionKey makeDecryptionKey() {
+        DecryptionKey dk = pool.poll();
+        if (dk != null) {
+            hits.incrementAndGet();
+            return dk;
+        }
+
+        misses.incrementAndGet();
+        return crypto.makeDecryptionKey();
+    }
+
+    @Override
+    public int getRandom(int n) {
+        return crypto.getRandom(n);
+    }
+
+    // The number of keys which were taken from the pool.
+    public long hits() {
+        return hits.get();
+    }
+
+    // The number of keys which had to be made because the pool was empty.
+    public long misses() {
+        return misses.get();
+    }
+
+    // The number of keys waiting in the pool.
+    public int available() {
+        return pool.size();
+    }
+
+    // Stop generating keys. Keys already in the pool can still be used.
+    public void close() {
+        filler.interrupt();
+    }
+
+    @Override
+    public String toString() {
+        return "PooledCrypto[" + crypto + ", hits: " + hits + ", misses: " + misses + "]";
+    }
+}
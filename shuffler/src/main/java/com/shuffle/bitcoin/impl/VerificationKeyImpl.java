@@ -42,6 +42,11 @@ public class VerificationKeyImpl implements VerificationKey {
       return this.ecKey.getPublicKeyAsHex();
    }
 
+   // returns PublicKey as bytes, 33 if compressed
+   public byte[] getPubKey() {
+      return Arrays.copyOf(vKey, vKey.length);
+   }
+
 
 
    @Override
@@ -0,0 +1,186 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.chan;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache which is safe to use from many threads. It holds the results of blockchain
+ * queries and of signature checks.
+ *
+ * Entries expire a fixed time after they are loaded, and when the cache is full the entry
+ * which was used least recently is removed. If several threads ask for a key which is not
+ * in the cache at the same time, it is loaded only once and they all wait for the result.
+ * Failures are not cached.
+ */
+public class Cache<K, V> {
+
+    // Loads values for keys which are not in the cache. Keys which are left
+    // out of the map that is returned could not be loaded.
+    public interface Loader<K, V> {
+        Map<K, V> load(Collection<K> keys) throws Exception;
+    }
+
+    private class Entry {
+        final CompletableFuture<V> value = new CompletableFuture<>();
+
+        // Entries which are still loading never expire.
+        volatile long expires = Long.MAX_VALUE;
+
+        boolean expired(long now) {
+            return now >= expires;
+        }
+    }
+
+    private final int maxSize;
+    private final long ttl;
+
+    // Guarded by itself.
+    private final LinkedHashMap<K, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // ttl is in milliseconds.
+    public Cache(int maxSize, long ttl) {
+        if (maxSize < 1 || ttl < 0) throw new IllegalArgumentException();
+
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+
+        entries = new LeastRecentlyUsed<>(maxSize);
+    }
+
+    // Iterates in the order in which the entries were last used, and removes
+    // the one used least recently when there are too many.
+    private static class LeastRecentlyUsed<K, E> extends LinkedHashMap<K, E> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        LeastRecentlyUsed(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, E> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    public V get(K key, Loader<K, V> loader) throws ExecutionException, InterruptedException {
+        return getAll(Collections.singletonList(key), loader).get(key);
+    }
+
+    // Get the values for many keys. Those which are not in the cache
+    // are given to the loader all at once.
+    public Map<K, V> getAll(Collection<K> keys, Loader<K, V> loader)
+            throws ExecutionException, InterruptedException {
+
+        if (loader == null) throw new NullPointerException();
+
+        Map<K, Entry> found = new HashMap<>();
+        Map<K, Entry> missing = new HashMap<>();
+
+        long now = now();
+        synchronized (entries) {
+            for (K key : keys) {
+                if (found.containsKey(key)) continue;
+
+                Entry entry = entries.get(key);
+                if (entry == null || entry.expired(now)) {
+                    entry = new Entry();
+                    entries.put(key, entry);
+                    missing.put(key, entry);
+                    misses.incrementAndGet();
+                } else {
+                    hits.incrementAndGet();
+                }
+
+                found.put(key, entry);
+            }
+        }
+
+        if (!missing.isEmpty()) load(missing, loader);
+
+        Map<K, V> values = new HashMap<>();
+        for (Map.Entry<K, Entry> entry : found.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().value.get());
+        }
+
+        return values;
+    }
+
+    private void load(Map<K, Entry> missing, Loader<K, V> loader) {
+        Map<K, V> loaded = null;
+        Throwable failure = null;
+        try {
+            loaded = loader.load(new ArrayList<>(missing.keySet()));
+            if (loaded == null) throw new NullPointerException();
+        } catch (Throwable e) {
+            failure = e;
+        }
+
+        long expires = now() + ttl;
+        for (Map.Entry<K, Entry> e : missing.entrySet()) {
+            K key = e.getKey();
+            Entry entry = e.getValue();
+
+            if (failure == null && loaded.containsKey(key)) {
+                entry.expires = expires;
+                entry.value.complete(loaded.get(key));
+                continue;
+            }
+
+            synchronized (entries) {
+                if (entries.get(key) == entry) entries.remove(key);
+            }
+
+            entry.value.completeExceptionally(
+                    failure != null ? failure : new NoSuchElementException(String.valueOf(key)));
+        }
+
+        if (failure instanceof Error) throw (Error) failure;
+    }
+
+    // The number of keys which were found in the cache.
+    public long hits() {
+        return hits.get();
+    }
+
+    // The number of keys which had to be loaded.
+    public long misses() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public String toString() {
+        return "Cache[size: " + size() + "/" + maxSize + ", hits: " + hits + ", misses: " + misses + "]";
+    }
+}
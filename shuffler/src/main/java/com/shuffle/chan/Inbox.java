@@ -69,6 +69,9 @@ public class Inbox<Address, X extends Serializable> implements Receive<Inbox.Env
     private boolean closeSent = false;
     private final Set<Address> receiving = new HashSet<Address>();
 
+    // Told whenever something is put in the inbox, so that whoever reads it need not poll.
+    private volatile Runnable listener = null;
+
     private class Receiver implements Send<X> {
         private final Address from;
         private boolean closed = false;
@@ -81,8 +84,11 @@ public class Inbox<Address, X extends Serializable> implements Receive<Inbox.Env
         @Override
         public boolean send(X x) throws InterruptedException {
 
-            return !(closed || Inbox.this.closed) &&
-                    q.add(new Transit<Address, X>(new Inbox.Envelope<Address, X>(from, x)));
+            if (closed || Inbox.this.closed) return false;
+
+            q.add(new Transit<Address, X>(new Inbox.Envelope<Address, X>(from, x)));
+            arrived();
+            return true;
         }
 
         @Override
@@ -103,6 +109,19 @@ public class Inbox<Address, X extends Serializable> implements Receive<Inbox.Env
     public void close() {
         closed = true;
         closeSent = q.offer(new Transit<Address, X>());
+        arrived();
+    }
+
+    // Run the listener whenever a message arrives or the inbox is closed. It is run on the
+    // thread that sent the message, so it should only arrange for the message to be read.
+    // (Can be null.)
+    public void listen(Runnable listener) {
+        this.listener = listener;
+    }
+
+    private void arrived() {
+        Runnable l = listener;
+        if (l != null) l.run();
     }
 
     private Envelope<Address, X> receiveMessage(Transit<Address, X> m) {
@@ -10,12 +10,14 @@ import java.io.Serializable;
 public class Packet<Address extends Serializable, X extends Serializable> implements Serializable {
     public final Bytestring session;
     public final Address from;
+
+    // Null if the packet is a broadcast to everyone in the session.
     public final Address to;
     public final int sequenceNumber;
     public final X payload;
 
     public Packet(Bytestring session, Address from, Address to, int sequenceNumber, X payload) {
-        if (session == null || from == null || to == null || payload == null)
+        if (session == null || from == null || payload == null)
             throw new NullPointerException();
 
         this.session = session;
@@ -25,6 +27,10 @@ public class Packet<Address extends Serializable, X extends Serializable> implem
         this.payload = payload;
     }
 
+    public boolean broadcast() {
+        return to == null;
+    }
+
     @Override
     public String toString() {
         return "Packet[session: " + session + ", from: \"" + from + "\", to: \"" + to + "\", number: " + sequenceNumber + ", payload: " + payload + "]";
@@ -32,7 +38,7 @@ public class Packet<Address extends Serializable, X extends Serializable> implem
 
     @Override
     public int hashCode() {
-        return session.hashCode() + 17 * (from.hashCode() + 17 * (to.hashCode() + 17 * (sequenceNumber + 17 * payload.hashCode())));
+        return session.hashCode() + 17 * (from.hashCode() + 17 * ((to == null ? 0 : to.hashCode()) + 17 * (sequenceNumber + 17 * payload.hashCode())));
     }
 
     @Override
@@ -41,7 +47,8 @@ public class Packet<Address extends Serializable, X extends Serializable> implem
 
         Packet p = (Packet)o;
 
-        return session.equals(p.session) && from.equals(p.from) && to.equals(p.to)
+        return session.equals(p.session) && from.equals(p.from)
+                && (to == null ? p.to == null : to.equals(p.to))
                 && sequenceNumber == p.sequenceNumber && payload.equals(p.payload);
     }
 }
@@ -0,0 +1,125 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.chan.packet;
+
+import com.shuffle.bitcoin.VerificationKey;
+import com.shuffle.chan.Cache;
+import com.shuffle.p2p.Bytestring;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers which signatures have already been checked, so that packets which are
+ * forwarded again and again during blame do not have to be verified each time.
+ *
+ * Entries are keyed by the verification key, the SHA-256 digest of the payload,
+ * and the signature. It is safe to use from many threads. If several threads check
+ * the same signature at once, it is verified only once.
+ */
+public class SignatureCache {
+
+    // Entries are only kept for as long as a session could reasonably last.
+    private static final long ttl = TimeUnit.HOURS.toMillis(1);
+
+    private static class Entry {
+        final VerificationKey key;
+        final Bytestring digest;
+        final Bytestring signature;
+
+        Entry(VerificationKey key, Bytestring digest, Bytestring signature) {
+            this.key = key;
+            this.digest = digest;
+            this.signature = signature;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) return false;
+
+            Entry e = (Entry) o;
+
+            return key.equals(e.key) && digest.equals(e.digest) && signature.equals(e.signature);
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() + 17 * digest.hashCode() + 31 * signature.hashCode();
+        }
+    }
+
+    private final Cache<Entry, Boolean> cache;
+
+    public SignatureCache(int maxSize) {
+        cache = new Cache<>(maxSize, ttl);
+    }
+
+    public boolean verify(final VerificationKey key, final Bytestring payload, final Bytestring signature) {
+        if (key == null || payload == null || signature == null) throw new NullPointerException();
+
+        // Only the digest of the payload is kept in the cache.
+        final Entry entry = new Entry(key, digest(payload), signature);
+
+        try {
+            Boolean valid = cache.get(entry, new Cache.Loader<Entry, Boolean>() {
+                @Override
+                public Map<Entry, Boolean> load(Collection<Entry> entries) {
+                    return Collections.singletonMap(entry, key.verify(payload, signature));
+                }
+            });
+
+            return valid != null && valid;
+        } catch (ExecutionException e) {
+            // The signature could not be read.
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return key.verify(payload, signature);
+        }
+    }
+
+    // The number of signatures which did not have to be checked again.
+    public long hits() {
+        return cache.hits();
+    }
+
+    // The number of signatures which were checked.
+    public long misses() {
+        return cache.misses();
+    }
+
+    public double hitRate() {
+        long hits = cache.hits();
+        long total = hits + cache.misses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    private static Bytestring digest(Bytestring payload) {
+        try {
+            return new Bytestring(MessageDigest.getInstance("SHA-256").digest(payload.bytes));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SignatureCache[size: " + size() + ", hits: " + hits() + ", misses: " + misses() + "]";
+    }
+}
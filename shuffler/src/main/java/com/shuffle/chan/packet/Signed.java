@@ -19,12 +19,19 @@ public class Signed<X> implements Serializable {
     public final X message;
     public final Bytestring signature;
 
+    // The serialized form of the message that was signed. It is kept so that
+    // the message does not have to be marshalled again to be sent or checked.
+    // It is not kept through Java serialization, which would not ensure that
+    // the bytes are those of the message, so it may be null.
+    public final transient Bytestring marshalled;
+
     // If you want to make the signature yourself, use this constructor.
     public Signed(X x, SigningKey key, Marshaller<X> m) throws IOException {
         if (x == null || key == null || m == null) throw new NullPointerException();
 
         this.message = x;
-        this.signature = key.sign(m.marshall(x));
+        this.marshalled = m.marshall(x);
+        this.signature = key.sign(marshalled);
     }
 
     // If the signature was generated by someone else, use this one.
@@ -36,9 +43,35 @@ public class Signed<X> implements Serializable {
         }
 
         this.signature = signature;
+        this.marshalled = message;
         this.message = m.unmarshall(message);
     }
 
+    // If the message has already been read from the bytes that were signed, use this one.
+    // The caller is responsible for x being what the bytes say.
+    public Signed(X x, Bytestring marshalled, Bytestring signature, VerificationKey key) {
+        this(x, marshalled, signature, key, null);
+    }
+
+    // Signatures which are found in the cache are not checked again. The cache may be null.
+    public Signed(X x, Bytestring marshalled, Bytestring signature, VerificationKey key,
+                  SignatureCache cache) {
+        if (x == null || marshalled == null || signature == null || key == null)
+            throw new NullPointerException();
+
+        boolean valid = cache == null
+                ? key.verify(marshalled, signature)
+                : cache.verify(key, marshalled, signature);
+
+        if (!valid) {
+            throw new IllegalArgumentException();
+        }
+
+        this.message = x;
+        this.marshalled = marshalled;
+        this.signature = signature;
+    }
+
     @Override
     public String toString() {
         return "Sig[" + message + ", " + signature + "]";
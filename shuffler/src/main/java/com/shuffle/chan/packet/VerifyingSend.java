@@ -2,6 +2,7 @@ package com.shuffle.chan.packet;
 
 import com.shuffle.bitcoin.VerificationKey;
 import com.shuffle.chan.Send;
+import com.shuffle.p2p.Bytestring;
 
 import java.io.IOException;
 
@@ -16,22 +17,44 @@ public class VerifyingSend<X> implements Send<Signed<X>> {
     private final Marshaller<X> marshaller;
     private final Send<Signed<X>> send;
     private final VerificationKey key;
+    private final SignatureCache cache; // May be null.
 
     public VerifyingSend(
             Send<Signed<X>> send,
             Marshaller<X> marshaller,
             VerificationKey key) {
 
+        this(send, marshaller, key, null);
+    }
+
+    public VerifyingSend(
+            Send<Signed<X>> send,
+            Marshaller<X> marshaller,
+            VerificationKey key,
+            SignatureCache cache) {
+
         if (marshaller == null || send == null || key == null) throw new NullPointerException();
 
         this.marshaller = marshaller;
         this.send = send;
         this.key = key;
+        this.cache = cache;
     }
 
     @Override
     public boolean send(Signed<X> x) throws InterruptedException, IOException {
-        return x != null && key.verify(marshaller.marshall(x.message), x.signature) && send.send(x);
+        if (x == null) return false;
+
+        // The signature is checked against the bytes that were signed. These are missing
+        // if the Signed object came through Java serialization, which does not ensure
+        // that they go with the message, so then the message is marshalled again.
+        Bytestring marshalled = x.marshalled != null ? x.marshalled : marshaller.marshall(x.message);
+
+        boolean valid = cache == null
+                ? key.verify(marshalled, x.signature)
+                : cache.verify(key, marshalled, x.signature);
+
+        return valid && send.send(x);
 
     }
 
@@ -28,13 +28,17 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Reader;
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
  * Simulation of a cryptocurrency network for testing purposes.
@@ -214,6 +218,18 @@ public class MockCoin implements com.shuffle.sim.MockCoin {
             return false;
         }
 
+        @Override
+        // Mock signatures are cheap to check, so they are never checked in parallel.
+        public Set<Bytestring> addInputScripts(Collection<Bytestring> b, Executor executor)
+                throws FormatException {
+
+            Set<Bytestring> invalid = new HashSet<>();
+            for (Bytestring script : b) {
+                if (!addInputScript(script)) invalid.add(script);
+            }
+            return invalid;
+        }
+
         @Override
         // Check whether a signature exists for each input.
         public boolean isValid() {
@@ -422,6 +438,29 @@ public class MockCoin implements com.shuffle.sim.MockCoin {
         return sent.get(output);
     }
 
+    @Override
+    public synchronized Map<Address, Boolean> sufficientFunds(Collection<Address> addrs, long amount) {
+        Map<Address, Boolean> sufficient = new HashMap<>();
+        for (Address addr : addrs) {
+            sufficient.put(addr, valueHeld(addr) >= amount);
+        }
+
+        return sufficient;
+    }
+
+    @Override
+    public synchronized Map<Address, Transaction> getConflictingTransactions(
+            Transaction transaction, Collection<Address> addrs, long amount) {
+
+        Map<Address, Transaction> conflicts = new HashMap<>();
+        for (Address addr : addrs) {
+            Transaction t = getConflictingTransaction(transaction, addr, amount);
+            if (t != null) conflicts.put(addr, t);
+        }
+
+        return conflicts;
+    }
+
     @Override
     public Transaction getSpendingTransaction(Address addr, long amount) {
         Output output = blockchain.get(addr);
@@ -10,8 +10,10 @@ package com.shuffle.mock;
 
 import com.shuffle.bitcoin.DecryptionKey;
 import com.shuffle.bitcoin.EncryptionKey;
+import com.shuffle.p2p.Bytestring;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 
 /**
  * It's a pretend decryption key for testing purposes.
@@ -39,6 +41,11 @@ public class MockDecryptionKey implements DecryptionKey, Serializable {
     }
 
     @Override
+    public Bytestring decrypt(Bytestring m) {
+        return new Bytestring(
+                decrypt(new String(m.bytes, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8));
+    }
+
     // Intended blockchain decrypt a single element.
     public String decrypt(String m) {
         String encrypted = "~encrypt[" + index + "]";
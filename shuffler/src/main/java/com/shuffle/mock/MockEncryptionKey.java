@@ -9,8 +9,10 @@
 package com.shuffle.mock;
 
 import com.shuffle.bitcoin.EncryptionKey;
+import com.shuffle.p2p.Bytestring;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.regex.Pattern;
 
 /**
@@ -36,6 +38,11 @@ public class MockEncryptionKey implements EncryptionKey, Serializable {
     }
 
     @Override
+    public Bytestring encrypt(Bytestring m) {
+        return new Bytestring(
+                encrypt(new String(m.bytes, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8));
+    }
+
     public String encrypt(String m) {
         String decrypted = "~decrypt[" + index + "]";
 
@@ -6,6 +6,7 @@ import com.shuffle.bitcoin.EncryptionKey;
 import com.shuffle.bitcoin.Transaction;
 import com.shuffle.bitcoin.VerificationKey;
 import com.shuffle.chan.packet.Marshaller;
+import com.shuffle.chan.packet.SignatureCache;
 import com.shuffle.p2p.Bytestring;
 import com.shuffle.player.Protobuf;
 import com.shuffle.protocol.FormatException;
@@ -17,6 +18,18 @@ import java.io.IOException;
  */
 public class MockProtobuf extends Protobuf {
 
+    public MockProtobuf() {
+        super();
+    }
+
+    public MockProtobuf(int version) {
+        super(version);
+    }
+
+    public MockProtobuf(int version, SignatureCache signatures) {
+        super(version, signatures);
+    }
+
     @Override
     // Unmarshall an address from its string representation.
     public Address unmarshallAdress(String str) {
@@ -14,6 +14,7 @@ import com.shuffle.bitcoin.CoinNetworkException;
 import com.shuffle.bitcoin.Transaction;
 import com.shuffle.bitcoin.VerificationKey;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -59,4 +60,16 @@ public class TransactionMutator implements Coin {
     public Transaction getConflictingTransaction(Transaction t, Address addr, long amount) {
         return coin.getConflictingTransaction(t, addr, amount);
     }
+
+    @Override
+    public Map<Address, Boolean> sufficientFunds(Collection<Address> addrs, long amount) {
+        return coin.sufficientFunds(addrs, amount);
+    }
+
+    @Override
+    public Map<Address, Transaction> getConflictingTransactions(
+            Transaction t, Collection<Address> addrs, long amount) {
+
+        return coin.getConflictingTransactions(t, addrs, amount);
+    }
 }
@@ -141,6 +141,9 @@ public class Connect<Identity, P extends Serializable> implements Connection<Ide
         }
     }
 
+    // How many received messages may wait to be read by default.
+    public static final int defaultCapacity = 100;
+
     private final Channel<Identity, P> channel;
     private final Connection<Identity> connection;
     private final Collector<Identity, P> collector;
@@ -151,7 +154,7 @@ public class Connect<Identity, P extends Serializable> implements Connection<Ide
     public Connect(Channel<Identity, P> channel, Crypto crypto)
             throws InterruptedException, IOException {
 
-        this(channel, crypto, 100);
+        this(channel, crypto, defaultCapacity);
     }
 
     public Connect(Channel<Identity, P> channel, Crypto crypto, int capacity)
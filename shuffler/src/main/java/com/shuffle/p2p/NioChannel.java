@@ -0,0 +1,856 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.p2p;
+
+import com.shuffle.chan.Send;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A manager for a bunch of tcp connections which uses non-blocking sockets. Instead of
+ * a thread for every connection, there are a fixed number of threads which each wait on
+ * a Selector for many connections at once. These threads are shared by every NioChannel
+ * unless a channel is given its own Loops, so the number of threads does not grow with
+ * the number of channels either. Messages have the same header as those sent over
+ * TcpChannel, so the two can talk to one another.
+ *
+ * Received messages are given to the session's Send on one of these threads, so a Send
+ * which blocks holds up every other session on the same thread, including those of
+ * other channels. A Send which throws only closes its own session.
+ */
+public class NioChannel implements Channel<InetSocketAddress, Bytestring> {
+
+    // The most messages read from one session before the others get a turn.
+    private static final int maxReads = 64;
+
+    // How long to wait for a connection to be made, in milliseconds.
+    private static final long connectTimeout = 10000;
+
+    // The largest message we will read by default. A peer which claims to be
+    // sending anything bigger is disconnected before anything is allocated.
+    public static final int defaultMaxMessage = 16 * 1024 * 1024;
+
+    // A particular header format that is used for this particular channel.
+    private final TcpChannel.Header header;
+
+    private final int port;
+    private final InetSocketAddress me;
+    private final int maxMessage;
+
+    // Null if the shared loops are to be used.
+    private final Loops group;
+
+    // Only one object representing each peer is allowed at a time.
+    private class Peers {
+        private final Map<InetSocketAddress, NioPeer> peers = new HashMap<>();
+
+        public synchronized NioPeer get(InetSocketAddress identity) {
+            NioPeer peer = peers.get(identity);
+            if (peer == null) {
+                peer = new NioPeer(identity);
+                peers.put(identity, peer);
+            }
+
+            return peer;
+        }
+    }
+
+    private final Peers peers = new Peers();
+
+    // Something registered with the selector of an event loop.
+    private interface Handler {
+        // Only on the event loop.
+        void ready(SelectionKey key);
+
+        // The event loop has stopped.
+        void abandon();
+    }
+
+    // A thread which handles every session that is registered with its selector.
+    private static class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private volatile boolean running = true;
+        private volatile Thread thread = null;
+
+        EventLoop() throws IOException {
+            selector = Selector.open();
+        }
+
+        // Run a task on the event loop. Channels must be registered
+        // with the selector from here.
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void stop() {
+            running = false;
+            selector.wakeup();
+        }
+
+        boolean inLoop() {
+            return Thread.currentThread() == thread;
+        }
+
+        // Wait until the loop has let go of channels which were closed from
+        // another thread. A closed channel keeps its socket until then.
+        void flush() {
+            if (inLoop() || !running) return;
+
+            final CountDownLatch flushed = new CountDownLatch(1);
+            execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        selector.selectNow();
+                    } catch (IOException ignored) {
+                        // The loop will find out on its next select.
+                    }
+                    flushed.countDown();
+                }
+            });
+
+            try {
+                // The loop could be stopped in the meantime, so don't wait forever.
+                flushed.await(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            try {
+                while (running) {
+                    selector.select();
+
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        try {
+                            task.run();
+                        } catch (RuntimeException ignored) {
+                            // One bad task must not stop the other sessions on this loop.
+                        }
+                    }
+
+                    Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                    while (selected.hasNext()) {
+                        SelectionKey key = selected.next();
+                        selected.remove();
+
+                        Handler handler = (Handler) key.attachment();
+                        try {
+                            handler.ready(key);
+                        } catch (RuntimeException e) {
+                            // Drop only the handler that failed.
+                            handler.abandon();
+                        }
+                    }
+                }
+            } catch (IOException ignored) {
+                // The selector is broken, so everything on it is closed below.
+            } finally {
+                for (SelectionKey key : new ArrayList<>(selector.keys())) {
+                    ((Handler) key.attachment()).abandon();
+                }
+
+                try {
+                    selector.close();
+                } catch (IOException ignored) {
+                    // We're done with it anyway.
+                }
+            }
+        }
+    }
+
+    /**
+     * The threads on which sessions are handled. Sessions are spread evenly over them.
+     */
+    public static final class Loops {
+        // One thread per processor, but at least two.
+        public static final int defaultThreads
+                = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        private static Loops shared = null;
+
+        private final EventLoop[] loops;
+        private final AtomicInteger next = new AtomicInteger();
+
+        public Loops(int threads) throws IOException {
+            if (threads < 1) throw new IllegalArgumentException();
+
+            loops = new EventLoop[threads];
+            try {
+                for (int i = 0; i < threads; i++) {
+                    loops[i] = new EventLoop();
+                }
+            } catch (IOException e) {
+                for (EventLoop loop : loops) {
+                    if (loop != null) loop.selector.close();
+                }
+                throw e;
+            }
+
+            for (int i = 0; i < threads; i++) {
+                Thread thread = new Thread(loops[i], "NioChannel event loop " + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        // The loops used by every channel which is not given its own.
+        // They are started the first time they are needed and never stopped.
+        public static synchronized Loops shared() throws IOException {
+            if (shared == null) shared = new Loops(defaultThreads);
+            return shared;
+        }
+
+        public int threads() {
+            return loops.length;
+        }
+
+        EventLoop next() {
+            return loops[Math.abs(next.getAndIncrement() % loops.length)];
+        }
+
+        // Stop the threads. Every session still on them is closed.
+        public void close() {
+            synchronized (Loops.class) {
+                if (this == shared) throw new IllegalStateException("The shared loops are never closed.");
+            }
+
+            for (EventLoop loop : loops) {
+                loop.stop();
+            }
+        }
+    }
+
+    // A special class used to house synchronized functions regarding the list of open sessions.
+    private class OpenSessions {
+
+        // The sessions which are currently open.
+        private final Map<InetSocketAddress, NioSession> openSessions = new ConcurrentHashMap<>();
+
+        private final Loops loops;
+
+        OpenSessions(Loops loops) {
+            this.loops = loops;
+        }
+
+        private EventLoop nextLoop() {
+            return loops.next();
+        }
+
+        // Whether there is already a session to this peer that we should not overwrite.
+        private boolean isOpen(InetSocketAddress identity) {
+            NioSession openSession = openSessions.get(identity);
+            if (openSession != null) {
+                if (!openSession.closed()) {
+                    return true;
+                }
+
+                openSessions.remove(identity);
+            }
+
+            return false;
+        }
+
+        // Start connecting to a remote peer.
+        public synchronized NioSession putNewSession(NioPeer peer) throws IOException {
+            InetSocketAddress identity = peer.identity();
+            if (isOpen(identity) || identity.getAddress() == null) {
+                return null;
+            }
+
+            SocketChannel channel = SocketChannel.open();
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+
+                NioSession session = new NioSession(peer, channel, nextLoop());
+                if (channel.connect(identity)) {
+                    session.connected.complete(true);
+                }
+
+                openSessions.put(identity, session);
+                session.register();
+                return session;
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        // This is for creating a session that was initiated by a remote peer.
+        public synchronized NioSession putOpenSession(
+                InetSocketAddress identity,
+                SocketChannel channel
+        ) {
+            if (isOpen(identity)) {
+                return null;
+            }
+
+            NioPeer peer = peers.get(identity);
+            NioSession session = new NioSession(peer, channel, nextLoop());
+            session.connected.complete(true);
+            peer.currentSession = session;
+
+            openSessions.put(identity, session);
+            return session;
+        }
+
+        public void remove(InetSocketAddress identity, NioSession session) {
+            openSessions.remove(identity, session);
+        }
+
+        // The event loops are shared, so they keep running.
+        public void closeAll() {
+            for (NioSession session : openSessions.values()) {
+                session.close();
+            }
+        }
+    }
+
+    private volatile OpenSessions openSessions = null;
+
+    // Class definition for representation of a particular peer.
+    private class NioPeer extends FundamentalPeer<InetSocketAddress, Bytestring> {
+
+        NioPeer(InetSocketAddress identity) {
+            super(identity);
+        }
+
+        @Override
+        public synchronized Session<InetSocketAddress, Bytestring> openSession(
+                Send<Bytestring> send
+        ) throws IOException, InterruptedException {
+            // Don't allow sessions to be opened when we're opening or closing the channel.
+            synchronized (lock) { }
+
+            OpenSessions sessions = openSessions;
+            if (sessions == null) {
+                return null;
+            }
+
+            if (currentSession != null && !currentSession.closed()) {
+                return null;
+            }
+
+            NioSession session = sessions.putNewSession(this);
+
+            if (session == null) {
+                return null;
+            }
+
+            // Wait for the connection to be made on the event loop.
+            try {
+                session.connected.get(connectTimeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                session.close();
+                throw new IOException("Timed out connecting to " + identity());
+            } catch (ExecutionException e) {
+                session.close();
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                session.close();
+                throw e;
+            }
+
+            currentSession = session;
+            session.start(send);
+            return session;
+        }
+    }
+
+    // Encapsulates a particular tcp session.
+    private class NioSession implements Session<InetSocketAddress, Bytestring>, Handler {
+        private final NioPeer peer;
+        private final SocketChannel channel;
+        private final EventLoop loop;
+
+        // Completed once the connection has been made.
+        final CompletableFuture<Boolean> connected = new CompletableFuture<>();
+
+        // Where received messages go. Null until the session is started.
+        private volatile Send<Bytestring> receiver = null;
+
+        // Only used on the event loop.
+        private SelectionKey key = null;
+        private final ByteBuffer head = ByteBuffer.allocate(header.headerLength());
+        private ByteBuffer body = null;
+
+        // Messages waiting to be written. Guarded by this.
+        private final Deque<ByteBuffer> writes = new ArrayDeque<>();
+        private boolean closed = false;
+        private boolean registered = false;
+
+        // Set the interest of the session on the event loop.
+        private final Runnable interest = new Runnable() {
+            @Override
+            public void run() {
+                interest();
+            }
+        };
+
+        NioSession(NioPeer peer, SocketChannel channel, EventLoop loop) {
+            this.peer = peer;
+            this.channel = channel;
+            this.loop = loop;
+        }
+
+        // Register the session with its event loop.
+        synchronized void register() {
+            registered = true;
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        key = channel.register(loop.selector, 0, NioSession.this);
+                        interest();
+                    } catch (ClosedChannelException e) {
+                        close();
+                    }
+                }
+            });
+        }
+
+        // Start reading messages.
+        synchronized void start(Send<Bytestring> send) {
+            receiver = send;
+            if (!registered) {
+                register();
+            } else {
+                loop.execute(interest);
+            }
+        }
+
+        // Only on the event loop.
+        private void interest() {
+            if (key == null || !key.isValid()) return;
+
+            int ops;
+            if (!connected.isDone()) {
+                ops = SelectionKey.OP_CONNECT;
+            } else {
+                ops = receiver == null ? 0 : SelectionKey.OP_READ;
+                synchronized (this) {
+                    if (!writes.isEmpty()) ops |= SelectionKey.OP_WRITE;
+                }
+            }
+
+            try {
+                key.interestOps(ops);
+            } catch (CancelledKeyException e) {
+                close();
+            }
+        }
+
+        // Only on the event loop.
+        private void finishConnect() throws IOException {
+            if (!channel.finishConnect()) return;
+
+            connected.complete(true);
+            interest();
+        }
+
+        // Only on the event loop.
+        private void read() throws IOException, InterruptedException {
+            for (int i = 0; i < maxReads; i++) {
+                // Read in the message header, which tells us
+                // the size of the total message.
+                if (body == null) {
+                    if (channel.read(head) < 0) {
+                        close();
+                        return;
+                    }
+
+                    if (head.hasRemaining()) return;
+
+                    int msgLength = header.payloadLength(head.array());
+                    head.clear();
+
+                    if (msgLength < 0 || msgLength > maxMessage) {
+                        throw new IOException("Invalid message length " + msgLength);
+                    }
+
+                    body = ByteBuffer.allocate(msgLength);
+                }
+
+                // Then read in the message.
+                if (body.hasRemaining() && channel.read(body) < 0) {
+                    close();
+                    return;
+                }
+
+                if (body.hasRemaining()) return;
+
+                byte[] msg = body.array();
+                body = null;
+                receiver.send(new Bytestring(msg));
+            }
+        }
+
+        // Only on the event loop.
+        private void flush() throws IOException {
+            synchronized (this) {
+                write();
+            }
+
+            interest();
+        }
+
+        // Write as much as the socket will take. Must be called while holding the lock.
+        private void write() throws IOException {
+            if (writes.isEmpty()) return;
+
+            channel.write(writes.toArray(new ByteBuffer[writes.size()]));
+
+            while (!writes.isEmpty() && !writes.peek().hasRemaining()) {
+                writes.poll();
+            }
+        }
+
+        @Override
+        public boolean send(Bytestring message) throws IOException {
+            // Don't allow sending messages while we're opening or closing the channel.
+            synchronized (lock) { }
+
+            boolean flush = false;
+            synchronized (this) {
+                if (closed) {
+                    return false;
+                }
+
+                boolean idle = writes.isEmpty();
+                writes.add(ByteBuffer.wrap(header.makeHeader(message.bytes.length).bytes));
+                writes.add(ByteBuffer.wrap(message.bytes));
+
+                // If nothing else is waiting to be written, try to write the message
+                // right away. Otherwise the event loop is already writing.
+                if (idle) {
+                    try {
+                        write();
+                    } catch (IOException e) {
+                        close();
+                        throw e;
+                    }
+
+                    flush = !writes.isEmpty();
+                }
+            }
+
+            // The event loop will finish writing the message.
+            if (flush) {
+                loop.execute(interest);
+            }
+
+            return true;
+        }
+
+        void fail(IOException e) {
+            connected.completeExceptionally(e);
+            close();
+        }
+
+        @Override
+        public void ready(SelectionKey key) {
+            try {
+                if (key.isConnectable()) finishConnect();
+                if (key.isValid() && key.isReadable()) read();
+                if (key.isValid() && key.isWritable()) flush();
+            } catch (IOException e) {
+                fail(e);
+            } catch (CancelledKeyException | InterruptedException e) {
+                close();
+            } catch (RuntimeException e) {
+                // Thrown by the receiver, for example if its inbox is full.
+                close();
+            }
+        }
+
+        @Override
+        public void abandon() {
+            close();
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+
+                closed = true;
+                writes.clear();
+            }
+
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // This doesn't make any sense because you
+                // should always be able to close a connection!
+            }
+
+            connected.completeExceptionally(new ClosedChannelException());
+
+            if (peer.currentSession == this) {
+                peer.currentSession = null;
+            }
+
+            OpenSessions sessions = openSessions;
+            if (sessions != null) {
+                sessions.remove(peer.identity(), this);
+            }
+
+            Send<Bytestring> send = receiver;
+            if (send != null) {
+                send.close();
+            }
+        }
+
+        @Override
+        public synchronized boolean closed() {
+            return closed;
+        }
+
+        @Override
+        public Peer<InetSocketAddress, Bytestring> peer() {
+            return peer;
+        }
+
+        @Override
+        public String toString() {
+            return "NioSession[" + peer.identity() + "]";
+        }
+    }
+
+    // Accepts new tcp connections.
+    private class Acceptor implements Handler {
+        final Listener<InetSocketAddress, Bytestring> listener;
+        final ServerSocketChannel server;
+
+        private Acceptor(Listener<InetSocketAddress, Bytestring> listener, ServerSocketChannel server) {
+            this.listener = listener;
+            this.server = server;
+        }
+
+        @Override
+        public void ready(SelectionKey key) {
+            accept();
+        }
+
+        @Override
+        public void abandon() {
+            try {
+                server.close();
+            } catch (IOException ignored) {
+                // We're done with it anyway.
+            }
+        }
+
+        // Only on the event loop.
+        void accept() {
+            while (true) {
+                SocketChannel client;
+                try {
+                    client = server.accept();
+                    if (client == null) {
+                        return;
+                    }
+
+                    client.configureBlocking(false);
+                    client.socket().setTcpNoDelay(true);
+                } catch (IOException e) {
+                    return;
+                }
+
+                // Determine the identity of this connection.
+                InetSocketAddress identity = new InetSocketAddress(
+                        client.socket().getInetAddress(), client.socket().getPort());
+
+                OpenSessions sessions = openSessions;
+                NioSession session = sessions == null ? null : sessions.putOpenSession(identity, client);
+
+                if (session == null) {
+                    try {
+                        client.close();
+                    } catch (IOException ignored) {
+                        // We didn't want it anyway.
+                    }
+                    continue;
+                }
+
+                Send<Bytestring> send;
+                try {
+                    send = listener.newSession(session);
+                } catch (InterruptedException | RuntimeException e) {
+                    send = null;
+                }
+
+                // Nobody wants to hear from this peer.
+                if (send == null) {
+                    session.close();
+                    continue;
+                }
+
+                session.start(send);
+            }
+        }
+    }
+
+    private ServerSocketChannel server = null;
+    private EventLoop acceptor = null;
+
+    private final Object lock = new Object();
+
+    // If loops is null, the shared loops are used.
+    public NioChannel(
+            TcpChannel.Header header,
+            InetSocketAddress me,
+            Loops loops,
+            int maxMessage) {
+
+        if (header == null || me == null) {
+            throw new NullPointerException();
+        }
+
+        if (maxMessage < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        this.me = me;
+        this.header = header;
+        this.port = me.getPort();
+        this.group = loops;
+        this.maxMessage = maxMessage;
+    }
+
+    public NioChannel(TcpChannel.Header header, InetSocketAddress me, Loops loops) {
+        this(header, me, loops, defaultMaxMessage);
+    }
+
+    public NioChannel(InetSocketAddress me) {
+        this(TcpChannel.defaultHeader(), me, null);
+    }
+
+    private class NioConnection implements Connection<InetSocketAddress> {
+        private boolean closed = false;
+
+        @Override
+        public void close() {
+            EventLoop loop;
+            synchronized (lock) {
+                if (closed) return;
+
+                closed = true;
+
+                try {
+                    server.close();
+                } catch (IOException ignored) {
+                    // We're done with it anyway.
+                }
+
+                loop = acceptor;
+
+                openSessions.closeAll();
+                openSessions = null;
+                server = null;
+                acceptor = null;
+            }
+
+            // The loop keeps running, so make sure it lets go of the port
+            // before we return. Otherwise it could not be opened again yet.
+            loop.flush();
+        }
+
+        @Override
+        public boolean closed() {
+            synchronized (lock) {
+                return closed;
+            }
+        }
+    }
+
+    @Override
+    public Connection<InetSocketAddress> open(
+            final Listener<InetSocketAddress, Bytestring> listener
+    ) throws IOException {
+        if (listener == null) {
+            throw new NullPointerException();
+        }
+
+        synchronized (lock) {
+            if (openSessions != null) return null;
+
+            Loops loops = group == null ? Loops.shared() : group;
+
+            final ServerSocketChannel server = ServerSocketChannel.open();
+            try {
+                server.configureBlocking(false);
+                server.socket().setReuseAddress(true);
+                server.socket().bind(new InetSocketAddress(port));
+            } catch (IOException e) {
+                server.close();
+                throw e;
+            }
+
+            this.server = server;
+            openSessions = new OpenSessions(loops);
+
+            final EventLoop acceptor = loops.next();
+            this.acceptor = acceptor;
+            acceptor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        server.register(acceptor.selector, SelectionKey.OP_ACCEPT, new Acceptor(listener, server));
+                    } catch (ClosedChannelException ignored) {
+                        // The channel has already been closed.
+                    }
+                }
+            });
+
+            return new NioConnection();
+        }
+    }
+
+    @Override
+    public Peer<InetSocketAddress, Bytestring> getPeer(InetSocketAddress you) {
+
+        if (you.equals(me)) return null;
+
+        return peers.get(you);
+    }
+}
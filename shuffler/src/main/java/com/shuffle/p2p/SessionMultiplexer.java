@@ -0,0 +1,732 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.p2p;
+
+import com.shuffle.chan.Send;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs many sessions over a single connection to each remote peer. Every session has a
+ * tag, such as the session id of a round of CoinShuffle, and channel(tag) returns a
+ * Channel whose sessions are carried over the connections of the inner channel. The
+ * inner channel is opened when the first of these is opened and closed when the last
+ * one is closed.
+ *
+ * Every message is sent in a frame which includes the tag, so that it can be given to
+ * the right session on the other side. Each session may have only a limited number of
+ * messages in flight, and the receiver grants more as the session's Send takes them, so
+ * a session whose messages are not being read cannot take up the connection or hold up
+ * the others. Received messages are handled on the given Executor rather than on the
+ * thread of the inner channel, by at most one thread per session at a time.
+ *
+ * The window only holds back a sender for as long as the Send does. A Send which does
+ * not block, such as an Inbox, takes every message at once, so it must have room for a
+ * full window from each session that feeds it. A session whose Send refuses a message
+ * or throws is closed.
+ *
+ * Whoever opens a connection first tells the other side the address it listens on,
+ * so that both sides know the connection by the same address and use it for all their
+ * sessions with each other. Only if both open a connection at once do they keep two.
+ *
+ * Both sides must use a multiplexer, since the inner channel only carries frames.
+ */
+public class SessionMultiplexer<Address> {
+
+    // The number of messages a session may have in flight by default. A Send
+    // which does not block needs this much room for every session it is given.
+    public static final int defaultWindow = 16;
+
+    // Types of frames.
+    private static final byte DATA = 0;
+    private static final byte CREDIT = 1; // Permission to send more messages.
+    private static final byte CLOSE = 2;
+    private static final byte HELLO = 3; // The address we listen on. Always the first frame.
+
+    private static final Bytestring none = new Bytestring(new byte[0]);
+
+    // How a peer tells us which address it listens on.
+    public interface Handshake<Address> {
+        // What we tell the peers we connect to.
+        Bytestring hello();
+
+        // The address a peer listens on, given the address its connection
+        // came from and what it told us. Null if it makes no sense.
+        Address identify(Address from, Bytestring hello);
+    }
+
+    // For TCP, where a peer connects from some port other than the one it listens on.
+    public static Handshake<InetSocketAddress> port(final int port) {
+        if (port < 0 || port > 0xFFFF) throw new IllegalArgumentException();
+
+        return new Handshake<InetSocketAddress>() {
+            @Override
+            public Bytestring hello() {
+                return new Bytestring(ByteBuffer.allocate(2).putShort((short) port).array());
+            }
+
+            @Override
+            public InetSocketAddress identify(InetSocketAddress from, Bytestring hello) {
+                if (hello.bytes.length != 2) return null;
+
+                int port = ByteBuffer.wrap(hello.bytes).getShort() & 0xFFFF;
+                return new InetSocketAddress(from.getAddress(), port);
+            }
+        };
+    }
+
+    private final Channel<Address, Bytestring> inner;
+    private final Handshake<Address> handshake;
+    private final Executor executor;
+    private final int window;
+
+    // The open channels, by tag.
+    private final Map<Bytestring, TaggedChannel> channels = new HashMap<>();
+
+    // The connection to each remote peer.
+    private final Map<Address, Link> links = new HashMap<>();
+
+    // Null unless some channel is open.
+    private Connection<Address> connection = null;
+
+    public SessionMultiplexer(
+            Channel<Address, Bytestring> inner,
+            Handshake<Address> handshake,
+            Executor executor) {
+
+        this(inner, handshake, executor, defaultWindow);
+    }
+
+    public SessionMultiplexer(
+            Channel<Address, Bytestring> inner,
+            Handshake<Address> handshake,
+            Executor executor,
+            int window) {
+
+        if (inner == null || handshake == null || executor == null) {
+            throw new NullPointerException();
+        }
+        if (window < 1) throw new IllegalArgumentException();
+
+        this.inner = inner;
+        this.handshake = handshake;
+        this.executor = executor;
+        this.window = window;
+    }
+
+    // A channel for the sessions with the given tag.
+    public Channel<Address, Bytestring> channel(Bytestring tag) {
+        if (tag == null) throw new NullPointerException();
+        if (tag.bytes.length > Short.MAX_VALUE) throw new IllegalArgumentException();
+
+        return new TaggedChannel(tag);
+    }
+
+    // The number of connections that are open to remote peers.
+    public synchronized int connections() {
+        int n = 0;
+        for (Link link : links.values()) {
+            if (!link.closed()) n++;
+        }
+        return n;
+    }
+
+    private static Bytestring frame(byte type, Bytestring tag, byte[] body) {
+        ByteBuffer b = ByteBuffer.allocate(3 + tag.bytes.length + body.length);
+        b.put(type);
+        b.putShort((short) tag.bytes.length);
+        b.put(tag.bytes);
+        b.put(body);
+        return new Bytestring(b.array());
+    }
+
+    private synchronized TaggedChannel listening(Bytestring tag) {
+        return channels.get(tag);
+    }
+
+    // A connection opened by a remote peer now knows who it is from.
+    private synchronized void identified(Link link) {
+        Link existing = links.get(link.address());
+        if (existing == null || existing.closed()) links.put(link.address(), link);
+    }
+
+    // Get the connection to a remote peer, or make one if there is none.
+    private Link link(Address you) throws InterruptedException, IOException {
+        synchronized (this) {
+            if (connection == null) return null;
+
+            Link link = links.get(you);
+            if (link != null && !link.closed()) return link;
+        }
+
+        Peer<Address, Bytestring> peer = inner.getPeer(you);
+        if (peer == null) return null;
+
+        Link link = new Link(you);
+        Session<Address, Bytestring> session = peer.openSession(link);
+        link.session = session;
+
+        if (session != null && !link.write(frame(HELLO, none, handshake.hello().bytes))) {
+            session.close();
+            session = null;
+        }
+
+        synchronized (this) {
+            // Somebody may have connected while we were waiting.
+            Link existing = links.get(you);
+            if (existing != null && !existing.closed()) {
+                if (session != null) session.close();
+                return existing;
+            }
+
+            if (session == null) return null;
+
+            links.put(you, link);
+            return link;
+        }
+    }
+
+    // A single connection to a remote peer, shared by every session with that peer.
+    private class Link implements Send<Bytestring> {
+        private volatile Session<Address, Bytestring> session;
+
+        // The address the remote peer listens on. For connections the remote
+        // peer opened, this is null until it says hello.
+        private volatile Address you;
+        private final Map<Bytestring, TaggedSession> sessions = new HashMap<>();
+        private volatile boolean closed = false;
+
+        // Sessions we have closed which the remote peer has not yet answered.
+        private final Set<Bytestring> closing = new HashSet<>();
+
+        // Frames from different threads must not be interleaved.
+        private final Object writing = new Object();
+
+        Link(Address you) {
+            this.you = you;
+        }
+
+        Link(Session<Address, Bytestring> session) {
+            this.session = session;
+        }
+
+        Address address() {
+            return you;
+        }
+
+        boolean closed() {
+            Session<Address, Bytestring> s = session;
+            return closed || (s != null && s.closed());
+        }
+
+        // Returns null if there is already a session with this tag.
+        synchronized TaggedSession open(TaggedChannel channel, Send<Bytestring> receiver) {
+            if (closed || closing.contains(channel.tag)) return null;
+
+            TaggedSession s = sessions.get(channel.tag);
+            if (s != null) return null;
+
+            s = new TaggedSession(channel, this, receiver);
+            sessions.put(channel.tag, s);
+            channel.add(s);
+            return s;
+        }
+
+        synchronized TaggedSession get(Bytestring tag) {
+            return sessions.get(tag);
+        }
+
+        synchronized boolean closing(Bytestring tag) {
+            return closing.contains(tag);
+        }
+
+        // If wait is true, we wait for the remote peer to answer before
+        // another session with the same tag can be opened.
+        synchronized void remove(TaggedSession s, boolean wait) {
+            if (sessions.get(s.channel.tag) != s) return;
+
+            sessions.remove(s.channel.tag);
+            if (wait) closing.add(s.channel.tag);
+        }
+
+        synchronized void closed(Bytestring tag) {
+            closing.remove(tag);
+        }
+
+        boolean write(Bytestring frame) {
+            Session<Address, Bytestring> s = session;
+            if (s == null || closed) return false;
+
+            synchronized (writing) {
+                try {
+                    return s.send(frame);
+                } catch (InterruptedException | IOException e) {
+                    return false;
+                }
+            }
+        }
+
+        // Tell the remote peer that there is no session with this tag.
+        void refuse(final Bytestring tag) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    write(frame(CLOSE, tag, new byte[0]));
+                }
+            });
+        }
+
+        // Receive a frame from the remote peer.
+        @Override
+        public boolean send(Bytestring message) throws InterruptedException, IOException {
+            byte type;
+            Bytestring tag;
+            byte[] body;
+            try {
+                ByteBuffer b = ByteBuffer.wrap(message.bytes);
+                type = b.get();
+                byte[] t = new byte[b.getShort()];
+                b.get(t);
+                tag = new Bytestring(t);
+                body = new byte[b.remaining()];
+                b.get(body);
+            } catch (BufferUnderflowException | NegativeArraySizeException e) {
+                // A malformed frame. We have no idea which session it was for.
+                return true;
+            }
+
+            if (type == HELLO) {
+                if (you == null) {
+                    you = handshake.identify(session.peer().identity(), new Bytestring(body));
+                    if (you != null) identified(this);
+                }
+                return true;
+            }
+
+            // We don't know who this is from, so we can't let it open any sessions.
+            if (you == null) return true;
+
+            TaggedSession s = get(tag);
+            switch (type) {
+                case DATA: {
+                    if (s == null) {
+                        // We closed this session and the remote peer doesn't know yet.
+                        if (closing(tag)) return true;
+
+                        TaggedChannel channel = listening(tag);
+                        if (channel != null) {
+                            s = open(channel, null);
+                            if (s == null) s = get(tag);
+                        }
+
+                        if (s == null) {
+                            refuse(tag);
+                            return true;
+                        }
+                    }
+
+                    s.receive(new Bytestring(body));
+                    return true;
+                }
+                case CREDIT: {
+                    if (s != null && body.length == 4) {
+                        s.credit(ByteBuffer.wrap(body).getInt());
+                    }
+                    return true;
+                }
+                case CLOSE: {
+                    if (s != null) {
+                        s.ended();
+                    } else {
+                        closed(tag);
+                    }
+                    return true;
+                }
+                default:
+                    return true;
+            }
+        }
+
+        // The connection has been closed, which closes every session over it.
+        @Override
+        public void close() {
+            LinkedList<TaggedSession> open;
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+                open = new LinkedList<>(sessions.values());
+            }
+
+            Session<Address, Bytestring> session = this.session;
+            if (session == null) return;
+
+            Address you = this.you;
+            synchronized (SessionMultiplexer.this) {
+                if (you != null && links.get(you) == this) links.remove(you);
+            }
+
+            for (TaggedSession s : open) {
+                s.end(false, false);
+            }
+
+            session.close();
+        }
+
+        @Override
+        public String toString() {
+            return "Link[" + session + "]";
+        }
+    }
+
+    private class TaggedSession implements Session<Address, Bytestring>, Runnable {
+        private final TaggedChannel channel;
+        private final Link link;
+
+        // Where received messages go. For sessions opened by the remote
+        // peer, this is null until the first message is handled.
+        private Send<Bytestring> receiver;
+
+        // Messages received which have not been handled yet.
+        private final Queue<Bytestring> buffer = new LinkedList<>();
+
+        private int credit = window; // The number of messages we may send.
+        private int handled = 0; // Messages handled since we last granted credit.
+        private boolean draining = false; // Whether run() has been scheduled.
+        private boolean closed = false;
+        private boolean tell = false; // Whether to tell the remote peer we closed.
+        private boolean answer = false; // Whether the remote peer closed first.
+        private boolean finished = false;
+
+        TaggedSession(TaggedChannel channel, Link link, Send<Bytestring> receiver) {
+            this.channel = channel;
+            this.link = link;
+            this.receiver = receiver;
+        }
+
+        @Override
+        public boolean send(Bytestring message) throws InterruptedException, IOException {
+            synchronized (this) {
+                while (!closed && credit == 0) {
+                    wait();
+                }
+
+                if (closed) return false;
+                credit--;
+            }
+
+            if (!link.write(frame(DATA, channel.tag, message.bytes))) {
+                end(false, true);
+                return false;
+            }
+
+            return true;
+        }
+
+        synchronized void credit(int n) {
+            if (n <= 0) return;
+
+            credit += n;
+            notifyAll();
+        }
+
+        // A message from the remote peer.
+        void receive(Bytestring message) {
+            boolean overflow;
+            synchronized (this) {
+                if (closed) return;
+
+                // The remote peer has sent more than we allowed.
+                overflow = buffer.size() >= window;
+                if (!overflow) {
+                    buffer.add(message);
+                    if (draining) return;
+                    draining = true;
+                }
+            }
+
+            if (overflow) {
+                end(true, true);
+            } else {
+                executor.execute(this);
+            }
+        }
+
+        // Handle received messages in order, and close the receiver
+        // once the session has been closed.
+        @Override
+        public void run() {
+            while (true) {
+                Bytestring next;
+                synchronized (this) {
+                    next = buffer.poll();
+                    if (next == null) {
+                        draining = false;
+                        if (!closed || finished) return;
+                        finished = true;
+                    }
+                }
+
+                if (next == null) {
+                    finish();
+                    return;
+                }
+
+                handle(next);
+            }
+        }
+
+        private void handle(Bytestring message) {
+            try {
+                if (receiver == null) {
+                    Listener<Address, Bytestring> listener = channel.listener();
+                    if (listener != null) receiver = listener.newSession(this);
+                }
+
+                if (receiver == null || !receiver.send(message)) {
+                    end(true, true);
+                    return;
+                }
+            } catch (InterruptedException | IOException | RuntimeException e) {
+                // Such as a full Inbox. The session is closed like any other that fails.
+                end(true, true);
+                return;
+            }
+
+            int grant = 0;
+            synchronized (this) {
+                handled++;
+                if (!closed && handled >= (window + 1) / 2) {
+                    grant = handled;
+                    handled = 0;
+                }
+            }
+
+            if (grant > 0) {
+                byte[] body = ByteBuffer.allocate(4).putInt(grant).array();
+                link.write(frame(CREDIT, channel.tag, body));
+            }
+        }
+
+        private void finish() {
+            if (tell || answer) link.write(frame(CLOSE, channel.tag, new byte[0]));
+            if (receiver != null) receiver.close();
+        }
+
+        // Close the session. If tell is true, the remote peer must answer before
+        // the tag can be used again with this peer. If discard is false, messages
+        // that have already been received are still handled.
+        void end(boolean tell, boolean discard) {
+            boolean schedule;
+            synchronized (this) {
+                if (closed) return;
+
+                closed = true;
+                this.tell = tell;
+                if (discard) buffer.clear();
+                notifyAll();
+
+                schedule = !draining;
+                draining = true;
+            }
+
+            link.remove(this, tell);
+            channel.remove(this);
+
+            if (schedule) executor.execute(this);
+        }
+
+        // The remote peer closed the session. We answer so that it
+        // knows that no more messages are coming.
+        void ended() {
+            synchronized (this) {
+                if (closed) return;
+                answer = true;
+            }
+
+            end(false, false);
+        }
+
+        @Override
+        public void close() {
+            end(true, true);
+        }
+
+        @Override
+        public synchronized boolean closed() {
+            return closed;
+        }
+
+        @Override
+        public Peer<Address, Bytestring> peer() {
+            return channel.new TaggedPeer(link.address());
+        }
+
+        @Override
+        public String toString() {
+            return "TaggedSession[" + channel.tag + ", " + link + "]";
+        }
+    }
+
+    private class TaggedChannel implements Channel<Address, Bytestring> {
+        private final Bytestring tag;
+        private final Set<TaggedSession> sessions = new HashSet<>();
+        private Listener<Address, Bytestring> listener = null;
+
+        TaggedChannel(Bytestring tag) {
+            this.tag = tag;
+        }
+
+        Listener<Address, Bytestring> listener() {
+            synchronized (SessionMultiplexer.this) {
+                return listener;
+            }
+        }
+
+        synchronized void add(TaggedSession s) {
+            sessions.add(s);
+        }
+
+        synchronized void remove(TaggedSession s) {
+            sessions.remove(s);
+        }
+
+        private class TaggedPeer implements Peer<Address, Bytestring> {
+            private final Address you;
+
+            TaggedPeer(Address you) {
+                this.you = you;
+            }
+
+            @Override
+            public Address identity() {
+                return you;
+            }
+
+            @Override
+            public Session<Address, Bytestring> openSession(Send<Bytestring> send)
+                    throws InterruptedException, IOException {
+
+                if (send == null) throw new NullPointerException();
+                if (listener() == null) return null;
+
+                Link link = link(you);
+                if (link == null) return null;
+
+                return link.open(TaggedChannel.this, send);
+            }
+
+            @Override
+            public void close() throws InterruptedException {
+                Link link;
+                synchronized (SessionMultiplexer.this) {
+                    link = links.get(you);
+                }
+                if (link == null) return;
+
+                TaggedSession s = link.get(tag);
+                if (s != null) s.close();
+            }
+
+            @Override
+            public String toString() {
+                return "TaggedPeer[" + tag + ", " + you + "]";
+            }
+        }
+
+        @Override
+        public Peer<Address, Bytestring> getPeer(Address you) {
+            if (you == null) return null;
+
+            return new TaggedPeer(you);
+        }
+
+        @Override
+        public Connection<Address> open(Listener<Address, Bytestring> listener)
+                throws InterruptedException, IOException {
+
+            if (listener == null) throw new NullPointerException();
+
+            synchronized (SessionMultiplexer.this) {
+                if (this.listener != null || channels.containsKey(tag)) return null;
+
+                if (connection == null) {
+                    connection = inner.open(new Listener<Address, Bytestring>() {
+                        @Override
+                        public Send<Bytestring> newSession(Session<Address, Bytestring> session) {
+                            // Not used until the remote peer says who it is.
+                            return new Link(session);
+                        }
+                    });
+
+                    if (connection == null) return null;
+                }
+
+                this.listener = listener;
+                channels.put(tag, this);
+            }
+
+            return new TaggedConnection();
+        }
+
+        private class TaggedConnection implements Connection<Address> {
+            private boolean closed = false;
+
+            @Override
+            public void close() {
+                Connection<Address> last = null;
+                synchronized (SessionMultiplexer.this) {
+                    if (closed) return;
+                    closed = true;
+
+                    channels.remove(tag);
+                    listener = null;
+
+                    if (channels.isEmpty()) {
+                        last = connection;
+                        connection = null;
+                        links.clear();
+                    }
+                }
+
+                LinkedList<TaggedSession> open;
+                synchronized (TaggedChannel.this) {
+                    open = new LinkedList<>(sessions);
+                }
+
+                for (TaggedSession s : open) {
+                    s.close();
+                }
+
+                if (last != null) last.close();
+            }
+
+            @Override
+            public boolean closed() {
+                synchronized (SessionMultiplexer.this) {
+                    return closed;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "TaggedChannel[" + tag + ", " + inner + "]";
+        }
+    }
+}
@@ -2,17 +2,17 @@ package com.shuffle.p2p;
 
 import com.shuffle.chan.Send;
 
-import java.io.InputStream;
 import java.io.IOException;
 import java.net.BindException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * A manager for a bunch of tcp connections.
@@ -58,9 +58,58 @@ public class TcpChannel implements Channel<InetSocketAddress, Bytestring> {
         return new DefaultHeader();
     }
 
+    // The size of the buffers that messages are read and written through.
+    public static final int defaultBufferSize = 32 * 1024;
+
+    // The largest message we will read by default. A peer which claims to be
+    // sending anything bigger is disconnected before anything is allocated.
+    public static final int defaultMaxMessage = 16 * 1024 * 1024;
+
     // A particular header format that is used for this particular channel.
     private final Header header;
 
+    // Whether Nagle's algorithm is turned off for our sockets.
+    private final boolean noDelay;
+
+    private final int maxMessage;
+
+    // Write the header for a message of the given length. The default
+    // header can be written without making a new array.
+    private void putHeader(ByteBuffer buffer, int payloadLength) throws IOException {
+        if (header instanceof DefaultHeader) {
+            buffer.putInt(payloadLength);
+        } else {
+            buffer.put(header.makeHeader(payloadLength).bytes);
+        }
+    }
+
+    // Direct buffers are expensive to make, so they are reused
+    // when sessions are closed.
+    private static class BufferPool {
+        private final int size;
+        private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+
+        BufferPool(int size) {
+            this.size = size;
+        }
+
+        ByteBuffer take() {
+            ByteBuffer buffer = free.poll();
+            if (buffer == null) {
+                return ByteBuffer.allocateDirect(size);
+            }
+
+            buffer.clear();
+            return buffer;
+        }
+
+        void release(ByteBuffer buffer) {
+            free.offer(buffer);
+        }
+    }
+
+    private final BufferPool buffers;
+
     // Only one object representing each peer is allowed at a time.
     private class Peers {
         private final Map<InetSocketAddress, TcpPeer> peers = new HashMap<>();
@@ -93,7 +142,7 @@ public class TcpChannel implements Channel<InetSocketAddress, Bytestring> {
         ) throws IOException {
             TcpPeer.TcpSession openSession = openSessions.get(identity);
             if (openSession != null) {
-                if (openSession.socket.isConnected()) {
+                if (openSession.channel.isConnected()) {
                     return null;
                 }
 
@@ -110,11 +159,11 @@ public class TcpChannel implements Channel<InetSocketAddress, Bytestring> {
         // This is for creating a session that was initiated by a remote peer.
         public synchronized TcpPeer.TcpSession putOpenSession(
                 InetSocketAddress identity,
-                Socket client
+                SocketChannel client
         ) throws IOException {
             TcpPeer.TcpSession openSession = openSessions.get(identity);
             if (openSession != null) {
-                if (openSession.socket.isConnected()) {
+                if (openSession.channel.isConnected()) {
                     return null;
                 }
 
@@ -164,8 +213,8 @@ public class TcpChannel implements Channel<InetSocketAddress, Bytestring> {
             this.currentSession = session;
         }
 
-        private TcpPeer setSession(Socket socket) throws IOException {
-            currentSession = new TcpSession(socket);
+        private TcpPeer setSession(SocketChannel channel) throws IOException {
+            currentSession = new TcpSession(channel);
             return this;
         }
 
@@ -178,9 +227,7 @@ public class TcpChannel implements Channel<InetSocketAddress, Bytestring> {
                 return null;
             }
 
-            Socket socket = new Socket(identity.getAddress(), identity.getPort());
-
-            return new TcpSession(socket);
+            return new TcpSession(SocketChannel.open(identity));
         }
 
         @Override
@@ -211,16 +258,22 @@ public class TcpChannel implements Channel<InetSocketAddress, Bytestring> {
 
         // Encapsulates a particular tcp session.
         private class TcpSession implements Session<InetSocketAddress, Bytestring> {
-            Socket socket;
-            InputStream in;
+            final SocketChannel channel;
 
-            TcpSession(Socket socket) throws IOException {
-                if (socket == null) {
+            // Messages are copied here along with their headers so that
+            // they can be written all at once.
+            ByteBuffer out;
+
+            TcpSession(SocketChannel channel) throws IOException {
+                if (channel == null) {
                     throw new NullPointerException();
                 }
 
-                this.socket = socket;
-                in = socket.getInputStream();
+                channel.configureBlocking(true);
+                channel.socket().setTcpNoDelay(noDelay);
+
+                this.channel = channel;
+                out = buffers.take();
             }
 
             @Override
@@ -228,15 +281,35 @@ public class TcpChannel implements Channel<InetSocketAddress, Bytestring> {
                 // Don't allow sending messages while we're opening or closing the channel.
                 synchronized (lock) { }
 
-                if (socket == null || socket.isClosed()) {
+                if (out == null || !channel.isOpen()) {
                     return false;
                 }
 
                 try {
-                    socket.getOutputStream().write(header.makeHeader(message.bytes.length).bytes);
-                    socket.getOutputStream().write(message.bytes);
+                    int length = message.bytes.length;
+                    if (header.headerLength() + length <= out.capacity()) {
+                        out.clear();
+                        putHeader(out, length);
+                        out.put(message.bytes);
+                        out.flip();
+
+                        while (out.hasRemaining()) {
+                            channel.write(out);
+                        }
+                    } else {
+                        // Too big for the buffer, so write the header and
+                        // the message together with a gathering write.
+                        ByteBuffer head = ByteBuffer.allocate(header.headerLength());
+                        putHeader(head, length);
+                        head.flip();
+
+                        ByteBuffer[] frame = new ByteBuffer[]{head, ByteBuffer.wrap(message.bytes)};
+                        while (frame[1].hasRemaining()) {
+                            channel.write(frame);
+                        }
+                    }
                 } catch (IOException e) {
-                    socket = null;
+                    close();
                     throw e;
                 }
 
@@ -245,25 +318,25 @@ public class TcpChannel implements Channel<InetSocketAddress, Bytestring> {
 
             @Override
             public synchronized void close() {
-                if (socket == null) {
+                if (out == null) {
                     return;
                 }
 
                 try {
-                    socket.close();
+                    channel.close();
                 } catch (IOException ignored) {
                     // This doesn't make any sense because you
                     // should always be able to close a connection!
                 }
-                socket = null;
-                in = null;
+                buffers.release(out);
+                out = null;
                 TcpPeer.this.currentSession = null;
                 openSessions.remove(TcpPeer.this.identity());
             }
 
             @Override
             public synchronized boolean closed() {
-                return socket == null || socket.isClosed();
+                return out == null || !channel.isOpen();
             }
 
             @Override
@@ -275,50 +348,80 @@ public class TcpChannel implements Channel<InetSocketAddress, Bytestring> {
 
     private class TcpReceiver implements Runnable {
         final TcpPeer.TcpSession session;
-        final InputStream in;
+        final SocketChannel channel;
         final Send<Bytestring> send;
 
         private TcpReceiver(TcpPeer.TcpSession session, Send<Bytestring> send) {
             this.session = session;
-            this.in = session.in;
+            this.channel = session.channel;
             this.send = send;
         }
 
+        // Read until there are at least n bytes in the buffer, or return
+        // false if the connection is closed first. The buffer is in
+        // position to be read from before and after.
+        private boolean fill(ByteBuffer in, int n) throws IOException {
+            if (in.remaining() >= n) return true;
+
+            in.compact();
+            try {
+                while (in.position() < n) {
+                    if (channel.read(in) < 0) return false;
+                }
+            } finally {
+                in.flip();
+            }
+
+            return true;
+        }
+
+        private boolean readFully(ByteBuffer msg) throws IOException {
+            while (msg.hasRemaining()) {
+                if (channel.read(msg) < 0) return false;
+            }
+
+            return true;
+        }
+
         @Override
         public void run() {
-            while (true) {
-                try {
+            // Several messages may be read at once into this buffer.
+            ByteBuffer in = buffers.take();
+            in.flip();
+
+            byte[] head = new byte[header.headerLength()];
+
+            try {
+                while (true) {
                     // Read in the message header, which tells us
                     // the size of the total message.
-                    byte[] head = new byte[header.headerLength()];
-                    if (in.read(head) < header.headerLength()) {
-                        session.close();
-                        break;
-                    }
+                    if (!fill(in, head.length)) break;
+                    in.get(head);
 
-                    // If the message length is zero, just send
-                    // an empty message and continue.
                     int msgLength = header.payloadLength(head);
-                    if (msgLength == 0) {
-                        send.send(new Bytestring(new byte[]{}));
-                        continue;
-                    }
+                    if (msgLength < 0 || msgLength > maxMessage) break;
 
-                    // Otherwise, read in the message and send that.
                     byte[] msg = new byte[msgLength];
-                    if (in.read(msg) < msg.length) {
-                        session.close();
-                        break;
+                    if (msgLength <= in.capacity()) {
+                        if (!fill(in, msgLength)) break;
+                        in.get(msg);
+                    } else {
+                        // The message is too big for the buffer, so
+                        // read the rest of it directly.
+                        int buffered = in.remaining();
+                        in.get(msg, 0, buffered);
+                        if (!readFully(ByteBuffer.wrap(msg, buffered, msgLength - buffered))) break;
                     }
 
                     send.send(new Bytestring(msg));
-
-                } catch (IOException | InterruptedException e) {
-                    session.close();
-                    break;
                 }
+            } catch (IOException | InterruptedException e) {
+                // The session is closed below.
+            } finally {
+                buffers.release(in);
             }
 
+            session.close();
             send.close();
         }
     }
@@ -326,9 +429,9 @@ public class TcpChannel implements Channel<InetSocketAddress, Bytestring> {
     // This contains the function that listens for new tcp connections.
     private class TcpListener implements Runnable {
         final Listener<InetSocketAddress, Bytestring> listener;
-        final ServerSocket server;
+        final ServerSocketChannel server;
 
-        private TcpListener(Listener<InetSocketAddress, Bytestring> listener, ServerSocket server) {
+        private TcpListener(Listener<InetSocketAddress, Bytestring> listener, ServerSocketChannel server) {
             this.listener = listener;
             this.server = server;
         }
@@ -338,11 +441,11 @@ public class TcpChannel implements Channel<InetSocketAddress, Bytestring> {
             while (true) {
                 try {
                     // New connection found.
-                    Socket client = server.accept();
+                    SocketChannel client = server.accept();
 
                     // Determine the identity of this connection.
-                    InetSocketAddress identity =
-                            new InetSocketAddress(client.getInetAddress(), client.getPort());
+                    InetSocketAddress identity = new InetSocketAddress(
+                            client.socket().getInetAddress(), client.socket().getPort());
 
                     TcpPeer.TcpSession session = openSessions.putOpenSession(identity, client);
 
@@ -368,22 +471,49 @@ public class TcpChannel implements Channel<InetSocketAddress, Bytestring> {
     private final int port;
     private final InetSocketAddress me;
 
-    private ServerSocket server;
+    private ServerSocketChannel server;
+    private Thread listening = null;
     private boolean running = false;
 
     private final Object lock = new Object();
 
     public TcpChannel(
             Header header,
-            InetSocketAddress me) {
+            InetSocketAddress me,
+            boolean noDelay,
+            int bufferSize,
+            int maxMessage) {
 
         if (header == null || me == null) {
             throw new NullPointerException();
         }
 
+        if (bufferSize < header.headerLength() || maxMessage < 0) {
+            throw new IllegalArgumentException();
+        }
+
         this.me = me;
         this.header = header;
         this.port = me.getPort();
+        this.noDelay = noDelay;
+        this.buffers = new BufferPool(bufferSize);
+        this.maxMessage = maxMessage;
+    }
+
+    public TcpChannel(
+            Header header,
+            InetSocketAddress me,
+            boolean noDelay,
+            int bufferSize) {
+
+        this(header, me, noDelay, bufferSize, defaultMaxMessage);
+    }
+
+    public TcpChannel(
+            Header header,
+            InetSocketAddress me) {
+
+        this(header, me, true, defaultBufferSize);
     }
 
     public TcpChannel(InetSocketAddress me) {
@@ -398,8 +528,11 @@ public class TcpChannel implements Channel<InetSocketAddress, Bytestring> {
         public void close() {
             if (closed) return;
 
+            Thread listener;
             synchronized (lock) {
                 closed = true;
+                listener = listening;
+                listening = null;
                 if (server != null) {
                     try {
                         server.close();
@@ -411,6 +544,16 @@ public class TcpChannel implements Channel<InetSocketAddress, Bytestring> {
                     }
                 }
             }
+
+            // The port is not let go until the thread blocked in accept has
+            // returned, so wait for it before saying we're closed.
+            if (listener != null && listener != Thread.currentThread()) {
+                try {
+                    listener.join(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
         }
 
         @Override
@@ -432,7 +575,8 @@ public class TcpChannel implements Channel<InetSocketAddress, Bytestring> {
 
             if (server == null) {
                 try {
-                    server = new ServerSocket(port);
+                    server = ServerSocketChannel.open();
+                    server.socket().bind(new InetSocketAddress(port));
                 } catch (BindException e) {
                     throw new IOException(e);
                 }
@@ -442,7 +586,8 @@ public class TcpChannel implements Channel<InetSocketAddress, Bytestring> {
 
             openSessions = new OpenSessions();
 
-            new Thread(new TcpListener(listener, server)).start();
+            listening = new Thread(new TcpListener(listener, server));
+            listening.start();
 
             return new TcpConnection();
         }
@@ -6,14 +6,43 @@ import com.shuffle.chan.packet.JavaMarshaller;
 import com.shuffle.chan.packet.Marshaller;
 import com.shuffle.chan.packet.Packet;
 import com.shuffle.chan.packet.Signed;
+import com.shuffle.p2p.Bytestring;
+import com.shuffle.protocol.FormatException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by Daniel Krawisz on 7/16/16.
  */
 public class JavaShuffleMarshaller implements Messages.ShuffleMarshaller {
+    private final int version;
+
+    public JavaShuffleMarshaller() {
+        this(1);
+    }
+
+    // Java serialization can represent packets of any version, including broadcasts.
+    public JavaShuffleMarshaller(int version) {
+        this.version = version;
+    }
+
     @Override
-    public Marshaller<Message.Atom> atomMarshaller() {
-        return new JavaMarshaller<>();
+    public Marshaller<List<Message.Atom>> atomMarshaller() {
+        final JavaMarshaller<ArrayList<Message.Atom>> m = new JavaMarshaller<>();
+
+        return new Marshaller<List<Message.Atom>>() {
+            @Override
+            public Bytestring marshall(List<Message.Atom> atoms) throws IOException {
+                return m.marshall(new ArrayList<>(atoms));
+            }
+
+            @Override
+            public List<Message.Atom> unmarshall(Bytestring string) throws FormatException {
+                return m.unmarshall(string);
+            }
+        };
     }
 
     @Override
@@ -30,4 +59,9 @@ public class JavaShuffleMarshaller implements Messages.ShuffleMarshaller {
     public Marshaller<Signed<Packet<VerificationKey, Payload>>> signedMarshaller() {
         return new JavaMarshaller<>();
     }
+
+    @Override
+    public int version() {
+        return version;
+    }
 }
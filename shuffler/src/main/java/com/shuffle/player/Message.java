@@ -10,8 +10,14 @@ import com.shuffle.protocol.blame.Blame;
 import com.shuffle.protocol.message.Phase;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.security.MessageDigest;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Implementation of coin shuffle messages.
@@ -23,7 +29,7 @@ public class Message implements com.shuffle.protocol.message.Message, Serializab
     public static class SecureHash implements Serializable {
         public final Bytestring hashed;
 
-        public SecureHash(MessageDigest digest, Marshaller<Atom> m, Atom toHash) throws FormatException, IOException {
+        public SecureHash(MessageDigest digest, Marshaller<List<Atom>> m, List<Atom> toHash) throws FormatException, IOException {
             digest.update(m.marshall(toHash).bytes);
 
             hashed = new Bytestring(digest.digest());
@@ -62,17 +68,13 @@ public class Message implements com.shuffle.protocol.message.Message, Serializab
         public final String string;
         public final Blame blame;
 
-        public final Atom next;
-
         public Atom(
                 Address addr,
                 EncryptionKey ek,
                 SecureHash secureHash,
                 Bytestring sig,
                 String string,
-                Blame blame,
-                //com.shuffle.protocol.message.Packet packet,
-                Atom next
+                Blame blame
         ) {
             // Enforce the correct format.
             format:
@@ -127,44 +129,31 @@ public class Message implements com.shuffle.protocol.message.Message, Serializab
             this.secureHash = secureHash;
             this.string = string;
             this.blame = blame;
-            this.next = next;
         }
 
-        public static Atom make(Object o, Atom next) {
+        public static Atom make(Object o) {
             if (o instanceof Address) {
-                return new Atom((Address) o, null, null, null, null, null, next);
+                return new Atom((Address) o, null, null, null, null, null);
             }
             if (o instanceof EncryptionKey) {
-                return new Atom(null, (EncryptionKey) o, null, null, null, null, next);
+                return new Atom(null, (EncryptionKey) o, null, null, null, null);
             }
             if (o instanceof SecureHash) {
-                return new Atom(null, null, (SecureHash) o, null, null, null, next);
+                return new Atom(null, null, (SecureHash) o, null, null, null);
             }
             if (o instanceof Bytestring) {
-                return new Atom(null, null, null, (Bytestring) o, null, null, next);
+                return new Atom(null, null, null, (Bytestring) o, null, null);
             }
             if (o instanceof String) {
-                return new Atom(null, null, null, null, (String)o, null, next);
+                return new Atom(null, null, null, null, (String)o, null);
             }
             if (o instanceof Blame) {
-                return new Atom(null, null, null, null, null, (Blame) o, next);
+                return new Atom(null, null, null, null, null, (Blame) o);
             }
 
             throw new IllegalArgumentException();
         }
 
-        public static Atom make(Object o) {
-            return make(o, null);
-        }
-
-        private static Atom attach(Atom a, Atom o) {
-            if (a == null) {
-                return o;
-            }
-
-            return new Atom(a.addr, a.ek, a.secureHash, a.sig, a.string, a.blame, attach(a.next, o));
-        }
-
         @Override
         public boolean equals(Object o) {
             if (o == null) {
@@ -182,8 +171,7 @@ public class Message implements com.shuffle.protocol.message.Message, Serializab
                     && (a.addr == null && addr == null || addr != null && addr.equals(a.addr))
                     && (a.blame == null && blame == null || blame != null && blame.equals(a.blame))
                     && (a.secureHash == null && secureHash == null || secureHash != null && secureHash.equals(a.secureHash))
-                    && (a.string == null && string == null || string != null && string.equals(a.string))
-                    && (a.next == null && next == null || next != null && next.equals(a.next));
+                    && (a.string == null && string == null || string != null && string.equals(a.string));
         }
 
         @Override
@@ -193,7 +181,6 @@ public class Message implements com.shuffle.protocol.message.Message, Serializab
             hash = hash * 15 + (sig == null ? 0 : sig.hashCode());
             hash = hash * 15 + (this.secureHash == null ? 0 : this.secureHash.hashCode());
             hash = hash * 15 + (blame == null ? 0 : blame.hashCode());
-            hash = hash * 15 + (next == null ? 0 : next.hashCode());
             return hash;
         }
 
@@ -213,13 +200,52 @@ public class Message implements com.shuffle.protocol.message.Message, Serializab
 
             if (blame != null) str += blame.toString();
 
-            if (next != null) str += "⊕" + next.toString();
-
             return str;
         }
     }
 
-    public final Atom atoms;
+    // A buffer of atoms which may be shared between several messages. Atoms
+    // are only ever added at the end, so the part of the buffer that a message
+    // refers to never changes. A message which ends where the buffer ends can
+    // be extended in place; otherwise the message must be copied first.
+    private static final class Spine {
+        private Atom[] atoms;
+        private int size = 0;
+
+        Spine(int capacity) {
+            atoms = new Atom[Math.max(capacity, 4)];
+        }
+
+        // Append an atom if end is the end of the buffer. Returns false otherwise.
+        synchronized boolean extend(int end, Atom atom) {
+            if (end != size) return false;
+
+            if (size == atoms.length) {
+                atoms = Arrays.copyOf(atoms, size * 2);
+            }
+
+            atoms[size] = atom;
+            size++;
+            return true;
+        }
+
+        synchronized Atom get(int i) {
+            return atoms[i];
+        }
+
+        // Copy the atoms in the range [begin, end) into a new buffer.
+        synchronized Spine copy(int begin, int end) {
+            Spine spine = new Spine((end - begin) * 2);
+            System.arraycopy(atoms, begin, spine.atoms, 0, end - begin);
+            spine.size = end - begin;
+            return spine;
+        }
+    }
+
+    // This message consists of the atoms in spine in the range [begin, end).
+    private transient Spine spine;
+    private transient int begin;
+    private transient int end;
 
     // If this message can be sent, then this is the network by
     // which it is sent. Otherwise, it's null.
@@ -229,110 +255,174 @@ public class Message implements com.shuffle.protocol.message.Message, Serializab
     public Message(Messages messages) {
         if (messages == null) throw new NullPointerException();
 
-        atoms = null;
+        spine = new Spine(0);
+        begin = 0;
+        end = 0;
         this.messages = messages;
         this.addressMarshaller = messages.addressMarshaller;
     }
 
-    public Message(Atom atom, Marshaller<Address> addressMarshaller, Messages messages) {
-        if (addressMarshaller == null) throw new NullPointerException();
+    public Message(List<Atom> atoms, Marshaller<Address> addressMarshaller, Messages messages) {
+        if (atoms == null || addressMarshaller == null) throw new NullPointerException();
+
+        spine = new Spine(atoms.size());
+        for (Atom atom : atoms) {
+            if (atom == null) throw new NullPointerException();
+
+            spine.extend(spine.size, atom);
+        }
+        begin = 0;
+        end = spine.size;
+        this.messages = messages;
+        this.addressMarshaller = addressMarshaller;
+    }
 
-        atoms = atom;
+    private Message(Spine spine, int begin, int end, Marshaller<Address> addressMarshaller, Messages messages) {
+        this.spine = spine;
+        this.begin = begin;
+        this.end = end;
         this.messages = messages;
         this.addressMarshaller = addressMarshaller;
     }
 
+    // The atoms of the message, in order.
+    public List<Atom> atoms() {
+        return new AbstractList<Atom>() {
+            @Override
+            public Atom get(int i) {
+                if (i < 0 || i >= end - begin) throw new IndexOutOfBoundsException();
+
+                return spine.get(begin + i);
+            }
+
+            @Override
+            public int size() {
+                return end - begin;
+            }
+        };
+    }
+
+    private Atom first() {
+        if (begin == end) return null;
+
+        return spine.get(begin);
+    }
+
+    private Message attach(Atom atom) {
+        if (spine.extend(end, atom)) {
+            return new Message(spine, begin, end + 1, addressMarshaller, messages);
+        }
+
+        Spine copy = spine.copy(begin, end);
+        copy.extend(end - begin, atom);
+        return new Message(copy, 0, end - begin + 1, addressMarshaller, messages);
+    }
+
     @Override
     public boolean isEmpty() {
-        return atoms == null;
+        return begin == end;
     }
 
     @Override
     public com.shuffle.protocol.message.Message attach(EncryptionKey ek) {
         if (ek == null) throw new NullPointerException();
 
-        return new Message(Atom.attach(atoms, Atom.make(ek)), addressMarshaller, messages);
+        return attach(Atom.make(ek));
     }
 
     @Override
     public com.shuffle.protocol.message.Message attach(Address addr) {
         if (addr == null) throw new NullPointerException();
 
-        return new Message(Atom.attach(atoms, Atom.make(addr)), addressMarshaller, messages);
+        return attach(Atom.make(addr));
     }
 
     @Override
     public com.shuffle.protocol.message.Message attach(String str) {
         if (str == null) throw new NullPointerException();
 
-        return new Message(Atom.attach(atoms, Atom.make(str)), addressMarshaller, messages);
+        return attach(Atom.make(str));
     }
 
     @Override
     public com.shuffle.protocol.message.Message attach(Bytestring sig) {
         if (sig == null) throw new NullPointerException();
 
-        return new Message(Atom.attach(atoms, Atom.make(sig)), addressMarshaller, messages);
+        return attach(Atom.make(sig));
     }
 
     @Override
     public com.shuffle.protocol.message.Message attach(Blame blame) {
         if (blame == null) throw new NullPointerException();
 
-        return new Message(Atom.attach(atoms, Atom.make(blame)), addressMarshaller, messages);
+        return attach(Atom.make(blame));
     }
 
     public com.shuffle.protocol.message.Message hashed() throws FormatException, IOException {
 
-        return new Message(Atom.make(
-                new SecureHash(messages.sha256, messages.atomMarshaller, this.atoms)),
-                addressMarshaller, messages);
+        return new Message(messages).attach(Atom.make(
+                new SecureHash(messages.sha256, messages.atomMarshaller, atoms())));
     }
 
     @Override
     public EncryptionKey readEncryptionKey() throws FormatException {
-        if (atoms == null || atoms.ek == null) throw new FormatException("Encryption key not found.");
+        Atom atom = first();
+        if (atom == null || atom.ek == null) throw new FormatException("Encryption key not found.");
 
-        return atoms.ek;
+        return atom.ek;
     }
 
     @Override
     public Address readAddress() throws FormatException {
-        if (atoms == null) throw new FormatException("Address not found");
-        if (atoms.addr != null) return atoms.addr;
-        else if (atoms.string == null) throw new FormatException("Address not found.");
+        Atom atom = first();
+        if (atom == null) throw new FormatException("Address not found");
+        if (atom.addr != null) return atom.addr;
+        // Attempt to read bytes as an address.
+        else if (atom.sig != null) return addressMarshaller.unmarshall(atom.sig);
+        else if (atom.string == null) throw new FormatException("Address not found.");
         // Attempt to read string as an address.
-        return addressMarshaller.unmarshall(new Bytestring(atoms.string.getBytes()));
+        return addressMarshaller.unmarshall(new Bytestring(atom.string.getBytes()));
     }
 
     @Override
     public String readString() throws FormatException {
-        if (atoms == null || atoms.string == null)
+        Atom atom = first();
+        if (atom == null || atom.string == null)
             throw new FormatException("String not found.");
 
-        return atoms.string;
+        return atom.string;
     }
 
     @Override
     public Blame readBlame() throws FormatException {
-        if (atoms == null || atoms.blame == null) throw new FormatException("Blame not found");
+        Atom atom = first();
+        if (atom == null || atom.blame == null) throw new FormatException("Blame not found");
 
-        return atoms.blame;
+        return atom.blame;
     }
 
     @Override
     public Bytestring readSignature() throws FormatException {
-        if (atoms == null || atoms.sig == null) throw new FormatException("Signature not found");
+        Atom atom = first();
+        if (atom == null || atom.sig == null) throw new FormatException("Signature not found");
+
+        return atom.sig;
+    }
+
+    @Override
+    public Bytestring readBytestring() throws FormatException {
+        Atom atom = first();
+        if (atom == null || atom.sig == null) throw new FormatException("Bytestring not found");
 
-        return atoms.sig;
+        return atom.sig;
     }
 
     @Override
     public com.shuffle.protocol.message.Message rest() throws FormatException {
 
-        if (atoms == null) throw new FormatException("Rest called on last element.");
+        if (begin == end) throw new FormatException("Rest called on last element.");
 
-        return new Message(atoms.next, addressMarshaller, messages);
+        return new Message(spine, begin + 1, end, addressMarshaller, messages);
     }
 
     @Override
@@ -344,6 +434,15 @@ public class Message implements com.shuffle.protocol.message.Message, Serializab
         return messages.send(this, phase, to);
     }
 
+    @Override
+    public com.shuffle.protocol.message.Packet broadcast(Phase phase, Collection<VerificationKey> to)
+            throws InterruptedException, IOException {
+
+        if (messages == null) return null;
+
+        return messages.broadcast(this, phase, to);
+    }
+
     @Override
     public boolean equals(Object o) {
 
@@ -353,23 +452,55 @@ public class Message implements com.shuffle.protocol.message.Message, Serializab
 
         Message mock = (Message) o;
 
-        return ((atoms == null && mock.atoms == null)
-                || (atoms != null && atoms.equals(mock.atoms)));
+        return atoms().equals(mock.atoms());
     }
 
     @Override
     public int hashCode() {
-        if (atoms == null) return 0;
-
         int hash = 0;
-        hash = hash * 15 + atoms.hashCode();
+        for (Atom atom : atoms()) {
+            hash = hash * 15 + atom.hashCode();
+        }
         return hash;
     }
 
     @Override
     public String toString() {
-        if (atoms == null) return "[]";
+        if (begin == end) return "[]";
+
+        StringBuilder str = new StringBuilder();
+        for (int i = begin; i < end; i++) {
+            if (i != begin) str.append("⊕");
+            str.append(spine.get(i).toString());
+        }
 
-        return atoms.toString();
+        return str.toString();
+    }
+
+    // Only the atoms which belong to this message are written, not
+    // the rest of the shared buffer.
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(end - begin);
+        for (int i = begin; i < end; i++) {
+            out.writeObject(spine.get(i));
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int size = in.readInt();
+        if (size < 0) throw new IOException("Invalid message size " + size);
+
+        // The buffer grows as needed, so a bogus size cannot make us allocate too much.
+        spine = new Spine(Math.min(size, 1024));
+        for (int i = 0; i < size; i++) {
+            Object atom = in.readObject();
+            if (!(atom instanceof Atom)) throw new IOException("Invalid atom " + atom);
+
+            spine.extend(i, (Atom) atom);
+        }
+        begin = 0;
+        end = size;
     }
 }
@@ -17,7 +17,6 @@ import com.shuffle.chan.IgnoreSend;
 import com.shuffle.chan.Receive;
 import com.shuffle.chan.Send;
 import com.shuffle.chan.packet.Marshaller;
-import com.shuffle.chan.packet.OutgoingPacketSend;
 import com.shuffle.chan.packet.Packet;
 import com.shuffle.chan.packet.Signed;
 import com.shuffle.chan.packet.SigningSend;
@@ -30,9 +29,12 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -42,10 +44,15 @@ import java.util.concurrent.TimeUnit;
  */
 public class Messages implements MessageFactory {
     public interface ShuffleMarshaller {
-        Marshaller<Message.Atom> atomMarshaller();
+        // Marshalls a sequence of atoms. This is what the equivocation check hashes,
+        // so it must not change with the wire format.
+        Marshaller<List<Message.Atom>> atomMarshaller();
         Marshaller<Address> addressMarshaller();
         Marshaller<Packet<VerificationKey, Payload>> packetMarshaller();
         Marshaller<Signed<Packet<VerificationKey, Payload>>> signedMarshaller();
+
+        // The version of the wire format that we prefer to send.
+        int version();
     }
 
     /**
@@ -120,10 +127,10 @@ public class Messages implements MessageFactory {
     }
 
     private class Outgoing {
-        public final Send<Payload> out;
+        public final Send<Packet<VerificationKey, Payload>> out;
         private final HistorySend<Signed<Packet<VerificationKey, Payload>>> h;
 
-        Outgoing(Send<Payload> out, HistorySend<Signed<Packet<VerificationKey, Payload>>> h, VerificationKey k) {
+        Outgoing(Send<Packet<VerificationKey, Payload>> out, HistorySend<Signed<Packet<VerificationKey, Payload>>> h, VerificationKey k) {
 
             if (k == null || out == null || h == null) throw new NullPointerException();
 
@@ -148,11 +155,34 @@ public class Messages implements MessageFactory {
     private final Receive<Inbox.Envelope<VerificationKey,
             Signed<com.shuffle.chan.packet.Packet<VerificationKey, Payload>>>> receive;
 
+    // Where the messages come from, if it can tell us when they arrive.
+    private final Inbox<VerificationKey, ?> inbox;
+
     final Bytestring session;
     final SigningKey me;
 
+    // The version of the wire format we send to peers which have not
+    // yet told us which they use. Peers are otherwise answered in the
+    // highest version they have sent us.
+    final int version;
+    private final Map<VerificationKey, Integer> versions = new ConcurrentHashMap<>();
+
+    // How long to wait for the next message before giving up, in milliseconds.
+    public static final long defaultTimeout = 1000;
+    final Timeouts timeouts;
+
+    // Peers which understand this version of the wire format can be sent
+    // broadcast packets, which are signed once for all of them.
+    public static final int broadcastVersion = 3;
+
+    // Every packet we send, whether to one peer or to all of them, takes
+    // the next number, so no two of our packets have the same number.
+    private int sequenceNumber = 0;
+
+    private final Marshaller<Packet<VerificationKey, Payload>> packetMarshaller;
+
     public final MessageDigest sha256;
-    public final Marshaller<Message.Atom> atomMarshaller;
+    public final Marshaller<List<Message.Atom>> atomMarshaller;
     public final Marshaller<Address> addressMarshaller;
 
     public Messages(Bytestring session,
@@ -163,17 +193,33 @@ public class Messages implements MessageFactory {
                             Signed<Packet<VerificationKey, Payload>>>> receive,
                     ShuffleMarshaller m) throws NoSuchAlgorithmException {
 
-        if (session == null || me == null || net == null || receive == null)
+        this(session, me, net, receive, m, new Timeouts(defaultTimeout));
+    }
+
+    public Messages(Bytestring session,
+                    SigningKey me,
+                    Map<VerificationKey,
+                            Send<Signed<Packet<VerificationKey, Payload>>>> net,
+                    Receive<Inbox.Envelope<VerificationKey,
+                            Signed<Packet<VerificationKey, Payload>>>> receive,
+                    ShuffleMarshaller m,
+                    Timeouts timeouts) throws NoSuchAlgorithmException {
+
+        if (session == null || me == null || net == null || receive == null || timeouts == null)
             throw new NullPointerException();
 
         this.session = session;
         this.me = me;
+        this.timeouts = timeouts;
         this.receive = new HistoryReceive<>(receive);
+        this.inbox = receive instanceof Inbox ? (Inbox<VerificationKey, ?>) receive : null;
+        this.version = m.version();
 
         sha256 = MessageDigest.getInstance("SHA-256");
         this.atomMarshaller = m.atomMarshaller();
         this.addressMarshaller = m.addressMarshaller();
         Marshaller<Packet<VerificationKey, Payload>> pm = m.packetMarshaller();
+        this.packetMarshaller = pm;
 
         VerificationKey vk = me.VerificationKey();
 
@@ -183,17 +229,14 @@ public class Messages implements MessageFactory {
             if (vk.equals(k)) continue;
             
             HistorySend<Signed<Packet<VerificationKey, Payload>>> h = new HistorySend<>(z.getValue());
-            Send<Packet<VerificationKey, Payload>> signer = new SigningSend<>(h, pm, me);
-            Send<Payload> p = new OutgoingPacketSend<>(signer, session, vk, k);
-            this.net.put(k, new Outgoing(p, h, vk));
+            this.net.put(k, new Outgoing(new SigningSend<>(h, pm, me), h, vk));
         }
 
         // We have a special channel for sending messages to ourselves.
         HistorySend<Signed<Packet<VerificationKey, Payload>>> h = new HistorySend<>(
                 new IgnoreSend<Signed<Packet<VerificationKey, Payload>>>());
 
-        Send<Payload> p = new OutgoingPacketSend<>(new SigningSend<>(h, pm, me), session, vk, vk);
-        this.net.put(vk, new Outgoing(p, h, vk));
+        this.net.put(vk, new Outgoing(new SigningSend<>(h, pm, me), h, vk));
     }
 
     @Override
@@ -203,13 +246,55 @@ public class Messages implements MessageFactory {
 
     @Override
     public com.shuffle.protocol.message.Packet receive() throws InterruptedException, IOException {
+        return receive(null);
+    }
+
+    @Override
+    public com.shuffle.protocol.message.Packet receive(Phase expected)
+            throws InterruptedException, IOException {
+
+        return receive(timeouts.timeout(expected));
+    }
+
+    @Override
+    public long deadline(Phase phase) {
+        return timeouts.deadline(phase);
+    }
+
+    @Override
+    public com.shuffle.protocol.message.Packet poll() throws InterruptedException, IOException {
+        return receive(0);
+    }
+
+    @Override
+    public boolean listen(Runnable arrival) {
+        if (inbox == null) return false;
+
+        inbox.listen(arrival);
+        return true;
+    }
+
+    private com.shuffle.protocol.message.Packet receive(long timeout)
+            throws InterruptedException, IOException {
 
-        // TODO make this a parameter.
         Inbox.Envelope<VerificationKey,
-                Signed<com.shuffle.chan.packet.Packet<VerificationKey, Payload>>> e
-                = receive.receive(1000, TimeUnit.MILLISECONDS);
+                Signed<com.shuffle.chan.packet.Packet<VerificationKey, Payload>>> e;
+        VerificationKey vk = me.VerificationKey();
+        while (true) {
+            e = receive.receive(timeout, TimeUnit.MILLISECONDS);
+
+            if (e == null) return null;
+
+            timeouts.received(e.from, System.currentTimeMillis());
+
+            // Ignore packets which were meant for someone else.
+            VerificationKey to = e.payload.message.to;
+            if (to == null || to.equals(vk)) break;
+        }
 
-        if (e == null) return null;
+        int v = e.payload.message.payload.version;
+        Integer known = versions.get(e.from);
+        if (known == null || known < v) versions.put(e.from, v);
 
         return new SignedPacket(e.payload);
     }
@@ -227,6 +312,12 @@ public class Messages implements MessageFactory {
         net.clear();
     }
 
+    // The version of the wire format in which we send messages to a given peer.
+    private int version(VerificationKey to) {
+        Integer v = versions.get(to);
+        return v == null ? version : v;
+    }
+
     public SignedPacket send(Message m, Phase phase, VerificationKey to) throws InterruptedException, IOException {
 
         Outgoing x = m.messages.net.get(to);
@@ -234,10 +325,67 @@ public class Messages implements MessageFactory {
         if (x == null) return null;
 
         // About to send message.
-        if (!x.out.send(new Payload(phase, m))) {
+        if (!x.out.send(new Packet<>(session, me.VerificationKey(), to, sequenceNumber++,
+                new Payload(phase, m, version(to))))) {
             return null;
         }
 
         return new SignedPacket(x.last());
     }
+
+    // Send a message to several peers. If every one of them has already sent us a version
+    // of the wire format that allows broadcast packets, they are all sent the same packet,
+    // which is marshalled and signed only once. Otherwise, each is sent its own packet.
+    // Returns the packet that we send to ourselves, if we are among the recipients.
+    public SignedPacket broadcast(Message m, Phase phase, Collection<VerificationKey> to)
+            throws InterruptedException, IOException {
+
+        Map<VerificationKey, Outgoing> net = m.messages.net;
+        VerificationKey vk = me.VerificationKey();
+
+        // The lowest version that every recipient has shown us it can read.
+        // We know nothing about peers which have not sent us anything yet.
+        int lowest = Integer.MAX_VALUE;
+        boolean toMe = false;
+        List<Outgoing> recipients = new LinkedList<>();
+        List<VerificationKey> keys = new LinkedList<>();
+        for (VerificationKey k : to) {
+            if (vk.equals(k)) {
+                toMe = true;
+                continue;
+            }
+
+            Outgoing x = net.get(k);
+            if (x == null) continue;
+
+            Integer v = versions.get(k);
+            lowest = Math.min(lowest, v == null ? 1 : v);
+            recipients.add(x);
+            keys.add(k);
+        }
+
+        // Unless everyone can read a broadcast, everyone gets an ordinary packet.
+        if (recipients.isEmpty() || lowest < broadcastVersion) {
+            for (VerificationKey k : keys) {
+                send(m, phase, k);
+            }
+
+            return toMe ? send(m, phase, vk) : null;
+        }
+
+        Signed<Packet<VerificationKey, Payload>> signed = new Signed<>(
+                new Packet<>(session, vk, (VerificationKey) null, sequenceNumber++,
+                        new Payload(phase, m, lowest)), me, packetMarshaller);
+
+        for (Outgoing x : recipients) {
+            x.h.send(signed);
+        }
+
+        if (!toMe) return null;
+
+        Outgoing self = net.get(vk);
+        if (self == null || !self.h.send(signed)) return null;
+
+        return new SignedPacket(signed);
+    }
 }
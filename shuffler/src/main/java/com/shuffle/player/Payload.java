@@ -12,13 +12,28 @@ public class Payload implements Serializable {
     public final Message message;
     public final Phase phase;
 
+    // The version of the wire format in which this payload is sent. It
+    // is not part of the content of the payload, but the payload must be
+    // marshalled in the same way every time so that its signature can be
+    // checked.
+    public final int version;
+
     public Payload(
             Phase phase,
             Message message
     ) {
+        this(phase, message, 1);
+    }
+
+    public Payload(
+            Phase phase,
+            Message message,
+            int version
+    ) {
 
         this.phase = phase;
         this.message = message;
+        this.version = version;
     }
 
     @Override
@@ -17,6 +17,7 @@ import com.shuffle.bitcoin.Transaction;
 import com.shuffle.bitcoin.VerificationKey;
 import com.shuffle.chan.BasicChan;
 import com.shuffle.chan.Chan;
+import com.shuffle.chan.Send;
 import com.shuffle.chan.packet.Packet;
 import com.shuffle.chan.packet.Signed;
 import com.shuffle.monad.Summable;
@@ -25,7 +26,9 @@ import com.shuffle.p2p.Bytestring;
 import com.shuffle.p2p.Channel;
 import com.shuffle.p2p.Collector;
 import com.shuffle.p2p.Connect;
+import com.shuffle.p2p.SessionMultiplexer;
 import com.shuffle.protocol.CoinShuffle;
+import com.shuffle.protocol.EventShuffle;
 import com.shuffle.protocol.FormatException;
 import com.shuffle.protocol.InvalidParticipantSetException;
 import com.shuffle.protocol.TimeoutException;
@@ -46,9 +49,13 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 import javax.annotation.Nonnull;
 
@@ -79,6 +86,10 @@ class Player {
     private final Address anon;
     private final Address change;
     private final Messages.ShuffleMarshaller m;
+    private final Executor decryptor;
+    private final Executor io;
+    private final ScheduledExecutorService scheduler;
+    private final Timeouts timeouts;
     private final PrintStream stream;
 
     public Report report = null;
@@ -98,10 +109,16 @@ class Player {
          Crypto crypto,
          Channel<VerificationKey, Signed<Packet<VerificationKey, Payload>>> channel,
          Messages.ShuffleMarshaller m,
+         Executor decryptor, // Can be null to decrypt on the protocol thread.
+         Executor io, // Can be null to look things up on the protocol thread.
+         // If not null, the round runs on this rather than on a thread of its own.
+         ScheduledExecutorService scheduler,
+         Timeouts timeouts,
          PrintStream stream
     ) {
         if (sk == null || coin == null || session == null || addrs == null
-                || crypto == null || anon == null || channel == null) {
+                || crypto == null || anon == null || channel == null || timeouts == null
+                || (scheduler != null && io == null)) {
             throw new NullPointerException();
         }
         this.session = session;
@@ -116,13 +133,20 @@ class Player {
         this.channel = channel;
         this.addrs = addrs;
         this.m = m;
+        this.decryptor = decryptor;
+        this.io = io;
+        this.scheduler = scheduler;
+        this.timeouts = timeouts;
         this.stream = stream;
     }
 
     public Running start() throws IOException, InterruptedException {
         if (running != null) return running;
 
-        return new Running(new Connect<>(channel, crypto));
+        // The inbox is shared by every peer, and a multiplexed session may
+        // give it a full window of messages from each of them at once.
+        return new Running(new Connect<>(channel, crypto, Math.max(Connect.defaultCapacity,
+                SessionMultiplexer.defaultWindow * addrs.size())));
     }
 
     public class Running {
@@ -155,8 +179,9 @@ class Player {
 
                 // If the protocol returns correctly without throwing a Matrix, then
                 // it has been successful.
-                Messages messages = new Messages(session, sk, collector.connected, collector.inbox, m);
-                CoinShuffle cs = new CoinShuffle(messages, crypto, coin);
+                Messages messages = new Messages(session, sk, collector.connected, collector.inbox, m,
+                        timeouts);
+                CoinShuffle cs = new CoinShuffle(messages, crypto, coin, decryptor, io);
                 return Report.success(cs.runProtocol(amount, fee, sk, addrs, anon, change, ch));
             } catch (Matrix m) {
                 return Report.failure(m, addrs);
@@ -177,10 +202,107 @@ class Player {
 
         }
 
+        // Like play(), but the round runs on the scheduler, so no thread is kept waiting
+        // for the other players. Checking our funds and connecting to the peers block,
+        // so those are done on the io executor once the appointed time has come.
+        public CompletableFuture<Report> playEvents() {
+            final CompletableFuture<Report> result = new CompletableFuture<>();
+
+            final Runnable begin = new Runnable() {
+                @Override
+                public void run() {
+                    begin(result);
+                }
+            };
+
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    io.execute(begin);
+                }
+            }, Math.max(0, time - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+
+            return result;
+        }
+
+        private void begin(final CompletableFuture<Report> result) {
+            try {
+                Address addr = sk.VerificationKey().address();
+                if (!coin.sufficientFunds(addr, amount)) {
+                    connect.close();
+                    result.complete(Report.invalidInitialState("Insufficient funds! Address " + addr + " holds only " + coin.valueHeld(addr) + "; need at least " + amount));
+                    return;
+                }
+
+                stream.println("  Player " + sk.VerificationKey() + " begins " + session);
+
+                // Remove me.
+                SortedSet<VerificationKey> connectTo = new TreeSet<>();
+                connectTo.addAll(addrs);
+                connectTo.remove(sk.VerificationKey());
+
+                final Collector<VerificationKey, Signed<Packet<VerificationKey, Payload>>> collector
+                        = connect.connect(connectTo, 3);
+
+                if (collector == null) {
+                    connect.close();
+                    result.complete(Report.invalidInitialState("Could not connect to peers."));
+                    return;
+                }
+
+                Messages messages = new Messages(session, sk, collector.connected, collector.inbox, m,
+                        timeouts);
+                EventShuffle shuffle = new EventShuffle(messages, crypto, coin, scheduler, io, timeouts);
+
+                shuffle.start(amount, fee, sk, addrs, anon, change, new Send<Phase>() {
+                    @Override
+                    public boolean send(Phase phase) {
+                        stream.println("  Player " + sk.VerificationKey() + " reaches phase " + phase);
+                        return true;
+                    }
+
+                    @Override
+                    public void close() {
+
+                    }
+                }).whenComplete(new BiConsumer<Transaction, Throwable>() {
+                    @Override
+                    public void accept(Transaction t, Throwable e) {
+                        connect.close();
+                        stream.println("  Player " + sk.VerificationKey() + " ends protocol. ");
+                        result.complete(e == null ? Report.success(t) : report(e));
+                    }
+                });
+            } catch (InterruptedException e) {
+                connect.close();
+                result.completeExceptionally(e);
+            } catch (Exception e) {
+                connect.close();
+                result.complete(report(e));
+            }
+        }
+
+        // What to report when a round ends with an exception.
+        private Report report(Throwable e) {
+            if (e instanceof Matrix) return Report.failure((Matrix) e, addrs);
+            if (e instanceof TimeoutException) return Report.timeout((TimeoutException) e);
+
+            stream.println("  Player " + sk.VerificationKey() + " reports error " +  e.getMessage());
+            return Report.error(e.getMessage());
+        }
+
         public synchronized Report play()
                 throws IOException, InterruptedException, AddressFormatException {
             if (report != null) return report;
 
+            if (scheduler != null) {
+                try {
+                    return playEvents().get();
+                } catch (ExecutionException e) {
+                    return Report.error(e.getCause().getMessage());
+                }
+            }
+
             // The whole thing is in a try block to ensure that connect is shut down.
             try {
 
@@ -234,23 +356,40 @@ class Player {
 
             final Chan<Report> cr = new BasicChan<>(2);
 
-            new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        Report r = play();
-                        if (r != null) {
-                            cr.send(r);
+            if (scheduler != null) {
+                playEvents().whenComplete(new BiConsumer<Report, Throwable>() {
+                    @Override
+                    public void accept(Report r, Throwable e) {
+                        try {
+                            if (r != null) {
+                                cr.send(r);
+                            }
+                        } catch (InterruptedException | IOException x) {
+                            throw new RuntimeException(x);
+                        } finally {
+                            cr.close();
                         }
-                    } catch (InterruptedException | NullPointerException e) {
-                        throw new RuntimeException(e);
-                    } catch (AddressFormatException | IOException e) {
-                        stream.println("  Player " + sk.VerificationKey() + " could not begin protocol due to error " + e.getMessage());
-                    } finally {
-                        cr.close();
                     }
-                }
-            }).start();
+                });
+            } else {
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            Report r = play();
+                            if (r != null) {
+                                cr.send(r);
+                            }
+                        } catch (InterruptedException | NullPointerException e) {
+                            throw new RuntimeException(e);
+                        } catch (AddressFormatException | IOException e) {
+                            stream.println("  Player " + sk.VerificationKey() + " could not begin protocol due to error " + e.getMessage());
+                        } finally {
+                            cr.close();
+                        }
+                    }
+                }).start();
+            }
 
             return new Future<Summable.SummableElement<Map<VerificationKey, Report>>>() {
                 private boolean done = false;
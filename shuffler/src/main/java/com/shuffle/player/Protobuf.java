@@ -1,6 +1,7 @@
 package com.shuffle.player;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.shuffle.bitcoin.Address;
 import com.shuffle.bitcoin.DecryptionKey;
@@ -9,6 +10,7 @@ import com.shuffle.bitcoin.Transaction;
 import com.shuffle.bitcoin.VerificationKey;
 import com.shuffle.chan.packet.Marshaller;
 import com.shuffle.chan.packet.Packet;
+import com.shuffle.chan.packet.SignatureCache;
 import com.shuffle.chan.packet.Signed;
 import com.shuffle.p2p.Bytestring;
 import com.shuffle.player.proto.Proto;
@@ -20,8 +22,10 @@ import com.shuffle.protocol.message.Phase;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 
 /**
@@ -44,7 +48,72 @@ public abstract class Protobuf implements Messages.ShuffleMarshaller {
     // Unmarshall a Transaction
     public abstract Transaction unmarshallTransaction(byte[] bytes) throws FormatException;
 
-    public static Proto.Signed.Builder marshallSignedPacket(com.shuffle.protocol.message.Packet p) {
+    // Version 2 of the wire format sends keys and addresses in a binary encoding.
+    // By default, this is just their string representation, but implementations
+    // should override these with something more compact.
+    public ByteString marshallAddress(Address addr) {
+        return ByteString.copyFromUtf8(addr.toString());
+    }
+
+    public Address unmarshallAddress(ByteString bytes) throws FormatException {
+        return unmarshallAdress(bytes.toStringUtf8());
+    }
+
+    public ByteString marshallEncryptionKey(EncryptionKey ek) {
+        return ByteString.copyFromUtf8(ek.toString());
+    }
+
+    public EncryptionKey unmarshallEncryptionKey(ByteString bytes) throws FormatException {
+        try {
+            return unmarshallEncryptionKey(bytes.toStringUtf8());
+        } catch (NumberFormatException
+                | NoSuchAlgorithmException
+                | InvalidKeySpecException e) {
+            throw new FormatException("Could not read encryption key.");
+        }
+    }
+
+    public ByteString marshallVerificationKey(VerificationKey vk) {
+        return ByteString.copyFromUtf8(vk.toString());
+    }
+
+    public VerificationKey unmarshallVerificationKey(ByteString bytes) throws FormatException {
+        return unmarshallVerificationKey(bytes.toStringUtf8());
+    }
+
+    private Proto.Address.Builder marshallAddress(Address addr, int version) {
+        if (version >= 2) {
+            return Proto.Address.newBuilder().setEncoded(marshallAddress(addr));
+        }
+
+        return Proto.Address.newBuilder().setAddress(addr.toString());
+    }
+
+    private Proto.EncryptionKey.Builder marshallEncryptionKey(EncryptionKey ek, int version) {
+        if (version >= 2) {
+            return Proto.EncryptionKey.newBuilder().setEncoded(marshallEncryptionKey(ek));
+        }
+
+        return Proto.EncryptionKey.newBuilder().setKey(ek.toString());
+    }
+
+    private Proto.VerificationKey.Builder marshallVerificationKey(VerificationKey vk, int version) {
+        if (version >= 2) {
+            return Proto.VerificationKey.newBuilder().setEncoded(marshallVerificationKey(vk));
+        }
+
+        return Proto.VerificationKey.newBuilder().setKey(vk.toString());
+    }
+
+    private VerificationKey unmarshallVerificationKey(Proto.VerificationKey vk) throws FormatException {
+        if (!vk.getEncoded().isEmpty()) {
+            return unmarshallVerificationKey(vk.getEncoded());
+        }
+
+        return unmarshallVerificationKey(vk.getKey());
+    }
+
+    public Proto.Signed.Builder marshallSignedPacket(com.shuffle.protocol.message.Packet p) {
         if (p == null || !(p instanceof Messages.SignedPacket)) {
             throw new IllegalArgumentException("Unknown implementation of Packet.");
         }
@@ -52,7 +121,7 @@ public abstract class Protobuf implements Messages.ShuffleMarshaller {
         return marshallSignedPacket(((Messages.SignedPacket) p).packet);
     }
 
-    public static Proto.Packet.Builder marshallPacket(com.shuffle.chan.packet.Packet<VerificationKey, Payload> p) {
+    public Proto.Packet.Builder marshallPacket(com.shuffle.chan.packet.Packet<VerificationKey, Payload> p) {
         Proto.Phase phase;
         switch(p.payload.phase) {
             case Announcement: {
@@ -84,38 +153,65 @@ public abstract class Protobuf implements Messages.ShuffleMarshaller {
             }
         }
 
-        Proto.Message.Builder mb = Proto.Message.newBuilder();
         Message msg = p.payload.message;
 
         if (msg == null) {
            throw new IllegalArgumentException("Null or unknown Message format.");
         }
 
+        int version = p.payload.version;
+
         Proto.Packet.Builder pb = Proto.Packet.newBuilder()
                 .setSession(ByteString.copyFrom(p.session.bytes))
-                .setTo(Proto.VerificationKey.newBuilder()
-                        .setKey(p.to.toString()))
-                .setFrom(Proto.VerificationKey.newBuilder()
-                        .setKey(p.from.toString()))
+                .setFrom(marshallVerificationKey(p.from, version))
                 .setNumber(p.sequenceNumber)
-                .setPhase(phase)
-                .setMessage(mb);
+                .setPhase(phase);
+
+        // Broadcast packets have no recipient, which is only allowed in version 3.
+        if (p.to != null) {
+            pb.setTo(marshallVerificationKey(p.to, version));
+        } else if (version < 3) {
+            throw new IllegalArgumentException("Broadcast packets require version 3.");
+        }
+
+        List<Message.Atom> atoms = msg.atoms();
+
+        if (version >= 2) {
+            pb.setVersion(version);
 
-        Message.Atom atom = (msg).atoms;
-        if (atom != null) {
-            pb.setMessage(marshallAtom(atom));
+            for (Message.Atom atom : atoms) {
+                pb.addAtoms(marshallFlatAtom(atom));
+            }
+
+            return pb;
         }
 
-        return pb;
+        return pb.setMessage(marshallAtoms(atoms));
     }
 
-    public static Proto.Message.Builder marshallAtom(Message.Atom atom) {
+    // The atoms are nested in version 1, so we build the chain from the end.
+    public Proto.Message.Builder marshallAtoms(List<Message.Atom> atoms) {
+        Proto.Message.Builder next = Proto.Message.newBuilder();
+        for (int i = atoms.size() - 1; i >= 0; i--) {
+            Proto.Message.Builder ab = marshallAtom(atoms.get(i));
+
+            if (i < atoms.size() - 1) {
+                ab.setNext(next);
+            }
+
+            next = ab;
+        }
+
+        return next;
+    }
+
+    public Proto.Message.Builder marshallAtom(Message.Atom atom) {
         Proto.Message.Builder ab = Proto.Message.newBuilder();
 
         if (atom.addr != null) {
-            ab.setAddress(Proto.Address.newBuilder().setAddress(atom.addr.toString()));
+            ab.setAddress(marshallAddress(atom.addr, 1));
         } else if (atom.ek != null) {
-            ab.setKey(Proto.EncryptionKey.newBuilder().setKey(atom.ek.toString()));
+            ab.setKey(marshallEncryptionKey(atom.ek, 1));
         } else if (atom.secureHash != null) {
             ab.setHash(Proto.Hash.newBuilder().setHash(
                     ByteString.copyFrom(atom.secureHash.hashed.bytes)));
@@ -125,24 +221,59 @@ public abstract class Protobuf implements Messages.ShuffleMarshaller {
         } else if (atom.string != null) {
             ab.setStr(atom.string);
         } else if (atom.blame != null) {
-            ab.setBlame(marshallBlame(atom.blame));
+            ab.setBlame(marshallBlame(atom.blame, 1));
         } else {
             throw new IllegalArgumentException("Atom cannot be empty.");
         }
 
-        if (atom.next != null) {
-            ab.setNext(marshallAtom(atom.next));
+        return ab;
+    }
+
+    public Proto.Atom.Builder marshallFlatAtom(Message.Atom atom) {
+        Proto.Atom.Builder ab = Proto.Atom.newBuilder();
+
+        if (atom.addr != null) {
+            ab.setAddress(marshallAddress(atom.addr, 2));
+        } else if (atom.ek != null) {
+            ab.setKey(marshallEncryptionKey(atom.ek, 2));
+        } else if (atom.secureHash != null) {
+            ab.setHash(Proto.Hash.newBuilder().setHash(
+                    ByteString.copyFrom(atom.secureHash.hashed.bytes)));
+        } else if (atom.sig != null) {
+            ab.setSignature(Proto.Signature.newBuilder().setSignature(
+                    ByteString.copyFrom(atom.sig.bytes)));
+        } else if (atom.string != null) {
+            ab.setStr(atom.string);
+        } else if (atom.blame != null) {
+            ab.setBlame(marshallBlame(atom.blame, 2));
+        } else {
+            throw new IllegalArgumentException("Atom cannot be empty.");
         }
 
         return ab;
     }
 
-    public static Proto.Signed.Builder marshallSignedPacket(Signed<com.shuffle.chan.packet.Packet<VerificationKey, Payload>> p) {
-        return Proto.Signed.newBuilder().setPacket(marshallPacket(p.message)).setSignature(
+    public Proto.Signed.Builder marshallSignedPacket(Signed<com.shuffle.chan.packet.Packet<VerificationKey, Payload>> p) {
+        // Use the bytes that were signed if we have them. Marshalling the packet
+        // again might not give the same bytes, and then the signature would not check.
+        Proto.Packet.Builder packet = null;
+        if (p.marshalled != null) {
+            try {
+                packet = Proto.Packet.parseFrom(p.marshalled.bytes).toBuilder();
+            } catch (InvalidProtocolBufferException e) {
+                // Should not happen since we read the packet from these bytes.
+            }
+        }
+
+        if (packet == null) {
+            packet = marshallPacket(p.message);
+        }
+
+        return Proto.Signed.newBuilder().setPacket(packet).setSignature(
                 Proto.Signature.newBuilder().setSignature(ByteString.copyFrom(p.signature.bytes)));
     }
 
-    public static Proto.Blame.Builder marshallBlame(Blame b) {
+    public Proto.Blame.Builder marshallBlame(Blame b, int version) {
         Proto.Reason reason;
 
         if (b.reason == Reason.InsufficientFunds) {
@@ -170,7 +301,7 @@ public abstract class Protobuf implements Messages.ShuffleMarshaller {
         Proto.Blame.Builder bb = Proto.Blame.newBuilder().setReason(reason);
 
         if (b.accused != null) {
-            bb.setAccused(Proto.VerificationKey.newBuilder().setKey(b.accused.toString()));
+            bb.setAccused(marshallVerificationKey(b.accused, version));
         }
 
         if (b.privateKey != null) {
@@ -201,53 +332,97 @@ public abstract class Protobuf implements Messages.ShuffleMarshaller {
     }
 
     public final Message.Atom unmarshallAtom(Proto.Message atom) throws FormatException {
+        return unmarshallAtom(atom.getStr(),
+                atom.hasAddress() ? atom.getAddress() : null,
+                atom.hasKey() ? atom.getKey() : null,
+                atom.hasHash() ? atom.getHash() : null,
+                atom.hasSignature() ? atom.getSignature() : null,
+                atom.hasBlame() ? atom.getBlame() : null);
+    }
+
+    public final Message.Atom unmarshallAtom(Proto.Atom atom) throws FormatException {
+        return unmarshallAtom(atom.getStr(),
+                atom.hasAddress() ? atom.getAddress() : null,
+                atom.hasKey() ? atom.getKey() : null,
+                atom.hasHash() ? atom.getHash() : null,
+                atom.hasSignature() ? atom.getSignature() : null,
+                atom.hasBlame() ? atom.getBlame() : null);
+    }
+
+    // Both versions of the wire format have the same fields in an atom.
+    private Message.Atom unmarshallAtom(
+            String str,
+            Proto.Address address,
+            Proto.EncryptionKey key,
+            Proto.Hash hash,
+            Proto.Signature signature,
+            Proto.Blame blame) throws FormatException {
 
         Object o;
         // Only one field is allowed to be set in the Atom.
-        if (!atom.getStr().equals("")) {
-            if (atom.hasAddress() || atom.hasKey() || atom.hasSignature() || atom.hasBlame()) {
+        if (!str.equals("")) {
+            if (address != null || key != null || signature != null || blame != null) {
                 throw new FormatException("Atom contains more than one value.");
             }
 
-            o = atom.getStr();
-        } else if (atom.hasAddress()) {
-            if (atom.hasKey() || atom.hasHash() || atom.hasSignature() || atom.hasBlame()) {
+            o = str;
+        } else if (address != null) {
+            if (key != null || hash != null || signature != null || blame != null) {
                 throw new FormatException("Atom contains more than one value.");
             }
 
-            o = unmarshallAdress(atom.getAddress().getAddress());
-        } else if (atom.hasKey()) {
-            if (atom.hasHash() || atom.hasSignature() || atom.hasBlame()) {
+            if (!address.getEncoded().isEmpty()) {
+                o = unmarshallAddress(address.getEncoded());
+            } else {
+                o = unmarshallAdress(address.getAddress());
+            }
+        } else if (key != null) {
+            if (hash != null || signature != null || blame != null) {
                 throw new FormatException("Atom contains more than one value.");
             }
 
-            try {
-                o = unmarshallEncryptionKey(atom.getKey().getKey());
-            } catch (NumberFormatException
-                    | NoSuchAlgorithmException
-                    | InvalidKeySpecException e) {
-                throw new FormatException("Could not read " + atom.getKey().getKey() + " as number.");
-            }
-        } else if (atom.hasHash()) {
-            if (atom.hasSignature() || atom.hasBlame()) {
+            if (!key.getEncoded().isEmpty()) {
+                o = unmarshallEncryptionKey(key.getEncoded());
+            } else {
+                try {
+                    o = unmarshallEncryptionKey(key.getKey());
+                } catch (NumberFormatException
+                        | NoSuchAlgorithmException
+                        | InvalidKeySpecException e) {
+                    throw new FormatException("Could not read " + key.getKey() + " as number.");
+                }
+            }
+        } else if (hash != null) {
+            if (signature != null || blame != null) {
                 throw new FormatException("Atom contains more than one value.");
             }
 
-            o = new Message.SecureHash(new Bytestring(atom.getHash().getHash().toByteArray()));
-        } else if (atom.hasSignature()) {
-            if (atom.hasBlame()) throw new FormatException("Atom contains more than one value.");
+            o = new Message.SecureHash(new Bytestring(hash.getHash().toByteArray()));
+        } else if (signature != null) {
+            if (blame != null) throw new FormatException("Atom contains more than one value.");
 
-            o = new Bytestring(atom.getSignature().getSignature().toByteArray());
-        } else if (atom.hasBlame()) {
-            o = unmarshallBlame(atom.getBlame());
+            o = new Bytestring(signature.getSignature().toByteArray());
+        } else if (blame != null) {
+            o = unmarshallBlame(blame);
         } else {
             throw new FormatException("Atom contains no values.");
         }
 
-        if (atom.hasNext()) {
-            return Message.Atom.make(o, unmarshallAtom(atom.getNext()));
-        } else {
-            return Message.Atom.make(o);
+        return Message.Atom.make(o);
+    }
+
+    // Read a chain of nested atoms without recursion.
+    public final List<Message.Atom> unmarshallAtoms(Proto.Message atom) throws FormatException {
+        List<Message.Atom> atoms = new ArrayList<>();
+
+        while (true) {
+            atoms.add(unmarshallAtom(atom));
+
+            if (!atom.hasNext()) {
+                return atoms;
+            }
+
+            atom = atom.getNext();
         }
     }
 
@@ -298,7 +473,7 @@ public abstract class Protobuf implements Messages.ShuffleMarshaller {
         VerificationKey accused = null;
         if (blame.hasAccused()) {
             try {
-                accused = unmarshallVerificationKey(blame.getAccused().getKey());
+                accused = unmarshallVerificationKey(blame.getAccused());
             } catch (NumberFormatException e) {
                 throw new FormatException(e.getMessage());
             }
@@ -346,18 +521,51 @@ public abstract class Protobuf implements Messages.ShuffleMarshaller {
             throw new FormatException("All entries in Signed must be filled:" + sp);
         }
 
-        return new Signed<>(
-                new Bytestring(sp.getPacket().toByteArray()),
-                new Bytestring(sp.getSignature().getSignature().toByteArray()),
-                unmarshallVerificationKey(sp.getPacket().getFrom().getKey()),
-                packetMarshaller);
+        // The signature must be of the packet as we would marshall it, so that the
+        // packet can be passed on to others as evidence. These bytes are kept, and
+        // the packet is read from the same Proto.Packet rather than parsed again.
+        Proto.Packet p = sp.getPacket();
+        try {
+            return new Signed<>(
+                    unmarshallPacket(p),
+                    new Bytestring(p.toByteArray()),
+                    new Bytestring(sp.getSignature().getSignature().toByteArray()),
+                    unmarshallVerificationKey(p.getFrom()),
+                    signatures);
+        } catch (IllegalArgumentException e) {
+            throw new FormatException("Invalid signature: " + sp);
+        }
     }
 
     public final com.shuffle.chan.packet.Packet<VerificationKey, Payload> unmarshallPacket(Proto.Packet p) throws FormatException {
-        if (!(p.hasFrom() && p.hasTo() && p.hasMessage())) {
+        if (!(p.hasFrom() && (p.hasTo() || p.getVersion() >= 3))) {
             throw new FormatException("All entries in Packet must be filled: " + p);
         }
 
+        // Version 1 packets have a nested message and later versions have a list of atoms.
+        int v;
+        List<Message.Atom> atoms;
+        if (p.getVersion() == 0 || p.getVersion() == 1) {
+            if (!p.hasMessage() || p.getAtomsCount() != 0) {
+                throw new FormatException("All entries in Packet must be filled: " + p);
+            }
+
+            v = 1;
+            atoms = unmarshallAtoms(p.getMessage());
+        } else if (p.getVersion() == 2 || p.getVersion() == 3) {
+            if (p.hasMessage()) {
+                throw new FormatException("Version " + p.getVersion() + " packet contains a version 1 message.");
+            }
+
+            v = p.getVersion();
+            atoms = new ArrayList<>(p.getAtomsCount());
+            for (Proto.Atom atom : p.getAtomsList()) {
+                atoms.add(unmarshallAtom(atom));
+            }
+        } else {
+            throw new FormatException("Unknown version " + p.getVersion());
+        }
+
         Phase phase;
         switch (p.getPhase()) {
             case ANNOUNCEMENT: {
@@ -391,28 +599,60 @@ public abstract class Protobuf implements Messages.ShuffleMarshaller {
 
         return new com.shuffle.chan.packet.Packet<>(
                 new Bytestring(p.getSession().toByteArray()),
-                unmarshallVerificationKey(p.getFrom().getKey()),
-                unmarshallVerificationKey(p.getTo().getKey()),
+                unmarshallVerificationKey(p.getFrom()),
+                p.hasTo() ? unmarshallVerificationKey(p.getTo()) : null,
                 p.getNumber(),
-                new Payload(phase, new Message(unmarshallAtom(p.getMessage()), addressMarshaller(), null)));
+                new Payload(phase, new Message(atoms, addressMarshaller(), null), v));
 
     }
 
     public final Marshaller<Packet<VerificationKey, Payload>> packetMarshaller;
-    public final Marshaller<Message.Atom> atomMarshaller;
+    public final Marshaller<List<Message.Atom>> atomMarshaller;
     public final Marshaller<Signed<Packet<VerificationKey, Payload>>> signedMarshaller;
 
+    // The version of the wire format we prefer to send. Every version is accepted.
+    public final int version;
+
+    // Signatures which have already been checked. Packets are forwarded many times
+    // during blame, so the same signatures arrive again and again. May be null.
+    public final SignatureCache signatures;
+
     public Protobuf() {
+        this(1);
+    }
+
+    public Protobuf(int version) {
+        this(version, null);
+    }
+
+    // A cache with room for every signature in a session of this many players.
+    // Each player sends and forwards about one packet to every other player in each phase.
+    public static SignatureCache signatureCache(int players) {
+        if (players < 1) throw new IllegalArgumentException();
+
+        return new SignatureCache(players * players * Phase.values().length);
+    }
+
+    public Protobuf(int version, SignatureCache signatures) {
+        if (version < 1 || version > 3) throw new IllegalArgumentException("Unknown version " + version);
+
+        this.version = version;
+        this.signatures = signatures;
         packetMarshaller = new PacketMarshaller();
         atomMarshaller = new AtomMarshaller();
         signedMarshaller = new SignedMarshaller();
     }
 
     @Override
-    public Marshaller<Message.Atom> atomMarshaller() {
+    public Marshaller<List<Message.Atom>> atomMarshaller() {
         return atomMarshaller;
     }
 
+    @Override
+    public int version() {
+        return version;
+    }
+
     @Override
     public Marshaller<com.shuffle.chan.packet.Packet<VerificationKey, Payload>> packetMarshaller() {
         return packetMarshaller;
@@ -423,15 +663,17 @@ public abstract class Protobuf implements Messages.ShuffleMarshaller {
         return signedMarshaller;
     }
 
-    class AtomMarshaller implements Marshaller<Message.Atom> {
+    // Always the nested chain of version 1, so that the equivocation
+    // check hash is the same whatever version is sent.
+    class AtomMarshaller implements Marshaller<List<Message.Atom>> {
 
         @Override
-        public Bytestring marshall(Message.Atom atom) {
-            return new Bytestring(marshallAtom(atom).build().toByteArray());
+        public Bytestring marshall(List<Message.Atom> atoms) {
+            return new Bytestring(marshallAtoms(atoms).build().toByteArray());
         }
 
         @Override
-        public Message.Atom unmarshall(Bytestring string) throws FormatException {
+        public List<Message.Atom> unmarshall(Bytestring string) throws FormatException {
 
             Proto.Message atom;
             try {
@@ -440,7 +682,7 @@ public abstract class Protobuf implements Messages.ShuffleMarshaller {
                 throw new FormatException("Could not read " + Arrays.toString(string.bytes));
             }
 
-            return unmarshallAtom(atom);
+            return unmarshallAtoms(atom);
         }
     }
 
@@ -461,11 +703,29 @@ public abstract class Protobuf implements Messages.ShuffleMarshaller {
         }
     }
 
+    // Writes the packet exactly as it was signed rather than marshalling it again.
     private class SignedMarshaller implements Marshaller<Signed<Packet<VerificationKey, Payload>>> {
 
         @Override
         public Bytestring marshall(Signed<Packet<VerificationKey, Payload>> signed) throws IOException {
-            return new Bytestring(marshallSignedPacket(signed).build().toByteArray());
+            if (signed.marshalled == null) {
+                return new Bytestring(marshallSignedPacket(signed).build().toByteArray());
+            }
+
+            Proto.Signature signature = Proto.Signature.newBuilder()
+                    .setSignature(ByteString.copyFrom(signed.signature.bytes)).build();
+
+            byte[] packet = signed.marshalled.bytes;
+            byte[] bytes = new byte[
+                    CodedOutputStream.computeByteArraySize(Proto.Signed.PACKET_FIELD_NUMBER, packet)
+                    + CodedOutputStream.computeMessageSize(Proto.Signed.SIGNATURE_FIELD_NUMBER, signature)];
+
+            CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+            out.writeByteArray(Proto.Signed.PACKET_FIELD_NUMBER, packet);
+            out.writeMessage(Proto.Signed.SIGNATURE_FIELD_NUMBER, signature);
+            out.checkNoSpaceLeft();
+
+            return new Bytestring(bytes);
         }
 
         @Override
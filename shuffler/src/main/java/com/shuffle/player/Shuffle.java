@@ -10,9 +10,11 @@ import com.shuffle.bitcoin.VerificationKey;
 import com.shuffle.bitcoin.blockchain.Btcd;
 import com.shuffle.bitcoin.impl.AddressImpl;
 import com.shuffle.bitcoin.impl.CryptoProtobuf;
+import com.shuffle.bitcoin.impl.PooledCrypto;
 import com.shuffle.bitcoin.impl.SigningKeyImpl;
 import com.shuffle.bitcoin.impl.VerificationKeyImpl;
 import com.shuffle.chan.packet.Packet;
+import com.shuffle.chan.packet.SignatureCache;
 import com.shuffle.chan.packet.Signed;
 import com.shuffle.mock.InsecureRandom;
 import com.shuffle.mock.MockAddress;
@@ -30,8 +32,10 @@ import com.shuffle.p2p.Bytestring;
 import com.shuffle.p2p.Channel;
 import com.shuffle.p2p.MappedChannel;
 import com.shuffle.p2p.MarshallChannel;
-import com.shuffle.p2p.TcpChannel;
+import com.shuffle.p2p.NioChannel;
+import com.shuffle.p2p.SessionMultiplexer;
 import com.shuffle.protocol.FormatException;
+import com.shuffle.protocol.message.Phase;
 
 import org.bitcoinj.core.AddressFormatException;
 import org.bitcoinj.core.NetworkParameters;
@@ -63,6 +67,9 @@ import java.util.TreeSet;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 import joptsimple.ArgumentAcceptingOptionSpec;
 import joptsimple.OptionParser;
@@ -86,6 +93,66 @@ public class Shuffle {
     // Entropy checker must think there is at least this much entropy.
     private static int MIN_APPARENT_ENTROPY = 128;
 
+    // Hands the messages received by every multiplexer to the players. Each session needs
+    // at most one of these threads at a time, and only while it puts messages in the
+    // player's inbox, which doesn't block, so one thread per processor is enough.
+    private static final ExecutorService multiplexed = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "multiplexer");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    // Runs the rounds of every session in this process which was started with 'events'.
+    // Rounds only need a thread while they have something to do, so one per processor
+    // is enough.
+    private static final ScheduledExecutorService events = Executors.newScheduledThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "events");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    // One for each address we listen on, shared by every session in this process.
+    private static final Map<InetSocketAddress, SessionMultiplexer<InetSocketAddress>> multiplexers
+            = new HashMap<>();
+
+    static synchronized SessionMultiplexer<InetSocketAddress> multiplexer(InetSocketAddress me) {
+        SessionMultiplexer<InetSocketAddress> mux = multiplexers.get(me);
+        if (mux == null) {
+            mux = new SessionMultiplexer<>(
+                    new NioChannel(me), SessionMultiplexer.port(me.getPort()), multiplexed);
+            multiplexers.put(me, mux);
+        }
+        return mux;
+    }
+
+    // The channel over which the player listening at the given address talks to its peers.
+    static Channel<VerificationKey, Bytestring> channel(
+            InetSocketAddress me,
+            Bytestring session,
+            boolean multiplex, // Whether to share connections with other sessions.
+            Map<VerificationKey, InetSocketAddress> peers,
+            VerificationKey vk) {
+
+        Channel<InetSocketAddress, Bytestring> inner;
+        if (multiplex) {
+            inner = multiplexer(me).channel(session);
+        } else {
+            inner = new NioChannel(me);
+        }
+
+        return new MappedChannel<>(inner, peers, vk);
+    }
+
     public static OptionParser getShuffleOptionsParser() {
         OptionParser parser = new OptionParser();
         parser.accepts("help", "print help message.");
@@ -170,7 +237,40 @@ public class Shuffle {
         parser.accepts("timeout", "The time in milliseconds that Shufflepuff waits before disconnecting due to a timeout.")
                 .withRequiredArg()
                 .ofType(Long.class)
-                .defaultsTo(1000L);
+                .defaultsTo(Messages.defaultTimeout);
+
+        parser.accepts("phasetimeouts", "Timeouts in milliseconds for particular phases, "
+                + "such as \"Shuffling=5000,Blame=2000\". Phases not listed use 'timeout'.")
+                .withRequiredArg()
+                .ofType(String.class);
+
+        parser.accepts("adaptive", "Estimate how long to wait from the time between messages "
+                + "from each peer, and wait longer than the timeout for peers who have been slow.");
+
+        parser.accepts("multiplex", "Share one connection to each peer between all sessions run "
+                + "on the same port by this process. Every peer must use this option too.");
+
+        parser.accepts("events", "Run each round on a scheduler shared by every session in this process, "
+                + "rather than on threads of its own.");
+
+        parser.accepts("wire", "Version of the protobuf wire format to send to peers we have not heard "
+                + "from (1, 2 or 3). Every version is accepted, and peers are answered in the highest version "
+                + "they have sent. Once every peer has sent version 3, broadcasts are signed once for all of them.")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(1);
+
+        parser.accepts("threads", "Number of threads used to decrypt messages in the shuffle phase. "
+                + "If 1, messages are decrypted on the protocol thread.")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(Runtime.getRuntime().availableProcessors());
+
+        parser.accepts("keypool", "Number of encryption keys to generate in advance. "
+                + "If 0, keys are generated when they are needed.")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(4);
 
         parser.accepts("minbitcoinnetworkpeers", "Minimum peers to be connected to before broadcasting transaction (currently unused).")
                 .withRequiredArg().ofType(Long.class).defaultsTo(5L);
@@ -195,6 +295,10 @@ public class Shuffle {
     public final long amount;
     public final long fee;
     public final long timeout;
+    public final Map<Phase, Long> phaseTimeouts;
+    public final boolean adaptive;
+    public final boolean multiplex;
+    public final ScheduledExecutorService scheduler; // Null if each round has its own thread.
     public final Bytestring session;
     public final Crypto crypto;
     Set<Player> local = new HashSet<>();
@@ -202,7 +306,19 @@ public class Shuffle {
     SortedSet<VerificationKey> keys = new TreeSet<>();
     public final String report; // Where to save the report.
 
-    public final ExecutorService executor;
+    public final ExecutorService decryptor; // Null if decryption is not done in parallel.
+
+    // Looks things up on the blockchain, which can take a long time, so that the
+    // decryptor's threads are never held up waiting for the network.
+    public final ExecutorService io = Executors.newCachedThreadPool(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "blockchain");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
 
     private final MockNetwork<Integer, Signed<Packet<VerificationKey, Payload>>> mock = new MockNetwork<>();
 
@@ -260,6 +376,20 @@ public class Shuffle {
         }
 
         timeout = (Long)options.valueOf("timeout");
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Invalid value for timeout. Must be positive.");
+        }
+
+        phaseTimeouts = Timeouts.readPhases((String)options.valueOf("phasetimeouts"));
+        for (Long t : phaseTimeouts.values()) {
+            if (t <= 0) {
+                throw new IllegalArgumentException("Invalid value for phasetimeouts. Must be positive.");
+            }
+        }
+
+        adaptive = options.has("adaptive");
+        multiplex = options.has("multiplex");
+        scheduler = options.has("events") ? events : null;
 
         if (options.has("report")) {
             report = (String)options.valueOf("report");
@@ -327,6 +457,35 @@ public class Shuffle {
             }
         }
 
+        int wire = (Integer)options.valueOf("wire");
+        if (wire < 1 || wire > 3) {
+            throw new IllegalArgumentException("Invalid value for wire. Must be 1, 2 or 3.");
+        }
+
+        int keypool = (Integer)options.valueOf("keypool");
+        if (keypool < 0) {
+            throw new IllegalArgumentException("Invalid value for keypool. Must not be negative.");
+        }
+
+        // Get the peers and, in test mode, the local players. Together
+        // they are every player in the session.
+        JSONArray jsonPeers = readJSONArray((String)options.valueOf("peers"));
+        if (jsonPeers == null) {
+            throw new IllegalArgumentException("Could not read " + options.valueOf("peers") + " as json array.");
+        }
+
+        JSONArray local = null;
+        if (TEST_MODE && options.has("local")) {
+            local = readJSONArray((String)options.valueOf("local"));
+            if (local == null) {
+                throw new IllegalArgumentException("Could not read " + options.valueOf("local") + " as json array.");
+            }
+        }
+
+        // Signatures are checked once for this session, however often they are forwarded.
+        SignatureCache signatures = Protobuf.signatureCache(
+                Math.max(1, jsonPeers.size() + (local == null ? 1 : local.size())));
+
         // Check cryptography options.
         boolean mockCrypto = false;
         if (TEST_MODE) {
@@ -349,7 +508,7 @@ public class Shuffle {
                     break;
                 case "real":
 
-                    crypto = new BitcoinCrypto(netParams);
+                    crypto = pool(new BitcoinCrypto(netParams), keypool);
                     break;
                 default:
                     throw new IllegalArgumentException("Unrecognized crypto option value " + cryptography);
@@ -357,13 +516,13 @@ public class Shuffle {
 
             switch (format) {
                 case "java":
-                    m = new JavaShuffleMarshaller();
+                    m = new JavaShuffleMarshaller(wire);
                     break;
                 case "protobuf":
                     if (mockCrypto) {
-                        m = new MockProtobuf();
+                        m = new MockProtobuf(wire, signatures);
                     } else {
-                        m = new CryptoProtobuf();
+                        m = new CryptoProtobuf(netParams, wire, signatures);
                     }
                     break;
                 default:
@@ -371,8 +530,8 @@ public class Shuffle {
             }
 
         } else {
-            crypto = new BitcoinCrypto(netParams);
-            m = new CryptoProtobuf();
+            crypto = pool(new BitcoinCrypto(netParams), keypool);
+            m = new CryptoProtobuf(netParams, wire, signatures);
         }
 
         amount = (Long)options.valueOf("amount");
@@ -385,12 +544,7 @@ public class Shuffle {
             throw new IllegalArgumentException("Fee is too small. ");
         }
 
-        // Finally, get the peers.
-        JSONArray jsonPeers = readJSONArray((String)options.valueOf("peers"));
-        if (jsonPeers == null) {
-            throw new IllegalArgumentException("Could not read " + options.valueOf("peers") + " as json array.");
-        }
-
+        // Finally, read the peers.
         SortedSet<String> checkDuplicateAddress = new TreeSet<>();
         for (int i = 1; i <= jsonPeers.size(); i ++) {
             JSONObject o;
@@ -443,11 +597,15 @@ public class Shuffle {
             keys.add(vk);
         }
 
-        executor = Executors.newFixedThreadPool(10);
+        int threads = (Integer)options.valueOf("threads");
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid value for threads. Must be at least 1.");
+        }
+        decryptor = threads == 1 ? null : new ForkJoinPool(threads);
 
         // Get information for this player. (In test mode, one node
         // may run more than one player.)
-        if (TEST_MODE && options.has("local")) {
+        if (local != null) {
             if (options.has("key")) {
                 throw new IllegalArgumentException("Option 'key' not needed when 'local' is defined.");
             }
@@ -461,10 +619,6 @@ public class Shuffle {
                 throw new IllegalArgumentException("Option 'port' not needed when 'local' is defined.");
             }
 
-            JSONArray local = readJSONArray((String)options.valueOf("local"));
-            if (local == null) {
-                throw new IllegalArgumentException("Could not read " + options.valueOf("local") + " as json array.");
-            }
             if (local.size() < 1) {
                 throw new IllegalArgumentException("Must provide at least one local player.");
             }
@@ -602,11 +756,8 @@ public class Shuffle {
 		
 		Channel<VerificationKey, Signed<Packet<VerificationKey, Payload>>> channel =
 				new MarshallChannel<>(
-						new MappedChannel<>(
-								new TcpChannel(
-										new InetSocketAddress(InetAddress.getLocalHost(), (int) port)
-								),
-						peers, vk),
+						channel(new InetSocketAddress(InetAddress.getLocalHost(), (int) port),
+								session, multiplex, peers, vk),
 				m.signedMarshaller());
 		
         /*
@@ -618,7 +769,14 @@ public class Shuffle {
         return new Player(
                 sk, session, anonAddress,
                 changeAddress, keys, time,
-                amount, fee, coin, crypto, channel, m, System.out);
+                amount, fee, coin, crypto, channel, m, decryptor, io, scheduler,
+                new Timeouts(timeout, phaseTimeouts, adaptive), System.out);
+    }
+
+    private static Crypto pool(Crypto crypto, int size) {
+        if (size == 0) return crypto;
+
+        return new PooledCrypto(crypto, size);
     }
 
     private static JSONArray readJSONArray(String ar) {
@@ -680,7 +838,8 @@ public class Shuffle {
     }
 
     public void close() {
-        executor.shutdownNow();
+        if (decryptor != null) decryptor.shutdownNow();
+        io.shutdownNow();
     }
 
     public static void main(String[] opts) throws IOException {
@@ -0,0 +1,144 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.player;
+
+import com.shuffle.bitcoin.VerificationKey;
+import com.shuffle.protocol.message.Phase;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * How long to wait for the next message in each phase before giving up.
+ *
+ * Each phase can have its own timeout. In adaptive mode, we also keep a running
+ * estimate of the time between messages from each peer, like the round trip time
+ * estimate in TCP. If the slowest peer is expected to take longer than the timeout
+ * for the phase, we wait that long instead, up to a limit. The estimate is never
+ * used to wait less than the timeout for the phase, since a message can be held
+ * up by every player who has to act before it is sent, as in the shuffle phase.
+ */
+public class Timeouts {
+
+    // In adaptive mode, we wait at most this many times the timeout for the phase.
+    public static final int maxStretch = 10;
+
+    public final long timeout; // The timeout for any phase not listed, in milliseconds.
+    private final Map<Phase, Long> phases = new EnumMap<>(Phase.class);
+    public final boolean adaptive;
+
+    // The time between messages from a single peer.
+    private static class Estimate {
+        long last; // When we last heard from this peer.
+        double mean = 0;
+        double deviation = 0;
+        int samples = 0;
+
+        Estimate(long now) {
+            last = now;
+        }
+
+        void observe(long now) {
+            long gap = now - last;
+            last = now;
+
+            // The same weights as in TCP.
+            if (samples == 0) {
+                mean = gap;
+                deviation = gap / 2.0;
+            } else {
+                deviation = 0.75 * deviation + 0.25 * Math.abs(gap - mean);
+                mean = 0.875 * mean + 0.125 * gap;
+            }
+            samples++;
+        }
+
+        long timeout() {
+            return (long) Math.ceil(mean + 4 * deviation);
+        }
+    }
+
+    private final Map<VerificationKey, Estimate> peers = new HashMap<>();
+
+    public Timeouts(long timeout) {
+        this(timeout, null, false);
+    }
+
+    public Timeouts(long timeout, Map<Phase, Long> phases, boolean adaptive) {
+        if (timeout <= 0) throw new IllegalArgumentException();
+
+        this.timeout = timeout;
+        this.adaptive = adaptive;
+
+        if (phases != null) {
+            for (Map.Entry<Phase, Long> phase : phases.entrySet()) {
+                if (phase.getValue() == null || phase.getValue() <= 0) {
+                    throw new IllegalArgumentException();
+                }
+
+                this.phases.put(phase.getKey(), phase.getValue());
+            }
+        }
+    }
+
+    // The timeout for the given phase. (The phase can be null.)
+    public long deadline(Phase phase) {
+        Long t = phase == null ? null : phases.get(phase);
+        return t == null ? timeout : t;
+    }
+
+    // How long to wait for the next message right now.
+    public synchronized long timeout(Phase phase) {
+        long deadline = deadline(phase);
+        if (!adaptive) return deadline;
+
+        long expected = 0;
+        for (Estimate e : peers.values()) {
+            if (e.samples == 0) continue;
+
+            expected = Math.max(expected, e.timeout());
+        }
+
+        return Math.min(deadline * maxStretch, Math.max(deadline, expected));
+    }
+
+    // Record that a message has been received from a peer.
+    public synchronized void received(VerificationKey from, long now) {
+        if (!adaptive) return;
+
+        Estimate e = peers.get(from);
+        if (e == null) {
+            peers.put(from, new Estimate(now));
+        } else {
+            e.observe(now);
+        }
+    }
+
+    // Read a list of timeouts for particular phases, such as "Shuffling=5000,Blame=2000".
+    public static Map<Phase, Long> readPhases(String list) {
+        Map<Phase, Long> phases = new EnumMap<>(Phase.class);
+        if (list == null || list.isEmpty()) return phases;
+
+        for (String entry : list.split(",")) {
+            String[] pair = entry.split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Could not read phase timeout " + entry + ".");
+            }
+
+            try {
+                phases.put(Phase.valueOf(pair[0].trim()), Long.parseLong(pair[1].trim()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Could not read phase timeout " + entry + ".");
+            }
+        }
+
+        return phases;
+    }
+}
@@ -1054,22 +1054,83 @@ public final class Proto {
     com.shuffle.player.proto.Proto.Phase getPhase();
 
     /**
+     * <pre>
+     * Version 1.
+     * </pre>
+     *
      * <code>optional .Message message = 6;</code>
      */
     boolean hasMessage();
     /**
+     * <pre>
+     * Version 1.
+     * </pre>
+     *
      * <code>optional .Message message = 6;</code>
      */
     com.shuffle.player.proto.Proto.Message getMessage();
     /**
+     * <pre>
+     * Version 1.
+     * </pre>
+     *
      * <code>optional .Message message = 6;</code>
      */
     com.shuffle.player.proto.Proto.MessageOrBuilder getMessageOrBuilder();
+
+    /**
+     * <code>optional uint32 version = 7;</code>
+     */
+    int getVersion();
+
+    /**
+     * <pre>
+     * Version 2.
+     * </pre>
+     *
+     * <code>repeated .Atom atoms = 8;</code>
+     */
+    java.util.List<com.shuffle.player.proto.Proto.Atom> 
+        getAtomsList();
+    /**
+     * <pre>
+     * Version 2.
+     * </pre>
+     *
+     * <code>repeated .Atom atoms = 8;</code>
+     */
+    com.shuffle.player.proto.Proto.Atom getAtoms(int index);
+    /**
+     * <pre>
+     * Version 2.
+     * </pre>
+     *
+     * <code>repeated .Atom atoms = 8;</code>
+     */
+    int getAtomsCount();
+    /**
+     * <pre>
+     * Version 2.
+     * </pre>
+     *
+     * <code>repeated .Atom atoms = 8;</code>
+     */
+    java.util.List<? extends com.shuffle.player.proto.Proto.AtomOrBuilder> 
+        getAtomsOrBuilderList();
+    /**
+     * <pre>
+     * Version 2.
+     * </pre>
+     *
+     * <code>repeated .Atom atoms = 8;</code>
+     */
+    com.shuffle.player.proto.Proto.AtomOrBuilder getAtomsOrBuilder(
+        int index);
   }
   /**
    * Protobuf type {@code Packet}
    */
-  public static final class Packet extends
+  public  static final class Packet extends
       com.google.protobuf.GeneratedMessage implements
       // @@protoc_insertion_point(message_implements:Packet)
       PacketOrBuilder {
@@ -1081,6 +1142,8 @@ public final class Proto {
       session_ = com.google.protobuf.ByteString.EMPTY;
       number_ = 0;
       phase_ = 0;
+      version_ = 0;
+      atoms_ = java.util.Collections.emptyList();
     }
 
     @java.lang.Override
@@ -1163,6 +1226,19 @@ public final class Proto {
 
               break;
             }
+            case 56: {
+
+              version_ = input.readUInt32();
+              break;
+            }
+            case 66: {
+              if (!((mutable_bitField0_ & 0x00000080) == 0x00000080)) {
+                atoms_ = new java.util.ArrayList<com.shuffle.player.proto.Proto.Atom>();
+                mutable_bitField0_ |= 0x00000080;
+              }
+              atoms_.add(input.readMessage(com.shuffle.player.proto.Proto.Atom.parser(), extensionRegistry));
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -1171,6 +1247,9 @@ public final class Proto {
         throw new com.google.protobuf.InvalidProtocolBufferException(
             e).setUnfinishedMessage(this);
       } finally {
+        if (((mutable_bitField0_ & 0x00000080) == 0x00000080)) {
+          atoms_ = java.util.Collections.unmodifiableList(atoms_);
+        }
         makeExtensionsImmutable();
       }
     }
@@ -1186,6 +1265,7 @@ public final class Proto {
               com.shuffle.player.proto.Proto.Packet.class, com.shuffle.player.proto.Proto.Packet.Builder.class);
     }
 
+    private int bitField0_;
     public static final int SESSION_FIELD_NUMBER = 1;
     private com.google.protobuf.ByteString session_;
     /**
@@ -1265,24 +1345,100 @@ public final class Proto {
     public static final int MESSAGE_FIELD_NUMBER = 6;
     private com.shuffle.player.proto.Proto.Message message_;
     /**
+     * <pre>
+     * Version 1.
+     * </pre>
+     *
      * <code>optional .Message message = 6;</code>
      */
     public boolean hasMessage() {
       return message_ != null;
     }
     /**
+     * <pre>
+     * Version 1.
+     * </pre>
+     *
      * <code>optional .Message message = 6;</code>
      */
     public com.shuffle.player.proto.Proto.Message getMessage() {
       return message_ == null ? com.shuffle.player.proto.Proto.Message.getDefaultInstance() : message_;
     }
     /**
+     * <pre>
+     * Version 1.
+     * </pre>
+     *
      * <code>optional .Message message = 6;</code>
      */
     public com.shuffle.player.proto.Proto.MessageOrBuilder getMessageOrBuilder() {
       return getMessage();
     }
 
+    public static final int VERSION_FIELD_NUMBER = 7;
+    private int version_;
+    /**
+     * <code>optional uint32 version = 7;</code>
+     */
+    public int getVersion() {
+      return version_;
+    }
+
+    public static final int ATOMS_FIELD_NUMBER = 8;
+    private java.util.List<com.shuffle.player.proto.Proto.Atom> atoms_;
+    /**
+     * <pre>
+     * Version 2.
+     * </pre>
+     *
+     * <code>repeated .Atom atoms = 8;</code>
+     */
+    public java.util.List<com.shuffle.player.proto.Proto.Atom> getAtomsList() {
+      return atoms_;
+    }
+    /**
+     * <pre>
+     * Version 2.
+     * </pre>
+     *
+     * <code>repeated .Atom atoms = 8;</code>
+     */
+    public java.util.List<? extends com.shuffle.player.proto.Proto.AtomOrBuilder> 
+        getAtomsOrBuilderList() {
+      return atoms_;
+    }
+    /**
+     * <pre>
+     * Version 2.
+     * </pre>
+     *
+     * <code>repeated .Atom atoms = 8;</code>
+     */
+    public int getAtomsCount() {
+      return atoms_.size();
+    }
+    /**
+     * <pre>
+     * Version 2.
+     * </pre>
+     *
+     * <code>repeated .Atom atoms = 8;</code>
+     */
+    public com.shuffle.player.proto.Proto.Atom getAtoms(int index) {
+      return atoms_.get(index);
+    }
+    /**
+     * <pre>
+     * Version 2.
+     * </pre>
+     *
+     * <code>repeated .Atom atoms = 8;</code>
+     */
+    public com.shuffle.player.proto.Proto.AtomOrBuilder getAtomsOrBuilder(
+        int index) {
+      return atoms_.get(index);
+    }
+
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
       byte isInitialized = memoizedIsInitialized;
@@ -1313,6 +1469,12 @@ public final class Proto {
       if (message_ != null) {
         output.writeMessage(6, getMessage());
       }
+      if (version_ != 0) {
+        output.writeUInt32(7, version_);
+      }
+      for (int i = 0; i < atoms_.size(); i++) {
+        output.writeMessage(8, atoms_.get(i));
+      }
     }
 
     public int getSerializedSize() {
@@ -1344,6 +1506,14 @@ public final class Proto {
         size += com.google.protobuf.CodedOutputStream
           .computeMessageSize(6, getMessage());
       }
+      if (version_ != 0) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeUInt32Size(7, version_);
+      }
+      for (int i = 0; i < atoms_.size(); i++) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(8, atoms_.get(i));
+      }
       memoizedSize = size;
       return size;
     }
@@ -1457,6 +1627,7 @@ public final class Proto {
       }
       private void maybeForceBuilderInitialization() {
         if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+          getAtomsFieldBuilder();
         }
       }
       public Builder clear() {
@@ -1485,6 +1656,14 @@ public final class Proto {
           message_ = null;
           messageBuilder_ = null;
         }
+        version_ = 0;
+
+        if (atomsBuilder_ == null) {
+          atoms_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000080);
+        } else {
+          atomsBuilder_.clear();
+        }
         return this;
       }
 
@@ -1507,6 +1686,8 @@ public final class Proto {
 
       public com.shuffle.player.proto.Proto.Packet buildPartial() {
         com.shuffle.player.proto.Proto.Packet result = new com.shuffle.player.proto.Proto.Packet(this);
+        int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
         result.session_ = session_;
         result.number_ = number_;
         if (fromBuilder_ == null) {
@@ -1525,6 +1706,17 @@ public final class Proto {
         } else {
           result.message_ = messageBuilder_.build();
         }
+        result.version_ = version_;
+        if (atomsBuilder_ == null) {
+          if (((bitField0_ & 0x00000080) == 0x00000080)) {
+            atoms_ = java.util.Collections.unmodifiableList(atoms_);
+            bitField0_ = (bitField0_ & ~0x00000080);
+          }
+          result.atoms_ = atoms_;
+        } else {
+          result.atoms_ = atomsBuilder_.build();
+        }
+        result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
       }
@@ -1558,6 +1750,35 @@ public final class Proto {
         if (other.hasMessage()) {
           mergeMessage(other.getMessage());
         }
+        if (other.getVersion() != 0) {
+          setVersion(other.getVersion());
+        }
+        if (atomsBuilder_ == null) {
+          if (!other.atoms_.isEmpty()) {
+            if (atoms_.isEmpty()) {
+              atoms_ = other.atoms_;
+              bitField0_ = (bitField0_ & ~0x00000080);
+            } else {
+              ensureAtomsIsMutable();
+              atoms_.addAll(other.atoms_);
+            }
+            onChanged();
+          }
+        } else {
+          if (!other.atoms_.isEmpty()) {
+            if (atomsBuilder_.isEmpty()) {
+              atomsBuilder_.dispose();
+              atomsBuilder_ = null;
+              atoms_ = other.atoms_;
+              bitField0_ = (bitField0_ & ~0x00000080);
+              atomsBuilder_ = 
+                com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders ?
+                   getAtomsFieldBuilder() : null;
+            } else {
+              atomsBuilder_.addAllMessages(other.atoms_);
+            }
+          }
+        }
         onChanged();
         return this;
       }
@@ -1583,6 +1804,7 @@ public final class Proto {
         }
         return this;
       }
+      private int bitField0_;
 
       private com.google.protobuf.ByteString session_ = com.google.protobuf.ByteString.EMPTY;
       /**
@@ -1921,12 +2143,20 @@ public final class Proto {
       private com.google.protobuf.SingleFieldBuilder<
           com.shuffle.player.proto.Proto.Message, com.shuffle.player.proto.Proto.Message.Builder, com.shuffle.player.proto.Proto.MessageOrBuilder> messageBuilder_;
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional .Message message = 6;</code>
        */
       public boolean hasMessage() {
         return messageBuilder_ != null || message_ != null;
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional .Message message = 6;</code>
        */
       public com.shuffle.player.proto.Proto.Message getMessage() {
@@ -1937,6 +2167,10 @@ public final class Proto {
         }
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional .Message message = 6;</code>
        */
       public Builder setMessage(com.shuffle.player.proto.Proto.Message value) {
@@ -1953,6 +2187,10 @@ public final class Proto {
         return this;
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional .Message message = 6;</code>
        */
       public Builder setMessage(
@@ -1967,6 +2205,10 @@ public final class Proto {
         return this;
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional .Message message = 6;</code>
        */
       public Builder mergeMessage(com.shuffle.player.proto.Proto.Message value) {
@@ -1985,6 +2227,10 @@ public final class Proto {
         return this;
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional .Message message = 6;</code>
        */
       public Builder clearMessage() {
@@ -1999,6 +2245,10 @@ public final class Proto {
         return this;
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional .Message message = 6;</code>
        */
       public com.shuffle.player.proto.Proto.Message.Builder getMessageBuilder() {
@@ -2007,6 +2257,10 @@ public final class Proto {
         return getMessageFieldBuilder().getBuilder();
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional .Message message = 6;</code>
        */
       public com.shuffle.player.proto.Proto.MessageOrBuilder getMessageOrBuilder() {
@@ -2018,6 +2272,10 @@ public final class Proto {
         }
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional .Message message = 6;</code>
        */
       private com.google.protobuf.SingleFieldBuilder<
@@ -2033,6 +2291,344 @@ public final class Proto {
         }
         return messageBuilder_;
       }
+
+      private int version_ ;
+      /**
+       * <code>optional uint32 version = 7;</code>
+       */
+      public int getVersion() {
+        return version_;
+      }
+      /**
+       * <code>optional uint32 version = 7;</code>
+       */
+      public Builder setVersion(int value) {
+        
+        version_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional uint32 version = 7;</code>
+       */
+      public Builder clearVersion() {
+        
+        version_ = 0;
+        onChanged();
+        return this;
+      }
+
+      private java.util.List<com.shuffle.player.proto.Proto.Atom> atoms_ =
+        java.util.Collections.emptyList();
+      private void ensureAtomsIsMutable() {
+        if (!((bitField0_ & 0x00000080) == 0x00000080)) {
+          atoms_ = new java.util.ArrayList<com.shuffle.player.proto.Proto.Atom>(atoms_);
+          bitField0_ |= 0x00000080;
+         }
+      }
+
+      private com.google.protobuf.RepeatedFieldBuilder<
+          com.shuffle.player.proto.Proto.Atom, com.shuffle.player.proto.Proto.Atom.Builder, com.shuffle.player.proto.Proto.AtomOrBuilder> atomsBuilder_;
+
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>repeated .Atom atoms = 8;</code>
+       */
+      public java.util.List<com.shuffle.player.proto.Proto.Atom> getAtomsList() {
+        if (atomsBuilder_ == null) {
+          return java.util.Collections.unmodifiableList(atoms_);
+        } else {
+          return atomsBuilder_.getMessageList();
+        }
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>repeated .Atom atoms = 8;</code>
+       */
+      public int getAtomsCount() {
+        if (atomsBuilder_ == null) {
+          return atoms_.size();
+        } else {
+          return atomsBuilder_.getCount();
+        }
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>repeated .Atom atoms = 8;</code>
+       */
+      public com.shuffle.player.proto.Proto.Atom getAtoms(int index) {
+        if (atomsBuilder_ == null) {
+          return atoms_.get(index);
+        } else {
+          return atomsBuilder_.getMessage(index);
+        }
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>repeated .Atom atoms = 8;</code>
+       */
+      public Builder setAtoms(
+          int index, com.shuffle.player.proto.Proto.Atom value) {
+        if (atomsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureAtomsIsMutable();
+          atoms_.set(index, value);
+          onChanged();
+        } else {
+          atomsBuilder_.setMessage(index, value);
+        }
+        return this;
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>repeated .Atom atoms = 8;</code>
+       */
+      public Builder setAtoms(
+          int index, com.shuffle.player.proto.Proto.Atom.Builder builderForValue) {
+        if (atomsBuilder_ == null) {
+          ensureAtomsIsMutable();
+          atoms_.set(index, builderForValue.build());
+          onChanged();
+        } else {
+          atomsBuilder_.setMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>repeated .Atom atoms = 8;</code>
+       */
+      public Builder addAtoms(com.shuffle.player.proto.Proto.Atom value) {
+        if (atomsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureAtomsIsMutable();
+          atoms_.add(value);
+          onChanged();
+        } else {
+          atomsBuilder_.addMessage(value);
+        }
+        return this;
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>repeated .Atom atoms = 8;</code>
+       */
+      public Builder addAtoms(
+          int index, com.shuffle.player.proto.Proto.Atom value) {
+        if (atomsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureAtomsIsMutable();
+          atoms_.add(index, value);
+          onChanged();
+        } else {
+          atomsBuilder_.addMessage(index, value);
+        }
+        return this;
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>repeated .Atom atoms = 8;</code>
+       */
+      public Builder addAtoms(
+          com.shuffle.player.proto.Proto.Atom.Builder builderForValue) {
+        if (atomsBuilder_ == null) {
+          ensureAtomsIsMutable();
+          atoms_.add(builderForValue.build());
+          onChanged();
+        } else {
+          atomsBuilder_.addMessage(builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>repeated .Atom atoms = 8;</code>
+       */
+      public Builder addAtoms(
+          int index, com.shuffle.player.proto.Proto.Atom.Builder builderForValue) {
+        if (atomsBuilder_ == null) {
+          ensureAtomsIsMutable();
+          atoms_.add(index, builderForValue.build());
+          onChanged();
+        } else {
+          atomsBuilder_.addMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>repeated .Atom atoms = 8;</code>
+       */
+      public Builder addAllAtoms(
+          java.lang.Iterable<? extends com.shuffle.player.proto.Proto.Atom> values) {
+        if (atomsBuilder_ == null) {
+          ensureAtomsIsMutable();
+          com.google.protobuf.AbstractMessageLite.Builder.addAll(
+              values, atoms_);
+          onChanged();
+        } else {
+          atomsBuilder_.addAllMessages(values);
+        }
+        return this;
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>repeated .Atom atoms = 8;</code>
+       */
+      public Builder clearAtoms() {
+        if (atomsBuilder_ == null) {
+          atoms_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000080);
+          onChanged();
+        } else {
+          atomsBuilder_.clear();
+        }
+        return this;
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>repeated .Atom atoms = 8;</code>
+       */
+      public Builder removeAtoms(int index) {
+        if (atomsBuilder_ == null) {
+          ensureAtomsIsMutable();
+          atoms_.remove(index);
+          onChanged();
+        } else {
+          atomsBuilder_.remove(index);
+        }
+        return this;
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>repeated .Atom atoms = 8;</code>
+       */
+      public com.shuffle.player.proto.Proto.Atom.Builder getAtomsBuilder(
+          int index) {
+        return getAtomsFieldBuilder().getBuilder(index);
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>repeated .Atom atoms = 8;</code>
+       */
+      public com.shuffle.player.proto.Proto.AtomOrBuilder getAtomsOrBuilder(
+          int index) {
+        if (atomsBuilder_ == null) {
+          return atoms_.get(index);  } else {
+          return atomsBuilder_.getMessageOrBuilder(index);
+        }
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>repeated .Atom atoms = 8;</code>
+       */
+      public java.util.List<? extends com.shuffle.player.proto.Proto.AtomOrBuilder> 
+           getAtomsOrBuilderList() {
+        if (atomsBuilder_ != null) {
+          return atomsBuilder_.getMessageOrBuilderList();
+        } else {
+          return java.util.Collections.unmodifiableList(atoms_);
+        }
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>repeated .Atom atoms = 8;</code>
+       */
+      public com.shuffle.player.proto.Proto.Atom.Builder addAtomsBuilder() {
+        return getAtomsFieldBuilder().addBuilder(
+            com.shuffle.player.proto.Proto.Atom.getDefaultInstance());
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>repeated .Atom atoms = 8;</code>
+       */
+      public com.shuffle.player.proto.Proto.Atom.Builder addAtomsBuilder(
+          int index) {
+        return getAtomsFieldBuilder().addBuilder(
+            index, com.shuffle.player.proto.Proto.Atom.getDefaultInstance());
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>repeated .Atom atoms = 8;</code>
+       */
+      public java.util.List<com.shuffle.player.proto.Proto.Atom.Builder> 
+           getAtomsBuilderList() {
+        return getAtomsFieldBuilder().getBuilderList();
+      }
+      private com.google.protobuf.RepeatedFieldBuilder<
+          com.shuffle.player.proto.Proto.Atom, com.shuffle.player.proto.Proto.Atom.Builder, com.shuffle.player.proto.Proto.AtomOrBuilder> 
+          getAtomsFieldBuilder() {
+        if (atomsBuilder_ == null) {
+          atomsBuilder_ = new com.google.protobuf.RepeatedFieldBuilder<
+              com.shuffle.player.proto.Proto.Atom, com.shuffle.player.proto.Proto.Atom.Builder, com.shuffle.player.proto.Proto.AtomOrBuilder>(
+                  atoms_,
+                  ((bitField0_ & 0x00000080) == 0x00000080),
+                  getParentForChildren(),
+                  isClean());
+          atoms_ = null;
+        }
+        return atomsBuilder_;
+      }
       public final Builder setUnknownFields(
           final com.google.protobuf.UnknownFieldSet unknownFields) {
         return this;
@@ -3473,121 +4069,1502 @@ public final class Proto {
         return blameBuilder_;
       }
 
-      private com.shuffle.player.proto.Proto.Message next_ = null;
+      private com.shuffle.player.proto.Proto.Message next_ = null;
+      private com.google.protobuf.SingleFieldBuilder<
+          com.shuffle.player.proto.Proto.Message, com.shuffle.player.proto.Proto.Message.Builder, com.shuffle.player.proto.Proto.MessageOrBuilder> nextBuilder_;
+      /**
+       * <code>optional .Message next = 7;</code>
+       */
+      public boolean hasNext() {
+        return nextBuilder_ != null || next_ != null;
+      }
+      /**
+       * <code>optional .Message next = 7;</code>
+       */
+      public com.shuffle.player.proto.Proto.Message getNext() {
+        if (nextBuilder_ == null) {
+          return next_ == null ? com.shuffle.player.proto.Proto.Message.getDefaultInstance() : next_;
+        } else {
+          return nextBuilder_.getMessage();
+        }
+      }
+      /**
+       * <code>optional .Message next = 7;</code>
+       */
+      public Builder setNext(com.shuffle.player.proto.Proto.Message value) {
+        if (nextBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          next_ = value;
+          onChanged();
+        } else {
+          nextBuilder_.setMessage(value);
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .Message next = 7;</code>
+       */
+      public Builder setNext(
+          com.shuffle.player.proto.Proto.Message.Builder builderForValue) {
+        if (nextBuilder_ == null) {
+          next_ = builderForValue.build();
+          onChanged();
+        } else {
+          nextBuilder_.setMessage(builderForValue.build());
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .Message next = 7;</code>
+       */
+      public Builder mergeNext(com.shuffle.player.proto.Proto.Message value) {
+        if (nextBuilder_ == null) {
+          if (next_ != null) {
+            next_ =
+              com.shuffle.player.proto.Proto.Message.newBuilder(next_).mergeFrom(value).buildPartial();
+          } else {
+            next_ = value;
+          }
+          onChanged();
+        } else {
+          nextBuilder_.mergeFrom(value);
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .Message next = 7;</code>
+       */
+      public Builder clearNext() {
+        if (nextBuilder_ == null) {
+          next_ = null;
+          onChanged();
+        } else {
+          next_ = null;
+          nextBuilder_ = null;
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .Message next = 7;</code>
+       */
+      public com.shuffle.player.proto.Proto.Message.Builder getNextBuilder() {
+        
+        onChanged();
+        return getNextFieldBuilder().getBuilder();
+      }
+      /**
+       * <code>optional .Message next = 7;</code>
+       */
+      public com.shuffle.player.proto.Proto.MessageOrBuilder getNextOrBuilder() {
+        if (nextBuilder_ != null) {
+          return nextBuilder_.getMessageOrBuilder();
+        } else {
+          return next_ == null ?
+              com.shuffle.player.proto.Proto.Message.getDefaultInstance() : next_;
+        }
+      }
+      /**
+       * <code>optional .Message next = 7;</code>
+       */
+      private com.google.protobuf.SingleFieldBuilder<
+          com.shuffle.player.proto.Proto.Message, com.shuffle.player.proto.Proto.Message.Builder, com.shuffle.player.proto.Proto.MessageOrBuilder> 
+          getNextFieldBuilder() {
+        if (nextBuilder_ == null) {
+          nextBuilder_ = new com.google.protobuf.SingleFieldBuilder<
+              com.shuffle.player.proto.Proto.Message, com.shuffle.player.proto.Proto.Message.Builder, com.shuffle.player.proto.Proto.MessageOrBuilder>(
+                  getNext(),
+                  getParentForChildren(),
+                  isClean());
+          next_ = null;
+        }
+        return nextBuilder_;
+      }
+      public final Builder setUnknownFields(
+          final com.google.protobuf.UnknownFieldSet unknownFields) {
+        return this;
+      }
+
+      public final Builder mergeUnknownFields(
+          final com.google.protobuf.UnknownFieldSet unknownFields) {
+        return this;
+      }
+
+
+      // @@protoc_insertion_point(builder_scope:Message)
+    }
+
+    // @@protoc_insertion_point(class_scope:Message)
+    private static final com.shuffle.player.proto.Proto.Message DEFAULT_INSTANCE;
+    static {
+      DEFAULT_INSTANCE = new com.shuffle.player.proto.Proto.Message();
+    }
+
+    public static com.shuffle.player.proto.Proto.Message getDefaultInstance() {
+      return DEFAULT_INSTANCE;
+    }
+
+    private static final com.google.protobuf.Parser<Message>
+        PARSER = new com.google.protobuf.AbstractParser<Message>() {
+      public Message parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+          return new Message(input, extensionRegistry);
+      }
+    };
+
+    public static com.google.protobuf.Parser<Message> parser() {
+      return PARSER;
+    }
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<Message> getParserForType() {
+      return PARSER;
+    }
+
+    public com.shuffle.player.proto.Proto.Message getDefaultInstanceForType() {
+      return DEFAULT_INSTANCE;
+    }
+
+  }
+
+  public interface AtomOrBuilder extends
+      // @@protoc_insertion_point(interface_extends:Atom)
+      com.google.protobuf.MessageOrBuilder {
+
+    /**
+     * <code>optional .Address address = 1;</code>
+     */
+    boolean hasAddress();
+    /**
+     * <code>optional .Address address = 1;</code>
+     */
+    com.shuffle.player.proto.Proto.Address getAddress();
+    /**
+     * <code>optional .Address address = 1;</code>
+     */
+    com.shuffle.player.proto.Proto.AddressOrBuilder getAddressOrBuilder();
+
+    /**
+     * <code>optional .EncryptionKey key = 2;</code>
+     */
+    boolean hasKey();
+    /**
+     * <code>optional .EncryptionKey key = 2;</code>
+     */
+    com.shuffle.player.proto.Proto.EncryptionKey getKey();
+    /**
+     * <code>optional .EncryptionKey key = 2;</code>
+     */
+    com.shuffle.player.proto.Proto.EncryptionKeyOrBuilder getKeyOrBuilder();
+
+    /**
+     * <code>optional .Hash hash = 3;</code>
+     */
+    boolean hasHash();
+    /**
+     * <code>optional .Hash hash = 3;</code>
+     */
+    com.shuffle.player.proto.Proto.Hash getHash();
+    /**
+     * <code>optional .Hash hash = 3;</code>
+     */
+    com.shuffle.player.proto.Proto.HashOrBuilder getHashOrBuilder();
+
+    /**
+     * <code>optional .Signature signature = 4;</code>
+     */
+    boolean hasSignature();
+    /**
+     * <code>optional .Signature signature = 4;</code>
+     */
+    com.shuffle.player.proto.Proto.Signature getSignature();
+    /**
+     * <code>optional .Signature signature = 4;</code>
+     */
+    com.shuffle.player.proto.Proto.SignatureOrBuilder getSignatureOrBuilder();
+
+    /**
+     * <code>optional string str = 5;</code>
+     */
+    java.lang.String getStr();
+    /**
+     * <code>optional string str = 5;</code>
+     */
+    com.google.protobuf.ByteString
+        getStrBytes();
+
+    /**
+     * <code>optional .Blame blame = 6;</code>
+     */
+    boolean hasBlame();
+    /**
+     * <code>optional .Blame blame = 6;</code>
+     */
+    com.shuffle.player.proto.Proto.Blame getBlame();
+    /**
+     * <code>optional .Blame blame = 6;</code>
+     */
+    com.shuffle.player.proto.Proto.BlameOrBuilder getBlameOrBuilder();
+  }
+  /**
+   * <pre>
+   * Version 2 of the wire format puts a flat list of atoms in the packet
+   * rather than a nested chain of Messages.
+   * </pre>
+   *
+   * Protobuf type {@code Atom}
+   */
+  public  static final class Atom extends
+      com.google.protobuf.GeneratedMessage implements
+      // @@protoc_insertion_point(message_implements:Atom)
+      AtomOrBuilder {
+    // Use Atom.newBuilder() to construct.
+    private Atom(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+    }
+    private Atom() {
+      str_ = "";
+    }
+
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+    getUnknownFields() {
+      return com.google.protobuf.UnknownFieldSet.getDefaultInstance();
+    }
+    private Atom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      this();
+      int mutable_bitField0_ = 0;
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!input.skipField(tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              com.shuffle.player.proto.Proto.Address.Builder subBuilder = null;
+              if (address_ != null) {
+                subBuilder = address_.toBuilder();
+              }
+              address_ = input.readMessage(com.shuffle.player.proto.Proto.Address.parser(), extensionRegistry);
+              if (subBuilder != null) {
+                subBuilder.mergeFrom(address_);
+                address_ = subBuilder.buildPartial();
+              }
+
+              break;
+            }
+            case 18: {
+              com.shuffle.player.proto.Proto.EncryptionKey.Builder subBuilder = null;
+              if (key_ != null) {
+                subBuilder = key_.toBuilder();
+              }
+              key_ = input.readMessage(com.shuffle.player.proto.Proto.EncryptionKey.parser(), extensionRegistry);
+              if (subBuilder != null) {
+                subBuilder.mergeFrom(key_);
+                key_ = subBuilder.buildPartial();
+              }
+
+              break;
+            }
+            case 26: {
+              com.shuffle.player.proto.Proto.Hash.Builder subBuilder = null;
+              if (hash_ != null) {
+                subBuilder = hash_.toBuilder();
+              }
+              hash_ = input.readMessage(com.shuffle.player.proto.Proto.Hash.parser(), extensionRegistry);
+              if (subBuilder != null) {
+                subBuilder.mergeFrom(hash_);
+                hash_ = subBuilder.buildPartial();
+              }
+
+              break;
+            }
+            case 34: {
+              com.shuffle.player.proto.Proto.Signature.Builder subBuilder = null;
+              if (signature_ != null) {
+                subBuilder = signature_.toBuilder();
+              }
+              signature_ = input.readMessage(com.shuffle.player.proto.Proto.Signature.parser(), extensionRegistry);
+              if (subBuilder != null) {
+                subBuilder.mergeFrom(signature_);
+                signature_ = subBuilder.buildPartial();
+              }
+
+              break;
+            }
+            case 42: {
+              java.lang.String s = input.readStringRequireUtf8();
+
+              str_ = s;
+              break;
+            }
+            case 50: {
+              com.shuffle.player.proto.Proto.Blame.Builder subBuilder = null;
+              if (blame_ != null) {
+                subBuilder = blame_.toBuilder();
+              }
+              blame_ = input.readMessage(com.shuffle.player.proto.Proto.Blame.parser(), extensionRegistry);
+              if (subBuilder != null) {
+                subBuilder.mergeFrom(blame_);
+                blame_ = subBuilder.buildPartial();
+              }
+
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e).setUnfinishedMessage(this);
+      } finally {
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return com.shuffle.player.proto.Proto.internal_static_Atom_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return com.shuffle.player.proto.Proto.internal_static_Atom_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.shuffle.player.proto.Proto.Atom.class, com.shuffle.player.proto.Proto.Atom.Builder.class);
+    }
+
+    public static final int ADDRESS_FIELD_NUMBER = 1;
+    private com.shuffle.player.proto.Proto.Address address_;
+    /**
+     * <code>optional .Address address = 1;</code>
+     */
+    public boolean hasAddress() {
+      return address_ != null;
+    }
+    /**
+     * <code>optional .Address address = 1;</code>
+     */
+    public com.shuffle.player.proto.Proto.Address getAddress() {
+      return address_ == null ? com.shuffle.player.proto.Proto.Address.getDefaultInstance() : address_;
+    }
+    /**
+     * <code>optional .Address address = 1;</code>
+     */
+    public com.shuffle.player.proto.Proto.AddressOrBuilder getAddressOrBuilder() {
+      return getAddress();
+    }
+
+    public static final int KEY_FIELD_NUMBER = 2;
+    private com.shuffle.player.proto.Proto.EncryptionKey key_;
+    /**
+     * <code>optional .EncryptionKey key = 2;</code>
+     */
+    public boolean hasKey() {
+      return key_ != null;
+    }
+    /**
+     * <code>optional .EncryptionKey key = 2;</code>
+     */
+    public com.shuffle.player.proto.Proto.EncryptionKey getKey() {
+      return key_ == null ? com.shuffle.player.proto.Proto.EncryptionKey.getDefaultInstance() : key_;
+    }
+    /**
+     * <code>optional .EncryptionKey key = 2;</code>
+     */
+    public com.shuffle.player.proto.Proto.EncryptionKeyOrBuilder getKeyOrBuilder() {
+      return getKey();
+    }
+
+    public static final int HASH_FIELD_NUMBER = 3;
+    private com.shuffle.player.proto.Proto.Hash hash_;
+    /**
+     * <code>optional .Hash hash = 3;</code>
+     */
+    public boolean hasHash() {
+      return hash_ != null;
+    }
+    /**
+     * <code>optional .Hash hash = 3;</code>
+     */
+    public com.shuffle.player.proto.Proto.Hash getHash() {
+      return hash_ == null ? com.shuffle.player.proto.Proto.Hash.getDefaultInstance() : hash_;
+    }
+    /**
+     * <code>optional .Hash hash = 3;</code>
+     */
+    public com.shuffle.player.proto.Proto.HashOrBuilder getHashOrBuilder() {
+      return getHash();
+    }
+
+    public static final int SIGNATURE_FIELD_NUMBER = 4;
+    private com.shuffle.player.proto.Proto.Signature signature_;
+    /**
+     * <code>optional .Signature signature = 4;</code>
+     */
+    public boolean hasSignature() {
+      return signature_ != null;
+    }
+    /**
+     * <code>optional .Signature signature = 4;</code>
+     */
+    public com.shuffle.player.proto.Proto.Signature getSignature() {
+      return signature_ == null ? com.shuffle.player.proto.Proto.Signature.getDefaultInstance() : signature_;
+    }
+    /**
+     * <code>optional .Signature signature = 4;</code>
+     */
+    public com.shuffle.player.proto.Proto.SignatureOrBuilder getSignatureOrBuilder() {
+      return getSignature();
+    }
+
+    public static final int STR_FIELD_NUMBER = 5;
+    private volatile java.lang.Object str_;
+    /**
+     * <code>optional string str = 5;</code>
+     */
+    public java.lang.String getStr() {
+      java.lang.Object ref = str_;
+      if (ref instanceof java.lang.String) {
+        return (java.lang.String) ref;
+      } else {
+        com.google.protobuf.ByteString bs = 
+            (com.google.protobuf.ByteString) ref;
+        java.lang.String s = bs.toStringUtf8();
+        str_ = s;
+        return s;
+      }
+    }
+    /**
+     * <code>optional string str = 5;</code>
+     */
+    public com.google.protobuf.ByteString
+        getStrBytes() {
+      java.lang.Object ref = str_;
+      if (ref instanceof java.lang.String) {
+        com.google.protobuf.ByteString b = 
+            com.google.protobuf.ByteString.copyFromUtf8(
+                (java.lang.String) ref);
+        str_ = b;
+        return b;
+      } else {
+        return (com.google.protobuf.ByteString) ref;
+      }
+    }
+
+    public static final int BLAME_FIELD_NUMBER = 6;
+    private com.shuffle.player.proto.Proto.Blame blame_;
+    /**
+     * <code>optional .Blame blame = 6;</code>
+     */
+    public boolean hasBlame() {
+      return blame_ != null;
+    }
+    /**
+     * <code>optional .Blame blame = 6;</code>
+     */
+    public com.shuffle.player.proto.Proto.Blame getBlame() {
+      return blame_ == null ? com.shuffle.player.proto.Proto.Blame.getDefaultInstance() : blame_;
+    }
+    /**
+     * <code>optional .Blame blame = 6;</code>
+     */
+    public com.shuffle.player.proto.Proto.BlameOrBuilder getBlameOrBuilder() {
+      return getBlame();
+    }
+
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized == 1) return true;
+      if (isInitialized == 0) return false;
+
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      if (address_ != null) {
+        output.writeMessage(1, getAddress());
+      }
+      if (key_ != null) {
+        output.writeMessage(2, getKey());
+      }
+      if (hash_ != null) {
+        output.writeMessage(3, getHash());
+      }
+      if (signature_ != null) {
+        output.writeMessage(4, getSignature());
+      }
+      if (!getStrBytes().isEmpty()) {
+        com.google.protobuf.GeneratedMessage.writeString(output, 5, str_);
+      }
+      if (blame_ != null) {
+        output.writeMessage(6, getBlame());
+      }
+    }
+
+    public int getSerializedSize() {
+      int size = memoizedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      if (address_ != null) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(1, getAddress());
+      }
+      if (key_ != null) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(2, getKey());
+      }
+      if (hash_ != null) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(3, getHash());
+      }
+      if (signature_ != null) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(4, getSignature());
+      }
+      if (!getStrBytes().isEmpty()) {
+        size += com.google.protobuf.GeneratedMessage.computeStringSize(5, str_);
+      }
+      if (blame_ != null) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(6, getBlame());
+      }
+      memoizedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    public static com.shuffle.player.proto.Proto.Atom parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.shuffle.player.proto.Proto.Atom parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.shuffle.player.proto.Proto.Atom parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.shuffle.player.proto.Proto.Atom parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.shuffle.player.proto.Proto.Atom parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return com.google.protobuf.GeneratedMessage
+          .parseWithIOException(PARSER, input);
+    }
+    public static com.shuffle.player.proto.Proto.Atom parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return com.google.protobuf.GeneratedMessage
+          .parseWithIOException(PARSER, input, extensionRegistry);
+    }
+    public static com.shuffle.player.proto.Proto.Atom parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return com.google.protobuf.GeneratedMessage
+          .parseDelimitedWithIOException(PARSER, input);
+    }
+    public static com.shuffle.player.proto.Proto.Atom parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return com.google.protobuf.GeneratedMessage
+          .parseDelimitedWithIOException(PARSER, input, extensionRegistry);
+    }
+    public static com.shuffle.player.proto.Proto.Atom parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return com.google.protobuf.GeneratedMessage
+          .parseWithIOException(PARSER, input);
+    }
+    public static com.shuffle.player.proto.Proto.Atom parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return com.google.protobuf.GeneratedMessage
+          .parseWithIOException(PARSER, input, extensionRegistry);
+    }
+
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder() {
+      return DEFAULT_INSTANCE.toBuilder();
+    }
+    public static Builder newBuilder(com.shuffle.player.proto.Proto.Atom prototype) {
+      return DEFAULT_INSTANCE.toBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() {
+      return this == DEFAULT_INSTANCE
+          ? new Builder() : new Builder().mergeFrom(this);
+    }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * <pre>
+     * Version 2 of the wire format puts a flat list of atoms in the packet
+     * rather than a nested chain of Messages.
+     * </pre>
+     *
+     * Protobuf type {@code Atom}
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder> implements
+        // @@protoc_insertion_point(builder_implements:Atom)
+        com.shuffle.player.proto.Proto.AtomOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return com.shuffle.player.proto.Proto.internal_static_Atom_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return com.shuffle.player.proto.Proto.internal_static_Atom_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.shuffle.player.proto.Proto.Atom.class, com.shuffle.player.proto.Proto.Atom.Builder.class);
+      }
+
+      // Construct using com.shuffle.player.proto.Proto.Atom.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+        }
+      }
+      public Builder clear() {
+        super.clear();
+        if (addressBuilder_ == null) {
+          address_ = null;
+        } else {
+          address_ = null;
+          addressBuilder_ = null;
+        }
+        if (keyBuilder_ == null) {
+          key_ = null;
+        } else {
+          key_ = null;
+          keyBuilder_ = null;
+        }
+        if (hashBuilder_ == null) {
+          hash_ = null;
+        } else {
+          hash_ = null;
+          hashBuilder_ = null;
+        }
+        if (signatureBuilder_ == null) {
+          signature_ = null;
+        } else {
+          signature_ = null;
+          signatureBuilder_ = null;
+        }
+        str_ = "";
+
+        if (blameBuilder_ == null) {
+          blame_ = null;
+        } else {
+          blame_ = null;
+          blameBuilder_ = null;
+        }
+        return this;
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return com.shuffle.player.proto.Proto.internal_static_Atom_descriptor;
+      }
+
+      public com.shuffle.player.proto.Proto.Atom getDefaultInstanceForType() {
+        return com.shuffle.player.proto.Proto.Atom.getDefaultInstance();
+      }
+
+      public com.shuffle.player.proto.Proto.Atom build() {
+        com.shuffle.player.proto.Proto.Atom result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public com.shuffle.player.proto.Proto.Atom buildPartial() {
+        com.shuffle.player.proto.Proto.Atom result = new com.shuffle.player.proto.Proto.Atom(this);
+        if (addressBuilder_ == null) {
+          result.address_ = address_;
+        } else {
+          result.address_ = addressBuilder_.build();
+        }
+        if (keyBuilder_ == null) {
+          result.key_ = key_;
+        } else {
+          result.key_ = keyBuilder_.build();
+        }
+        if (hashBuilder_ == null) {
+          result.hash_ = hash_;
+        } else {
+          result.hash_ = hashBuilder_.build();
+        }
+        if (signatureBuilder_ == null) {
+          result.signature_ = signature_;
+        } else {
+          result.signature_ = signatureBuilder_.build();
+        }
+        result.str_ = str_;
+        if (blameBuilder_ == null) {
+          result.blame_ = blame_;
+        } else {
+          result.blame_ = blameBuilder_.build();
+        }
+        onBuilt();
+        return result;
+      }
+
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof com.shuffle.player.proto.Proto.Atom) {
+          return mergeFrom((com.shuffle.player.proto.Proto.Atom)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(com.shuffle.player.proto.Proto.Atom other) {
+        if (other == com.shuffle.player.proto.Proto.Atom.getDefaultInstance()) return this;
+        if (other.hasAddress()) {
+          mergeAddress(other.getAddress());
+        }
+        if (other.hasKey()) {
+          mergeKey(other.getKey());
+        }
+        if (other.hasHash()) {
+          mergeHash(other.getHash());
+        }
+        if (other.hasSignature()) {
+          mergeSignature(other.getSignature());
+        }
+        if (!other.getStr().isEmpty()) {
+          str_ = other.str_;
+          onChanged();
+        }
+        if (other.hasBlame()) {
+          mergeBlame(other.getBlame());
+        }
+        onChanged();
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.shuffle.player.proto.Proto.Atom parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.shuffle.player.proto.Proto.Atom) e.getUnfinishedMessage();
+          throw e.unwrapIOException();
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+
+      private com.shuffle.player.proto.Proto.Address address_ = null;
+      private com.google.protobuf.SingleFieldBuilder<
+          com.shuffle.player.proto.Proto.Address, com.shuffle.player.proto.Proto.Address.Builder, com.shuffle.player.proto.Proto.AddressOrBuilder> addressBuilder_;
+      /**
+       * <code>optional .Address address = 1;</code>
+       */
+      public boolean hasAddress() {
+        return addressBuilder_ != null || address_ != null;
+      }
+      /**
+       * <code>optional .Address address = 1;</code>
+       */
+      public com.shuffle.player.proto.Proto.Address getAddress() {
+        if (addressBuilder_ == null) {
+          return address_ == null ? com.shuffle.player.proto.Proto.Address.getDefaultInstance() : address_;
+        } else {
+          return addressBuilder_.getMessage();
+        }
+      }
+      /**
+       * <code>optional .Address address = 1;</code>
+       */
+      public Builder setAddress(com.shuffle.player.proto.Proto.Address value) {
+        if (addressBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          address_ = value;
+          onChanged();
+        } else {
+          addressBuilder_.setMessage(value);
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .Address address = 1;</code>
+       */
+      public Builder setAddress(
+          com.shuffle.player.proto.Proto.Address.Builder builderForValue) {
+        if (addressBuilder_ == null) {
+          address_ = builderForValue.build();
+          onChanged();
+        } else {
+          addressBuilder_.setMessage(builderForValue.build());
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .Address address = 1;</code>
+       */
+      public Builder mergeAddress(com.shuffle.player.proto.Proto.Address value) {
+        if (addressBuilder_ == null) {
+          if (address_ != null) {
+            address_ =
+              com.shuffle.player.proto.Proto.Address.newBuilder(address_).mergeFrom(value).buildPartial();
+          } else {
+            address_ = value;
+          }
+          onChanged();
+        } else {
+          addressBuilder_.mergeFrom(value);
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .Address address = 1;</code>
+       */
+      public Builder clearAddress() {
+        if (addressBuilder_ == null) {
+          address_ = null;
+          onChanged();
+        } else {
+          address_ = null;
+          addressBuilder_ = null;
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .Address address = 1;</code>
+       */
+      public com.shuffle.player.proto.Proto.Address.Builder getAddressBuilder() {
+        
+        onChanged();
+        return getAddressFieldBuilder().getBuilder();
+      }
+      /**
+       * <code>optional .Address address = 1;</code>
+       */
+      public com.shuffle.player.proto.Proto.AddressOrBuilder getAddressOrBuilder() {
+        if (addressBuilder_ != null) {
+          return addressBuilder_.getMessageOrBuilder();
+        } else {
+          return address_ == null ?
+              com.shuffle.player.proto.Proto.Address.getDefaultInstance() : address_;
+        }
+      }
+      /**
+       * <code>optional .Address address = 1;</code>
+       */
+      private com.google.protobuf.SingleFieldBuilder<
+          com.shuffle.player.proto.Proto.Address, com.shuffle.player.proto.Proto.Address.Builder, com.shuffle.player.proto.Proto.AddressOrBuilder> 
+          getAddressFieldBuilder() {
+        if (addressBuilder_ == null) {
+          addressBuilder_ = new com.google.protobuf.SingleFieldBuilder<
+              com.shuffle.player.proto.Proto.Address, com.shuffle.player.proto.Proto.Address.Builder, com.shuffle.player.proto.Proto.AddressOrBuilder>(
+                  getAddress(),
+                  getParentForChildren(),
+                  isClean());
+          address_ = null;
+        }
+        return addressBuilder_;
+      }
+
+      private com.shuffle.player.proto.Proto.EncryptionKey key_ = null;
+      private com.google.protobuf.SingleFieldBuilder<
+          com.shuffle.player.proto.Proto.EncryptionKey, com.shuffle.player.proto.Proto.EncryptionKey.Builder, com.shuffle.player.proto.Proto.EncryptionKeyOrBuilder> keyBuilder_;
+      /**
+       * <code>optional .EncryptionKey key = 2;</code>
+       */
+      public boolean hasKey() {
+        return keyBuilder_ != null || key_ != null;
+      }
+      /**
+       * <code>optional .EncryptionKey key = 2;</code>
+       */
+      public com.shuffle.player.proto.Proto.EncryptionKey getKey() {
+        if (keyBuilder_ == null) {
+          return key_ == null ? com.shuffle.player.proto.Proto.EncryptionKey.getDefaultInstance() : key_;
+        } else {
+          return keyBuilder_.getMessage();
+        }
+      }
+      /**
+       * <code>optional .EncryptionKey key = 2;</code>
+       */
+      public Builder setKey(com.shuffle.player.proto.Proto.EncryptionKey value) {
+        if (keyBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          key_ = value;
+          onChanged();
+        } else {
+          keyBuilder_.setMessage(value);
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .EncryptionKey key = 2;</code>
+       */
+      public Builder setKey(
+          com.shuffle.player.proto.Proto.EncryptionKey.Builder builderForValue) {
+        if (keyBuilder_ == null) {
+          key_ = builderForValue.build();
+          onChanged();
+        } else {
+          keyBuilder_.setMessage(builderForValue.build());
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .EncryptionKey key = 2;</code>
+       */
+      public Builder mergeKey(com.shuffle.player.proto.Proto.EncryptionKey value) {
+        if (keyBuilder_ == null) {
+          if (key_ != null) {
+            key_ =
+              com.shuffle.player.proto.Proto.EncryptionKey.newBuilder(key_).mergeFrom(value).buildPartial();
+          } else {
+            key_ = value;
+          }
+          onChanged();
+        } else {
+          keyBuilder_.mergeFrom(value);
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .EncryptionKey key = 2;</code>
+       */
+      public Builder clearKey() {
+        if (keyBuilder_ == null) {
+          key_ = null;
+          onChanged();
+        } else {
+          key_ = null;
+          keyBuilder_ = null;
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .EncryptionKey key = 2;</code>
+       */
+      public com.shuffle.player.proto.Proto.EncryptionKey.Builder getKeyBuilder() {
+        
+        onChanged();
+        return getKeyFieldBuilder().getBuilder();
+      }
+      /**
+       * <code>optional .EncryptionKey key = 2;</code>
+       */
+      public com.shuffle.player.proto.Proto.EncryptionKeyOrBuilder getKeyOrBuilder() {
+        if (keyBuilder_ != null) {
+          return keyBuilder_.getMessageOrBuilder();
+        } else {
+          return key_ == null ?
+              com.shuffle.player.proto.Proto.EncryptionKey.getDefaultInstance() : key_;
+        }
+      }
+      /**
+       * <code>optional .EncryptionKey key = 2;</code>
+       */
+      private com.google.protobuf.SingleFieldBuilder<
+          com.shuffle.player.proto.Proto.EncryptionKey, com.shuffle.player.proto.Proto.EncryptionKey.Builder, com.shuffle.player.proto.Proto.EncryptionKeyOrBuilder> 
+          getKeyFieldBuilder() {
+        if (keyBuilder_ == null) {
+          keyBuilder_ = new com.google.protobuf.SingleFieldBuilder<
+              com.shuffle.player.proto.Proto.EncryptionKey, com.shuffle.player.proto.Proto.EncryptionKey.Builder, com.shuffle.player.proto.Proto.EncryptionKeyOrBuilder>(
+                  getKey(),
+                  getParentForChildren(),
+                  isClean());
+          key_ = null;
+        }
+        return keyBuilder_;
+      }
+
+      private com.shuffle.player.proto.Proto.Hash hash_ = null;
+      private com.google.protobuf.SingleFieldBuilder<
+          com.shuffle.player.proto.Proto.Hash, com.shuffle.player.proto.Proto.Hash.Builder, com.shuffle.player.proto.Proto.HashOrBuilder> hashBuilder_;
+      /**
+       * <code>optional .Hash hash = 3;</code>
+       */
+      public boolean hasHash() {
+        return hashBuilder_ != null || hash_ != null;
+      }
+      /**
+       * <code>optional .Hash hash = 3;</code>
+       */
+      public com.shuffle.player.proto.Proto.Hash getHash() {
+        if (hashBuilder_ == null) {
+          return hash_ == null ? com.shuffle.player.proto.Proto.Hash.getDefaultInstance() : hash_;
+        } else {
+          return hashBuilder_.getMessage();
+        }
+      }
+      /**
+       * <code>optional .Hash hash = 3;</code>
+       */
+      public Builder setHash(com.shuffle.player.proto.Proto.Hash value) {
+        if (hashBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          hash_ = value;
+          onChanged();
+        } else {
+          hashBuilder_.setMessage(value);
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .Hash hash = 3;</code>
+       */
+      public Builder setHash(
+          com.shuffle.player.proto.Proto.Hash.Builder builderForValue) {
+        if (hashBuilder_ == null) {
+          hash_ = builderForValue.build();
+          onChanged();
+        } else {
+          hashBuilder_.setMessage(builderForValue.build());
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .Hash hash = 3;</code>
+       */
+      public Builder mergeHash(com.shuffle.player.proto.Proto.Hash value) {
+        if (hashBuilder_ == null) {
+          if (hash_ != null) {
+            hash_ =
+              com.shuffle.player.proto.Proto.Hash.newBuilder(hash_).mergeFrom(value).buildPartial();
+          } else {
+            hash_ = value;
+          }
+          onChanged();
+        } else {
+          hashBuilder_.mergeFrom(value);
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .Hash hash = 3;</code>
+       */
+      public Builder clearHash() {
+        if (hashBuilder_ == null) {
+          hash_ = null;
+          onChanged();
+        } else {
+          hash_ = null;
+          hashBuilder_ = null;
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .Hash hash = 3;</code>
+       */
+      public com.shuffle.player.proto.Proto.Hash.Builder getHashBuilder() {
+        
+        onChanged();
+        return getHashFieldBuilder().getBuilder();
+      }
+      /**
+       * <code>optional .Hash hash = 3;</code>
+       */
+      public com.shuffle.player.proto.Proto.HashOrBuilder getHashOrBuilder() {
+        if (hashBuilder_ != null) {
+          return hashBuilder_.getMessageOrBuilder();
+        } else {
+          return hash_ == null ?
+              com.shuffle.player.proto.Proto.Hash.getDefaultInstance() : hash_;
+        }
+      }
+      /**
+       * <code>optional .Hash hash = 3;</code>
+       */
+      private com.google.protobuf.SingleFieldBuilder<
+          com.shuffle.player.proto.Proto.Hash, com.shuffle.player.proto.Proto.Hash.Builder, com.shuffle.player.proto.Proto.HashOrBuilder> 
+          getHashFieldBuilder() {
+        if (hashBuilder_ == null) {
+          hashBuilder_ = new com.google.protobuf.SingleFieldBuilder<
+              com.shuffle.player.proto.Proto.Hash, com.shuffle.player.proto.Proto.Hash.Builder, com.shuffle.player.proto.Proto.HashOrBuilder>(
+                  getHash(),
+                  getParentForChildren(),
+                  isClean());
+          hash_ = null;
+        }
+        return hashBuilder_;
+      }
+
+      private com.shuffle.player.proto.Proto.Signature signature_ = null;
+      private com.google.protobuf.SingleFieldBuilder<
+          com.shuffle.player.proto.Proto.Signature, com.shuffle.player.proto.Proto.Signature.Builder, com.shuffle.player.proto.Proto.SignatureOrBuilder> signatureBuilder_;
+      /**
+       * <code>optional .Signature signature = 4;</code>
+       */
+      public boolean hasSignature() {
+        return signatureBuilder_ != null || signature_ != null;
+      }
+      /**
+       * <code>optional .Signature signature = 4;</code>
+       */
+      public com.shuffle.player.proto.Proto.Signature getSignature() {
+        if (signatureBuilder_ == null) {
+          return signature_ == null ? com.shuffle.player.proto.Proto.Signature.getDefaultInstance() : signature_;
+        } else {
+          return signatureBuilder_.getMessage();
+        }
+      }
+      /**
+       * <code>optional .Signature signature = 4;</code>
+       */
+      public Builder setSignature(com.shuffle.player.proto.Proto.Signature value) {
+        if (signatureBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          signature_ = value;
+          onChanged();
+        } else {
+          signatureBuilder_.setMessage(value);
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .Signature signature = 4;</code>
+       */
+      public Builder setSignature(
+          com.shuffle.player.proto.Proto.Signature.Builder builderForValue) {
+        if (signatureBuilder_ == null) {
+          signature_ = builderForValue.build();
+          onChanged();
+        } else {
+          signatureBuilder_.setMessage(builderForValue.build());
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .Signature signature = 4;</code>
+       */
+      public Builder mergeSignature(com.shuffle.player.proto.Proto.Signature value) {
+        if (signatureBuilder_ == null) {
+          if (signature_ != null) {
+            signature_ =
+              com.shuffle.player.proto.Proto.Signature.newBuilder(signature_).mergeFrom(value).buildPartial();
+          } else {
+            signature_ = value;
+          }
+          onChanged();
+        } else {
+          signatureBuilder_.mergeFrom(value);
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .Signature signature = 4;</code>
+       */
+      public Builder clearSignature() {
+        if (signatureBuilder_ == null) {
+          signature_ = null;
+          onChanged();
+        } else {
+          signature_ = null;
+          signatureBuilder_ = null;
+        }
+
+        return this;
+      }
+      /**
+       * <code>optional .Signature signature = 4;</code>
+       */
+      public com.shuffle.player.proto.Proto.Signature.Builder getSignatureBuilder() {
+        
+        onChanged();
+        return getSignatureFieldBuilder().getBuilder();
+      }
+      /**
+       * <code>optional .Signature signature = 4;</code>
+       */
+      public com.shuffle.player.proto.Proto.SignatureOrBuilder getSignatureOrBuilder() {
+        if (signatureBuilder_ != null) {
+          return signatureBuilder_.getMessageOrBuilder();
+        } else {
+          return signature_ == null ?
+              com.shuffle.player.proto.Proto.Signature.getDefaultInstance() : signature_;
+        }
+      }
+      /**
+       * <code>optional .Signature signature = 4;</code>
+       */
+      private com.google.protobuf.SingleFieldBuilder<
+          com.shuffle.player.proto.Proto.Signature, com.shuffle.player.proto.Proto.Signature.Builder, com.shuffle.player.proto.Proto.SignatureOrBuilder> 
+          getSignatureFieldBuilder() {
+        if (signatureBuilder_ == null) {
+          signatureBuilder_ = new com.google.protobuf.SingleFieldBuilder<
+              com.shuffle.player.proto.Proto.Signature, com.shuffle.player.proto.Proto.Signature.Builder, com.shuffle.player.proto.Proto.SignatureOrBuilder>(
+                  getSignature(),
+                  getParentForChildren(),
+                  isClean());
+          signature_ = null;
+        }
+        return signatureBuilder_;
+      }
+
+      private java.lang.Object str_ = "";
+      /**
+       * <code>optional string str = 5;</code>
+       */
+      public java.lang.String getStr() {
+        java.lang.Object ref = str_;
+        if (!(ref instanceof java.lang.String)) {
+          com.google.protobuf.ByteString bs =
+              (com.google.protobuf.ByteString) ref;
+          java.lang.String s = bs.toStringUtf8();
+          str_ = s;
+          return s;
+        } else {
+          return (java.lang.String) ref;
+        }
+      }
+      /**
+       * <code>optional string str = 5;</code>
+       */
+      public com.google.protobuf.ByteString
+          getStrBytes() {
+        java.lang.Object ref = str_;
+        if (ref instanceof String) {
+          com.google.protobuf.ByteString b = 
+              com.google.protobuf.ByteString.copyFromUtf8(
+                  (java.lang.String) ref);
+          str_ = b;
+          return b;
+        } else {
+          return (com.google.protobuf.ByteString) ref;
+        }
+      }
+      /**
+       * <code>optional string str = 5;</code>
+       */
+      public Builder setStr(
+          java.lang.String value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  
+        str_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional string str = 5;</code>
+       */
+      public Builder clearStr() {
+        
+        str_ = getDefaultInstance().getStr();
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional string str = 5;</code>
+       */
+      public Builder setStrBytes(
+          com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  checkByteStringIsUtf8(value);
+        
+        str_ = value;
+        onChanged();
+        return this;
+      }
+
+      private com.shuffle.player.proto.Proto.Blame blame_ = null;
       private com.google.protobuf.SingleFieldBuilder<
-          com.shuffle.player.proto.Proto.Message, com.shuffle.player.proto.Proto.Message.Builder, com.shuffle.player.proto.Proto.MessageOrBuilder> nextBuilder_;
+          com.shuffle.player.proto.Proto.Blame, com.shuffle.player.proto.Proto.Blame.Builder, com.shuffle.player.proto.Proto.BlameOrBuilder> blameBuilder_;
       /**
-       * <code>optional .Message next = 7;</code>
+       * <code>optional .Blame blame = 6;</code>
        */
-      public boolean hasNext() {
-        return nextBuilder_ != null || next_ != null;
+      public boolean hasBlame() {
+        return blameBuilder_ != null || blame_ != null;
       }
       /**
-       * <code>optional .Message next = 7;</code>
+       * <code>optional .Blame blame = 6;</code>
        */
-      public com.shuffle.player.proto.Proto.Message getNext() {
-        if (nextBuilder_ == null) {
-          return next_ == null ? com.shuffle.player.proto.Proto.Message.getDefaultInstance() : next_;
+      public com.shuffle.player.proto.Proto.Blame getBlame() {
+        if (blameBuilder_ == null) {
+          return blame_ == null ? com.shuffle.player.proto.Proto.Blame.getDefaultInstance() : blame_;
         } else {
-          return nextBuilder_.getMessage();
+          return blameBuilder_.getMessage();
         }
       }
       /**
-       * <code>optional .Message next = 7;</code>
+       * <code>optional .Blame blame = 6;</code>
        */
-      public Builder setNext(com.shuffle.player.proto.Proto.Message value) {
-        if (nextBuilder_ == null) {
+      public Builder setBlame(com.shuffle.player.proto.Proto.Blame value) {
+        if (blameBuilder_ == null) {
           if (value == null) {
             throw new NullPointerException();
           }
-          next_ = value;
+          blame_ = value;
           onChanged();
         } else {
-          nextBuilder_.setMessage(value);
+          blameBuilder_.setMessage(value);
         }
 
         return this;
       }
       /**
-       * <code>optional .Message next = 7;</code>
+       * <code>optional .Blame blame = 6;</code>
        */
-      public Builder setNext(
-          com.shuffle.player.proto.Proto.Message.Builder builderForValue) {
-        if (nextBuilder_ == null) {
-          next_ = builderForValue.build();
+      public Builder setBlame(
+          com.shuffle.player.proto.Proto.Blame.Builder builderForValue) {
+        if (blameBuilder_ == null) {
+          blame_ = builderForValue.build();
           onChanged();
         } else {
-          nextBuilder_.setMessage(builderForValue.build());
+          blameBuilder_.setMessage(builderForValue.build());
         }
 
         return this;
       }
       /**
-       * <code>optional .Message next = 7;</code>
+       * <code>optional .Blame blame = 6;</code>
        */
-      public Builder mergeNext(com.shuffle.player.proto.Proto.Message value) {
-        if (nextBuilder_ == null) {
-          if (next_ != null) {
-            next_ =
-              com.shuffle.player.proto.Proto.Message.newBuilder(next_).mergeFrom(value).buildPartial();
+      public Builder mergeBlame(com.shuffle.player.proto.Proto.Blame value) {
+        if (blameBuilder_ == null) {
+          if (blame_ != null) {
+            blame_ =
+              com.shuffle.player.proto.Proto.Blame.newBuilder(blame_).mergeFrom(value).buildPartial();
           } else {
-            next_ = value;
+            blame_ = value;
           }
           onChanged();
         } else {
-          nextBuilder_.mergeFrom(value);
+          blameBuilder_.mergeFrom(value);
         }
 
         return this;
       }
       /**
-       * <code>optional .Message next = 7;</code>
+       * <code>optional .Blame blame = 6;</code>
        */
-      public Builder clearNext() {
-        if (nextBuilder_ == null) {
-          next_ = null;
+      public Builder clearBlame() {
+        if (blameBuilder_ == null) {
+          blame_ = null;
           onChanged();
         } else {
-          next_ = null;
-          nextBuilder_ = null;
+          blame_ = null;
+          blameBuilder_ = null;
         }
 
         return this;
       }
       /**
-       * <code>optional .Message next = 7;</code>
+       * <code>optional .Blame blame = 6;</code>
        */
-      public com.shuffle.player.proto.Proto.Message.Builder getNextBuilder() {
+      public com.shuffle.player.proto.Proto.Blame.Builder getBlameBuilder() {
         
         onChanged();
-        return getNextFieldBuilder().getBuilder();
+        return getBlameFieldBuilder().getBuilder();
       }
       /**
-       * <code>optional .Message next = 7;</code>
+       * <code>optional .Blame blame = 6;</code>
        */
-      public com.shuffle.player.proto.Proto.MessageOrBuilder getNextOrBuilder() {
-        if (nextBuilder_ != null) {
-          return nextBuilder_.getMessageOrBuilder();
+      public com.shuffle.player.proto.Proto.BlameOrBuilder getBlameOrBuilder() {
+        if (blameBuilder_ != null) {
+          return blameBuilder_.getMessageOrBuilder();
         } else {
-          return next_ == null ?
-              com.shuffle.player.proto.Proto.Message.getDefaultInstance() : next_;
+          return blame_ == null ?
+              com.shuffle.player.proto.Proto.Blame.getDefaultInstance() : blame_;
         }
       }
       /**
-       * <code>optional .Message next = 7;</code>
+       * <code>optional .Blame blame = 6;</code>
        */
       private com.google.protobuf.SingleFieldBuilder<
-          com.shuffle.player.proto.Proto.Message, com.shuffle.player.proto.Proto.Message.Builder, com.shuffle.player.proto.Proto.MessageOrBuilder> 
-          getNextFieldBuilder() {
-        if (nextBuilder_ == null) {
-          nextBuilder_ = new com.google.protobuf.SingleFieldBuilder<
-              com.shuffle.player.proto.Proto.Message, com.shuffle.player.proto.Proto.Message.Builder, com.shuffle.player.proto.Proto.MessageOrBuilder>(
-                  getNext(),
+          com.shuffle.player.proto.Proto.Blame, com.shuffle.player.proto.Proto.Blame.Builder, com.shuffle.player.proto.Proto.BlameOrBuilder> 
+          getBlameFieldBuilder() {
+        if (blameBuilder_ == null) {
+          blameBuilder_ = new com.google.protobuf.SingleFieldBuilder<
+              com.shuffle.player.proto.Proto.Blame, com.shuffle.player.proto.Proto.Blame.Builder, com.shuffle.player.proto.Proto.BlameOrBuilder>(
+                  getBlame(),
                   getParentForChildren(),
                   isClean());
-          next_ = null;
+          blame_ = null;
         }
-        return nextBuilder_;
+        return blameBuilder_;
       }
       public final Builder setUnknownFields(
           final com.google.protobuf.UnknownFieldSet unknownFields) {
@@ -3600,39 +5577,39 @@ public final class Proto {
       }
 
 
-      // @@protoc_insertion_point(builder_scope:Message)
+      // @@protoc_insertion_point(builder_scope:Atom)
     }
 
-    // @@protoc_insertion_point(class_scope:Message)
-    private static final com.shuffle.player.proto.Proto.Message DEFAULT_INSTANCE;
+    // @@protoc_insertion_point(class_scope:Atom)
+    private static final com.shuffle.player.proto.Proto.Atom DEFAULT_INSTANCE;
     static {
-      DEFAULT_INSTANCE = new com.shuffle.player.proto.Proto.Message();
+      DEFAULT_INSTANCE = new com.shuffle.player.proto.Proto.Atom();
     }
 
-    public static com.shuffle.player.proto.Proto.Message getDefaultInstance() {
+    public static com.shuffle.player.proto.Proto.Atom getDefaultInstance() {
       return DEFAULT_INSTANCE;
     }
 
-    private static final com.google.protobuf.Parser<Message>
-        PARSER = new com.google.protobuf.AbstractParser<Message>() {
-      public Message parsePartialFrom(
+    private static final com.google.protobuf.Parser<Atom>
+        PARSER = new com.google.protobuf.AbstractParser<Atom>() {
+      public Atom parsePartialFrom(
           com.google.protobuf.CodedInputStream input,
           com.google.protobuf.ExtensionRegistryLite extensionRegistry)
           throws com.google.protobuf.InvalidProtocolBufferException {
-          return new Message(input, extensionRegistry);
+          return new Atom(input, extensionRegistry);
       }
     };
 
-    public static com.google.protobuf.Parser<Message> parser() {
+    public static com.google.protobuf.Parser<Atom> parser() {
       return PARSER;
     }
 
     @java.lang.Override
-    public com.google.protobuf.Parser<Message> getParserForType() {
+    public com.google.protobuf.Parser<Atom> getParserForType() {
       return PARSER;
     }
 
-    public com.shuffle.player.proto.Proto.Message getDefaultInstanceForType() {
+    public com.shuffle.player.proto.Proto.Atom getDefaultInstanceForType() {
       return DEFAULT_INSTANCE;
     }
 
@@ -3643,14 +5620,31 @@ public final class Proto {
       com.google.protobuf.MessageOrBuilder {
 
     /**
+     * <pre>
+     * Version 1.
+     * </pre>
+     *
      * <code>optional string address = 1;</code>
      */
     java.lang.String getAddress();
     /**
+     * <pre>
+     * Version 1.
+     * </pre>
+     *
      * <code>optional string address = 1;</code>
      */
     com.google.protobuf.ByteString
         getAddressBytes();
+
+    /**
+     * <pre>
+     * Version 2.
+     * </pre>
+     *
+     * <code>optional bytes encoded = 2;</code>
+     */
+    com.google.protobuf.ByteString getEncoded();
   }
   /**
    * Protobuf type {@code Address}
@@ -3665,6 +5659,7 @@ public final class Proto {
     }
     private Address() {
       address_ = "";
+      encoded_ = com.google.protobuf.ByteString.EMPTY;
     }
 
     @java.lang.Override
@@ -3698,6 +5693,11 @@ public final class Proto {
               address_ = s;
               break;
             }
+            case 18: {
+
+              encoded_ = input.readBytes();
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -3724,6 +5724,10 @@ public final class Proto {
     public static final int ADDRESS_FIELD_NUMBER = 1;
     private volatile java.lang.Object address_;
     /**
+     * <pre>
+     * Version 1.
+     * </pre>
+     *
      * <code>optional string address = 1;</code>
      */
     public java.lang.String getAddress() {
@@ -3739,6 +5743,10 @@ public final class Proto {
       }
     }
     /**
+     * <pre>
+     * Version 1.
+     * </pre>
+     *
      * <code>optional string address = 1;</code>
      */
     public com.google.protobuf.ByteString
@@ -3755,6 +5763,19 @@ public final class Proto {
       }
     }
 
+    public static final int ENCODED_FIELD_NUMBER = 2;
+    private com.google.protobuf.ByteString encoded_;
+    /**
+     * <pre>
+     * Version 2.
+     * </pre>
+     *
+     * <code>optional bytes encoded = 2;</code>
+     */
+    public com.google.protobuf.ByteString getEncoded() {
+      return encoded_;
+    }
+
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
       byte isInitialized = memoizedIsInitialized;
@@ -3770,6 +5791,9 @@ public final class Proto {
       if (!getAddressBytes().isEmpty()) {
         com.google.protobuf.GeneratedMessage.writeString(output, 1, address_);
       }
+      if (!encoded_.isEmpty()) {
+        output.writeBytes(2, encoded_);
+      }
     }
 
     public int getSerializedSize() {
@@ -3780,6 +5804,10 @@ public final class Proto {
       if (!getAddressBytes().isEmpty()) {
         size += com.google.protobuf.GeneratedMessage.computeStringSize(1, address_);
       }
+      if (!encoded_.isEmpty()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(2, encoded_);
+      }
       memoizedSize = size;
       return size;
     }
@@ -3899,6 +5927,8 @@ public final class Proto {
         super.clear();
         address_ = "";
 
+        encoded_ = com.google.protobuf.ByteString.EMPTY;
+
         return this;
       }
 
@@ -3922,6 +5952,7 @@ public final class Proto {
       public com.shuffle.player.proto.Proto.Address buildPartial() {
         com.shuffle.player.proto.Proto.Address result = new com.shuffle.player.proto.Proto.Address(this);
         result.address_ = address_;
+        result.encoded_ = encoded_;
         onBuilt();
         return result;
       }
@@ -3941,6 +5972,9 @@ public final class Proto {
           address_ = other.address_;
           onChanged();
         }
+        if (other.getEncoded() != com.google.protobuf.ByteString.EMPTY) {
+          setEncoded(other.getEncoded());
+        }
         onChanged();
         return this;
       }
@@ -3969,6 +6003,10 @@ public final class Proto {
 
       private java.lang.Object address_ = "";
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional string address = 1;</code>
        */
       public java.lang.String getAddress() {
@@ -3984,6 +6022,10 @@ public final class Proto {
         }
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional string address = 1;</code>
        */
       public com.google.protobuf.ByteString
@@ -4000,6 +6042,10 @@ public final class Proto {
         }
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional string address = 1;</code>
        */
       public Builder setAddress(
@@ -4013,6 +6059,10 @@ public final class Proto {
         return this;
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional string address = 1;</code>
        */
       public Builder clearAddress() {
@@ -4022,6 +6072,10 @@ public final class Proto {
         return this;
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional string address = 1;</code>
        */
       public Builder setAddressBytes(
@@ -4035,6 +6089,47 @@ public final class Proto {
         onChanged();
         return this;
       }
+
+      private com.google.protobuf.ByteString encoded_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>optional bytes encoded = 2;</code>
+       */
+      public com.google.protobuf.ByteString getEncoded() {
+        return encoded_;
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>optional bytes encoded = 2;</code>
+       */
+      public Builder setEncoded(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  
+        encoded_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>optional bytes encoded = 2;</code>
+       */
+      public Builder clearEncoded() {
+        
+        encoded_ = getDefaultInstance().getEncoded();
+        onChanged();
+        return this;
+      }
       public final Builder setUnknownFields(
           final com.google.protobuf.UnknownFieldSet unknownFields) {
         return this;
@@ -4089,14 +6184,31 @@ public final class Proto {
       com.google.protobuf.MessageOrBuilder {
 
     /**
+     * <pre>
+     * Version 1.
+     * </pre>
+     *
      * <code>optional string key = 1;</code>
      */
     java.lang.String getKey();
     /**
+     * <pre>
+     * Version 1.
+     * </pre>
+     *
      * <code>optional string key = 1;</code>
      */
     com.google.protobuf.ByteString
         getKeyBytes();
+
+    /**
+     * <pre>
+     * Version 2.
+     * </pre>
+     *
+     * <code>optional bytes encoded = 2;</code>
+     */
+    com.google.protobuf.ByteString getEncoded();
   }
   /**
    * Protobuf type {@code VerificationKey}
@@ -4111,6 +6223,7 @@ public final class Proto {
     }
     private VerificationKey() {
       key_ = "";
+      encoded_ = com.google.protobuf.ByteString.EMPTY;
     }
 
     @java.lang.Override
@@ -4144,6 +6257,11 @@ public final class Proto {
               key_ = s;
               break;
             }
+            case 18: {
+
+              encoded_ = input.readBytes();
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -4170,6 +6288,10 @@ public final class Proto {
     public static final int KEY_FIELD_NUMBER = 1;
     private volatile java.lang.Object key_;
     /**
+     * <pre>
+     * Version 1.
+     * </pre>
+     *
      * <code>optional string key = 1;</code>
      */
     public java.lang.String getKey() {
@@ -4185,6 +6307,10 @@ public final class Proto {
       }
     }
     /**
+     * <pre>
+     * Version 1.
+     * </pre>
+     *
      * <code>optional string key = 1;</code>
      */
     public com.google.protobuf.ByteString
@@ -4201,6 +6327,19 @@ public final class Proto {
       }
     }
 
+    public static final int ENCODED_FIELD_NUMBER = 2;
+    private com.google.protobuf.ByteString encoded_;
+    /**
+     * <pre>
+     * Version 2.
+     * </pre>
+     *
+     * <code>optional bytes encoded = 2;</code>
+     */
+    public com.google.protobuf.ByteString getEncoded() {
+      return encoded_;
+    }
+
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
       byte isInitialized = memoizedIsInitialized;
@@ -4216,6 +6355,9 @@ public final class Proto {
       if (!getKeyBytes().isEmpty()) {
         com.google.protobuf.GeneratedMessage.writeString(output, 1, key_);
       }
+      if (!encoded_.isEmpty()) {
+        output.writeBytes(2, encoded_);
+      }
     }
 
     public int getSerializedSize() {
@@ -4226,6 +6368,10 @@ public final class Proto {
       if (!getKeyBytes().isEmpty()) {
         size += com.google.protobuf.GeneratedMessage.computeStringSize(1, key_);
       }
+      if (!encoded_.isEmpty()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(2, encoded_);
+      }
       memoizedSize = size;
       return size;
     }
@@ -4345,6 +6491,8 @@ public final class Proto {
         super.clear();
         key_ = "";
 
+        encoded_ = com.google.protobuf.ByteString.EMPTY;
+
         return this;
       }
 
@@ -4368,6 +6516,7 @@ public final class Proto {
       public com.shuffle.player.proto.Proto.VerificationKey buildPartial() {
         com.shuffle.player.proto.Proto.VerificationKey result = new com.shuffle.player.proto.Proto.VerificationKey(this);
         result.key_ = key_;
+        result.encoded_ = encoded_;
         onBuilt();
         return result;
       }
@@ -4387,6 +6536,9 @@ public final class Proto {
           key_ = other.key_;
           onChanged();
         }
+        if (other.getEncoded() != com.google.protobuf.ByteString.EMPTY) {
+          setEncoded(other.getEncoded());
+        }
         onChanged();
         return this;
       }
@@ -4415,6 +6567,10 @@ public final class Proto {
 
       private java.lang.Object key_ = "";
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional string key = 1;</code>
        */
       public java.lang.String getKey() {
@@ -4430,6 +6586,10 @@ public final class Proto {
         }
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional string key = 1;</code>
        */
       public com.google.protobuf.ByteString
@@ -4446,6 +6606,10 @@ public final class Proto {
         }
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional string key = 1;</code>
        */
       public Builder setKey(
@@ -4459,6 +6623,10 @@ public final class Proto {
         return this;
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional string key = 1;</code>
        */
       public Builder clearKey() {
@@ -4468,6 +6636,10 @@ public final class Proto {
         return this;
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional string key = 1;</code>
        */
       public Builder setKeyBytes(
@@ -4481,6 +6653,47 @@ public final class Proto {
         onChanged();
         return this;
       }
+
+      private com.google.protobuf.ByteString encoded_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>optional bytes encoded = 2;</code>
+       */
+      public com.google.protobuf.ByteString getEncoded() {
+        return encoded_;
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>optional bytes encoded = 2;</code>
+       */
+      public Builder setEncoded(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  
+        encoded_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>optional bytes encoded = 2;</code>
+       */
+      public Builder clearEncoded() {
+        
+        encoded_ = getDefaultInstance().getEncoded();
+        onChanged();
+        return this;
+      }
       public final Builder setUnknownFields(
           final com.google.protobuf.UnknownFieldSet unknownFields) {
         return this;
@@ -4535,14 +6748,31 @@ public final class Proto {
       com.google.protobuf.MessageOrBuilder {
 
     /**
+     * <pre>
+     * Version 1.
+     * </pre>
+     *
      * <code>optional string key = 1;</code>
      */
     java.lang.String getKey();
     /**
+     * <pre>
+     * Version 1.
+     * </pre>
+     *
      * <code>optional string key = 1;</code>
      */
     com.google.protobuf.ByteString
         getKeyBytes();
+
+    /**
+     * <pre>
+     * Version 2.
+     * </pre>
+     *
+     * <code>optional bytes encoded = 2;</code>
+     */
+    com.google.protobuf.ByteString getEncoded();
   }
   /**
    * Protobuf type {@code EncryptionKey}
@@ -4557,6 +6787,7 @@ public final class Proto {
     }
     private EncryptionKey() {
       key_ = "";
+      encoded_ = com.google.protobuf.ByteString.EMPTY;
     }
 
     @java.lang.Override
@@ -4590,6 +6821,11 @@ public final class Proto {
               key_ = s;
               break;
             }
+            case 18: {
+
+              encoded_ = input.readBytes();
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -4616,6 +6852,10 @@ public final class Proto {
     public static final int KEY_FIELD_NUMBER = 1;
     private volatile java.lang.Object key_;
     /**
+     * <pre>
+     * Version 1.
+     * </pre>
+     *
      * <code>optional string key = 1;</code>
      */
     public java.lang.String getKey() {
@@ -4631,6 +6871,10 @@ public final class Proto {
       }
     }
     /**
+     * <pre>
+     * Version 1.
+     * </pre>
+     *
      * <code>optional string key = 1;</code>
      */
     public com.google.protobuf.ByteString
@@ -4647,6 +6891,19 @@ public final class Proto {
       }
     }
 
+    public static final int ENCODED_FIELD_NUMBER = 2;
+    private com.google.protobuf.ByteString encoded_;
+    /**
+     * <pre>
+     * Version 2.
+     * </pre>
+     *
+     * <code>optional bytes encoded = 2;</code>
+     */
+    public com.google.protobuf.ByteString getEncoded() {
+      return encoded_;
+    }
+
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
       byte isInitialized = memoizedIsInitialized;
@@ -4662,6 +6919,9 @@ public final class Proto {
       if (!getKeyBytes().isEmpty()) {
         com.google.protobuf.GeneratedMessage.writeString(output, 1, key_);
       }
+      if (!encoded_.isEmpty()) {
+        output.writeBytes(2, encoded_);
+      }
     }
 
     public int getSerializedSize() {
@@ -4672,6 +6932,10 @@ public final class Proto {
       if (!getKeyBytes().isEmpty()) {
         size += com.google.protobuf.GeneratedMessage.computeStringSize(1, key_);
       }
+      if (!encoded_.isEmpty()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(2, encoded_);
+      }
       memoizedSize = size;
       return size;
     }
@@ -4791,6 +7055,8 @@ public final class Proto {
         super.clear();
         key_ = "";
 
+        encoded_ = com.google.protobuf.ByteString.EMPTY;
+
         return this;
       }
 
@@ -4814,6 +7080,7 @@ public final class Proto {
       public com.shuffle.player.proto.Proto.EncryptionKey buildPartial() {
         com.shuffle.player.proto.Proto.EncryptionKey result = new com.shuffle.player.proto.Proto.EncryptionKey(this);
         result.key_ = key_;
+        result.encoded_ = encoded_;
         onBuilt();
         return result;
       }
@@ -4833,6 +7100,9 @@ public final class Proto {
           key_ = other.key_;
           onChanged();
         }
+        if (other.getEncoded() != com.google.protobuf.ByteString.EMPTY) {
+          setEncoded(other.getEncoded());
+        }
         onChanged();
         return this;
       }
@@ -4861,6 +7131,10 @@ public final class Proto {
 
       private java.lang.Object key_ = "";
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional string key = 1;</code>
        */
       public java.lang.String getKey() {
@@ -4876,6 +7150,10 @@ public final class Proto {
         }
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional string key = 1;</code>
        */
       public com.google.protobuf.ByteString
@@ -4892,6 +7170,10 @@ public final class Proto {
         }
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional string key = 1;</code>
        */
       public Builder setKey(
@@ -4905,6 +7187,10 @@ public final class Proto {
         return this;
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional string key = 1;</code>
        */
       public Builder clearKey() {
@@ -4914,6 +7200,10 @@ public final class Proto {
         return this;
       }
       /**
+       * <pre>
+       * Version 1.
+       * </pre>
+       *
        * <code>optional string key = 1;</code>
        */
       public Builder setKeyBytes(
@@ -4927,6 +7217,47 @@ public final class Proto {
         onChanged();
         return this;
       }
+
+      private com.google.protobuf.ByteString encoded_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>optional bytes encoded = 2;</code>
+       */
+      public com.google.protobuf.ByteString getEncoded() {
+        return encoded_;
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>optional bytes encoded = 2;</code>
+       */
+      public Builder setEncoded(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  
+        encoded_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       * Version 2.
+       * </pre>
+       *
+       * <code>optional bytes encoded = 2;</code>
+       */
+      public Builder clearEncoded() {
+        
+        encoded_ = getDefaultInstance().getEncoded();
+        onChanged();
+        return this;
+      }
       public final Builder setUnknownFields(
           final com.google.protobuf.UnknownFieldSet unknownFields) {
         return this;
@@ -9072,6 +11403,11 @@ public final class Proto {
   private static final 
     com.google.protobuf.GeneratedMessage.FieldAccessorTable
       internal_static_Message_fieldAccessorTable;
+  private static final com.google.protobuf.Descriptors.Descriptor
+    internal_static_Atom_descriptor;
+  private static final 
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_Atom_fieldAccessorTable;
   private static final com.google.protobuf.Descriptors.Descriptor
     internal_static_Address_descriptor;
   private static final 
@@ -9134,37 +11470,43 @@ public final class Proto {
       "\n4src/main/java/com/shuffle/player/proto" +
       "/message.proto\"@\n\006Signed\022\027\n\006packet\030\001 \001(\013" +
       "2\007.Packet\022\035\n\tsignature\030\002 \001(\0132\n.Signature" +
-      "\"\231\001\n\006Packet\022\017\n\007session\030\001 \001(\014\022\016\n\006number\030\002" +
+      "\"\300\001\n\006Packet\022\017\n\007session\030\001 \001(\014\022\016\n\006number\030\002" +
       " \001(\r\022\036\n\004from\030\003 \001(\0132\020.VerificationKey\022\034\n\002" +
       "to\030\004 \001(\0132\020.VerificationKey\022\025\n\005phase\030\005 \001(" +
-      "\0162\006.Phase\022\031\n\007message\030\006 \001(\0132\010.Message\"\261\001\n" +
-      "\007Message\022\031\n\007address\030\001 \001(\0132\010.Address\022\033\n\003k" +
-      "ey\030\002 \001(\0132\016.EncryptionKey\022\023\n\004hash\030\003 \001(\0132\005" +
-      ".Hash\022\035\n\tsignature\030\004 \001(\0132\n.Signature\022\013\n\003",
-      "str\030\005 \001(\t\022\025\n\005blame\030\006 \001(\0132\006.Blame\022\026\n\004next" +
-      "\030\007 \001(\0132\010.Message\"\032\n\007Address\022\017\n\007address\030\001" +
-      " \001(\t\"\036\n\017VerificationKey\022\013\n\003key\030\001 \001(\t\"\034\n\r" +
-      "EncryptionKey\022\013\n\003key\030\001 \001(\t\",\n\rDecryption" +
-      "Key\022\013\n\003key\030\001 \001(\t\022\016\n\006public\030\002 \001(\t\"\024\n\004Hash" +
-      "\022\014\n\004hash\030\001 \001(\014\"\036\n\tSignature\022\021\n\tsignature" +
-      "\030\001 \001(\014\"\"\n\013Transaction\022\023\n\013transaction\030\001 \001" +
-      "(\014\"\271\001\n\005Blame\022\027\n\006reason\030\001 \001(\0162\007.Reason\022!\n" +
-      "\007accused\030\002 \001(\0132\020.VerificationKey\022\033\n\003key\030" +
-      "\003 \001(\0132\016.DecryptionKey\022!\n\013transaction\030\004 \001",
-      "(\0132\014.Transaction\022\031\n\007invalid\030\005 \001(\0132\010.Inva" +
-      "lid\022\031\n\007packets\030\006 \001(\0132\010.Packets\"\032\n\007Invali" +
-      "d\022\017\n\007invalid\030\001 \001(\014\"\"\n\007Packets\022\027\n\006packet\030" +
-      "\001 \003(\0132\007.Signed*\220\001\n\005Phase\022\010\n\004NONE\020\000\022\020\n\014AN" +
-      "NOUNCEMENT\020\001\022\013\n\007SHUFFLE\020\002\022\r\n\tBROADCAST\020\003" +
-      "\022\026\n\022EQUIVOCATION_CHECK\020\004\022\013\n\007SIGNING\020\005\022\037\n" +
-      "\033VERIFICATION_AND_SUBMISSION\020\006\022\t\n\005BLAME\020" +
-      "\007*\306\001\n\006Reason\022\025\n\021INSUFFICIENTFUNDS\020\000\022\017\n\013D" +
-      "OUBLESPEND\020\001\022\027\n\023EQUIVOCATIONFAILURE\020\002\022\022\n" +
-      "\016SHUFFLEFAILURE\020\003\022!\n\035SHUFFLEANDEQUIVOCAT",
-      "IONFAILURE\020\004\022\024\n\020INVALIDSIGNATURE\020\005\022\021\n\rMI" +
-      "SSINGOUTPUT\020\006\022\010\n\004LIAR\020\007\022\021\n\rINVALIDFORMAT" +
-      "\020\010B!\n\030com.shuffle.player.protoB\005Protob\006p" +
-      "roto3"
+      "\0162\006.Phase\022\031\n\007message\030\006 \001(\0132\010.Message\022\017\n\007" +
+      "version\030\007 \001(\r\022\024\n\005atoms\030\010 \003(\0132\005.Atom\"\261\001\n\007" +
+      "Message\022\031\n\007address\030\001 \001(\0132\010.Address\022\033\n\003ke" +
+      "y\030\002 \001(\0132\016.EncryptionKey\022\023\n\004hash\030\003 \001(\0132\005.",
+      "Hash\022\035\n\tsignature\030\004 \001(\0132\n.Signature\022\013\n\003s" +
+      "tr\030\005 \001(\t\022\025\n\005blame\030\006 \001(\0132\006.Blame\022\026\n\004next\030" +
+      "\007 \001(\0132\010.Message\"\226\001\n\004Atom\022\031\n\007address\030\001 \001(" +
+      "\0132\010.Address\022\033\n\003key\030\002 \001(\0132\016.EncryptionKey" +
+      "\022\023\n\004hash\030\003 \001(\0132\005.Hash\022\035\n\tsignature\030\004 \001(\013" +
+      "2\n.Signature\022\013\n\003str\030\005 \001(\t\022\025\n\005blame\030\006 \001(\013" +
+      "2\006.Blame\"+\n\007Address\022\017\n\007address\030\001 \001(\t\022\017\n\007" +
+      "encoded\030\002 \001(\014\"/\n\017VerificationKey\022\013\n\003key\030" +
+      "\001 \001(\t\022\017\n\007encoded\030\002 \001(\014\"-\n\rEncryptionKey\022" +
+      "\013\n\003key\030\001 \001(\t\022\017\n\007encoded\030\002 \001(\014\",\n\rDecrypt",
+      "ionKey\022\013\n\003key\030\001 \001(\t\022\016\n\006public\030\002 \001(\t\"\024\n\004H" +
+      "ash\022\014\n\004hash\030\001 \001(\014\"\036\n\tSignature\022\021\n\tsignat" +
+      "ure\030\001 \001(\014\"\"\n\013Transaction\022\023\n\013transaction\030" +
+      "\001 \001(\014\"\271\001\n\005Blame\022\027\n\006reason\030\001 \001(\0162\007.Reason" +
+      "\022!\n\007accused\030\002 \001(\0132\020.VerificationKey\022\033\n\003k" +
+      "ey\030\003 \001(\0132\016.DecryptionKey\022!\n\013transaction\030" +
+      "\004 \001(\0132\014.Transaction\022\031\n\007invalid\030\005 \001(\0132\010.I" +
+      "nvalid\022\031\n\007packets\030\006 \001(\0132\010.Packets\"\032\n\007Inv" +
+      "alid\022\017\n\007invalid\030\001 \001(\014\"\"\n\007Packets\022\027\n\006pack" +
+      "et\030\001 \003(\0132\007.Signed*\220\001\n\005Phase\022\010\n\004NONE\020\000\022\020\n",
+      "\014ANNOUNCEMENT\020\001\022\013\n\007SHUFFLE\020\002\022\r\n\tBROADCAS" +
+      "T\020\003\022\026\n\022EQUIVOCATION_CHECK\020\004\022\013\n\007SIGNING\020\005" +
+      "\022\037\n\033VERIFICATION_AND_SUBMISSION\020\006\022\t\n\005BLA" +
+      "ME\020\007*\306\001\n\006Reason\022\025\n\021INSUFFICIENTFUNDS\020\000\022\017" +
+      "\n\013DOUBLESPEND\020\001\022\027\n\023EQUIVOCATIONFAILURE\020\002" +
+      "\022\022\n\016SHUFFLEFAILURE\020\003\022!\n\035SHUFFLEANDEQUIVO" +
+      "CATIONFAILURE\020\004\022\024\n\020INVALIDSIGNATURE\020\005\022\021\n" +
+      "\rMISSINGOUTPUT\020\006\022\010\n\004LIAR\020\007\022\021\n\rINVALIDFOR" +
+      "MAT\020\010B!\n\030com.shuffle.player.protoB\005Proto" +
+      "b\006proto3"
     };
     com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
         new com.google.protobuf.Descriptors.FileDescriptor.    InternalDescriptorAssigner() {
@@ -9189,69 +11531,75 @@ public final class Proto {
     internal_static_Packet_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_Packet_descriptor,
-        new java.lang.String[] { "Session", "Number", "From", "To", "Phase", "Message", });
+        new java.lang.String[] { "Session", "Number", "From", "To", "Phase", "Message", "Version", "Atoms", });
     internal_static_Message_descriptor =
       getDescriptor().getMessageTypes().get(2);
     internal_static_Message_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_Message_descriptor,
         new java.lang.String[] { "Address", "Key", "Hash", "Signature", "Str", "Blame", "Next", });
-    internal_static_Address_descriptor =
+    internal_static_Atom_descriptor =
       getDescriptor().getMessageTypes().get(3);
+    internal_static_Atom_fieldAccessorTable = new
+      com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+        internal_static_Atom_descriptor,
+        new java.lang.String[] { "Address", "Key", "Hash", "Signature", "Str", "Blame", });
+    internal_static_Address_descriptor =
+      getDescriptor().getMessageTypes().get(4);
     internal_static_Address_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_Address_descriptor,
-        new java.lang.String[] { "Address", });
+        new java.lang.String[] { "Address", "Encoded", });
     internal_static_VerificationKey_descriptor =
-      getDescriptor().getMessageTypes().get(4);
+      getDescriptor().getMessageTypes().get(5);
     internal_static_VerificationKey_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_VerificationKey_descriptor,
-        new java.lang.String[] { "Key", });
+        new java.lang.String[] { "Key", "Encoded", });
     internal_static_EncryptionKey_descriptor =
-      getDescriptor().getMessageTypes().get(5);
+      getDescriptor().getMessageTypes().get(6);
     internal_static_EncryptionKey_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_EncryptionKey_descriptor,
-        new java.lang.String[] { "Key", });
+        new java.lang.String[] { "Key", "Encoded", });
     internal_static_DecryptionKey_descriptor =
-      getDescriptor().getMessageTypes().get(6);
+      getDescriptor().getMessageTypes().get(7);
     internal_static_DecryptionKey_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_DecryptionKey_descriptor,
         new java.lang.String[] { "Key", "Public", });
     internal_static_Hash_descriptor =
-      getDescriptor().getMessageTypes().get(7);
+      getDescriptor().getMessageTypes().get(8);
     internal_static_Hash_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_Hash_descriptor,
         new java.lang.String[] { "Hash", });
     internal_static_Signature_descriptor =
-      getDescriptor().getMessageTypes().get(8);
+      getDescriptor().getMessageTypes().get(9);
     internal_static_Signature_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_Signature_descriptor,
         new java.lang.String[] { "Signature", });
     internal_static_Transaction_descriptor =
-      getDescriptor().getMessageTypes().get(9);
+      getDescriptor().getMessageTypes().get(10);
     internal_static_Transaction_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_Transaction_descriptor,
         new java.lang.String[] { "Transaction", });
     internal_static_Blame_descriptor =
-      getDescriptor().getMessageTypes().get(10);
+      getDescriptor().getMessageTypes().get(11);
     internal_static_Blame_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_Blame_descriptor,
         new java.lang.String[] { "Reason", "Accused", "Key", "Transaction", "Invalid", "Packets", });
     internal_static_Invalid_descriptor =
-      getDescriptor().getMessageTypes().get(11);
+      getDescriptor().getMessageTypes().get(12);
     internal_static_Invalid_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_Invalid_descriptor,
         new java.lang.String[] { "Invalid", });
     internal_static_Packets_descriptor =
-      getDescriptor().getMessageTypes().get(12);
+      getDescriptor().getMessageTypes().get(13);
     internal_static_Packets_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_Packets_descriptor,
@@ -9,6 +9,8 @@
 package com.shuffle.protocol;
 
 import com.shuffle.bitcoin.Address;
+import com.shuffle.bitcoin.AsyncCoin;
+import com.shuffle.bitcoin.AsyncCoinAdapter;
 import com.shuffle.bitcoin.Coin;
 import com.shuffle.bitcoin.CoinNetworkException;
 import com.shuffle.bitcoin.Crypto;
@@ -34,6 +36,8 @@ import org.apache.logging.log4j.LogManager;
 import org.bitcoinj.core.AddressFormatException;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -45,7 +49,11 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 /**
  *
@@ -61,20 +69,35 @@ import java.util.concurrent.ExecutionException;
 public class CoinShuffle {
     private static final Logger log = LogManager.getLogger(CoinShuffle.class);
 
+    // The longest we will go on collecting blame messages, as a multiple
+    // of the timeout for the blame phase.
+    static final int blameStretch = 30;
+
     final Crypto crypto;
 
     private final Coin coin;
 
     final MessageFactory messages;
 
+    // Used to decrypt the shuffle phase messages in parallel. If null,
+    // they are decrypted on the protocol thread.
+    private final Executor decryptor;
+
+    // Runs the blockchain lookups, which block, so that the protocol can go on
+    // talking to the other players in the meantime. If null, they are run on the
+    // protocol thread.
+    private final Executor io;
+
+    final AsyncCoin async;
+
     // A single round of the protocol. It is possible that the players may go through
     // several failed rounds until they have eliminated malicious players.
     class Round {
         final CurrentPhase phase;
 
-        private final long amount; // The amount to be shuffled.
+        final long amount; // The amount to be shuffled.
 
-        private final long fee; // The miner fee to be paid per player.
+        final long fee; // The miner fee to be paid per player.
 
         final SigningKey sk; // My signing private key.
 
@@ -120,9 +143,14 @@ public class CoinShuffle {
             // Check for sufficient funds.
             // There was a problem with the wording of the original paper which would have meant
             // that player 1's funds never would have been checked, but it's necessary to check
-            // everybody.
-            blameInsufficientFunds();
-            System.out.println("Player " + me + " finds sufficient funds");
+            // everybody. The lookup goes on while we announce our keys, and is finished
+            // before we leave phase 1. If there is no io executor, it is already done.
+            CompletableFuture<Map<Address, Boolean>> funds
+                    = async.sufficientFunds(addresses(), amount + fee);
+            boolean fundsChecked = funds.isDone();
+            if (fundsChecked) {
+                blameInsufficientFunds(await(funds));
+            }
 
             // This will contain the change addresses.
             Map<VerificationKey, Address> changeAddresses = new HashMap<>();
@@ -140,10 +168,19 @@ public class CoinShuffle {
             try {
                 announcement = mailbox.receiveFromMultiple(playerSet(1, N), phase.get());
             } catch (BlameException e) {
-                // might receive blame messages about insufficient funds.
+                // might receive blame messages about insufficient funds, in which
+                // case we send our own before we look at everyone else's.
+                if (!fundsChecked) {
+                    blameInsufficientFunds(await(funds));
+                }
                 phase.set(Phase.Blame);
                 throw fillBlameMatrix();
             }
+
+            if (!fundsChecked) {
+                blameInsufficientFunds(await(funds));
+            }
+            System.out.println("Player " + me + " finds sufficient funds");
             System.out.println("Player " + me + " is about to read announcements.");
 
             readAnnouncements(announcement, encryptionKeys, changeAddresses);
@@ -217,12 +254,21 @@ public class CoinShuffle {
                 blameShuffleMisbehavior();
             }
 
+            // The join transaction only depends on the new addresses, so if we have an
+            // io executor we can look up its inputs while the equivocation check goes on.
+            CompletableFuture<Transaction> join = null;
+            if (io != null) {
+                join = joinTransaction(newAddresses, changeAddresses);
+            }
+
             // Phase 4: equivocation check.
             // In this phase, participants check whether any player has history different
             // encryption keys to different players.
             phase.set(Phase.EquivocationCheck);
             System.out.println("Player " + me + " reaches phase 4: ");
 
+            // If the check fails, a lookup for the join transaction which has already begun
+            // is not stopped. It goes on in the background and its result is discarded.
             equivocationCheck(encryptionKeys, newAddresses, false);
 
 
@@ -232,18 +278,17 @@ public class CoinShuffle {
             phase.set(Phase.VerificationAndSubmission);
             System.out.println("Player " + me + " reaches phase 5. ");
 
-            List<VerificationKey> inputs = new LinkedList<>();
-            for (int i = 1; i <= N; i++) {
-                inputs.add(players.get(i));
+            // Generate the join transaction, or wait for it to be finished.
+            if (join == null) {
+                join = joinTransaction(newAddresses, changeAddresses);
             }
-
-            // Generate the join transaction.
-            Transaction t = coin.shuffleTransaction(
-                    amount, fee, inputs, newAddresses, changeAddresses);
-
-            checkDoubleSpending(t);
+            Transaction t = await(join);
             if (t == null) throw new RuntimeException("Transaction in null. This should not happen.");
 
+            // Look for double spends right before we sign, so that nothing
+            // spent during the equivocation check is missed.
+            checkDoubleSpending(await(async.getConflictingTransactions(t, addresses(), amount)));
+
             // Generate the input script using our signing key.
             Message inputScript = messages.make().attach(t.sign(sk));
 
@@ -279,15 +324,37 @@ public class CoinShuffle {
                 }
             }
 
-            // Verify the signatures.
-            Map<VerificationKey, Bytestring> invalid = new HashMap<>();
+            verifySignatures(t, signatureMessages, invalidClaim);
+
+            // Send the transaction into the net.
+            await(async.send(t));
+
+            // The protocol has completed successfully.
+            phase.set(Phase.Completed);
+
+            return t;
+        }
+
+        // Check the signatures, in parallel if we have a worker pool. If any are
+        // invalid, or someone else has said so, we enter the blame phase.
+        void verifySignatures(
+                Transaction t,
+                Map<VerificationKey, Message> signatureMessages,
+                boolean invalidClaim
+        ) throws InterruptedException, IOException, FormatException, TimeoutException, Matrix {
+
+            Map<VerificationKey, Bytestring> received = new HashMap<>();
             for (Map.Entry<VerificationKey, Message> sig : signatureMessages.entrySet()) {
-                VerificationKey key = sig.getKey();
-                Bytestring signature = sig.getValue().readSignature();
-                signatures.put(key, signature);
+                received.put(sig.getKey(), sig.getValue().readSignature());
+            }
+            signatures.putAll(received);
 
-                if (!t.addInputScript(signature)) {
-                    invalid.put(key, signature);
+            Set<Bytestring> rejected = t.addInputScripts(received.values(), decryptor);
+
+            Map<VerificationKey, Bytestring> invalid = new HashMap<>();
+            for (Map.Entry<VerificationKey, Bytestring> sig : received.entrySet()) {
+                if (rejected.contains(sig.getValue())) {
+                    invalid.put(sig.getKey(), sig.getValue());
                 }
             }
 
@@ -304,14 +371,35 @@ public class CoinShuffle {
                 mailbox.broadcast(blameMessage, phase.get());
                 throw fillBlameMatrix();
             }
+        }
 
-            // Send the transaction into the net.
-            t.send();
+        // Begin to construct the join transaction on the io executor, if we have one.
+        // Otherwise it is made right away.
+        CompletableFuture<Transaction> joinTransaction(
+                final Queue<Address> newAddresses,
+                final Map<VerificationKey, Address> changeAddresses) {
 
-            // The protocol has completed successfully.
-            phase.set(Phase.Completed);
+            final List<VerificationKey> inputs = new LinkedList<>();
+            for (int i = 1; i <= N; i++) {
+                inputs.add(players.get(i));
+            }
 
-            return t;
+            return async.shuffleTransaction(amount, fee, inputs, newAddresses, changeAddresses);
+        }
+
+        <X> X await(CompletableFuture<X> future) throws InterruptedException,
+                IOException, CoinNetworkException, AddressFormatException {
+
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof CoinNetworkException) throw (CoinNetworkException) cause;
+                if (cause instanceof AddressFormatException) throw (AddressFormatException) cause;
+                if (cause instanceof IOException) throw (IOException) cause;
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                throw new RuntimeException(cause);
+            }
         }
 
         // Everyone except player 1 creates a new keypair and sends it around to everyone else.
@@ -349,7 +437,7 @@ public class CoinShuffle {
 
             // Add our own address to the mix. Note that if me == N, ie, the last player, then no
             // encryption is done. That is because we have reached the last layer of encryption.
-            String encrypted = addrNew.toString();
+            Bytestring encrypted = new Bytestring(addrNew.toString().getBytes(StandardCharsets.UTF_8));
             for (int i = N; i > me; i--) {
                 // Successively encrypt with the keys of the players who haven't had their turn yet.
                 encrypted = encryptionKeys.get(players.get(i)).encrypt(encrypted);
@@ -380,25 +468,23 @@ public class CoinShuffle {
             return newAddresses;
         }
 
-        // In the shuffle phase, we have to receive a set of strings from the previous player and
-        // decrypt them all.
+        // In the shuffle phase, we have to receive a set of ciphertexts from the previous player
+        // and decrypt them all.
         final Message decryptAll(Message message, DecryptionKey key, int expected)
                 throws IOException, InterruptedException, FormatException {
 
-            Message decrypted = messages.make();
-
-            int count = 0;
-            Set<String> addrs = new HashSet<>(); // Used to check that all addresses are different.
+            List<Bytestring> encrypted = new ArrayList<>();
+            Set<Bytestring> addrs = new HashSet<>(); // Used to check that all addresses are different.
 
             while (!message.isEmpty()) {
-                String encrypted = message.readString();
+                Bytestring e = message.readBytestring();
                 message = message.rest();
 
-                addrs.add(encrypted);
-                count++;
-                decrypted = decrypted.attach(key.decrypt(encrypted));
+                addrs.add(e);
+                encrypted.add(e);
             }
 
+            int count = encrypted.size();
             if (addrs.size() != count || count != expected) {
                 phase.set(Phase.Blame);
                 mailbox.broadcast(messages.make().attach(Blame.ShuffleFailure(players.get(N))),
@@ -407,6 +493,56 @@ public class CoinShuffle {
                 return null;
             }
 
+            Message decrypted = messages.make();
+            for (Bytestring d : decryptAll(encrypted, key)) {
+                decrypted = decrypted.attach(d);
+            }
+
+            return decrypted;
+        }
+
+        // Decrypt every entry, in parallel if we have a decryptor. The results
+        // are in the same order as the entries.
+        private List<Bytestring> decryptAll(List<Bytestring> encrypted, final DecryptionKey key)
+                throws InterruptedException {
+
+            List<Bytestring> decrypted = new ArrayList<>(encrypted.size());
+
+            if (decryptor == null || encrypted.size() < 2) {
+                for (Bytestring e : encrypted) {
+                    decrypted.add(key.decrypt(e));
+                }
+
+                return decrypted;
+            }
+
+            List<FutureTask<Bytestring>> tasks = new ArrayList<>(encrypted.size());
+            for (final Bytestring e : encrypted) {
+                FutureTask<Bytestring> task = new FutureTask<>(new Callable<Bytestring>() {
+                    @Override
+                    public Bytestring call() {
+                        return key.decrypt(e);
+                    }
+                });
+
+                tasks.add(task);
+                decryptor.execute(task);
+            }
+
+            try {
+                for (FutureTask<Bytestring> task : tasks) {
+                    decrypted.add(task.get());
+                }
+            } catch (ExecutionException e) {
+                // Decryption only throws unchecked exceptions.
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw new RuntimeException(e.getCause());
+            } finally {
+                for (FutureTask<Bytestring> task : tasks) {
+                    task.cancel(true);
+                }
+            }
+
             return decrypted;
         }
 
@@ -430,14 +566,32 @@ public class CoinShuffle {
                 boolean errorCase // There is an equivocation check that occurs
         ) throws InterruptedException, TimeoutException, Matrix, IOException, FormatException {
 
+            Message equivocationCheck = broadcastEquivocationCheck(encryptonKeys, newAddresses);
+
+            // Wait for a similar message from everyone else and check that the result is the name.
+            checkEquivocation(equivocationCheck, mailbox.receiveFromMultipleBlameless(
+                    playerSet(1, players.size()), phase.get()), errorCase);
+        }
+
+        // The first half of the equivocation check, before we hear from anyone else.
+        final Message broadcastEquivocationCheck(
+                Map<VerificationKey, EncryptionKey> encryptonKeys,
+                Queue<Address> newAddresses
+        ) throws InterruptedException, IOException, FormatException {
+
             Message equivocationCheck = equivocationCheckHash(players, encryptonKeys, newAddresses);
             mailbox.broadcast(equivocationCheck, phase.get());
             System.out.println("Player " + me + " equivocation message " + equivocationCheck);
 
-            // Wait for a similar message from everyone else and check that the result is the name.
-            Map<VerificationKey, Message> hashes = null;
-            hashes = mailbox.receiveFromMultipleBlameless(playerSet(1, players.size()),
-                    phase.get());
+            return equivocationCheck;
+        }
+
+        // The second half, once the other players' hashes have been received.
+        final void checkEquivocation(
+                Message equivocationCheck,
+                Map<VerificationKey, Message> hashes,
+                boolean errorCase
+        ) throws InterruptedException, TimeoutException, Matrix, IOException, FormatException {
 
             hashes.put(vk, equivocationCheck);
 
@@ -469,15 +623,14 @@ public class CoinShuffle {
         }
 
         // Check for players with insufficient funds.
-        private void blameInsufficientFunds()
-                throws CoinNetworkException, TimeoutException, Matrix,
-                IOException, InterruptedException, FormatException, AddressFormatException {
+        void blameInsufficientFunds(Map<Address, Boolean> sufficient)
+                throws TimeoutException, Matrix,
+                IOException, InterruptedException, FormatException {
 
             List<VerificationKey> offenders = new LinkedList<>();
 
-            // Check that each participant has the required amounts.
             for (VerificationKey player : players.values()) {
-                if (!coin.sufficientFunds(player.address(), amount + fee)) {
+                if (!Boolean.TRUE.equals(sufficient.get(player.address()))) {
                     // Enter the blame phase.
                     offenders.add(player);
                 }
@@ -518,13 +671,13 @@ public class CoinShuffle {
             throw fillBlameMatrix();
         }
 
-        void checkDoubleSpending(Transaction t) throws InterruptedException, IOException,
-                FormatException, TimeoutException, Matrix, CoinNetworkException, AddressFormatException {
+        void checkDoubleSpending(Map<Address, Transaction> conflicts) throws InterruptedException,
+                IOException, FormatException, TimeoutException, Matrix {
 
             // Check for double spending.
             Message doubleSpend = messages.make();
             for (VerificationKey key : players.values()) {
-                Transaction o = coin.getConflictingTransaction(t, key.address(), amount);
+                Transaction o = conflicts.get(key.address());
                 if (o != null) {
                     doubleSpend = doubleSpend.attach(Blame.DoubleSpend(key, o));
                 }
@@ -538,12 +691,35 @@ public class CoinShuffle {
             }
         }
 
+        // The addresses of all players, in order.
+        List<Address> addresses() {
+            List<Address> addresses = new LinkedList<>();
+            for (VerificationKey player : players.values()) {
+                addresses.add(player.address());
+            }
+
+            return addresses;
+        }
+
+        // Every reason for blame is something that all honest players check for
+        // themselves, so we expect to hear from everyone. We stop as soon as we have,
+        // rather than waiting for the network to go quiet.
+        Map<VerificationKey, Queue<Packet>> receiveBlame() throws InterruptedException, IOException {
+            return mailbox.receiveAllBlame(
+                    new HashSet<>(players.values()), System.currentTimeMillis() + blameTimeout());
+        }
+
+        // How long to go on collecting blame messages, in milliseconds.
+        long blameTimeout() {
+            return blameStretch * messages.deadline(Phase.Blame);
+        }
+
         // When we know we'll receive a bunch of blame messages, we have to go through them all
         // to figure out what's going on.
         final Matrix fillBlameMatrix() throws IOException, InterruptedException, FormatException {
             Matrix matrix = new Matrix();
 
-            Map<VerificationKey, Queue<Packet>> blameMessages = mailbox.receiveAllBlame();
+            Map<VerificationKey, Queue<Packet>> blameMessages = receiveBlame();
 
             // Get all hashes received in phase 4 to check that they were reported correctly.
             Map<VerificationKey, Message> hashes = new HashMap<>();
@@ -909,10 +1085,10 @@ public class CoinShuffle {
         Message shuffled = messages.make();
 
         // Read all elements of the packet and insert them in a Queue.
-        Queue<String> old = new LinkedList<>();
+        Queue<Bytestring> old = new LinkedList<>();
         int N = 0;
         while (!message.isEmpty()) {
-            old.add(message.readString());
+            old.add(message.readBytestring());
             message = message.rest();
             N++;
         }
@@ -955,7 +1131,7 @@ public class CoinShuffle {
     // In phase 1, everybody announces their new encryption keys to one another. They also
     // optionally send change addresses to one another. This function reads that information
     // from a message and puts it in some nice data structures.
-    private static void readAnnouncements(Map<VerificationKey, Message> messages,
+    static void readAnnouncements(Map<VerificationKey, Message> messages,
                            Map<VerificationKey, EncryptionKey> encryptionKeys,
                            Map<VerificationKey, Address> change) throws FormatException {
 
@@ -1076,11 +1252,12 @@ public class CoinShuffle {
                             players.get(i), decryptionKeys, shuffleMessages, broadcastMessages);
                 }
 
-                String address = message.readString();
+                Bytestring encrypted = message.readBytestring();
                 message = message.rest();
                 for (int k = i + 1; k <= players.size(); k++) {
-                    address = decryptionKeys.get(players.get(k)).decrypt(address);
+                    encrypted = decryptionKeys.get(players.get(k)).decrypt(encrypted);
                 }
+                String address = new String(encrypted.bytes, StandardCharsets.UTF_8);
 
                 // There shouldn't be duplicates.
                 if (decrypted.contains(address)) {
@@ -1214,6 +1391,25 @@ public class CoinShuffle {
             MessageFactory messages, // Object that knows how to create and copy messages.
             Crypto crypto, // Connects to the cryptography.
             Coin coin // Connects us to the Bitcoin or other cryptocurrency netork.
+    ) {
+        this(messages, crypto, coin, null);
+    }
+
+    public CoinShuffle(
+            MessageFactory messages, // Object that knows how to create and copy messages.
+            Crypto crypto, // Connects to the cryptography.
+            Coin coin, // Connects us to the Bitcoin or other cryptocurrency netork.
+            Executor decryptor // Decrypts and checks signatures in parallel. (can be null)
+    ) {
+        this(messages, crypto, coin, decryptor, null);
+    }
+
+    public CoinShuffle(
+            MessageFactory messages, // Object that knows how to create and copy messages.
+            Crypto crypto, // Connects to the cryptography.
+            Coin coin, // Connects us to the Bitcoin or other cryptocurrency netork.
+            Executor decryptor, // Decrypts and checks signatures in parallel. (can be null)
+            Executor io // Runs the blockchain lookups, which block. (can be null)
     ) {
         if (crypto == null || coin == null || messages == null) {
             throw new NullPointerException();
@@ -1221,6 +1417,9 @@ public class CoinShuffle {
         this.crypto = crypto;
         this.coin = coin;
         this.messages = messages;
+        this.decryptor = decryptor;
+        this.io = io;
+        this.async = new AsyncCoinAdapter(coin, io == null ? AsyncCoinAdapter.direct : io);
     }
 
     /**
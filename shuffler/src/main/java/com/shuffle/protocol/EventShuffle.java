@@ -0,0 +1,722 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.protocol;
+
+import com.shuffle.bitcoin.Address;
+import com.shuffle.bitcoin.Coin;
+import com.shuffle.bitcoin.CoinNetworkException;
+import com.shuffle.bitcoin.Crypto;
+import com.shuffle.bitcoin.SigningKey;
+import com.shuffle.bitcoin.Transaction;
+import com.shuffle.bitcoin.VerificationKey;
+import com.shuffle.chan.Send;
+import com.shuffle.player.Timeouts;
+import com.shuffle.protocol.blame.Blame;
+import com.shuffle.protocol.blame.BlameException;
+import com.shuffle.protocol.blame.Matrix;
+import com.shuffle.protocol.message.Message;
+import com.shuffle.protocol.message.MessageFactory;
+import com.shuffle.protocol.message.Packet;
+import com.shuffle.protocol.message.Phase;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bitcoinj.core.AddressFormatException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * CoinShuffle without a thread for every round. Each round goes through the same phases
+ * as in CoinShuffle, but whenever it would wait for the network or the blockchain it
+ * returns instead, and is picked up again on the scheduler once what it is waiting for
+ * has arrived or its time has run out. Many rounds can thus share a few threads. Blockchain
+ * lookups block, so they are run on a separate executor.
+ */
+public class EventShuffle extends CoinShuffle {
+    private static final Logger log = LogManager.getLogger(EventShuffle.class);
+
+    // How often a waiting round looks for new packets, in milliseconds, if
+    // the messages can't tell us when they arrive.
+    static final long tick = 5;
+
+    private final ScheduledExecutorService scheduler;
+
+    // How long to wait for the next packet in each phase before giving up.
+    private final Timeouts timeouts;
+
+    // Thrown when a round must collect blame messages which have not all arrived yet.
+    // Blame is always collected at the very end of a round, so nothing is lost.
+    private static final class Suspend extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Suspend() {
+            super(null, null, false, false);
+        }
+    }
+
+    // The rest of the protocol after some wait.
+    private interface Continuation {
+        void run() throws TimeoutException, Matrix, InterruptedException, FormatException,
+                IOException, CoinNetworkException, AddressFormatException;
+    }
+
+    // What a round is waiting for before it can go on.
+    private abstract class Wait {
+        final Continuation next;
+        final CompletableFuture<?>[] lookups; // Blockchain lookups which must be finished.
+
+        Wait(Continuation next, CompletableFuture<?>... lookups) {
+            this.next = next;
+            this.lookups = lookups;
+        }
+
+        // Whether the packets we are waiting for have arrived.
+        abstract boolean arrived();
+
+        // When to give up, no matter how recently we have heard from anyone.
+        long limit() {
+            return Long.MAX_VALUE;
+        }
+
+        boolean looked() {
+            for (CompletableFuture<?> lookup : lookups) {
+                if (!lookup.isDone()) return false;
+            }
+
+            return true;
+        }
+    }
+
+    private final class EventRound extends Round implements Runnable {
+        final CompletableFuture<Transaction> result = new CompletableFuture<>();
+
+        private Wait waiting = null;
+        private long deadline = 0;
+        private ScheduledFuture<?> timer = null;
+
+        // Whether the round is told when packets arrive.
+        private boolean listening = false;
+
+        // Set while the round is already due to run again.
+        private final AtomicBoolean woken = new AtomicBoolean(false);
+
+        // Set once we are ready to collect blame messages.
+        private boolean blameDue = false;
+
+        // Resumes the round when a lookup is finished.
+        private final BiConsumer<Object, Throwable> lookedUp = new BiConsumer<Object, Throwable>() {
+            @Override
+            public void accept(Object o, Throwable e) {
+                wake();
+            }
+        };
+
+        // What we have learned so far that later phases need.
+        private CompletableFuture<Map<Address, Boolean>> funds = null;
+        private boolean fundsChecked = false;
+        private final Map<VerificationKey, Address> changeAddresses = new HashMap<>();
+        private CompletableFuture<Transaction> join = null;
+        private Transaction t = null;
+        private Message inputScript = null;
+
+        EventRound(CurrentPhase phase,
+                   long amount,
+                   long fee,
+                   SigningKey sk,
+                   Map<Integer, VerificationKey> players,
+                   Address addrNew,
+                   Address change,
+                   Mailbox mailbox) throws InvalidParticipantSetException {
+
+            super(phase, amount, fee, sk, players, addrNew, change, mailbox);
+
+            then(new Wait(new Continuation() {
+                @Override
+                public void run() throws TimeoutException, Matrix, InterruptedException,
+                        FormatException, IOException, CoinNetworkException, AddressFormatException {
+
+                    announce();
+                }
+            }) {
+                @Override
+                boolean arrived() {
+                    return true;
+                }
+            });
+        }
+
+        @Override
+        Map<VerificationKey, Queue<Packet>> receiveBlame() throws InterruptedException, IOException {
+            if (!blameDue) throw new Suspend();
+
+            // The scheduler has already waited for as long as we care to.
+            return mailbox.receiveAllBlame(new HashSet<>(players.values()), Long.MAX_VALUE);
+        }
+
+        // Have the round run again soon, unless it is already about to.
+        void wake() {
+            if (woken.compareAndSet(false, true)) scheduler.execute(this);
+        }
+
+        @Override
+        public synchronized void run() {
+            woken.set(false);
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+
+            while (!result.isDone()) {
+                try {
+                    if (!step()) return;
+                } catch (Suspend e) {
+                    collectBlame();
+                } catch (Matrix m) {
+                    fail(m);
+                } catch (Exception e) {
+                    fail(e);
+                }
+            }
+        }
+
+        // Take the next step if we are not waiting any more. Returns false if we are.
+        private boolean step() throws TimeoutException, Matrix, InterruptedException,
+                FormatException, IOException, CoinNetworkException, AddressFormatException {
+
+            long now = System.currentTimeMillis();
+            if (mailbox.collect()) deadline = now + timeouts.timeout(phase.get());
+
+            // We don't hold the network against the other players while we
+            // wait for the blockchain, which will wake us when it answers.
+            if (!waiting.looked()) {
+                deadline = now + timeouts.timeout(phase.get());
+                if (!listening) schedule(tick);
+                return false;
+            }
+
+            // New packets wake us, so we only need to be woken again if time runs out.
+            long limit = Math.min(deadline, waiting.limit());
+            if (!waiting.arrived() && now < limit) {
+                schedule(listening ? limit - now : Math.min(tick, limit - now));
+                return false;
+            }
+
+            // If our time has run out, the next receive fails with a TimeoutException.
+            Wait w = waiting;
+            waiting = null;
+            w.next.run();
+
+            if (waiting == null && !result.isDone()) {
+                throw new IllegalStateException("Round " + me + " has nothing to do.");
+            }
+
+            return true;
+        }
+
+        private void schedule(long delay) {
+            timer = scheduler.schedule(this, Math.max(1, delay), TimeUnit.MILLISECONDS);
+        }
+
+        private void then(Wait w) {
+            waiting = w;
+            deadline = System.currentTimeMillis() + timeouts.timeout(phase.get());
+
+            for (CompletableFuture<?> lookup : w.lookups) {
+                lookup.whenComplete(lookedUp);
+            }
+        }
+
+        // A lookup for the join transaction which has already begun is not
+        // stopped. It goes on in the background and its result is discarded.
+        private void fail(Throwable e) {
+            waiting = null;
+            result.completeExceptionally(e);
+        }
+
+        // Wait for a message from each of a set of players in the current phase.
+        private Wait receive(
+                final Set<VerificationKey> from,
+                final boolean blameless,
+                Continuation next,
+                CompletableFuture<?>... lookups) {
+
+            final Phase expected = phase.get();
+            return new Wait(next, lookups) {
+                @Override
+                boolean arrived() {
+                    return mailbox.ready(from, expected, blameless);
+                }
+            };
+        }
+
+        // Wait for the next message in the current phase.
+        private Wait receiveNext(final boolean blameless, Continuation next) {
+            final Phase expected = phase.get();
+            return new Wait(next) {
+                @Override
+                boolean arrived() {
+                    return mailbox.ready(expected, blameless);
+                }
+            };
+        }
+
+        private Wait lookup(Continuation next, CompletableFuture<?>... lookups) {
+            return new Wait(next, lookups) {
+                @Override
+                boolean arrived() {
+                    return true;
+                }
+            };
+        }
+
+        // Wait until everyone has reported in the blame phase and then make the blame matrix.
+        private void collectBlame() {
+            final long limit = System.currentTimeMillis() + blameTimeout();
+            then(new Wait(new Continuation() {
+                @Override
+                public void run() throws InterruptedException, IOException,
+                        FormatException, Matrix {
+
+                    blameDue = true;
+                    throw fillBlameMatrix();
+                }
+            }) {
+                @Override
+                boolean arrived() {
+                    return mailbox.blameReady(playerSet());
+                }
+
+                @Override
+                long limit() {
+                    return limit;
+                }
+            });
+        }
+
+        // Phase 1: Announcement
+        private void announce() throws TimeoutException, Matrix, InterruptedException,
+                FormatException, IOException, CoinNetworkException, AddressFormatException {
+
+            if (amount <= 0) {
+                throw new IllegalArgumentException();
+            }
+
+            phase.set(Phase.Announcement);
+            log.info("Player " + me + " begins CoinShuffle protocol " + " with " + N + " players.");
+
+            funds = async.sufficientFunds(addresses(), amount + fee);
+            fundsChecked = funds.isDone();
+            if (fundsChecked) {
+                blameInsufficientFunds(await(funds));
+            }
+
+            dk = broadcastNewKey(changeAddresses);
+
+            then(receive(playerSet(1, N), false, new Continuation() {
+                @Override
+                public void run() throws TimeoutException, Matrix, InterruptedException,
+                        FormatException, IOException, CoinNetworkException, AddressFormatException {
+
+                    announced();
+                }
+            }, funds));
+        }
+
+        private void announced() throws TimeoutException, Matrix, InterruptedException,
+                FormatException, IOException, CoinNetworkException, AddressFormatException {
+
+            Map<VerificationKey, Message> announcement;
+            try {
+                announcement = mailbox.receiveFromMultiple(playerSet(1, N), phase.get());
+            } catch (BlameException e) {
+                if (!fundsChecked) {
+                    blameInsufficientFunds(await(funds));
+                }
+                phase.set(Phase.Blame);
+                throw fillBlameMatrix();
+            }
+
+            if (!fundsChecked) {
+                blameInsufficientFunds(await(funds));
+            }
+
+            readAnnouncements(announcement, encryptionKeys, changeAddresses);
+
+            // Phase 2: Shuffle
+            phase.set(Phase.Shuffling);
+
+            Continuation shuffle = new Continuation() {
+                @Override
+                public void run() throws TimeoutException, Matrix, InterruptedException,
+                        FormatException, IOException, CoinNetworkException, AddressFormatException {
+
+                    shuffle();
+                }
+            };
+
+            if (me == 1) {
+                shuffle.run();
+            } else {
+                then(receiveNext(false, shuffle));
+            }
+        }
+
+        private void shuffle() throws TimeoutException, Matrix, InterruptedException,
+                FormatException, IOException, CoinNetworkException, AddressFormatException {
+
+            try {
+                Message shuffled;
+                if (me != 1) {
+                    shuffled = decryptAll(
+                            mailbox.receiveFrom(players.get(me - 1), phase.get()), dk, me - 1);
+
+                    if (shuffled == null) {
+                        misbehavior();
+                        return;
+                    }
+                } else {
+                    shuffled = messages.make();
+                }
+
+                shuffled = shufflePhase(shuffled, addrNew);
+
+                if (me != N) {
+                    mailbox.send(shuffled, phase.get(), players.get(me + 1));
+                }
+
+                // Phase 3: broadcast outputs.
+                phase.set(Phase.BroadcastOutput);
+
+                if (me == N) {
+                    newAddresses = readAndBroadcastNewAddresses(shuffled);
+                    checkOutput();
+                    return;
+                }
+
+                then(receiveNext(false, new Continuation() {
+                    @Override
+                    public void run() throws TimeoutException, Matrix, InterruptedException,
+                            FormatException, IOException, CoinNetworkException,
+                            AddressFormatException {
+
+                        try {
+                            newAddresses = readAndBroadcastNewAddresses(null);
+                        } catch (BlameException e) {
+                            shuffleBlame(e);
+                            return;
+                        }
+
+                        checkOutput();
+                    }
+                }));
+            } catch (BlameException e) {
+                shuffleBlame(e);
+            }
+        }
+
+        private void shuffleBlame(BlameException e) throws TimeoutException, Matrix,
+                InterruptedException, FormatException, IOException {
+
+            switch (e.packet.payload().readBlame().reason) {
+                case MissingOutput: {
+                    // We need the new addresses from the last player before going on.
+                    if (newAddresses == null) {
+                        final Phase expected = phase.get();
+                        then(receiveNext(true, new Continuation() {
+                            @Override
+                            public void run() throws TimeoutException, Matrix,
+                                    InterruptedException, FormatException, IOException {
+
+                                newAddresses = readNewAddresses(
+                                        mailbox.receiveFromBlameless(players.get(N), expected));
+                                misbehavior();
+                            }
+                        }));
+                        return;
+                    }
+
+                    misbehavior();
+                    return;
+                }
+                case ShuffleFailure: {
+                    misbehavior();
+                    return;
+                }
+                default: {
+                    throw fillBlameMatrix();
+                }
+            }
+        }
+
+        // Skip to phase 4 and do an equivocation check, which always ends in blame.
+        private void misbehavior() throws InterruptedException, IOException, FormatException {
+            phase.set(Phase.EquivocationCheck);
+            equivocationCheck(true, null);
+        }
+
+        // Everyone checks that their own address was included.
+        private void checkOutput() throws TimeoutException, Matrix, InterruptedException,
+                FormatException, IOException {
+
+            if (!newAddresses.contains(addrNew)) {
+                phase.set(Phase.Blame);
+                mailbox.broadcast(messages.make().attach(Blame.MissingOutput(players.get(N))),
+                        phase.get());
+
+                misbehavior();
+                return;
+            }
+
+            // The join transaction only depends on the new addresses,
+            // so it can be looked up during the equivocation check.
+            join = joinTransaction(newAddresses, changeAddresses);
+
+            // Phase 4: equivocation check.
+            phase.set(Phase.EquivocationCheck);
+
+            equivocationCheck(false, new Continuation() {
+                @Override
+                public void run() throws TimeoutException, Matrix, InterruptedException,
+                        FormatException, IOException, CoinNetworkException, AddressFormatException {
+
+                    sign();
+                }
+            });
+        }
+
+        private void equivocationCheck(final boolean errorCase, final Continuation next)
+                throws InterruptedException, IOException, FormatException {
+
+            final Message hash = broadcastEquivocationCheck(encryptionKeys, newAddresses);
+            final Set<VerificationKey> from = playerSet(1, players.size());
+
+            then(receive(from, true, new Continuation() {
+                @Override
+                public void run() throws TimeoutException, Matrix, InterruptedException,
+                        FormatException, IOException, CoinNetworkException, AddressFormatException {
+
+                    checkEquivocation(hash,
+                            mailbox.receiveFromMultipleBlameless(from, phase.get()), errorCase);
+
+                    // In the error case, we never get here.
+                    next.run();
+                }
+            }));
+        }
+
+        // Phase 5: verification and submission.
+        private void sign() throws InterruptedException, IOException {
+            phase.set(Phase.VerificationAndSubmission);
+
+            then(lookup(new Continuation() {
+                @Override
+                public void run() throws TimeoutException, Matrix, InterruptedException,
+                        FormatException, IOException, CoinNetworkException, AddressFormatException {
+
+                    t = await(join);
+                    if (t == null) throw new RuntimeException("Transaction in null. This should not happen.");
+
+                    // Look for double spends right before we sign, so that nothing
+                    // spent during the equivocation check is missed.
+                    final CompletableFuture<Map<Address, Transaction>> conflicts
+                            = async.getConflictingTransactions(t, addresses(), amount);
+
+                    then(lookup(new Continuation() {
+                        @Override
+                        public void run() throws TimeoutException, Matrix, InterruptedException,
+                                FormatException, IOException, CoinNetworkException,
+                                AddressFormatException {
+
+                            checkDoubleSpending(await(conflicts));
+
+                            inputScript = messages.make().attach(t.sign(sk));
+                            mailbox.broadcast(inputScript, phase.get());
+
+                            then(receive(playerSet(1, N), false, new Continuation() {
+                                @Override
+                                public void run() throws TimeoutException, Matrix,
+                                        InterruptedException, FormatException, IOException,
+                                        CoinNetworkException, AddressFormatException {
+
+                                    signed();
+                                }
+                            }));
+                        }
+                    }, conflicts));
+                }
+            }, join));
+        }
+
+        private void signed() throws TimeoutException, Matrix, InterruptedException,
+                FormatException, IOException, CoinNetworkException, AddressFormatException {
+
+            Map<VerificationKey, Message> signatureMessages;
+            try {
+                signatureMessages = mailbox.receiveFromMultiple(playerSet(1, N), phase.get());
+                signatureMessages.put(vk, inputScript);
+            } catch (BlameException e) {
+                switch (e.packet.payload().readBlame().reason) {
+                    case InvalidSignature: {
+                        // Go on receiving messages and ignore any further blame messages.
+                        then(receive(playerSet(1, N), true, new Continuation() {
+                            @Override
+                            public void run() throws TimeoutException, Matrix,
+                                    InterruptedException, FormatException, IOException,
+                                    CoinNetworkException, AddressFormatException {
+
+                                verifySignatures(t, mailbox.receiveFromMultipleBlameless(
+                                        playerSet(1, N), phase.get()), true);
+                            }
+                        }));
+                        return;
+                    }
+                    default: {
+                        phase.set(Phase.Blame);
+                        throw fillBlameMatrix();
+                    }
+                }
+            }
+
+            verifySignatures(t, signatureMessages, false);
+
+            // Send the transaction into the net.
+            final CompletableFuture<Void> sent = async.send(t);
+            then(lookup(new Continuation() {
+                @Override
+                public void run() throws InterruptedException, IOException,
+                        CoinNetworkException, AddressFormatException {
+
+                    await(sent);
+
+                    // The protocol has completed successfully.
+                    phase.set(Phase.Completed);
+                    result.complete(t);
+                }
+            }, sent));
+        }
+    }
+
+    // Begin a round of the protocol on the scheduler. The future is completed with the
+    // transaction if the round succeeds or with the exception it would have thrown.
+    public CompletableFuture<Transaction> start(
+            long amount, // The amount to be shuffled per player.
+            long fee, // The miner fee to be paid per player.
+            SigningKey sk, // The signing key of the current player.
+            // The set of players, sorted alphabetically by address.
+            SortedSet<VerificationKey> players,
+            Address addrNew, // My new (anonymous) address.
+            Address change, // Change address. (can be null)
+            // If this is not null, the machine is put in this channel so that another thread can
+            // query the phase as it runs.
+            Send<Phase> chan
+    ) throws InterruptedException, InvalidParticipantSetException, IOException {
+
+        if (amount <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (sk == null || players == null) {
+            throw new NullPointerException();
+        }
+
+        CurrentPhase machine;
+        if (chan == null) {
+            machine = new CurrentPhase();
+        } else {
+            machine = new CurrentPhase(chan);
+        }
+
+        // Get the initial ordering of the players.
+        int i = 1;
+        Map<Integer, VerificationKey> numberedPlayers = new TreeMap<>();
+        for (VerificationKey player : players) {
+            numberedPlayers.put(i, player);
+            i++;
+        }
+
+        // Make an inbox for the next round which never waits for the network.
+        Mailbox mailbox = new Mailbox(
+                sk.VerificationKey(), numberedPlayers.values(), messages, false);
+
+        final EventRound round = this.new EventRound(
+                machine, amount, fee, sk, numberedPlayers, addrNew, change, mailbox);
+
+        round.listening = messages.listen(new Runnable() {
+            @Override
+            public void run() {
+                round.wake();
+            }
+        });
+
+        round.wake();
+        return round.result;
+    }
+
+    // Run a round on the scheduler and wait for it to finish.
+    @Override
+    public Transaction runProtocol(
+            long amount, // The amount to be shuffled per player.
+            long fee, // The miner fee to be paid per player.
+            SigningKey sk, // The signing key of the current player.
+            // The set of players, sorted alphabetically by address.
+            SortedSet<VerificationKey> players,
+            Address addrNew, // My new (anonymous) address.
+            Address change, // Change address. (can be null)
+            // If this is not null, the machine is put in this channel so that another thread can
+            // query the phase as it runs.
+            Send<Phase> chan
+    ) throws TimeoutException, Matrix, InterruptedException, InvalidParticipantSetException,
+            FormatException, IOException, CoinNetworkException, ExecutionException,
+            AddressFormatException {
+
+        try {
+            return start(amount, fee, sk, players, addrNew, change, chan).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TimeoutException) throw (TimeoutException) cause;
+            if (cause instanceof Matrix) throw (Matrix) cause;
+            if (cause instanceof FormatException) throw (FormatException) cause;
+            if (cause instanceof CoinNetworkException) throw (CoinNetworkException) cause;
+            if (cause instanceof AddressFormatException) throw (AddressFormatException) cause;
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw e;
+        }
+    }
+
+    public EventShuffle(
+            MessageFactory messages, // Object that knows how to create and copy messages.
+            Crypto crypto, // Connects to the cryptography.
+            Coin coin, // Connects us to the Bitcoin or other cryptocurrency netork.
+            ScheduledExecutorService scheduler, // Runs every round.
+            Executor io, // Runs the blockchain lookups, which block.
+            Timeouts timeouts // How long to wait for the next packet in each phase.
+    ) {
+        super(messages, crypto, coin, null, io);
+
+        if (scheduler == null || io == null || timeouts == null) throw new NullPointerException();
+
+        this.scheduler = scheduler;
+        this.timeouts = timeouts;
+    }
+}
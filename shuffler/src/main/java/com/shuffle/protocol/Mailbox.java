@@ -18,10 +18,12 @@ import com.shuffle.protocol.message.Phase;
 
 import java.io.IOException;
 import java.net.ProtocolException;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
@@ -37,22 +39,60 @@ public class Mailbox {
     private final VerificationKey me;
     private final Collection<VerificationKey> players; // The keys representing all the players.
 
-    // A queue of messages that has been delivered that we aren't ready to look at yet.
-    private final Queue<Packet> delivered = new LinkedList<>();
+    // Messages that have been delivered that we aren't ready to look at yet, by phase.
+    private final Map<Phase, Deque<Packet>> delivered = new EnumMap<>(Phase.class);
 
-    // All messages received (does not include those in delivered).
-    private final Queue<Packet> history = new LinkedList<>();
+    // All messages received (does not include those in delivered), by phase.
+    private final Map<Phase, Queue<Packet>> history = new EnumMap<>(Phase.class);
+
+    // The blame messages in history, by sender.
+    private final Map<VerificationKey, Queue<Packet>> blameHistory = new HashMap<>();
 
     private final Set<Reason> blame = new HashSet<>();
 
+    // If false, we never wait for the network. A receive which cannot be completed from
+    // the packets that have already arrived fails as if it had timed out.
+    private final boolean blocking;
+
+    // Packets taken from the network in non-blocking mode which have not been looked at yet.
+    private final Queue<Packet> arrived = new ArrayDeque<>();
+
     public Mailbox(
             VerificationKey me,
             Collection<VerificationKey> players,
             MessageFactory messages) {
 
+        this(me, players, messages, true);
+    }
+
+    public Mailbox(
+            VerificationKey me,
+            Collection<VerificationKey> players,
+            MessageFactory messages,
+            boolean blocking) {
+
         this.me = me;
         this.messages = messages;
         this.players = players;
+        this.blocking = blocking;
+
+        for (Phase phase : Phase.values()) {
+            delivered.put(phase, new ArrayDeque<Packet>());
+            history.put(phase, new ArrayDeque<Packet>());
+        }
+    }
+
+    private void addToHistory(Packet packet) {
+        history.get(packet.phase()).add(packet);
+
+        if (packet.phase() == Phase.Blame) {
+            Queue<Packet> sent = blameHistory.get(packet.from());
+            if (sent == null) {
+                sent = new ArrayDeque<>();
+                blameHistory.put(packet.from(), sent);
+            }
+            sent.add(packet);
+        }
     }
 
     // Whether a blame message with the given reason has been received.
@@ -75,21 +115,30 @@ public class Mailbox {
 
         Packet packet = m.send(phase, to);
 
-        // If this is a message to myself, don't send it. Just pretend we received it.
-        // This is useful later when we have to collect all blame messages later.
         if (to.equals(me)) {
-            history.add(packet);
-            if (packet.phase() == Phase.Blame) {
-                blame.add(packet.payload().readBlame().reason);
-            }
+            sentToMyself(packet);
+        }
+    }
+
+    // If this is a message to myself, don't send it. Just pretend we received it.
+    // This is useful later when we have to collect all blame messages later.
+    private void sentToMyself(Packet packet) throws FormatException {
+        if (packet == null) return;
+
+        addToHistory(packet);
+        if (packet.phase() == Phase.Blame) {
+            blame.add(packet.payload().readBlame().reason);
         }
     }
 
+    // The message is signed once for all players who can read broadcast packets.
     public void broadcast(Message message, Phase phase)
             throws IOException, InterruptedException, FormatException {
 
-        for (VerificationKey to : players) {
-            send(message, phase, to);
+        Packet packet = message.broadcast(phase, players);
+
+        if (players.contains(me)) {
+            sentToMyself(packet);
         }
     }
 
@@ -97,27 +146,13 @@ public class Mailbox {
     // ahead under some circumstances, so we have to keep their messages to look at later.
     // It always returns a blame packet if encountered.
     private Packet receiveNextPacket(Phase expectedPhase) throws InterruptedException, IOException {
-        Packet found = null;
-
-        // Go through the queue of received messages if any are there.
-        if (delivered.size() > 0) {
-            Iterator<Packet> i = delivered.iterator();
-            while (i.hasNext()) {
-                Packet packet = i.next();
-
-                // Return any that matches what we're looking for.
-                if (expectedPhase == packet.phase()) {
-                    i.remove();
-                    found = packet;
-                    break;
-                }
-            }
-        }
+        // Take the first message we already have from this phase, if any.
+        Packet found = delivered.get(expectedPhase).poll();
 
         // Now we wait for the right message from the network, since we haven't already received it.
         if (found == null) {
             while (true) {
-                Packet packet = messages.receive();
+                Packet packet = blocking ? messages.receive(expectedPhase) : next();
 
                 if (packet == null) {
                     return null;
@@ -130,11 +165,11 @@ public class Mailbox {
                     break;
                 }
 
-                delivered.add(packet);
+                delivered.get(phase).add(packet);
             }
         }
 
-        history.add(found);
+        addToHistory(found);
         if (found.phase() == Phase.Blame) {
 
             try {
@@ -147,22 +182,90 @@ public class Mailbox {
         return found;
     }
 
-    // Get all packets sent or received by phase. Used during blame phase.
-    public Queue<Packet> getPacketsByPhase(Phase phase) {
-        Queue<Packet> selection = new LinkedList<>();
+    // The next packet from the network in non-blocking mode, or null if there is none yet.
+    private Packet next() throws InterruptedException, IOException {
+        if (arrived.isEmpty()) collect();
+
+        return arrived.poll();
+    }
+
+    // Take every packet that has arrived from the network without waiting for any more.
+    // Returns whether there were any. Only used in non-blocking mode.
+    public boolean collect() throws InterruptedException, IOException {
+        if (blocking) throw new IllegalStateException();
+
+        boolean any = false;
+        while (true) {
+            Packet packet = messages.poll();
+            if (packet == null) return any;
+
+            arrived.add(packet);
+            any = true;
+        }
+    }
+
+    // Whether we could receive a message from every player in from in the given phase without
+    // waiting. Unless blameless, a blame packet would also end the wait.
+    public boolean ready(Set<VerificationKey> from, Phase expectedPhase, boolean blameless) {
+        Set<VerificationKey> waiting = new HashSet<>(from);
+        waiting.remove(me);
+
+        for (Packet packet : delivered.get(expectedPhase)) {
+            waiting.remove(packet.from());
+        }
 
-        for (Packet packet : history) {
-            if (packet.phase() == phase) {
-                selection.add(packet);
+        for (Packet packet : arrived) {
+            if (packet.phase() == expectedPhase) {
+                waiting.remove(packet.from());
+            } else if (!blameless && packet.phase() == Phase.Blame) {
+                return true;
             }
         }
 
-        for (Packet packet : delivered) {
-            if (packet.phase() == phase) {
-                selection.add(packet);
+        return waiting.isEmpty();
+    }
+
+    // Whether we could receive the next message in the given phase without waiting.
+    public boolean ready(Phase expectedPhase, boolean blameless) {
+        if (!delivered.get(expectedPhase).isEmpty()) return true;
+
+        for (Packet packet : arrived) {
+            if (packet.phase() == expectedPhase || !blameless && packet.phase() == Phase.Blame) {
+                return true;
             }
         }
 
+        return false;
+    }
+
+    // Whether every player in expected has sent a blame message which ends his part
+    // in the blame phase, so that receiveAllBlame would not have to wait.
+    public boolean blameReady(Set<VerificationKey> expected) {
+        Set<VerificationKey> waiting = new HashSet<>(expected);
+        waiting.remove(me);
+
+        for (Queue<Packet> sent : blameHistory.values()) {
+            for (Packet packet : sent) {
+                if (concludes(packet)) waiting.remove(packet.from());
+            }
+        }
+
+        for (Packet packet : delivered.get(Phase.Blame)) {
+            if (concludes(packet)) waiting.remove(packet.from());
+        }
+
+        for (Packet packet : arrived) {
+            if (packet.phase() == Phase.Blame && concludes(packet)) waiting.remove(packet.from());
+        }
+
+        return waiting.isEmpty();
+    }
+
+    // Get all packets sent or received by phase. Used during blame phase.
+    public Queue<Packet> getPacketsByPhase(Phase phase) {
+        Queue<Packet> selection = new LinkedList<>(history.get(phase));
+        selection.addAll(delivered.get(phase));
+
         return selection;
     }
 
@@ -219,7 +322,7 @@ public class Mailbox {
                 if (!ignoreBlame) {
                     // Put the messages already collected back so that they can be received later.
                     for (Packet p : broadcasts.values()) {
-                        delivered.add(p);
+                        delivered.get(p.phase()).add(p);
                     }
 
                     throw new BlameException(packet.from(), packet);
@@ -274,26 +377,75 @@ public class Mailbox {
     // the list of blame messages, organized by player, including those sent by the current player.
     public Map<VerificationKey, Queue<Packet>> receiveAllBlame()
             throws InterruptedException, IOException {
+
+        return receiveAllBlame(null, Long.MAX_VALUE);
+    }
+
+    // Like receiveAllBlame(), but returns as soon as every player in expected has sent a blame
+    // message which ends his part in the blame phase, or once the deadline (in milliseconds
+    // since the epoch) has passed. If expected is null, we wait for everything.
+    public Map<VerificationKey, Queue<Packet>> receiveAllBlame(
+            Set<VerificationKey> expected,
+            long deadline
+    ) throws InterruptedException, IOException {
+
         Map<VerificationKey, Queue<Packet>> blame = new HashMap<>();
-        for (VerificationKey player : players) {
-            blame.put(player, new LinkedList<Packet>());
+
+        Set<VerificationKey> waiting = null;
+        if (expected != null) {
+            waiting = new HashSet<>(expected);
+            waiting.remove(me);
         }
 
         // First get the blame messages in history.
-        for (Packet packet : history) {
-            if (packet.phase() == Phase.Blame) {
-                blame.get(packet.from()).add(packet);
+        for (VerificationKey player : players) {
+            Queue<Packet> sent = blameHistory.get(player);
+            blame.put(player, sent == null ? new LinkedList<Packet>() : new LinkedList<>(sent));
+
+            if (waiting != null && sent != null) {
+                for (Packet packet : sent) {
+                    if (concludes(packet)) waiting.remove(player);
+                }
             }
         }
 
         // Then receive any more blame messages until there are no more.
-        while (true) {
+        while (waiting == null || !waiting.isEmpty()) {
+            if (System.currentTimeMillis() >= deadline) break;
+
             Packet next = receiveNextPacket(Phase.Blame);
             if (next == null) break;
 
             blame.get(next.from()).add(next);
+
+            if (waiting != null && concludes(next)) waiting.remove(next.from());
         }
 
         return blame;
     }
+
+    // Whether a blame message is the last one its sender will send. A player who reports a
+    // shuffle failure or a missing output goes on to send his decryption key afterwards.
+    private static boolean concludes(Packet packet) {
+        Message message = packet.payload();
+
+        // An empty blame message is sent when a player has nothing to add.
+        if (message.isEmpty()) return true;
+
+        try {
+            while (!message.isEmpty()) {
+                Reason reason = message.readBlame().reason;
+                if (reason != Reason.ShuffleFailure && reason != Reason.MissingOutput) {
+                    return true;
+                }
+
+                message = message.rest();
+            }
+        } catch (FormatException e) {
+            // Nothing more can be expected from a player who sends a malformed message.
+            return true;
+        }
+
+        return false;
+    }
 }
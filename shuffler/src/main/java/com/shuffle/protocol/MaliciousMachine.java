@@ -18,6 +18,7 @@ import com.shuffle.bitcoin.SigningKey;
 import com.shuffle.bitcoin.Transaction;
 import com.shuffle.bitcoin.VerificationKey;
 import com.shuffle.chan.Send;
+import com.shuffle.p2p.Bytestring;
 import com.shuffle.protocol.blame.Blame;
 import com.shuffle.protocol.blame.BlameException;
 import com.shuffle.protocol.blame.Matrix;
@@ -29,6 +30,7 @@ import com.shuffle.protocol.message.Phase;
 import org.bitcoinj.core.AddressFormatException;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -245,7 +247,7 @@ public final class MaliciousMachine extends CoinShuffle {
             if (drop == me) {
                 // Add our own address to the mix. Note that if me == N, ie, the last player, then no
                 // encryption is done. That is because we have reached the last layer of encryption.
-                String encrypted = addrNew.toString();
+                Bytestring encrypted = new Bytestring(addrNew.toString().getBytes(StandardCharsets.UTF_8));
                 for (int i = N; i > me; i--) {
                     // Successively encrypt with the keys of the players who haven't had their turn yet.
                     encrypted = encryptionKeys.get(players.get(i)).encrypt(encrypted);
@@ -260,7 +262,7 @@ public final class MaliciousMachine extends CoinShuffle {
             int i = 1;
             while (!shuffled.isEmpty()) {
                 if (i != drop) {
-                    dropped = dropped.attach(shuffled.readString());
+                    dropped = dropped.attach(shuffled.readBytestring());
                 }
                 shuffled = shuffled.rest();
                 i ++;
@@ -293,11 +295,11 @@ public final class MaliciousMachine extends CoinShuffle {
                 throws FormatException {
             Message findDuplcate = shuffled;
             shuffled = messages.make();
-            String duplicate = null;
+            Bytestring duplicate = null;
 
             int i = 1;
             while (!shuffled.isEmpty()) {
-                String address = findDuplcate.readString();
+                Bytestring address = findDuplcate.readBytestring();
                 if (i == replace) {
                     duplicate = address;
                 }
@@ -310,7 +312,7 @@ public final class MaliciousMachine extends CoinShuffle {
             i = 1;
             while (!shuffled.isEmpty()) {
                 if (i != drop && duplicate != null) {
-                    dropped = dropped.attach(shuffled.readString());
+                    dropped = dropped.attach(shuffled.readBytestring());
                 } else {
                     dropped = dropped.attach(duplicate);
                 }
@@ -325,7 +327,7 @@ public final class MaliciousMachine extends CoinShuffle {
     // Drop an address and replace it with a new one during the shuffle phase.
     public class DropAddressReplaceNew extends Round {
         final int drop;
-        String replace;
+        Bytestring replace;
 
         DropAddressReplaceNew(
                 CurrentPhase machine,
@@ -337,7 +339,8 @@ public final class MaliciousMachine extends CoinShuffle {
                 Address change, Mailbox mailbox, int drop) throws InvalidParticipantSetException {
             super(machine, amount, fee, sk, players, addrNew, change, mailbox);
             this.drop = drop;
-            replace = crypto.makeSigningKey().VerificationKey().address().toString();
+            replace = new Bytestring(crypto.makeSigningKey().VerificationKey().address().toString()
+                    .getBytes(StandardCharsets.UTF_8));
         }
 
         @Override
@@ -348,7 +351,7 @@ public final class MaliciousMachine extends CoinShuffle {
             int i = 1;
             while (!shuffled.isEmpty()) {
                 if (i != drop) {
-                    dropped = dropped.attach(shuffled.readString());
+                    dropped = dropped.attach(shuffled.readBytestring());
                 } else {
                     dropped = dropped.attach(replace);
                 }
@@ -401,7 +404,7 @@ public final class MaliciousMachine extends CoinShuffle {
 
         @Override
         // We made the double spend transaction so obviously we're not going to check honestly.
-        final void checkDoubleSpending(Transaction t) {
+        final void checkDoubleSpending(Map<Address, Transaction> conflicts) {
 
         }
     }
@@ -17,6 +17,7 @@ import com.shuffle.protocol.blame.Blame;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.Collection;
 
 /**
  * Created by Daniel Krawisz on 12/19/15.
@@ -42,6 +43,9 @@ public interface Message extends Serializable {
 
     String readString() throws FormatException;
 
+    // Reads the same atoms as readSignature, which may hold any binary data.
+    Bytestring readBytestring() throws FormatException;
+
     Blame readBlame() throws FormatException;
 
     Message rest() throws FormatException;
@@ -52,4 +56,10 @@ public interface Message extends Serializable {
     Packet send(Phase phase, VerificationKey to) throws // May be thrown if this protocol runs in an interruptable thread.
             InterruptedException,
             IOException; // May be thrown if the internet connection fails.
+
+    // Send the same message to several players. Returns the packet sent to ourselves,
+    // if we are among them.
+    Packet broadcast(Phase phase, Collection<VerificationKey> to) throws
+            InterruptedException,
+            IOException;
 }
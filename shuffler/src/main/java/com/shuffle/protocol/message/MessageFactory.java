@@ -20,4 +20,18 @@ public interface MessageFactory {
     // ALREADY BEEN CHECKED. Throw away all messages that do not have a valid signature.
     Packet receive() throws InterruptedException, // May be thrown if this protocol runs in an interruptable thread.
             IOException; // May be thrown if the internet connection fails.
+
+    // Like receive(), but the time to wait can depend on the phase we expect.
+    Packet receive(Phase expected) throws InterruptedException, IOException;
+
+    // The timeout for the given phase in milliseconds, not counting any time added
+    // because a peer has been slow.
+    long deadline(Phase phase);
+
+    // Take the next packet if one has already arrived. Returns null rather than waiting.
+    Packet poll() throws InterruptedException, IOException;
+
+    // Run arrival whenever a packet might have arrived, so that poll() need not be called
+    // until then. Returns false if we can't tell when packets arrive.
+    boolean listen(Runnable arrival);
 }
@@ -20,6 +20,7 @@ import com.shuffle.monad.Summable;
 import com.shuffle.monad.SummableMap;
 import com.shuffle.monad.SummableMaps;
 import com.shuffle.protocol.CoinShuffle;
+import com.shuffle.protocol.EventShuffle;
 import com.shuffle.protocol.FormatException;
 import com.shuffle.protocol.InvalidParticipantSetException;
 import com.shuffle.protocol.TimeoutException;
@@ -30,9 +31,11 @@ import org.bitcoinj.core.AddressFormatException;
 import java.io.IOException;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 /**
  * The adversary provides for an environment in which the protocol can run in a separate thread.
@@ -91,39 +94,71 @@ public class Adversary {
             throw new NullPointerException();
         }
 
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
+        if (shuffle instanceof EventShuffle) {
+            // This one doesn't need a thread of its own.
+            CompletableFuture<Transaction> round;
+            try {
+                round = ((EventShuffle) shuffle).start(amount, fee, sk, players, anon, change, null);
+            } catch (InterruptedException | IOException | InvalidParticipantSetException e) {
+                round = new CompletableFuture<>();
+                round.completeExceptionally(e);
+            }
 
-                try {
+            round.whenComplete(new BiConsumer<Transaction, Throwable>() {
+                @Override
+                public void accept(Transaction t, Throwable e) {
+                    // As with a thread, a round that fails without a blame
+                    // matrix closes the channel without a result.
                     try {
-                        q.send(new Either<>(shuffle.runProtocol(
-                                amount, fee, sk, players, anon, change, null
-                        ), null));
-
-                    } catch (Matrix m) {
-                        q.send(new Either<>(null, m));
-                    } catch (ExecutionException
-                            | TimeoutException
-                            | FormatException
-                            | CoinNetworkException
-                            | AddressFormatException
-                            | InvalidParticipantSetException e) {
-
-                        e.printStackTrace();
-
+                        if (e == null) {
+                            q.send(new Either<Transaction, Matrix>(t, null));
+                        } else if (e instanceof Matrix) {
+                            q.send(new Either<Transaction, Matrix>(null, (Matrix) e));
+                        }
+                    } catch (InterruptedException x) {
+                        Thread.currentThread().interrupt();
+                    } catch (IOException x) {
+                        // The channel is closed already.
                     } finally {
                         q.close();
                     }
-
-                }  catch (InterruptedException | IOException e) {
-                    // This should not happen! Indicates that something
-                    // went wrong with the environment our program is in.
-                    e.printStackTrace();
                 }
+            });
+        } else {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
 
-            }
-        }).start();
+                    try {
+                        try {
+                            q.send(new Either<>(shuffle.runProtocol(
+                                    amount, fee, sk, players, anon, change, null
+                            ), null));
+
+                        } catch (Matrix m) {
+                            q.send(new Either<>(null, m));
+                        } catch (ExecutionException
+                                | TimeoutException
+                                | FormatException
+                                | CoinNetworkException
+                                | AddressFormatException
+                                | InvalidParticipantSetException e) {
+
+                            e.printStackTrace();
+
+                        } finally {
+                            q.close();
+                        }
+
+                    }  catch (InterruptedException | IOException e) {
+                        // This should not happen! Indicates that something
+                        // went wrong with the environment our program is in.
+                        e.printStackTrace();
+                    }
+
+                }
+            }).start();
+        }
 
         return new Future<Summable.SummableElement<Map<SigningKey, Either<Transaction, Matrix>>>>(
         ) {
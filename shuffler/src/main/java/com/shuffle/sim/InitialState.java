@@ -14,12 +14,16 @@ import com.shuffle.bitcoin.Crypto;
 import com.shuffle.bitcoin.SigningKey;
 import com.shuffle.bitcoin.Transaction;
 import com.shuffle.bitcoin.VerificationKey;
+import com.shuffle.chan.Send;
 import com.shuffle.chan.packet.Packet;
+import com.shuffle.chan.packet.Signed;
 import com.shuffle.monad.Either;
 import com.shuffle.p2p.Bytestring;
 import com.shuffle.player.Messages;
 import com.shuffle.player.Payload;
+import com.shuffle.player.Timeouts;
 import com.shuffle.protocol.CoinShuffle;
+import com.shuffle.protocol.EventShuffle;
 import com.shuffle.protocol.FormatException;
 import com.shuffle.protocol.MaliciousMachine;
 import com.shuffle.protocol.blame.Evidence;
@@ -42,6 +46,8 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * A representation of an initial state for a protocol. Can specify various kinds of
@@ -167,6 +173,12 @@ public class InitialState {
         int duplicate = 0; // Whether to duplicate another address to replace it with.
         boolean replace = false; // Whether to replace dropped address with a new one.
 
+        long latency = 0; // How long each message sent by this player takes, in milliseconds.
+
+        // In adaptive mode, what this player has learned about the others. It is kept
+        // from one run to the next, as a Player keeps it from one round to the next.
+        Timeouts timeouts = null;
+
         PlayerInitialState(SigningKey sk, Address addr) {
             this.sk = sk;
             this.addr = addr;
@@ -240,7 +252,8 @@ public class InitialState {
 
         // Turn the initial state into an Adversary object that can be run in the simulator.
         public Adversary adversary(
-                MessageFactory messages
+                MessageFactory messages,
+                Timeouts timeouts // How long to wait for messages. Must be the same as in messages.
         ) throws InterruptedException, ExecutionException, CoinNetworkException, FormatException {
 
             if (sk == null) {
@@ -275,6 +288,9 @@ public class InitialState {
                                 doubleSpend
                         )
                 );
+            } else if (scheduler != null) {
+                shuffle = new EventShuffle(messages, testCase.crypto(),
+                        mutate ? coin.mutated() : coin, scheduler, io, timeouts);
             } else if (mutate) {
                 shuffle = new CoinShuffle(messages, testCase.crypto(), coin.mutated());
             } else {
@@ -403,11 +419,31 @@ public class InitialState {
         for (final PlayerInitialState player : players) {
 
             Communication<Packet<VerificationKey, Payload>> c = connections.get(player.sk);
-            
+
+            Map<VerificationKey, Send<Signed<Packet<VerificationKey, Payload>>>> send = c.send;
+            if (player.latency > 0) {
+                send = new HashMap<>();
+                for (Map.Entry<VerificationKey, Send<Signed<Packet<VerificationKey, Payload>>>> e
+                        : c.send.entrySet()) {
+
+                    send.put(e.getKey(), delay(e.getValue(), player.latency));
+                }
+            }
+
+            Timeouts timeouts;
+            if (adaptive) {
+                if (player.timeouts == null) {
+                    player.timeouts = new Timeouts(timeout, null, true);
+                }
+                timeouts = player.timeouts;
+            } else {
+                timeouts = new Timeouts(timeout);
+            }
+
             try {
                 p.put(player.sk,
-                        player.adversary(new Messages(testCase.session, player.sk, c.send, c.receive,
-                                testCase.proto())));
+                        player.adversary(new Messages(testCase.session, player.sk, send, c.receive,
+                                testCase.proto(), timeouts), timeouts));
 
             } catch (FormatException | CoinNetworkException | NoSuchAlgorithmException e) {
                 e.printStackTrace();
@@ -420,6 +456,22 @@ public class InitialState {
         return p;
     }
 
+    // Hold up every message for the given time before sending it.
+    private static <X> Send<X> delay(final Send<X> send, final long latency) {
+        return new Send<X>() {
+            @Override
+            public boolean send(X x) throws InterruptedException, IOException {
+                Thread.sleep(latency);
+                return send.send(x);
+            }
+
+            @Override
+            public void close() {
+                send.close();
+            }
+        };
+    }
+
     public List<VerificationKey> getKeys() {
         List<VerificationKey> keys = new LinkedList<>();
 
@@ -436,6 +488,18 @@ public class InitialState {
 
     private Map<Integer, MockCoin> networkPoints = null;
 
+    // How long players wait for a message before giving up, in milliseconds.
+    private long timeout = Messages.defaultTimeout;
+
+    // Whether players estimate how long to wait from how long the others have taken.
+    private boolean adaptive = false;
+
+    // If not null, honest players share this scheduler rather than each having a thread.
+    private ScheduledExecutorService scheduler = null;
+
+    // Runs their blockchain lookups.
+    private Executor io = null;
+
     public InitialState(TestCase testCase) {
 
         this.testCase = testCase;
@@ -458,6 +522,22 @@ public class InitialState {
         return this;
     }
 
+    public InitialState timeout(long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public InitialState adaptive() {
+        adaptive = true;
+        return this;
+    }
+
+    public InitialState events(ScheduledExecutorService scheduler, Executor io) {
+        this.scheduler = scheduler;
+        this.io = io;
+        return this;
+    }
+
     public InitialState initialFunds(long amount) {
         players.getLast().initialAmount = amount;
         return this;
@@ -519,6 +599,11 @@ public class InitialState {
         return this;
     }
 
+    public InitialState latency(long latency) {
+        players.getLast().latency = latency;
+        return this;
+    }
+
     public Map<SigningKey, Matrix> expected() {
         Map<SigningKey, Matrix> blame = new HashMap<>();
 
@@ -0,0 +1,146 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.bitcoin;
+
+import com.shuffle.mock.MockAddress;
+import com.shuffle.mock.MockCoin;
+import com.shuffle.mock.MockVerificationKey;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tests for AsyncCoinAdapter and BlockingCoin.
+ */
+public class TestAsyncCoin {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        MockCoin mock = new MockCoin();
+        VerificationKey a = new MockVerificationKey(1);
+        VerificationKey b = new MockVerificationKey(2);
+        mock.put(a.address(), 100);
+        mock.put(b.address(), 50);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (AsyncCoin async : new AsyncCoin[]{
+                    new AsyncCoinAdapter(mock, AsyncCoinAdapter.direct),
+                    new AsyncCoinAdapter(mock, executor)}) {
+
+                Coin coin = new BlockingCoin(async);
+
+                Assert.assertEquals(100, coin.valueHeld(a.address()));
+                Assert.assertTrue(coin.sufficientFunds(a.address(), 100));
+                Assert.assertFalse(coin.sufficientFunds(b.address(), 100));
+
+                List<Address> addrs = new LinkedList<>();
+                addrs.add(a.address());
+                addrs.add(b.address());
+                Map<Address, Boolean> sufficient = coin.sufficientFunds(addrs, 60);
+                Assert.assertTrue(sufficient.get(a.address()));
+                Assert.assertFalse(sufficient.get(b.address()));
+
+                List<VerificationKey> from = new LinkedList<>();
+                from.add(a);
+                from.add(b);
+                Queue<Address> to = new LinkedList<>();
+                to.add(new MockAddress(3));
+                to.add(new MockAddress(4));
+                Transaction t = coin.shuffleTransaction(
+                        40, 1, from, to, new HashMap<VerificationKey, Address>());
+                Assert.assertNotNull(t);
+
+                Assert.assertTrue(coin.getConflictingTransactions(t, addrs, 40).isEmpty());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    // Failures come out of BlockingCoin as they went into AsyncCoinAdapter.
+    public void testExceptions() throws Exception {
+        final CoinNetworkException networkFailure = new CoinNetworkException("No network.");
+
+        Coin broken = new MockCoin() {
+            @Override
+            public long valueHeld(Address addr) {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public Transaction shuffleTransaction(
+                    long amount,
+                    long fee,
+                    List<VerificationKey> from,
+                    Queue<Address> to,
+                    Map<VerificationKey, Address> changeAddresses)
+                    throws CoinNetworkException {
+
+                throw networkFailure;
+            }
+        };
+
+        AsyncCoin async = new AsyncCoinAdapter(broken, AsyncCoinAdapter.direct);
+
+        CompletableFuture<Transaction> join = async.shuffleTransaction(1, 1,
+                new LinkedList<VerificationKey>(), new LinkedList<Address>(),
+                new HashMap<VerificationKey, Address>());
+        Assert.assertTrue(join.isCompletedExceptionally());
+
+        Coin coin = new BlockingCoin(async);
+
+        try {
+            coin.shuffleTransaction(1, 1,
+                    new LinkedList<VerificationKey>(), new LinkedList<Address>(),
+                    new HashMap<VerificationKey, Address>());
+            Assert.fail();
+        } catch (CoinNetworkException e) {
+            Assert.assertSame(networkFailure, e);
+        }
+
+        try {
+            coin.valueHeld(new MockAddress(1));
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+
+        // A transaction which can't be sent fails its future rather than the caller.
+        MockCoin mock = new MockCoin();
+        VerificationKey a = new MockVerificationKey(1);
+        mock.put(a.address(), 100);
+        List<VerificationKey> from = new LinkedList<>();
+        from.add(a);
+        Queue<Address> to = new LinkedList<>();
+        to.add(new MockAddress(2));
+        Transaction unsigned = mock.shuffleTransaction(
+                40, 1, from, to, new HashMap<VerificationKey, Address>());
+
+        CompletableFuture<Void> sent = new AsyncCoinAdapter(mock, AsyncCoinAdapter.direct).send(unsigned);
+        Assert.assertTrue(sent.isCompletedExceptionally());
+        try {
+            sent.get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof CoinNetworkException);
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.shuffle.bitcoin.blockchain;
 
 import com.shuffle.bitcoin.Address;
 import com.shuffle.bitcoin.CoinNetworkException;
+import com.shuffle.bitcoin.VerificationKey;
+import com.shuffle.bitcoin.impl.VerificationKeyImpl;
 import com.shuffle.mock.MockAddress;
 import com.shuffle.p2p.Bytestring;
 
@@ -17,8 +19,17 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.xml.bind.DatatypeConverter;
 import javax.xml.bind.annotation.adapters.HexBinaryAdapter;
@@ -244,4 +255,257 @@ public class TestBitcoin {
          * has already been spent..
          */
     }
+
+    @Test
+    // Signatures go to the input they spend whatever order they arrive in,
+    // and are checked in parallel if there is an executor.
+    public void testAddInputScripts() throws InterruptedException {
+        MockBitcoin mock = new MockBitcoin();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            for (Executor e : new Executor[]{null, executor}) {
+                List<ECKey> keys = new LinkedList<>();
+                Transaction tx = new Transaction(mock.netParams);
+                for (int i = 0; i < 10; i++) {
+                    ECKey key = new ECKey();
+                    keys.add(key);
+
+                    Transaction parent = new Transaction(mock.netParams);
+                    parent.addOutput(Coin.COIN, key.toAddress(mock.netParams));
+                    tx.addInput(parent.getOutput(0));
+                    tx.addOutput(Coin.CENT, key.toAddress(mock.netParams));
+                }
+
+                List<Bytestring> signatures = new LinkedList<>();
+                for (ECKey key : keys) {
+                    signatures.add(0, mock.getSignature(tx, key));
+                }
+
+                // A signature which is spoiled.
+                Bytestring spoiled = mock.getSignature(tx, keys.get(0));
+                spoiled.bytes[10] ^= 1;
+
+                Set<Bytestring> invalid = mock.addInputScripts(tx, signatures, e);
+                Assert.assertTrue(invalid.isEmpty());
+
+                for (int i = 0; i < 10; i++) {
+                    tx.getInput(i).verify(tx.getInput(i).getConnectedOutput());
+                }
+
+                invalid = mock.addInputScripts(tx, Collections.singletonList(spoiled), e);
+                Assert.assertEquals(Collections.singleton(spoiled), invalid);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // Serves a fixed history for each address without any network.
+    private class HistoryBitcoin extends Bitcoin {
+        final Map<String, List<Transaction>> histories = new HashMap<>();
+        int requests = 0;
+
+        public HistoryBitcoin() {
+            super(NetworkParameters.fromID(NetworkParameters.ID_TESTNET), 0);
+        }
+
+        @Override
+        protected List<Transaction> getAddressTransactionsInner(String address) {
+            List<Transaction> history = histories.get(address);
+            return history == null ? new LinkedList<Transaction>() : history;
+        }
+
+        @Override
+        protected Map<String, List<Transaction>> getAddressTransactionsInner(Collection<String> addresses)
+                throws IOException, CoinNetworkException, AddressFormatException {
+
+            requests++;
+            return super.getAddressTransactionsInner(addresses);
+        }
+
+        @Override
+        org.bitcoinj.core.Transaction getTransaction(String transactionHash) throws IOException {
+            throw new IOException("No network.");
+        }
+
+        void add(org.bitcoinj.core.Address address, org.bitcoinj.core.Transaction tx) {
+            List<Transaction> history = histories.get(address.toString());
+            if (history == null) {
+                history = new LinkedList<>();
+                histories.put(address.toString(), history);
+            }
+            history.add(new Transaction(tx.getHashAsString(), tx, false, true));
+        }
+    }
+
+    // Like HistoryBitcoin, except that the backend leaves out addresses
+    // that it knows nothing about instead of giving an empty history.
+    private class SparseBitcoin extends HistoryBitcoin {
+        @Override
+        protected List<Transaction> getAddressTransactionsInner(String address) {
+            return histories.get(address);
+        }
+
+        @Override
+        protected Map<String, List<Transaction>> getAddressTransactionsInner(Collection<String> addresses)
+                throws IOException, CoinNetworkException, AddressFormatException {
+
+            requests++;
+            Map<String, List<Transaction>> found = new HashMap<>();
+            for (String address : addresses) {
+                if (histories.containsKey(address)) found.put(address, histories.get(address));
+            }
+            return found;
+        }
+    }
+
+    @Test
+    // The batch lookups give the same answers as looking up one address at a
+    // time, including for addresses that the backend knows nothing about.
+    public void testBatchLookups() throws Exception {
+        for (boolean sparse : new boolean[]{false, true}) {
+            HistoryBitcoin batch = sparse ? new SparseBitcoin() : new HistoryBitcoin();
+            HistoryBitcoin single = sparse ? new SparseBitcoin() : new HistoryBitcoin();
+            NetworkParameters params = batch.netParams;
+
+            // One address with a single confirmed payment, one whose payment
+            // has been spent, and one with no history at all.
+            org.bitcoinj.core.Address funded = new ECKey().toAddress(params);
+            org.bitcoinj.core.Address spent = new ECKey().toAddress(params);
+            org.bitcoinj.core.Address unknown = new ECKey().toAddress(params);
+
+            Transaction fundedTx = new Transaction(params);
+            fundedTx.addOutput(Coin.COIN, funded);
+
+            Transaction spentTx = new Transaction(params);
+            spentTx.addOutput(Coin.COIN, spent);
+            Transaction spend = new Transaction(params);
+            spend.addInput(spentTx.getOutput(0));
+            spend.addOutput(Coin.COIN, new ECKey().toAddress(params));
+
+            for (HistoryBitcoin bitcoin : new HistoryBitcoin[]{batch, single}) {
+                bitcoin.add(funded, fundedTx);
+                bitcoin.add(spent, spentTx);
+                bitcoin.add(spent, spend);
+            }
+
+            List<Address> addrs = new LinkedList<>();
+            for (org.bitcoinj.core.Address a : new org.bitcoinj.core.Address[]{funded, spent, unknown}) {
+                addrs.add(new MockAddress(a.toString()));
+            }
+
+            Map<Address, Boolean> sufficient = batch.sufficientFunds(addrs, Coin.CENT.value);
+            Assert.assertEquals(1, batch.requests);
+            Assert.assertEquals(3, sufficient.size());
+            for (Address addr : addrs) {
+                Assert.assertEquals(single.sufficientFunds(addr, Coin.CENT.value), sufficient.get(addr));
+            }
+            Assert.assertTrue(sufficient.get(addrs.get(0)));
+            Assert.assertFalse(sufficient.get(addrs.get(1)));
+            Assert.assertFalse(sufficient.get(addrs.get(2)));
+
+            // A transaction which spends both payments again.
+            Transaction doubleSpend = new Transaction(params);
+            doubleSpend.addInput(fundedTx.getOutput(0));
+            doubleSpend.addInput(spentTx.getOutput(0));
+            doubleSpend.addOutput(Coin.COIN, new ECKey().toAddress(params));
+            Bitcoin.Transaction b = batch.new Transaction(doubleSpend.getHashAsString(), doubleSpend, false);
+            Bitcoin.Transaction s = single.new Transaction(doubleSpend.getHashAsString(), doubleSpend, false);
+
+            Map<Address, com.shuffle.bitcoin.Transaction> conflicts
+                    = batch.getConflictingTransactions(b, addrs, Coin.CENT.value);
+            for (Address addr : addrs) {
+                com.shuffle.bitcoin.Transaction expected = single.getConflictingTransaction(s, addr, Coin.CENT.value);
+                com.shuffle.bitcoin.Transaction found = conflicts.get(addr);
+                Assert.assertEquals(expected == null ? null : expected.toString(),
+                        found == null ? null : found.toString());
+            }
+            Assert.assertEquals(Collections.singleton(addrs.get(1)), conflicts.keySet());
+            Assert.assertEquals(spend.getHashAsString(), conflicts.get(addrs.get(1)).toString());
+
+            // The histories were cached by the first lookup.
+            Assert.assertEquals(1, batch.requests);
+        }
+    }
+
+    @Test
+    // Only outputs which have been spent are left out of the balance, and a
+    // transaction conflicts with those which spend the same outputs.
+    public void testSpentOutputs() throws Exception {
+        HistoryBitcoin bitcoin = new HistoryBitcoin();
+        NetworkParameters params = bitcoin.netParams;
+        ECKey key = new ECKey();
+        org.bitcoinj.core.Address address = key.toAddress(params);
+        org.bitcoinj.core.Address elsewhere = new ECKey().toAddress(params);
+
+        Transaction funding = new Transaction(params);
+        funding.addOutput(Coin.COIN, address);
+        funding.addOutput(Coin.CENT, address);
+
+        Transaction spend = new Transaction(params);
+        spend.addInput(funding.getOutput(0));
+        spend.addOutput(Coin.COIN, elsewhere);
+
+        bitcoin.add(address, funding);
+        bitcoin.add(address, spend);
+
+        Assert.assertEquals(Coin.CENT.value, bitcoin.getAddressBalance(address.toString()));
+
+        Transaction join = new Transaction(params);
+        join.addInput(funding.getOutput(1));
+        join.addOutput(Coin.CENT, elsewhere);
+        Bitcoin.Transaction j = bitcoin.new Transaction(join.getHashAsString(), join, false);
+
+        MockAddress addr = new MockAddress(address.toString());
+        Assert.assertNull(bitcoin.getConflictingTransaction(j, addr, 1));
+
+        Transaction doubleSpend = new Transaction(params);
+        doubleSpend.addInput(funding.getOutput(0));
+        doubleSpend.addOutput(Coin.COIN, address);
+        Bitcoin.Transaction d = bitcoin.new Transaction(doubleSpend.getHashAsString(), doubleSpend, false);
+
+        Assert.assertEquals(spend.getHashAsString(),
+                bitcoin.getConflictingTransaction(d, addr, 1).toString());
+    }
+
+    @Test
+    // The histories of every address are looked up together, and the
+    // transactions in them are not downloaded again.
+    public void testShuffleTransaction() throws Exception {
+        HistoryBitcoin bitcoin = new HistoryBitcoin();
+        NetworkParameters params = bitcoin.netParams;
+
+        List<VerificationKey> from = new LinkedList<>();
+        Map<VerificationKey, Address> change = new HashMap<>();
+        Queue<Address> to = new LinkedList<>();
+        for (int i = 0; i < 3; i++) {
+            ECKey key = new ECKey();
+            VerificationKey vk = new VerificationKeyImpl(key.getPubKey(), params);
+            from.add(vk);
+
+            Transaction funding = new Transaction(params);
+            funding.addOutput(Coin.COIN, key.toAddress(params));
+            bitcoin.add(key.toAddress(params), funding);
+
+            to.add(new MockAddress(new ECKey().toAddress(params).toString()));
+            change.put(vk, i == 0 ? null : new MockAddress(new ECKey().toAddress(params).toString()));
+        }
+
+        Bitcoin.Transaction t = bitcoin.shuffleTransaction(Coin.CENT.value, 1000, from, to, change);
+        Assert.assertNotNull(t);
+        Assert.assertEquals(3, t.bitcoinj().getInputs().size());
+        Assert.assertEquals(5, t.bitcoinj().getOutputs().size());
+        Assert.assertEquals(1, bitcoin.requests);
+
+        // An output address which has been used before.
+        HistoryBitcoin reused = new HistoryBitcoin();
+        reused.histories.putAll(bitcoin.histories);
+        org.bitcoinj.core.Address address = new org.bitcoinj.core.Address(params, to.peek().toString());
+        Transaction used = new Transaction(params);
+        used.addOutput(Coin.COIN, address);
+        reused.add(address, used);
+
+        Assert.assertNull(reused.shuffleTransaction(Coin.CENT.value, 1000, from, to, change));
+    }
 }
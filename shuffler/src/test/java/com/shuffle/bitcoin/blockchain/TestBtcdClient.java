@@ -0,0 +1,244 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.bitcoin.blockchain;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.bitcoinj.params.TestNet3Params;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests BtcdClient against a stub btcd server running locally.
+ */
+public class TestBtcdClient {
+
+    // Answers every call with the method and the first parameter joined together.
+    // Batch responses are sent in reverse order. Addresses starting with "unknown"
+    // get the error btcd sends for an address that it has never seen.
+    private static class StubBtcd implements HttpHandler {
+        final String authorization;
+        final AtomicInteger requests = new AtomicInteger();
+        final Set<Integer> ports = Collections.synchronizedSet(new HashSet<Integer>());
+
+        StubBtcd(String authorization) {
+            this.authorization = authorization;
+        }
+
+        JSONObject respond(JSONObject request) {
+            JSONObject response = new JSONObject();
+            response.put("id", request.get("id"));
+            String param = request.getJSONArray("params").getString(0);
+            if (param.startsWith("unknown")) {
+                response.put("result", JSONObject.NULL);
+                response.put("error", new JSONObject()
+                        .put("code", -5).put("message", "No information available about address"));
+            } else {
+                response.put("result", request.getString("method") + " " + param);
+                response.put("error", JSONObject.NULL);
+            }
+            return response;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            ports.add(exchange.getRemoteAddress().getPort());
+
+            String body = read(exchange.getRequestBody());
+
+            int code;
+            String response;
+            if (!authorization.equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                code = 401;
+                response = "Unauthorized";
+            } else if (body.startsWith("[")) {
+                JSONArray batch = new JSONArray(body);
+                JSONArray results = new JSONArray();
+                for (int i = batch.length() - 1; i >= 0; i--) {
+                    results.put(respond(batch.getJSONObject(i)));
+                }
+                code = 200;
+                response = results.toString();
+            } else {
+                JSONObject result = respond(new JSONObject(body));
+                code = result.isNull("error") ? 200 : 500;
+                response = result.toString();
+            }
+
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(code, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        static String read(InputStream in) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, n);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private StubBtcd stub;
+    private URL url;
+
+    @Before
+    public void setup() throws IOException {
+        // "admin:pass" in base 64.
+        stub = new StubBtcd("Basic YWRtaW46cGFzcw==");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", stub);
+        executor = Executors.newFixedThreadPool(4);
+        server.setExecutor(executor);
+        server.start();
+
+        url = new URL("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @After
+    public void shutdown() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testCall() throws IOException {
+        BtcdClient client = new BtcdClient(url, "admin", "pass");
+
+        for (int i = 0; i < 10; i++) {
+            JSONObject response = client.call("getrawtransaction", new JSONArray().put("tx" + i));
+            Assert.assertEquals("getrawtransaction tx" + i, response.getString("result"));
+        }
+
+        // Errors are returned as responses.
+        JSONObject error = client.call("searchrawtransactions", new JSONArray().put("unknown"));
+        Assert.assertTrue(error.isNull("result"));
+        Assert.assertEquals(-5, error.getJSONObject("error").getInt("code"));
+
+        // Every call went over the same connection.
+        Assert.assertEquals(11, stub.requests.get());
+        Assert.assertEquals(1, stub.ports.size());
+    }
+
+    @Test
+    public void testBatch() throws IOException {
+        BtcdClient client = new BtcdClient(url, "admin", "pass");
+
+        List<JSONArray> params = new LinkedList<>();
+        for (int i = 0; i < 20; i++) {
+            params.add(new JSONArray().put("address" + i));
+        }
+
+        List<JSONObject> responses = client.batch("searchrawtransactions", params);
+
+        // The responses are put back in order.
+        Assert.assertEquals(1, stub.requests.get());
+        Assert.assertEquals(20, responses.size());
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals("searchrawtransactions address" + i, responses.get(i).getString("result"));
+        }
+
+        Assert.assertTrue(client.batch("searchrawtransactions", new LinkedList<JSONArray>()).isEmpty());
+        Assert.assertEquals(1, stub.requests.get());
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        final BtcdClient client = new BtcdClient(url, "admin", "pass");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<String>> results = new LinkedList<>();
+            for (int i = 0; i < 100; i++) {
+                final String param = "tx" + i;
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return client.call("getrawtransaction", new JSONArray().put(param)).getString("result");
+                    }
+                }));
+            }
+
+            int i = 0;
+            for (Future<String> result : results) {
+                Assert.assertEquals("getrawtransaction tx" + i, result.get());
+                i++;
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Connections were reused rather than opened for every call.
+        Assert.assertEquals(100, stub.requests.get());
+        Assert.assertTrue(stub.ports.size() < 100);
+    }
+
+    @Test
+    public void testUnauthorized() {
+        BtcdClient client = new BtcdClient(url, "admin", "wrong");
+
+        try {
+            client.call("getrawtransaction", new JSONArray().put("tx"));
+            Assert.fail();
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testBtcdAddressTransactions() throws Exception {
+        Btcd btcd = new Btcd(TestNet3Params.get(), url, "admin", "pass");
+
+        Map<String, List<Bitcoin.Transaction>> txLists
+                = btcd.getAddressTransactions(Arrays.asList("unknown1", "unknown2", "unknown1"));
+
+        Assert.assertEquals(1, stub.requests.get());
+        Assert.assertEquals(2, txLists.size());
+        Assert.assertTrue(txLists.get("unknown1").isEmpty());
+        Assert.assertTrue(txLists.get("unknown2").isEmpty());
+
+        // The second time, the addresses are in the cache.
+        btcd.getAddressTransactions(Arrays.asList("unknown1", "unknown2"));
+        btcd.getAddressTransactions("unknown1");
+        Assert.assertEquals(1, stub.requests.get());
+    }
+}
@@ -5,6 +5,7 @@ import com.shuffle.JvmModule;
 import com.shuffle.bitcoin.Address;
 import com.shuffle.bitcoin.DecryptionKey;
 import com.shuffle.bitcoin.EncryptionKey;
+import com.shuffle.p2p.Bytestring;
 import com.shuffle.protocol.FormatException;
 
 import org.bitcoinj.core.ECKey;
@@ -87,12 +88,12 @@ public class AddressImplTest {
             encryptionKeys.addLast(dk.EncryptionKey());
          }
 
-         String encrypted = addressi.toString();
+         Bytestring encrypted = new Bytestring(addressi.toString().getBytes());
          for (EncryptionKey ek : encryptionKeys) {
             encrypted = ek.encrypt(encrypted);
 
             try {
-               new AddressImpl(encrypted);
+               new AddressImpl(new String(encrypted.bytes));
                Assert.fail();
             } catch (FormatException e) {
                // It should be impossible to construct an address from this.
@@ -104,7 +105,7 @@ public class AddressImplTest {
             decryptionKeys.removeLast();
          }
 
-         Assert.assertEquals(addressi, new AddressImpl(encrypted));
+         Assert.assertEquals(addressi, new AddressImpl(new String(encrypted.bytes)));
       }
    }
 
@@ -0,0 +1,86 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.bitcoin.impl;
+
+import com.google.protobuf.ByteString;
+import com.shuffle.bitcoin.Address;
+import com.shuffle.bitcoin.EncryptionKey;
+import com.shuffle.bitcoin.VerificationKey;
+
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.params.TestNet3Params;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.spec.ECGenParameterSpec;
+
+public class CryptoProtobufTest {
+   NetworkParameters params = TestNet3Params.get();
+   CryptoProtobuf proto = new CryptoProtobuf(params, 2);
+
+   @Test
+   public void testAddress() throws Exception {
+      Address addr = new AddressImpl(new ECKey().toAddress(params));
+
+      ByteString bytes = proto.marshallAddress(addr);
+      Assert.assertEquals(21, bytes.size());
+      Assert.assertEquals(addr, proto.unmarshallAddress(bytes));
+
+      Address main = new AddressImpl("1BvBMSEYstWetqTFn5Au4m4GFg7xJaNVN2");
+      Assert.assertEquals(main, proto.unmarshallAddress(proto.marshallAddress(main)));
+   }
+
+   @Test
+   public void testVerificationKey() throws Exception {
+      VerificationKey vk = new VerificationKeyImpl(new ECKey().getPubKey(), params);
+
+      ByteString bytes = proto.marshallVerificationKey(vk);
+      Assert.assertEquals(33, bytes.size());
+      Assert.assertEquals(vk.toString(), proto.unmarshallVerificationKey(bytes).toString());
+   }
+
+   @Test
+   // Version 1 sends keys as strings, which need the network parameters to be read.
+   public void testDefaultVersion() throws Exception {
+      CryptoProtobuf v1 = new CryptoProtobuf(params);
+      VerificationKey vk = new VerificationKeyImpl(new ECKey().getPubKey(), params);
+
+      Assert.assertEquals(vk.toString(), v1.unmarshallVerificationKey(vk.toString()).toString());
+
+      try {
+         new CryptoProtobuf(null);
+         Assert.fail();
+      } catch (NullPointerException e) {
+         // Expected.
+      }
+   }
+
+   @Test
+   public void testEncryptionKey() throws Exception {
+      KeyPairGenerator kpg = KeyPairGenerator.getInstance("ECIES", new BouncyCastleProvider());
+
+      // Keys made by BitcoinCrypto are compressed to 33 bytes.
+      kpg.initialize(256, new SecureRandom());
+      EncryptionKey ek = new EncryptionKeyImpl(kpg.generateKeyPair().getPublic());
+
+      ByteString bytes = proto.marshallEncryptionKey(ek);
+      Assert.assertEquals(33, bytes.size());
+      Assert.assertEquals(ek, proto.unmarshallEncryptionKey(bytes));
+
+      // Keys on other curves are sent as strings.
+      kpg.initialize(new ECGenParameterSpec("secp256k1"));
+      EncryptionKey other = new EncryptionKeyImpl(kpg.generateKeyPair().getPublic());
+
+      Assert.assertEquals(other, proto.unmarshallEncryptionKey(proto.marshallEncryptionKey(other)));
+   }
+}
@@ -5,6 +5,7 @@ import com.shuffle.JvmModule;
 import com.shuffle.bitcoin.Address;
 import com.shuffle.bitcoin.DecryptionKey;
 import com.shuffle.bitcoin.EncryptionKey;
+import com.shuffle.p2p.Bytestring;
 import com.shuffle.protocol.FormatException;
 
 import org.apache.commons.codec.binary.Hex;
@@ -131,9 +132,9 @@ public class DecryptionKeyImplTest {
         System.out.println(privateTestKey);
         Address testAddress = new AddressImpl("myGgn8UojMsyqn6KGQLEbVbpYSePcKfawG");
         System.out.println("Address myGgn8UojMsyqn6KGQLEbVbpYSePcKfawG encrypted to PublicKey :"+ encryptionKey.toString());
-        String encAddress = encryptionKey.encrypt(testAddress.toString());
+        Bytestring encAddress = encryptionKey.encrypt(new Bytestring(testAddress.toString().getBytes()));
         System.out.println("Address myGgn8UojMsyqn6KGQLEbVbpYSePcKfawG encrypted \n to "+ encryptionKey.toString() +" :\n" + encAddress);
-        Address decAddress = new AddressImpl(decryptionKey.decrypt(encAddress));
+        Address decAddress = new AddressImpl(new String(decryptionKey.decrypt(encAddress).bytes));
         System.out.println("and then decrypted \n back to :\n" + decAddress);
         assertEquals(testAddress.toString(), decAddress.toString());
     }
@@ -0,0 +1,94 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.bitcoin.impl;
+
+import com.shuffle.bitcoin.Crypto;
+import com.shuffle.bitcoin.DecryptionKey;
+import com.shuffle.bitcoin.SigningKey;
+import com.shuffle.mock.InsecureRandom;
+import com.shuffle.mock.MockCrypto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class PooledCryptoTest {
+
+    // MockCrypto is not thread safe, so we lock it. Keys can be made slowly.
+    private static class SlowCrypto implements Crypto {
+        final MockCrypto crypto = new MockCrypto(new InsecureRandom(77));
+        final long delay;
+
+        SlowCrypto(long delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        public synchronized SigningKey makeSigningKey() {
+            return crypto.makeSigningKey();
+        }
+
+        @Override
+        public DecryptionKey makeDecryptionKey() {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+
+            synchronized (this) {
+                return crypto.makeDecryptionKey();
+            }
+        }
+
+        @Override
+        public synchronized int getRandom(int n) {
+            return crypto.getRandom(n);
+        }
+    }
+
+    @Test
+    public void testPool() throws InterruptedException {
+        PooledCrypto pooled = new PooledCrypto(new SlowCrypto(0), 5);
+
+        for (int i = 0; i < 100 && pooled.available() < 5; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(5, pooled.available());
+
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(keys.add(pooled.makeDecryptionKey().toString()));
+        }
+        Assert.assertEquals(5, pooled.hits());
+        Assert.assertEquals(0, pooled.misses());
+
+        // Every key is handed out only once, whether or not it came from the pool.
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(keys.add(pooled.makeDecryptionKey().toString()));
+        }
+        Assert.assertEquals(105, pooled.hits() + pooled.misses());
+
+        pooled.close();
+    }
+
+    @Test
+    public void testMiss() {
+        PooledCrypto pooled = new PooledCrypto(new SlowCrypto(500), 1);
+
+        // The first key isn't ready yet.
+        Assert.assertNotNull(pooled.makeDecryptionKey());
+        Assert.assertEquals(0, pooled.hits());
+        Assert.assertEquals(1, pooled.misses());
+
+        pooled.close();
+    }
+}
@@ -0,0 +1,215 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.chan;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestCache {
+
+    // A cache with a clock that only moves when we tell it to.
+    private static class TestClockCache extends Cache<Integer, String> {
+        long time = 0;
+
+        TestClockCache(int maxSize, long ttl) {
+            super(maxSize, ttl);
+        }
+
+        @Override
+        long now() {
+            return time;
+        }
+    }
+
+    // Remembers every key it is asked to load.
+    private static class CountingLoader implements Cache.Loader<Integer, String> {
+        final List<Integer> loaded = new LinkedList<>();
+
+        @Override
+        public synchronized Map<Integer, String> load(Collection<Integer> keys) throws Exception {
+            Map<Integer, String> values = new HashMap<>();
+            for (Integer key : keys) {
+                loaded.add(key);
+                values.put(key, "value " + key);
+            }
+            return values;
+        }
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        Cache<Integer, String> cache = new TestClockCache(10, 100);
+        CountingLoader loader = new CountingLoader();
+
+        Assert.assertEquals("value 1", cache.get(1, loader));
+        Assert.assertEquals("value 1", cache.get(1, loader));
+        Assert.assertEquals(1, cache.hits());
+        Assert.assertEquals(1, cache.misses());
+
+        // Only the missing keys are loaded, and they are loaded together.
+        Map<Integer, String> values = cache.getAll(Arrays.asList(1, 2, 3, 2), loader);
+        Assert.assertEquals(3, values.size());
+        Assert.assertEquals("value 3", values.get(3));
+        Assert.assertEquals(Arrays.asList(1, 2, 3), sorted(loader.loaded));
+        Assert.assertEquals(2, cache.hits());
+        Assert.assertEquals(3, cache.misses());
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        TestClockCache cache = new TestClockCache(10, 100);
+        CountingLoader loader = new CountingLoader();
+
+        cache.get(1, loader);
+        cache.time = 99;
+        cache.get(1, loader);
+        Assert.assertEquals(1, loader.loaded.size());
+
+        cache.time = 100;
+        cache.get(1, loader);
+        Assert.assertEquals(2, loader.loaded.size());
+    }
+
+    @Test
+    public void testEvict() throws Exception {
+        Cache<Integer, String> cache = new TestClockCache(3, 100);
+        CountingLoader loader = new CountingLoader();
+
+        cache.getAll(Arrays.asList(1, 2, 3), loader);
+
+        // 1 is now the most recently used, so 2 is removed.
+        cache.get(1, loader);
+        cache.get(4, loader);
+        Assert.assertEquals(3, cache.size());
+
+        cache.getAll(Arrays.asList(1, 3, 4), loader);
+        Assert.assertEquals(4, loader.loaded.size());
+
+        cache.get(2, loader);
+        Assert.assertEquals(5, loader.loaded.size());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        Cache<Integer, String> cache = new TestClockCache(10, 100);
+        final AtomicInteger attempts = new AtomicInteger();
+
+        Cache.Loader<Integer, String> failing = new Cache.Loader<Integer, String>() {
+            @Override
+            public Map<Integer, String> load(Collection<Integer> keys) throws Exception {
+                attempts.incrementAndGet();
+                throw new IOException("No connection");
+            }
+        };
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.get(1, failing);
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+
+        // Failures are tried again.
+        Assert.assertEquals(2, attempts.get());
+        Assert.assertEquals(0, cache.size());
+
+        // A key which the loader leaves out is a failure too.
+        Cache.Loader<Integer, String> empty = new Cache.Loader<Integer, String>() {
+            @Override
+            public Map<Integer, String> load(Collection<Integer> keys) throws Exception {
+                return new HashMap<>();
+            }
+        };
+
+        try {
+            cache.get(2, empty);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            // Expected.
+        }
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        final Cache<Integer, String> cache = new TestClockCache(10, 100);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+
+        final Cache.Loader<Integer, String> slow = new Cache.Loader<Integer, String>() {
+            @Override
+            public Map<Integer, String> load(Collection<Integer> keys) throws Exception {
+                loads.incrementAndGet();
+                started.countDown();
+                release.await();
+
+                Map<Integer, String> values = new HashMap<>();
+                for (Integer key : keys) {
+                    values.put(key, "value " + key);
+                }
+                return values;
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new LinkedList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return cache.get(7, slow);
+                    }
+                }));
+            }
+
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // Give the other threads time to join the first.
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                Assert.assertEquals("value 7", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(1, cache.misses());
+        Assert.assertEquals(7, cache.hits());
+    }
+
+    private static List<Integer> sorted(List<Integer> list) {
+        List<Integer> copy = new LinkedList<>(list);
+        Collections.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.chan.packet;
+
+import com.shuffle.mock.MockSigningKey;
+import com.shuffle.mock.MockVerificationKey;
+import com.shuffle.p2p.Bytestring;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for SignatureCache.
+ */
+public class TestSignatureCache {
+
+    // Counts how many times a signature is really checked.
+    private static class CountingKey extends MockVerificationKey {
+        private static final long serialVersionUID = 1L;
+
+        final AtomicInteger checked = new AtomicInteger();
+
+        CountingKey(int index) {
+            super(index);
+        }
+
+        @Override
+        public boolean verify(Bytestring payload, Bytestring signature) {
+            checked.incrementAndGet();
+            return super.verify(payload, signature);
+        }
+    }
+
+    @Test
+    public void testVerify() {
+        SignatureCache cache = new SignatureCache(10);
+        CountingKey key = new CountingKey(1);
+
+        Bytestring payload = new Bytestring("payload".getBytes());
+        Bytestring other = new Bytestring("other".getBytes());
+        Bytestring signature = new MockSigningKey(1).sign(payload);
+
+        // A valid signature is only checked once.
+        Assert.assertTrue(cache.verify(key, payload, signature));
+        Assert.assertTrue(cache.verify(key, new Bytestring("payload".getBytes()), signature));
+        Assert.assertEquals(1, key.checked.get());
+
+        // So is an invalid one.
+        Assert.assertFalse(cache.verify(key, other, signature));
+        Assert.assertFalse(cache.verify(key, other, signature));
+        Assert.assertEquals(2, key.checked.get());
+
+        // A different key is a different entry.
+        Assert.assertFalse(cache.verify(new CountingKey(2), payload, signature));
+
+        Assert.assertEquals(2, cache.hits());
+        Assert.assertEquals(3, cache.misses());
+        Assert.assertEquals(0.4, cache.hitRate(), 0.0001);
+        Assert.assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testSigned() {
+        SignatureCache cache = new SignatureCache(10);
+        CountingKey key = new CountingKey(1);
+
+        Bytestring payload = new Bytestring("payload".getBytes());
+        Bytestring signature = new MockSigningKey(1).sign(payload);
+
+        for (int i = 0; i < 5; i++) {
+            new Signed<>(payload, payload, signature, key, cache);
+        }
+        Assert.assertEquals(1, key.checked.get());
+
+        // An invalid signature is still rejected the second time.
+        for (int i = 0; i < 2; i++) {
+            try {
+                new Signed<>(payload, payload, new MockSigningKey(2).sign(payload), key, cache);
+                Assert.fail();
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+        }
+        Assert.assertEquals(2, key.checked.get());
+    }
+
+    @Test
+    // When many threads check the same signature at once, it is only checked once.
+    public void testConcurrent() throws InterruptedException {
+        final SignatureCache cache = new SignatureCache(10);
+        final CountingKey key = new CountingKey(1);
+
+        final Bytestring payload = new Bytestring("payload".getBytes());
+        final Bytestring signature = new MockSigningKey(1).sign(payload);
+
+        int threads = 20;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger valid = new AtomicInteger();
+
+        for (int i = 0; i < threads; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        if (cache.verify(key, payload, signature)) valid.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        // Not counted.
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        start.countDown();
+        done.await();
+
+        Assert.assertEquals(threads, valid.get());
+        Assert.assertEquals(1, key.checked.get());
+    }
+}
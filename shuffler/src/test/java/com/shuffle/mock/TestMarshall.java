@@ -1,29 +1,38 @@
 package com.shuffle.mock;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
 import com.shuffle.bitcoin.SigningKey;
 import com.shuffle.bitcoin.VerificationKey;
 import com.shuffle.chan.BasicChan;
 import com.shuffle.chan.Chan;
 import com.shuffle.chan.Inbox;
 import com.shuffle.chan.Send;
+import com.shuffle.chan.packet.JavaMarshaller;
 import com.shuffle.chan.packet.Packet;
 import com.shuffle.chan.packet.Signed;
+import com.shuffle.chan.packet.VerifyingSend;
 import com.shuffle.p2p.Bytestring;
 import com.shuffle.player.Messages;
 import com.shuffle.player.Payload;
 import com.shuffle.player.Protobuf;
+import com.shuffle.player.proto.Proto;
 import com.shuffle.protocol.FormatException;
+import com.shuffle.protocol.blame.Blame;
 import com.shuffle.protocol.message.Phase;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 
 /**
  * Created by Daniel Krawisz on 10/17/16.
@@ -33,11 +42,17 @@ public class TestMarshall {
 
     @Test
     public void testMarshall() throws IOException, FormatException, NoSuchAlgorithmException, InterruptedException {
+        marshall(1);
+        marshall(2);
+        marshall(3);
+    }
+
+    private void marshall(int version) throws IOException, FormatException, NoSuchAlgorithmException, InterruptedException {
 
         Bytestring session = new Bytestring("s".getBytes());
         SigningKey me = new MockSigningKey(100);
         VerificationKey you = new MockVerificationKey(2);
-        Protobuf proto = new MockProtobuf();
+        Protobuf proto = new MockProtobuf(version);
         Chan<Bytestring> chan = new BasicChan<>(3);
         Map<VerificationKey,
                 Send<Signed<Packet<VerificationKey, Payload>>>> sendTo = new HashMap<>();
@@ -55,7 +70,8 @@ public class TestMarshall {
             }
         });
 
-        Messages messages = new Messages(session, me, sendTo, new Inbox<>(10), proto);
+        Inbox<VerificationKey, Signed<Packet<VerificationKey, Payload>>> inbox = new Inbox<>(10);
+        Messages messages = new Messages(session, me, sendTo, inbox, proto);
 
         List<com.shuffle.protocol.message.Packet> testCases = new LinkedList<>();
 
@@ -64,9 +80,165 @@ public class TestMarshall {
                 .attach(new MockAddress(2))
                 .attach(new MockAddress(4)).hashed().send(Phase.Announcement, new MockVerificationKey(2)));
 
+        testCases.add(messages.make().attach(new MockAddress(1))
+                .attach("a").attach(new MockAddress(2)).attach("b")
+                .send(Phase.BroadcastOutput, new MockVerificationKey(2)));
+
+        // A broadcast packet, which has no recipient, can be sent in version 3
+        // once the other player has shown us that it can read them.
+        if (version >= 3) {
+            inbox.receivesFrom(you).send(new Signed<>(new Packet<>(session, you, me.VerificationKey(), 0,
+                    new Payload(Phase.Announcement, (com.shuffle.player.Message) messages.make(), version)),
+                    new MockSigningKey(2), proto.packetMarshaller));
+            Assert.assertNotNull(messages.receive());
+
+            com.shuffle.protocol.message.Packet broadcast = messages.make().attach(new MockAddress(5))
+                    .broadcast(Phase.EquivocationCheck, Arrays.asList(me.VerificationKey(), you));
+            Assert.assertNull(broadcast.to());
+            testCases.add(broadcast);
+        }
+
         for (com.shuffle.protocol.message.Packet p : testCases) {
+            Signed<Packet<VerificationKey, Payload>> received = proto.signedMarshaller.unmarshall(chan.receive());
+
+            Assert.assertTrue(p.equals(new Messages.SignedPacket(received)));
+            Assert.assertEquals(version, received.message.payload.version);
+
+            // The bytes that were signed arrive unchanged.
+            Assert.assertEquals(((Messages.SignedPacket) p).packet.marshalled, received.marshalled);
+        }
+    }
 
-            Assert.assertTrue(p.equals(new Messages.SignedPacket(proto.signedMarshaller.unmarshall(chan.receive()))));
+    @Test
+    // A packet with a valid signature is rejected if it is not in the form
+    // in which we would marshall it, since it could not be passed on as evidence.
+    public void testNonCanonical() throws IOException, FormatException, NoSuchAlgorithmException {
+        Protobuf proto = new MockProtobuf(2);
+        SigningKey me = new MockSigningKey(100);
+        Map<VerificationKey, Send<Signed<Packet<VerificationKey, Payload>>>> sendTo = new HashMap<>();
+        Messages messages = new Messages(new Bytestring("s".getBytes()), me, sendTo, new Inbox<>(10), proto);
+
+        com.shuffle.player.Message m
+                = (com.shuffle.player.Message) messages.make().attach(new MockAddress(1));
+
+        Signed<Packet<VerificationKey, Payload>> signed = new Signed<>(
+                new Packet<>(new Bytestring("s".getBytes()), me.VerificationKey(), new MockVerificationKey(2), 0,
+                        new Payload(Phase.Announcement, m, 2)),
+                me, proto.packetMarshaller);
+
+        Assert.assertEquals(signed, proto.signedMarshaller.unmarshall(proto.signedMarshaller.marshall(signed)));
+
+        // Add a field which we don't know about to the end of the packet and sign that.
+        byte[] packet = Arrays.copyOf(signed.marshalled.bytes, signed.marshalled.bytes.length + 2);
+        packet[packet.length - 2] = (byte) (15 << 3);
+        packet[packet.length - 1] = 1;
+        Bytestring signature = me.sign(new Bytestring(packet));
+
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        CodedOutputStream out = CodedOutputStream.newInstance(b);
+        out.writeByteArray(1, packet);
+        out.writeMessage(2, Proto.Signature.newBuilder()
+                .setSignature(ByteString.copyFrom(signature.bytes)).build());
+        out.flush();
+
+        try {
+            proto.signedMarshaller.unmarshall(new Bytestring(b.toByteArray()));
+            Assert.fail();
+        } catch (FormatException e) {
+            // Expected.
         }
+
+        // If the signature is of the packet without the unknown field, it is accepted
+        // and the packet is kept as we would marshall it.
+        b = new ByteArrayOutputStream();
+        out = CodedOutputStream.newInstance(b);
+        out.writeByteArray(1, packet);
+        out.writeMessage(2, Proto.Signature.newBuilder()
+                .setSignature(ByteString.copyFrom(signed.signature.bytes)).build());
+        out.flush();
+
+        Signed<Packet<VerificationKey, Payload>> received
+                = proto.signedMarshaller.unmarshall(new Bytestring(b.toByteArray()));
+        Assert.assertEquals(signed, received);
+        Assert.assertEquals(signed.marshalled, received.marshalled);
+
+        // A packet which is split over two fields is read as one.
+        Proto.Packet whole = Proto.Packet.parseFrom(signed.marshalled.bytes);
+        b = new ByteArrayOutputStream();
+        out = CodedOutputStream.newInstance(b);
+        out.writeByteArray(1, Proto.Packet.newBuilder().setSession(whole.getSession()).build().toByteArray());
+        out.writeByteArray(1, whole.toBuilder().clearSession().build().toByteArray());
+        out.writeMessage(2, Proto.Signature.newBuilder()
+                .setSignature(ByteString.copyFrom(signed.signature.bytes)).build());
+        out.flush();
+
+        received = proto.signedMarshaller.unmarshall(new Bytestring(b.toByteArray()));
+        Assert.assertEquals(signed, received);
+        Assert.assertEquals(signed.marshalled, received.marshalled);
+    }
+
+    @Test
+    // A packet passed on as evidence is written with the bytes that were signed,
+    // even if marshalling it again would give something different.
+    public void testForwardedEvidence() throws IOException, FormatException, NoSuchAlgorithmException {
+        Protobuf proto = new MockProtobuf(2);
+        SigningKey me = new MockSigningKey(100);
+        Map<VerificationKey, Send<Signed<Packet<VerificationKey, Payload>>>> sendTo = new HashMap<>();
+        Messages messages = new Messages(new Bytestring("s".getBytes()), me, sendTo, new Inbox<>(10), proto);
+
+        com.shuffle.player.Message m
+                = (com.shuffle.player.Message) messages.make().attach(new MockAddress(1));
+
+        Packet<VerificationKey, Payload> packet = new Packet<>(new Bytestring("s".getBytes()),
+                me.VerificationKey(), new MockVerificationKey(2), 0, new Payload(Phase.Announcement, m, 2));
+
+        // Bytes which are read as the same packet but which are not what we would
+        // write, since the recipient is given in the version 1 form.
+        Bytestring signedBytes = new Bytestring(Proto.Packet.parseFrom(
+                proto.packetMarshaller.marshall(packet).bytes).toBuilder()
+                .setTo(Proto.VerificationKey.newBuilder().setKey(packet.to.toString()))
+                .build().toByteArray());
+        Assert.assertNotEquals(proto.packetMarshaller.marshall(packet), signedBytes);
+        Signed<Packet<VerificationKey, Payload>> signed = new Signed<>(
+                packet, signedBytes, me.sign(signedBytes), me.VerificationKey());
+
+        Queue<com.shuffle.protocol.message.Packet> evidence = new LinkedList<>();
+        evidence.add(new Messages.SignedPacket(signed));
+        Proto.Blame blame = proto.marshallBlame(Blame.EquivocationFailure(evidence), 2).build();
+
+        Signed<Packet<VerificationKey, Payload>> forwarded
+                = proto.unmarshallSignedPacket(blame.getPackets().getPacket(0));
+        Assert.assertEquals(signedBytes, forwarded.marshalled);
+    }
+
+    @Test
+    // The bytes that were signed are not kept through Java serialization, since
+    // nothing there ensures that they go with the message.
+    public void testJavaSerialization() throws IOException, FormatException, InterruptedException {
+        Protobuf proto = new MockProtobuf(2);
+        SigningKey me = new MockSigningKey(100);
+        Bytestring session = new Bytestring("s".getBytes());
+
+        Signed<Packet<VerificationKey, Payload>> honest = new Signed<>(
+                new Packet<>(session, me.VerificationKey(), new MockVerificationKey(2), 0,
+                        new Payload(Phase.Announcement, new com.shuffle.player.Message(
+                                new LinkedList<com.shuffle.player.Message.Atom>(), proto.addressMarshaller(), null), 2)),
+                me, proto.packetMarshaller);
+
+        // A different packet paired with the bytes and signature of the first.
+        Packet<VerificationKey, Payload> other = new Packet<>(session, me.VerificationKey(),
+                new MockVerificationKey(3), 0, honest.message.payload);
+        Signed<Packet<VerificationKey, Payload>> forged
+                = new Signed<>(other, honest.marshalled, honest.signature, me.VerificationKey());
+
+        JavaMarshaller<Signed<Packet<VerificationKey, Payload>>> java = new JavaMarshaller<>();
+        Chan<Signed<Packet<VerificationKey, Payload>>> chan = new BasicChan<>(2);
+        VerifyingSend<Packet<VerificationKey, Payload>> verify
+                = new VerifyingSend<>(chan, proto.packetMarshaller, me.VerificationKey());
+
+        Signed<Packet<VerificationKey, Payload>> received = java.unmarshall(java.marshall(honest));
+        Assert.assertNull(received.marshalled);
+        Assert.assertTrue(verify.send(received));
+        Assert.assertFalse(verify.send(java.unmarshall(java.marshall(forged))));
     }
 }
@@ -0,0 +1,348 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.p2p;
+
+import com.shuffle.chan.BasicChan;
+import com.shuffle.chan.Chan;
+import com.shuffle.chan.Send;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the non-blocking tcp channel.
+ */
+public class TestNioChannel {
+
+    // Collects the sessions opened by remote peers and the messages they send.
+    private static class TestListener implements Listener<InetSocketAddress, Bytestring> {
+        final Chan<Session<InetSocketAddress, Bytestring>> sessions = new BasicChan<>(100);
+        final Chan<Bytestring> messages = new BasicChan<>(1000);
+
+        @Override
+        public Send<Bytestring> newSession(Session<InetSocketAddress, Bytestring> session)
+                throws InterruptedException {
+
+            try {
+                sessions.send(session);
+            } catch (IOException e) {
+                return null;
+            }
+
+            return messages;
+        }
+    }
+
+    private static InetSocketAddress address(int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    private static Bytestring random(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return new Bytestring(bytes);
+    }
+
+    // Send messages back and forth between two channels, which may be of different kinds.
+    private void sendMessages(
+            Channel<InetSocketAddress, Bytestring> alice, InetSocketAddress aliceAddress,
+            Channel<InetSocketAddress, Bytestring> bob, InetSocketAddress bobAddress
+    ) throws IOException, InterruptedException {
+
+        TestListener aliceListener = new TestListener();
+        TestListener bobListener = new TestListener();
+
+        Connection<InetSocketAddress> aliceConn = alice.open(aliceListener);
+        Connection<InetSocketAddress> bobConn = bob.open(bobListener);
+        Assert.assertNotNull(aliceConn);
+        Assert.assertNotNull(bobConn);
+
+        try {
+            Chan<Bytestring> aliceReceives = new BasicChan<>(1000);
+            Session<InetSocketAddress, Bytestring> aliceSession
+                    = alice.getPeer(bobAddress).openSession(aliceReceives);
+            Assert.assertNotNull(aliceSession);
+            Assert.assertFalse(aliceSession.closed());
+
+            // Only one session to a peer at a time.
+            Assert.assertNull(alice.getPeer(bobAddress).openSession(new BasicChan<Bytestring>()));
+
+            Random random = new Random(7);
+            List<Bytestring> sent = new LinkedList<>();
+            sent.add(new Bytestring(new byte[]{}));
+            sent.add(random(random, 1));
+            // Too big to be written all at once.
+            sent.add(random(random, 3000000));
+            for (int i = 0; i < 200; i++) {
+                sent.add(random(random, random.nextInt(100)));
+            }
+
+            for (Bytestring msg : sent) {
+                Assert.assertTrue(aliceSession.send(msg));
+            }
+
+            Session<InetSocketAddress, Bytestring> bobSession
+                    = bobListener.sessions.receive(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(bobSession);
+
+            // Messages arrive whole and in order.
+            for (Bytestring msg : sent) {
+                Assert.assertEquals(msg, bobListener.messages.receive(5, TimeUnit.SECONDS));
+            }
+
+            // Send a reply.
+            Bytestring reply = random(random, 50);
+            Assert.assertTrue(bobSession.send(reply));
+            Assert.assertEquals(reply, aliceReceives.receive(5, TimeUnit.SECONDS));
+
+            // When alice closes the session, bob finds out.
+            aliceSession.close();
+            Assert.assertTrue(aliceSession.closed());
+            Assert.assertFalse(aliceSession.send(reply));
+            Assert.assertNull(bobListener.messages.receive(5, TimeUnit.SECONDS));
+        } finally {
+            aliceConn.close();
+            bobConn.close();
+        }
+    }
+
+    @Test
+    public void testSendMessages() throws IOException, InterruptedException {
+        InetSocketAddress aliceAddress = address(9981);
+        InetSocketAddress bobAddress = address(9982);
+
+        sendMessages(new NioChannel(aliceAddress), aliceAddress, new NioChannel(bobAddress), bobAddress);
+    }
+
+    @Test
+    // NioChannel and TcpChannel frame messages the same way.
+    public void testTcpChannel() throws IOException, InterruptedException {
+        InetSocketAddress aliceAddress = address(9983);
+        InetSocketAddress bobAddress = address(9984);
+
+        sendMessages(new TcpChannel(aliceAddress), aliceAddress, new NioChannel(bobAddress), bobAddress);
+    }
+
+    @Test
+    // Many sessions are handled by a single thread.
+    public void testManySessions() throws IOException, InterruptedException {
+        int sessions = 20;
+        InetSocketAddress serverAddress = address(9985);
+
+        NioChannel.Loops loops = new NioChannel.Loops(1);
+        NioChannel server = new NioChannel(TcpChannel.defaultHeader(), serverAddress, loops);
+        TestListener serverListener = new TestListener();
+        Connection<InetSocketAddress> serverConn = server.open(serverListener);
+
+        NioChannel[] clients = new NioChannel[sessions];
+        List<Connection<InetSocketAddress>> connections = new LinkedList<>();
+        List<Session<InetSocketAddress, Bytestring>> open = new LinkedList<>();
+
+        try {
+            for (int i = 0; i < sessions; i++) {
+                clients[i] = new NioChannel(TcpChannel.defaultHeader(), address(9940 + i), loops);
+                connections.add(clients[i].open(new TestListener()));
+                open.add(clients[i].getPeer(serverAddress).openSession(new BasicChan<Bytestring>()));
+            }
+
+            for (int round = 0; round < 10; round++) {
+                for (Session<InetSocketAddress, Bytestring> session : open) {
+                    Assert.assertTrue(session.send(new Bytestring(new byte[]{(byte) round})));
+                }
+            }
+
+            for (int i = 0; i < sessions; i++) {
+                Assert.assertNotNull(serverListener.sessions.receive(5, TimeUnit.SECONDS));
+            }
+
+            int[] count = new int[10];
+            for (int i = 0; i < 10 * sessions; i++) {
+                Bytestring msg = serverListener.messages.receive(5, TimeUnit.SECONDS);
+                Assert.assertNotNull(msg);
+                count[msg.bytes[0]]++;
+            }
+
+            for (int round = 0; round < 10; round++) {
+                Assert.assertEquals(sessions, count[round]);
+            }
+        } finally {
+            for (Connection<InetSocketAddress> conn : connections) {
+                conn.close();
+            }
+            serverConn.close();
+            loops.close();
+        }
+
+        Assert.assertTrue(serverConn.closed());
+    }
+
+    private static int eventLoopThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("NioChannel event loop")) count++;
+        }
+        return count;
+    }
+
+    @Test
+    // Opening more channels does not start more threads.
+    public void testSharedLoops() throws IOException, InterruptedException {
+        int channels = 10;
+        List<Connection<InetSocketAddress>> connections = new LinkedList<>();
+
+        try {
+            connections.add(new NioChannel(address(9960)).open(new TestListener()));
+            int threads = eventLoopThreads();
+            Assert.assertTrue(threads >= NioChannel.Loops.shared().threads());
+
+            for (int i = 1; i < channels; i++) {
+                connections.add(new NioChannel(address(9960 + i)).open(new TestListener()));
+            }
+
+            Assert.assertEquals(threads, eventLoopThreads());
+        } finally {
+            for (Connection<InetSocketAddress> conn : connections) {
+                conn.close();
+            }
+        }
+
+        // The shared loops outlive the channels.
+        try {
+            NioChannel.Loops.shared().close();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+
+        // The port can be used again right away.
+        Connection<InetSocketAddress> again = new NioChannel(address(9960)).open(new TestListener());
+        Assert.assertNotNull(again);
+        again.close();
+    }
+
+    @Test
+    // A peer which sends a message bigger than we allow is disconnected.
+    public void testMaxMessage() throws IOException, InterruptedException {
+        int max = 100;
+        InetSocketAddress aliceAddress = address(9975);
+        InetSocketAddress bobAddress = address(9976);
+
+        NioChannel alice = new NioChannel(aliceAddress);
+        NioChannel bob = new NioChannel(TcpChannel.defaultHeader(), bobAddress, null, max);
+
+        Connection<InetSocketAddress> aliceConn = alice.open(new TestListener());
+        TestListener bobListener = new TestListener();
+        Connection<InetSocketAddress> bobConn = bob.open(bobListener);
+
+        try {
+            Session<InetSocketAddress, Bytestring> session
+                    = alice.getPeer(bobAddress).openSession(new BasicChan<Bytestring>());
+            Assert.assertNotNull(session);
+
+            // A message of the largest size is fine.
+            Bytestring ok = random(new Random(), max);
+            Assert.assertTrue(session.send(ok));
+            Assert.assertEquals(ok, bobListener.messages.receive(5, TimeUnit.SECONDS));
+
+            Session<InetSocketAddress, Bytestring> bobSession
+                    = bobListener.sessions.receive(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(bobSession);
+
+            // One byte more and bob hangs up.
+            session.send(random(new Random(), max + 1));
+            Assert.assertNull(bobListener.messages.receive(5, TimeUnit.SECONDS));
+            Assert.assertTrue(bobSession.closed());
+        } finally {
+            aliceConn.close();
+            bobConn.close();
+        }
+    }
+
+    @Test
+    // A receiver which throws closes its own session but not the event loop it is on.
+    public void testReceiverThrows() throws IOException, InterruptedException {
+        InetSocketAddress aliceAddress = address(9986);
+        InetSocketAddress bobAddress = address(9987);
+        InetSocketAddress carolAddress = address(9988);
+
+        NioChannel.Loops loops = new NioChannel.Loops(1);
+        NioChannel alice = new NioChannel(TcpChannel.defaultHeader(), aliceAddress, loops);
+        NioChannel bob = new NioChannel(TcpChannel.defaultHeader(), bobAddress, loops);
+        NioChannel carol = new NioChannel(TcpChannel.defaultHeader(), carolAddress, loops);
+
+        // Bob can't take the first message anyone sends him.
+        final TestListener bobListener = new TestListener() {
+            boolean thrown = false;
+
+            @Override
+            public Send<Bytestring> newSession(Session<InetSocketAddress, Bytestring> session)
+                    throws InterruptedException {
+
+                Send<Bytestring> send = super.newSession(session);
+                if (thrown) return send;
+
+                thrown = true;
+                return new Send<Bytestring>() {
+                    @Override
+                    public boolean send(Bytestring message) {
+                        throw new IllegalStateException("Queue full");
+                    }
+
+                    @Override
+                    public void close() {
+                        // The other sessions still use the listener's channel.
+                    }
+                };
+            }
+        };
+
+        Connection<InetSocketAddress> aliceConn = alice.open(new TestListener());
+        Connection<InetSocketAddress> bobConn = bob.open(bobListener);
+        Connection<InetSocketAddress> carolConn = carol.open(new TestListener());
+
+        try {
+            Chan<Bytestring> aliceReceives = new BasicChan<>(10);
+            Session<InetSocketAddress, Bytestring> aliceSession
+                    = alice.getPeer(bobAddress).openSession(aliceReceives);
+            Assert.assertNotNull(aliceSession);
+            Assert.assertTrue(aliceSession.send(new Bytestring(new byte[]{1})));
+
+            Session<InetSocketAddress, Bytestring> bobSession
+                    = bobListener.sessions.receive(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(bobSession);
+
+            // Bob hangs up on alice.
+            Assert.assertNull(aliceReceives.receive(5, TimeUnit.SECONDS));
+            Assert.assertTrue(bobSession.closed());
+
+            // Carol's session is on the same thread and works fine.
+            Session<InetSocketAddress, Bytestring> carolSession
+                    = carol.getPeer(bobAddress).openSession(new BasicChan<Bytestring>());
+            Assert.assertNotNull(carolSession);
+
+            Bytestring msg = new Bytestring(new byte[]{2});
+            Assert.assertTrue(carolSession.send(msg));
+            Assert.assertNotNull(bobListener.sessions.receive(5, TimeUnit.SECONDS));
+            Assert.assertEquals(msg, bobListener.messages.receive(5, TimeUnit.SECONDS));
+        } finally {
+            aliceConn.close();
+            bobConn.close();
+            carolConn.close();
+            loops.close();
+        }
+    }
+}
@@ -0,0 +1,338 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.p2p;
+
+import com.shuffle.chan.BasicChan;
+import com.shuffle.chan.Chan;
+import com.shuffle.chan.Send;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for running several sessions over one connection.
+ */
+public class TestSessionMultiplexer {
+    private static final int window = 4;
+
+    // Collects the sessions opened by remote peers and the messages they send.
+    private static class TestListener implements Listener<InetSocketAddress, Bytestring> {
+        final Chan<Session<InetSocketAddress, Bytestring>> sessions = new BasicChan<>(100);
+        final Chan<Bytestring> messages = new BasicChan<>(1000);
+
+        @Override
+        public Send<Bytestring> newSession(Session<InetSocketAddress, Bytestring> session)
+                throws InterruptedException {
+
+            try {
+                sessions.send(session);
+            } catch (IOException e) {
+                return null;
+            }
+
+            return receiver();
+        }
+
+        Send<Bytestring> receiver() {
+            return messages;
+        }
+    }
+
+    // A listener which does not read its messages until it is told to.
+    private static class StalledListener extends TestListener {
+        final CountDownLatch go = new CountDownLatch(1);
+
+        @Override
+        Send<Bytestring> receiver() {
+            return new Send<Bytestring>() {
+                @Override
+                public boolean send(Bytestring message) throws InterruptedException, IOException {
+                    go.await();
+                    return messages.send(message);
+                }
+
+                @Override
+                public void close() {
+                    messages.close();
+                }
+            };
+        }
+    }
+
+    private static InetSocketAddress address(int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    private static Bytestring tag(int i) {
+        return new Bytestring(("session " + i).getBytes());
+    }
+
+    private ExecutorService executor;
+    private final List<Connection<InetSocketAddress>> connections = new LinkedList<>();
+
+    @Before
+    public void startExecutor() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void stop() {
+        for (Connection<InetSocketAddress> c : connections) {
+            c.close();
+        }
+        connections.clear();
+        executor.shutdownNow();
+    }
+
+    private void open(Channel<InetSocketAddress, Bytestring> channel, TestListener listener)
+            throws IOException, InterruptedException {
+
+        Connection<InetSocketAddress> c = channel.open(listener);
+        Assert.assertNotNull(c);
+        connections.add(c);
+    }
+
+    @Test
+    public void testSharedConnection() throws IOException, InterruptedException {
+        InetSocketAddress aliceAddress = address(9971);
+        InetSocketAddress bobAddress = address(9972);
+        int sessions = 3;
+
+        SessionMultiplexer<InetSocketAddress> alice
+                = new SessionMultiplexer<>(new NioChannel(aliceAddress),
+                        SessionMultiplexer.port(aliceAddress.getPort()), executor, window);
+        SessionMultiplexer<InetSocketAddress> bob
+                = new SessionMultiplexer<>(new NioChannel(bobAddress),
+                        SessionMultiplexer.port(bobAddress.getPort()), executor, window);
+
+        TestListener[] bobListeners = new TestListener[sessions];
+        List<Chan<Bytestring>> aliceReceives = new LinkedList<>();
+        List<Session<InetSocketAddress, Bytestring>> aliceSessions = new LinkedList<>();
+        for (int i = 0; i < sessions; i++) {
+            Channel<InetSocketAddress, Bytestring> a = alice.channel(tag(i));
+            open(a, new TestListener());
+            bobListeners[i] = new TestListener();
+            open(bob.channel(tag(i)), bobListeners[i]);
+
+            // A channel with the same tag can't be opened twice.
+            Assert.assertNull(bob.channel(tag(i)).open(new TestListener()));
+
+            Chan<Bytestring> receives = new BasicChan<>(100);
+            Session<InetSocketAddress, Bytestring> s = a.getPeer(bobAddress).openSession(receives);
+            Assert.assertNotNull(s);
+            aliceReceives.add(receives);
+            aliceSessions.add(s);
+
+            // Only one session per tag to a peer at a time.
+            Assert.assertNull(a.getPeer(bobAddress).openSession(new BasicChan<Bytestring>()));
+        }
+
+        // Many more messages than the window allows.
+        for (int j = 0; j < 10 * window; j++) {
+            for (int i = 0; i < sessions; i++) {
+                Assert.assertTrue(aliceSessions.get(i).send(
+                        new Bytestring(("message " + j + " for " + i).getBytes())));
+            }
+        }
+
+        // Every message goes to the right session, in order.
+        for (int i = 0; i < sessions; i++) {
+            for (int j = 0; j < 10 * window; j++) {
+                Assert.assertEquals(new Bytestring(("message " + j + " for " + i).getBytes()),
+                        bobListeners[i].messages.receive(5, TimeUnit.SECONDS));
+            }
+
+            Session<InetSocketAddress, Bytestring> bobSession
+                    = bobListeners[i].sessions.receive(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(bobSession);
+
+            Bytestring reply = new Bytestring(("reply " + i).getBytes());
+            Assert.assertTrue(bobSession.send(reply));
+            Assert.assertEquals(reply, aliceReceives.get(i).receive(5, TimeUnit.SECONDS));
+        }
+
+        // Bob can open sessions to alice over the connection she opened.
+        Channel<InetSocketAddress, Bytestring> bobFirst = bob.channel(tag(sessions + 1));
+        TestListener aliceListener = new TestListener();
+        open(bobFirst, new TestListener());
+        open(alice.channel(tag(sessions + 1)), aliceListener);
+        Session<InetSocketAddress, Bytestring> bobSession
+                = bobFirst.getPeer(aliceAddress).openSession(new BasicChan<Bytestring>(1));
+        Assert.assertNotNull(bobSession);
+        Assert.assertTrue(bobSession.send(new Bytestring("hi alice".getBytes())));
+        Assert.assertEquals(new Bytestring("hi alice".getBytes()),
+                aliceListener.messages.receive(5, TimeUnit.SECONDS));
+        Assert.assertEquals(bobAddress,
+                aliceListener.sessions.receive(5, TimeUnit.SECONDS).peer().identity());
+
+        // All of that went over one connection.
+        Assert.assertEquals(1, alice.connections());
+        Assert.assertEquals(1, bob.connections());
+
+        // Closing one session leaves the others open.
+        aliceSessions.get(0).close();
+        Assert.assertNull(bobListeners[0].messages.receive(5, TimeUnit.SECONDS));
+        Assert.assertTrue(aliceSessions.get(1).send(new Bytestring("still here".getBytes())));
+        Assert.assertEquals(new Bytestring("still here".getBytes()),
+                bobListeners[1].messages.receive(5, TimeUnit.SECONDS));
+
+        // A session with a tag that bob is not listening for is closed.
+        Channel<InetSocketAddress, Bytestring> unknown = alice.channel(tag(sessions));
+        open(unknown, new TestListener());
+        Chan<Bytestring> refused = new BasicChan<>(1);
+        Session<InetSocketAddress, Bytestring> s = unknown.getPeer(bobAddress).openSession(refused);
+        Assert.assertNotNull(s);
+        Assert.assertTrue(s.send(new Bytestring("hello?".getBytes())));
+        Assert.assertNull(refused.receive(5, TimeUnit.SECONDS));
+        Assert.assertTrue(s.closed());
+    }
+
+    @Test
+    // A session whose messages are not being read does not hold up the others.
+    public void testStalledSession() throws IOException, InterruptedException {
+        InetSocketAddress aliceAddress = address(9973);
+        InetSocketAddress bobAddress = address(9974);
+
+        SessionMultiplexer<InetSocketAddress> alice
+                = new SessionMultiplexer<>(new NioChannel(aliceAddress),
+                        SessionMultiplexer.port(aliceAddress.getPort()), executor, window);
+        SessionMultiplexer<InetSocketAddress> bob
+                = new SessionMultiplexer<>(new NioChannel(bobAddress),
+                        SessionMultiplexer.port(bobAddress.getPort()), executor, window);
+
+        Channel<InetSocketAddress, Bytestring> aliceStalled = alice.channel(tag(0));
+        Channel<InetSocketAddress, Bytestring> aliceBusy = alice.channel(tag(1));
+        open(aliceStalled, new TestListener());
+        open(aliceBusy, new TestListener());
+
+        StalledListener stalled = new StalledListener();
+        TestListener busy = new TestListener();
+        open(bob.channel(tag(0)), stalled);
+        open(bob.channel(tag(1)), busy);
+
+        final Session<InetSocketAddress, Bytestring> stalledSession
+                = aliceStalled.getPeer(bobAddress).openSession(new BasicChan<Bytestring>(1));
+        Session<InetSocketAddress, Bytestring> busySession
+                = aliceBusy.getPeer(bobAddress).openSession(new BasicChan<Bytestring>(1));
+        Assert.assertNotNull(stalledSession);
+        Assert.assertNotNull(busySession);
+
+        // Try to send more to the stalled session than it is allowed.
+        final int stalledMessages = 3 * window;
+        final AtomicInteger sent = new AtomicInteger(0);
+        Thread sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < stalledMessages; i++) {
+                        if (!stalledSession.send(new Bytestring(new byte[]{(byte) i}))) return;
+                        sent.incrementAndGet();
+                    }
+                } catch (InterruptedException | IOException e) {
+                    // Stop sending.
+                }
+            }
+        });
+        sender.start();
+
+        // The other session gets through in the meantime.
+        for (int i = 0; i < 10 * window; i++) {
+            Bytestring msg = new Bytestring(("busy " + i).getBytes());
+            Assert.assertTrue(busySession.send(msg));
+            Assert.assertEquals(msg, busy.messages.receive(5, TimeUnit.SECONDS));
+        }
+
+        // The stalled session is only allowed one window of messages.
+        Assert.assertEquals(window, sent.get());
+        Assert.assertTrue(sender.isAlive());
+
+        // Once bob starts reading, everything arrives.
+        stalled.go.countDown();
+        for (int i = 0; i < stalledMessages; i++) {
+            Assert.assertEquals(new Bytestring(new byte[]{(byte) i}),
+                    stalled.messages.receive(5, TimeUnit.SECONDS));
+        }
+
+        sender.join(5000);
+        Assert.assertEquals(stalledMessages, sent.get());
+    }
+
+    @Test
+    // A session whose receiver throws is closed, and the remote peer is told.
+    public void testReceiverThrows() throws IOException, InterruptedException {
+        InetSocketAddress aliceAddress = address(9989);
+        InetSocketAddress bobAddress = address(9990);
+
+        SessionMultiplexer<InetSocketAddress> alice
+                = new SessionMultiplexer<>(new NioChannel(aliceAddress),
+                        SessionMultiplexer.port(aliceAddress.getPort()), executor, window);
+        SessionMultiplexer<InetSocketAddress> bob
+                = new SessionMultiplexer<>(new NioChannel(bobAddress),
+                        SessionMultiplexer.port(bobAddress.getPort()), executor, window);
+
+        Channel<InetSocketAddress, Bytestring> aliceBroken = alice.channel(tag(0));
+        Channel<InetSocketAddress, Bytestring> aliceOther = alice.channel(tag(1));
+        open(aliceBroken, new TestListener());
+        open(aliceOther, new TestListener());
+
+        // Bob's inbox for the first session is always full.
+        open(bob.channel(tag(0)), new TestListener() {
+            @Override
+            Send<Bytestring> receiver() {
+                return new Send<Bytestring>() {
+                    @Override
+                    public boolean send(Bytestring message) {
+                        throw new IllegalStateException("Queue full");
+                    }
+
+                    @Override
+                    public void close() {
+                        messages.close();
+                    }
+                };
+            }
+        });
+        TestListener other = new TestListener();
+        open(bob.channel(tag(1)), other);
+
+        Chan<Bytestring> brokenReceives = new BasicChan<>(1);
+        Session<InetSocketAddress, Bytestring> broken
+                = aliceBroken.getPeer(bobAddress).openSession(brokenReceives);
+        Assert.assertNotNull(broken);
+        Assert.assertTrue(broken.send(new Bytestring("hi bob".getBytes())));
+
+        // Bob closes the session and alice finds out.
+        Assert.assertNull(brokenReceives.receive(5, TimeUnit.SECONDS));
+        Assert.assertTrue(broken.closed());
+
+        // The other session over the same connection still works.
+        Session<InetSocketAddress, Bytestring> s
+                = aliceOther.getPeer(bobAddress).openSession(new BasicChan<Bytestring>(1));
+        Assert.assertNotNull(s);
+        for (int i = 0; i < 3 * window; i++) {
+            Bytestring msg = new Bytestring(("other " + i).getBytes());
+            Assert.assertTrue(s.send(msg));
+            Assert.assertEquals(msg, other.messages.receive(5, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(1, alice.connections());
+    }
+}
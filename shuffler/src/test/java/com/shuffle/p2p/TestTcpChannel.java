@@ -17,6 +17,8 @@ import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests for the tcp connection
@@ -451,4 +453,113 @@ public class TestTcpChannel {
         LinkedList<Integer> recC = rec[2][1].receive();
         Assert.assertEquals(recC.size(), 0);
     }
+
+    // Collects the sessions opened by remote peers and the messages they send.
+    private static class BytesListener implements Listener<InetSocketAddress, Bytestring> {
+        final Chan<Session<InetSocketAddress, Bytestring>> sessions = new BasicChan<>(100);
+        final Chan<Bytestring> messages = new BasicChan<>(1000);
+
+        @Override
+        public Send<Bytestring> newSession(Session<InetSocketAddress, Bytestring> session)
+                throws InterruptedException {
+
+            try {
+                sessions.send(session);
+            } catch (IOException e) {
+                return null;
+            }
+
+            return messages;
+        }
+    }
+
+    private static InetSocketAddress loopback(int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    private static Bytestring random(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return new Bytestring(bytes);
+    }
+
+    @Test
+    // TcpChannel reads messages which are bigger than its buffers and messages which
+    // arrive several at a time.
+    public void testTcpReceiver() throws IOException, InterruptedException {
+        InetSocketAddress aliceAddress = loopback(9979);
+        InetSocketAddress bobAddress = loopback(9980);
+
+        TcpChannel alice = new TcpChannel(aliceAddress);
+        TcpChannel bob = new TcpChannel(TcpChannel.defaultHeader(), bobAddress, true, 1024);
+
+        Connection<InetSocketAddress> aliceConn = alice.open(new BytesListener());
+        BytesListener bobListener = new BytesListener();
+        Connection<InetSocketAddress> bobConn = bob.open(bobListener);
+
+        try {
+            Session<InetSocketAddress, Bytestring> session
+                    = alice.getPeer(bobAddress).openSession(new BasicChan<Bytestring>(1));
+            Assert.assertNotNull(session);
+
+            Random random = new Random(7);
+            List<Bytestring> sent = new LinkedList<>();
+            sent.add(new Bytestring(new byte[]{}));
+            sent.add(random(random, 1));
+            sent.add(random(random, 3000000));
+            for (int i = 0; i < 200; i++) {
+                sent.add(random(random, random.nextInt(100)));
+            }
+
+            for (Bytestring msg : sent) {
+                Assert.assertTrue(session.send(msg));
+            }
+
+            for (Bytestring msg : sent) {
+                Assert.assertEquals(msg, bobListener.messages.receive(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            aliceConn.close();
+            bobConn.close();
+        }
+    }
+
+    @Test
+    // A peer which sends a message bigger than we allow is disconnected.
+    public void testMaxMessage() throws IOException, InterruptedException {
+        int max = 100;
+        InetSocketAddress aliceAddress = loopback(9977);
+        InetSocketAddress bobAddress = loopback(9978);
+
+        TcpChannel alice = new TcpChannel(aliceAddress);
+        TcpChannel bob = new TcpChannel(
+                TcpChannel.defaultHeader(), bobAddress, true, TcpChannel.defaultBufferSize, max);
+
+        Connection<InetSocketAddress> aliceConn = alice.open(new BytesListener());
+        BytesListener bobListener = new BytesListener();
+        Connection<InetSocketAddress> bobConn = bob.open(bobListener);
+
+        try {
+            Session<InetSocketAddress, Bytestring> session
+                    = alice.getPeer(bobAddress).openSession(new BasicChan<Bytestring>(1));
+            Assert.assertNotNull(session);
+
+            // A message of the largest size is fine.
+            Bytestring ok = random(new Random(), max);
+            Assert.assertTrue(session.send(ok));
+            Assert.assertEquals(ok, bobListener.messages.receive(5, TimeUnit.SECONDS));
+
+            Session<InetSocketAddress, Bytestring> bobSession
+                    = bobListener.sessions.receive(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(bobSession);
+
+            // One byte more and bob hangs up.
+            session.send(random(new Random(), max + 1));
+            Assert.assertNull(bobListener.messages.receive(5, TimeUnit.SECONDS));
+            Assert.assertTrue(bobSession.closed());
+        } finally {
+            aliceConn.close();
+            bobConn.close();
+        }
+    }
 }
@@ -0,0 +1,96 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.player;
+
+import com.shuffle.bitcoin.Address;
+import com.shuffle.chan.packet.JavaMarshaller;
+import com.shuffle.mock.MockAddress;
+import com.shuffle.mock.MockProtobuf;
+import com.shuffle.p2p.Bytestring;
+import com.shuffle.player.proto.Proto;
+import com.shuffle.protocol.FormatException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestMessage {
+
+    private com.shuffle.protocol.message.Message empty() {
+        return new Message(Collections.<Message.Atom>emptyList(), new JavaMarshaller<Address>(), null);
+    }
+
+    @Test
+    public void testAttachAndRest() throws FormatException {
+        com.shuffle.protocol.message.Message m = empty();
+        for (int i = 0; i < 100; i++) {
+            m = m.attach(new MockAddress(i));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertFalse(m.isEmpty());
+            Assert.assertEquals(new MockAddress(i), m.readAddress());
+            m = m.rest();
+        }
+
+        Assert.assertTrue(m.isEmpty());
+        Assert.assertEquals(empty(), m);
+    }
+
+    // Messages which share atoms must not see each other's attachments.
+    @Test
+    public void testBranching() throws FormatException {
+        com.shuffle.protocol.message.Message base = empty().attach(new MockAddress(0));
+
+        com.shuffle.protocol.message.Message a = base.attach(new MockAddress(1));
+        com.shuffle.protocol.message.Message b = base.attach(new MockAddress(2));
+        com.shuffle.protocol.message.Message c = base.rest().attach(new MockAddress(3));
+
+        Assert.assertEquals(empty().attach(new MockAddress(0)), base);
+        Assert.assertEquals(empty().attach(new MockAddress(0)).attach(new MockAddress(1)), a);
+        Assert.assertEquals(empty().attach(new MockAddress(0)).attach(new MockAddress(2)), b);
+        Assert.assertEquals(empty().attach(new MockAddress(3)), c);
+        Assert.assertEquals(a.hashCode(), empty().attach(new MockAddress(0)).attach(new MockAddress(1)).hashCode());
+        Assert.assertNotEquals(a, b);
+    }
+
+    @Test
+    public void testSerialization() throws FormatException, java.io.IOException {
+        JavaMarshaller<Message> jm = new JavaMarshaller<>();
+
+        // A message whose atoms are part of a larger buffer.
+        com.shuffle.protocol.message.Message m = empty()
+                .attach(new MockAddress(0)).attach(new MockAddress(1));
+        m.attach(new MockAddress(2));
+        m = m.rest();
+
+        Assert.assertEquals(m, jm.unmarshall(jm.marshall((Message) m)));
+    }
+
+    // The equivocation check hashes the nested chain of version 1 whatever
+    // version is sent, so that every node computes the same hash.
+    @Test
+    public void testHashInput() throws FormatException, java.io.IOException {
+        List<Message.Atom> atoms = Arrays.asList(
+                Message.Atom.make("a"), Message.Atom.make("b"), Message.Atom.make("c"));
+
+        byte[] chain = Proto.Message.newBuilder().setStr("a").setNext(
+                Proto.Message.newBuilder().setStr("b").setNext(
+                        Proto.Message.newBuilder().setStr("c"))).build().toByteArray();
+
+        for (int version = 1; version <= 3; version++) {
+            MockProtobuf m = new MockProtobuf(version);
+            Assert.assertArrayEquals(chain, m.atomMarshaller().marshall(atoms).bytes);
+            Assert.assertEquals(atoms, m.atomMarshaller().unmarshall(new Bytestring(chain)));
+        }
+    }
+}
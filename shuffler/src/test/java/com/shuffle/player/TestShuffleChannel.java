@@ -0,0 +1,104 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.player;
+
+import com.shuffle.bitcoin.VerificationKey;
+import com.shuffle.chan.BasicChan;
+import com.shuffle.chan.Chan;
+import com.shuffle.chan.Send;
+import com.shuffle.mock.MockSigningKey;
+import com.shuffle.p2p.Bytestring;
+import com.shuffle.p2p.Channel;
+import com.shuffle.p2p.Connection;
+import com.shuffle.p2p.Listener;
+import com.shuffle.p2p.Session;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the channels that Shuffle gives to its players.
+ */
+public class TestShuffleChannel {
+
+    private static class Received implements Listener<VerificationKey, Bytestring> {
+        final Chan<Bytestring> messages = new BasicChan<>(10);
+
+        @Override
+        public Send<Bytestring> newSession(Session<VerificationKey, Bytestring> session) {
+            return messages;
+        }
+    }
+
+    private static InetSocketAddress address(int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    private final List<Connection<VerificationKey>> connections = new LinkedList<>();
+
+    @After
+    public void stop() {
+        for (Connection<VerificationKey> c : connections) {
+            c.close();
+        }
+        connections.clear();
+    }
+
+    @Test
+    // Sessions between the same two players share a connection when multiplexed.
+    public void testMultiplexedSessions() throws IOException, InterruptedException {
+        InetSocketAddress aliceAddress = address(9921);
+        InetSocketAddress bobAddress = address(9922);
+        VerificationKey alice = new MockSigningKey(1).VerificationKey();
+        VerificationKey bob = new MockSigningKey(2).VerificationKey();
+
+        // One multiplexer for each address.
+        Assert.assertSame(Shuffle.multiplexer(aliceAddress), Shuffle.multiplexer(aliceAddress));
+
+        int sessions = 2;
+        for (int i = 0; i < sessions; i++) {
+            Bytestring session = new Bytestring(("session " + i).getBytes());
+
+            Map<VerificationKey, InetSocketAddress> alicePeers = new HashMap<>();
+            alicePeers.put(bob, bobAddress);
+            Map<VerificationKey, InetSocketAddress> bobPeers = new HashMap<>();
+            bobPeers.put(alice, aliceAddress);
+
+            Channel<VerificationKey, Bytestring> a
+                    = Shuffle.channel(aliceAddress, session, true, alicePeers, alice);
+            Channel<VerificationKey, Bytestring> b
+                    = Shuffle.channel(bobAddress, session, true, bobPeers, bob);
+
+            Received bobReceived = new Received();
+            connections.add(a.open(new Received()));
+            connections.add(b.open(bobReceived));
+
+            Session<VerificationKey, Bytestring> s
+                    = a.getPeer(bob).openSession(new BasicChan<Bytestring>(10));
+            Assert.assertNotNull(s);
+
+            Bytestring message = new Bytestring(("hello in " + i).getBytes());
+            Assert.assertTrue(s.send(message));
+            Assert.assertEquals(message, bobReceived.messages.receive(5, TimeUnit.SECONDS));
+        }
+
+        Assert.assertEquals(1, Shuffle.multiplexer(aliceAddress).connections());
+        Assert.assertEquals(1, Shuffle.multiplexer(bobAddress).connections());
+    }
+}
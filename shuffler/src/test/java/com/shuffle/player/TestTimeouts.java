@@ -0,0 +1,90 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.player;
+
+import com.shuffle.bitcoin.VerificationKey;
+import com.shuffle.mock.MockVerificationKey;
+import com.shuffle.protocol.message.Phase;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+/**
+ * Tests for Timeouts.
+ */
+public class TestTimeouts {
+
+    @Test
+    public void testPhases() {
+        Map<Phase, Long> phases = Timeouts.readPhases("Shuffling=5000, Blame=200");
+        Assert.assertEquals(2, phases.size());
+
+        Timeouts timeouts = new Timeouts(1000, phases, false);
+        Assert.assertEquals(5000, timeouts.timeout(Phase.Shuffling));
+        Assert.assertEquals(200, timeouts.timeout(Phase.Blame));
+        Assert.assertEquals(1000, timeouts.timeout(Phase.Announcement));
+        Assert.assertEquals(1000, timeouts.timeout(null));
+
+        // Nothing changes if we are not adaptive.
+        VerificationKey peer = new MockVerificationKey(1);
+        timeouts.received(peer, 0);
+        timeouts.received(peer, 10);
+        Assert.assertEquals(5000, timeouts.timeout(Phase.Shuffling));
+
+        for (String bad : new String[]{"Shuffling", "Shuffling=x", "Nonsense=100"}) {
+            try {
+                Timeouts.readPhases(bad);
+                Assert.fail();
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void testAdaptive() {
+        Timeouts timeouts = new Timeouts(100, Timeouts.readPhases("Blame=300"), true);
+        VerificationKey fast = new MockVerificationKey(1);
+        VerificationKey slow = new MockVerificationKey(2);
+
+        // We have nothing to go on yet.
+        Assert.assertEquals(100, timeouts.timeout(Phase.Shuffling));
+        timeouts.received(fast, 0);
+        Assert.assertEquals(100, timeouts.timeout(Phase.Shuffling));
+
+        // A peer who sends a message every 10 ms does not make us wait any less.
+        for (int i = 1; i <= 20; i++) {
+            timeouts.received(fast, i * 10);
+        }
+        Assert.assertEquals(100, timeouts.timeout(Phase.Shuffling));
+
+        // Another who sends a message every 400 ms, but irregularly.
+        long now = 0;
+        timeouts.received(slow, now);
+        for (int i = 1; i <= 20; i++) {
+            now += i % 2 == 0 ? 300 : 500;
+            timeouts.received(slow, now);
+        }
+
+        // We wait for the slowest peer, with some room to spare.
+        long t = timeouts.timeout(Phase.Shuffling);
+        Assert.assertTrue(t > 500);
+        Assert.assertTrue(t < 100 * Timeouts.maxStretch);
+
+        // A phase with a longer timeout is not cut short.
+        Assert.assertTrue(timeouts.timeout(Phase.Blame) >= t);
+
+        // A peer who has been gone a very long time does not make us wait forever.
+        timeouts.received(slow, now + 1000000);
+        Assert.assertEquals(100 * Timeouts.maxStretch, timeouts.timeout(Phase.Shuffling));
+        Assert.assertEquals(300 * Timeouts.maxStretch, timeouts.timeout(Phase.Blame));
+    }
+}
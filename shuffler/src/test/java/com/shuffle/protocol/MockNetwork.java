@@ -48,6 +48,14 @@ public class MockNetwork  {
     public MockNetwork(Bytestring session, SigningKey me, Set<SigningKey> others, int cap)
             throws NoSuchAlgorithmException {
 
+        this(session, me, others, cap, 1, 1);
+    }
+
+    // We send the given version of the wire format and the others send theirs.
+    public MockNetwork(Bytestring session, SigningKey me, Set<SigningKey> others, int cap,
+                       int version, int theirVersion)
+            throws NoSuchAlgorithmException {
+
         // First create the inbox and outbox.
         outbox = new Inbox<>(cap);
 
@@ -72,11 +80,11 @@ public class MockNetwork  {
 
             messages.put(vkp, new Messages(session, skp, outFrom,
                     new BasicChan<Inbox.Envelope<VerificationKey, Signed<Packet<VerificationKey, Payload>>>>(),
-                    new JavaShuffleMarshaller()));
+                    new JavaShuffleMarshaller(theirVersion)));
 
         }
 
-        messages.put(vk, new Messages(session, me, out, inbox, new JavaShuffleMarshaller()));
+        messages.put(vk, new Messages(session, me, out, inbox, new JavaShuffleMarshaller(version)));
     }
 
     public Messages messages(VerificationKey k) {
@@ -0,0 +1,56 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.protocol;
+
+import com.shuffle.bitcoin.SigningKey;
+import com.shuffle.bitcoin.impl.BitcoinCrypto;
+import com.shuffle.sim.InitialState;
+import com.shuffle.sim.TestCase;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * In adaptive mode, what players learn about each other must not make them
+ * give up on a round that they would otherwise have finished.
+ */
+public class TestAdaptiveTimeouts extends TestShuffleMachine {
+
+    @Test
+    // Most players are quick, but the last few in the shuffle are slow, so the
+    // shuffle and broadcast phases take much longer than the gaps between the
+    // messages of the quick players.
+    public void testSkewedLatency()
+            throws NoSuchAlgorithmException, ExecutionException,
+            InterruptedException, BitcoinCrypto.Exception, IOException {
+
+        int players = 7;
+        InitialState init = new InitialState(newTestCase("adaptive timeouts with skewed latency"))
+                .timeout(1500).adaptive();
+
+        for (int i = 1; i <= players; i++) {
+            init.player().initialFunds(20);
+            if (i > players - 3) {
+                init.latency(100);
+            }
+        }
+
+        // The players keep what they learned from one round to the next.
+        for (int round = 0; round < 3; round++) {
+            Map<SigningKey, TestCase.Mismatch> mismatch = init.run();
+            Assert.assertNotNull(mismatch);
+            Assert.assertTrue(mismatch.isEmpty());
+        }
+    }
+}
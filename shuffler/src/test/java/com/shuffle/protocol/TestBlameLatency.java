@@ -0,0 +1,98 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.protocol;
+
+import com.shuffle.bitcoin.SigningKey;
+import com.shuffle.bitcoin.impl.BitcoinCrypto;
+import com.shuffle.sim.InitialState;
+import com.shuffle.sim.TestCase;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Once every player has reported, the blame phase should end without waiting
+ * for the network to time out.
+ */
+public class TestBlameLatency extends TestShuffleMachine {
+
+    // If the blame phase waited for the timeout, the run would take at
+    // least this long, and much longer with the second.
+    private static final long shortTimeout = 4000;
+    private static final long longTimeout = 60000;
+
+    private interface Case {
+        InitialState make() throws NoSuchAlgorithmException, BitcoinCrypto.Exception;
+    }
+
+    // Run the case with both timeouts. Either way it should be over long
+    // before the shorter one would have run out.
+    private void check(Case c)
+            throws NoSuchAlgorithmException, ExecutionException,
+            InterruptedException, BitcoinCrypto.Exception, IOException {
+
+        for (long timeout : new long[]{shortTimeout, longTimeout}) {
+            long start = System.currentTimeMillis();
+            Map<SigningKey, TestCase.Mismatch> mismatch = c.make().timeout(timeout).run();
+            long time = System.currentTimeMillis() - start;
+
+            Assert.assertNotNull(mismatch);
+            Assert.assertTrue(mismatch.isEmpty());
+            Assert.assertTrue("Took " + time + " ms with a timeout of " + timeout + " ms.",
+                    time < shortTimeout / 4);
+        }
+    }
+
+    @Test
+    public void testInsufficientFunds()
+            throws NoSuchAlgorithmException, ExecutionException,
+            InterruptedException, BitcoinCrypto.Exception, IOException {
+
+        check(new Case() {
+            @Override
+            public InitialState make() throws NoSuchAlgorithmException, BitcoinCrypto.Exception {
+                return newTestCase("insufficient funds latency").insufficientFundsTestCase(
+                        5, new int[]{3}, new int[]{}, new int[]{});
+            }
+        });
+    }
+
+    @Test
+    public void testEquivocateAnnouncement()
+            throws NoSuchAlgorithmException, ExecutionException,
+            InterruptedException, BitcoinCrypto.Exception, IOException {
+
+        check(new Case() {
+            @Override
+            public InitialState make() throws NoSuchAlgorithmException, BitcoinCrypto.Exception {
+                return newTestCase("equivocation latency").equivocateAnnouncementTestCase(
+                        5, new TestCase.Equivocation[]{new TestCase.Equivocation(2, new int[]{4, 5})});
+            }
+        });
+    }
+
+    @Test
+    public void testInvalidSignature()
+            throws NoSuchAlgorithmException, ExecutionException,
+            InterruptedException, BitcoinCrypto.Exception, IOException {
+
+        check(new Case() {
+            @Override
+            public InitialState make() throws NoSuchAlgorithmException, BitcoinCrypto.Exception {
+                return newTestCase("invalid signature latency").invalidSignatureTestCase(
+                        5, new int[]{2});
+            }
+        });
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.protocol;
+
+import com.shuffle.bitcoin.impl.BitcoinCrypto;
+import com.shuffle.mock.MockProtobuf;
+import com.shuffle.player.Messages;
+import com.shuffle.player.Protobuf;
+import com.shuffle.sim.TestCase;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs the protocol on the version of the wire format in which broadcasts are signed
+ * once for every player.
+ */
+public class TestBroadcastPackets extends TestShuffleMachine {
+
+    @Override
+    public TestCase newTestCase(String session) {
+        return new MockTestCase(session) {
+            @Override
+            protected Protobuf proto() {
+                return new MockProtobuf(Messages.broadcastVersion);
+            }
+        };
+    }
+
+    @Test
+    public void testSuccess()
+            throws NoSuchAlgorithmException, ExecutionException,
+            InterruptedException, BitcoinCrypto.Exception, IOException {
+
+        for (int numPlayer = 2; numPlayer <= 8; numPlayer++) {
+            String description = "case " + caseNo + "; successful run with " + numPlayer + " players.";
+            check(newTestCase(description).successfulTestCase(numPlayer));
+        }
+    }
+
+    @Test
+    // Equivocation in phase 3 is still caught when the equivocation check is broadcast.
+    public void testEquivocationBroadcast()
+            throws NoSuchAlgorithmException, ExecutionException,
+            InterruptedException, BitcoinCrypto.Exception, IOException {
+
+        int[][] equivocations = new int[][]{new int[]{1}, new int[]{1, 2}};
+        for (int[] equivocation : equivocations) {
+            String description = "case " + caseNo + "; broadcast equivocation test case.";
+            check(newTestCase(description).equivocateBroadcastTestCase(4, equivocation));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ *
+ * Copyright © 2016 Mycelium.
+ * Use of this source code is governed by an ISC
+ * license that can be found in the LICENSE file.
+ *
+ */
+
+package com.shuffle.protocol;
+
+import com.shuffle.bitcoin.SigningKey;
+import com.shuffle.bitcoin.Transaction;
+import com.shuffle.bitcoin.VerificationKey;
+import com.shuffle.bitcoin.impl.BitcoinCrypto;
+import com.shuffle.chan.packet.Packet;
+import com.shuffle.monad.Either;
+import com.shuffle.monad.Summable;
+import com.shuffle.player.Payload;
+import com.shuffle.protocol.blame.Matrix;
+import com.shuffle.sim.Adversary;
+import com.shuffle.sim.InitialState;
+import com.shuffle.sim.TestCase;
+import com.shuffle.sim.init.BasicInitializer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Tests for EventShuffle, in which the honest players share a couple of threads.
+ */
+public class TestEventShuffle extends TestShuffleMachine {
+    private static final int threads = 2;
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService io;
+
+    @Before
+    public void startScheduler() {
+        scheduler = Executors.newScheduledThreadPool(threads);
+        io = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void stopScheduler() {
+        scheduler.shutdownNow();
+        io.shutdownNow();
+    }
+
+    @Test
+    public void testSuccess() throws NoSuchAlgorithmException, ExecutionException,
+            InterruptedException, BitcoinCrypto.Exception, IOException {
+
+        for (int numPlayers = 2; numPlayers <= 8; numPlayers++) {
+            check(newTestCase("case " + caseNo + "; successful run with "
+                    + numPlayers + " players.").successfulTestCase(numPlayers)
+                    .events(scheduler, io));
+        }
+    }
+
+    @Test
+    // The honest players must arrive at the same blame matrices as in CoinShuffle.
+    public void testBlame() throws NoSuchAlgorithmException, ExecutionException,
+            InterruptedException, BitcoinCrypto.Exception, IOException {
+
+        check(newTestCase("insufficient funds").insufficientFundsTestCase(
+                5, new int[]{3}, new int[]{}, new int[]{}).events(scheduler, io));
+        check(newTestCase("spent funds").insufficientFundsTestCase(
+                5, new int[]{}, new int[]{}, new int[]{5}).events(scheduler, io));
+        check(newTestCase("equivocate announcement").equivocateAnnouncementTestCase(
+                5, new TestCase.Equivocation[]{new TestCase.Equivocation(2, new int[]{4, 5})})
+                .events(scheduler, io));
+        check(newTestCase("equivocate broadcast").equivocateBroadcastTestCase(
+                4, new int[]{1, 2}).events(scheduler, io));
+        check(newTestCase("invalid signature").invalidSignatureTestCase(
+                5, new int[]{2, 3}).events(scheduler, io));
+        check(newTestCase("drop address duplicate").dropAddressTestCase(
+                4, new HashMap<Integer, Integer>(), null, new int[][]{new int[]{3, 1, 2}})
+                .events(scheduler, io));
+    }
+
+    @Test
+    // Many rounds at once on a couple of threads.
+    public void testManyRounds() throws NoSuchAlgorithmException, ExecutionException,
+            InterruptedException, BitcoinCrypto.Exception, IOException {
+
+        int rounds = 250;
+        int numPlayers = 4;
+
+        // The mock keys are the same in every round, so we can't look these up by key.
+        List<Future<Summable.SummableElement<Map<SigningKey,
+                Either<Transaction, Matrix>>>>> results = new LinkedList<>();
+
+        for (int i = 0; i < rounds; i++) {
+            InitialState init = newTestCase("round " + i)
+                    .successfulTestCase(numPlayers).events(scheduler, io);
+
+            for (Adversary player : init.getPlayers(
+                    new BasicInitializer<Packet<VerificationKey, Payload>>(
+                            init.session(), 3 * (1 + numPlayers))).values()) {
+
+                results.add(player.turnOn());
+            }
+        }
+
+        int failed = 0;
+        for (Future<Summable.SummableElement<Map<SigningKey,
+                Either<Transaction, Matrix>>>> result : results) {
+
+            Map<SigningKey, Either<Transaction, Matrix>> r = result.get().value();
+            if (r.size() != 1 || r.values().iterator().next().first == null) failed++;
+        }
+
+        Assert.assertEquals(rounds * numPlayers, results.size());
+        Assert.assertEquals(0, failed);
+    }
+}
@@ -19,7 +19,9 @@ import com.shuffle.player.Messages;
 import com.shuffle.mock.MockSigningKey;
 import com.shuffle.mock.MockVerificationKey;
 import com.shuffle.player.Payload;
+import com.shuffle.protocol.blame.Blame;
 import com.shuffle.protocol.blame.BlameException;
+import com.shuffle.protocol.blame.Reason;
 import com.shuffle.protocol.message.Phase;
 
 import org.junit.Assert;
@@ -30,6 +32,7 @@ import java.security.NoSuchAlgorithmException;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -98,6 +101,79 @@ public class TestMailbox {
         }
     }
 
+    @Test
+    // Once every player has shown us that it can read broadcast packets, they are all
+    // sent the same packet, which is signed only once. Until then, and for players on
+    // older versions, everyone is sent their own packet.
+    public void testBroadcastPackets()
+            throws InvalidParticipantSetException, InterruptedException, IOException,
+            NoSuchAlgorithmException, FormatException {
+
+        SortedSet<SigningKey> keys = new TreeSet<>();
+        Set<VerificationKey> players = new HashSet<>();
+        for (int i = 1; i <= 4; i++) {
+            keys.add(new MockSigningKey(i));
+            players.add(new MockVerificationKey(i));
+        }
+
+        MockSigningKey me = new MockSigningKey(1);
+        VerificationKey vk = me.VerificationKey();
+        Set<VerificationKey> others = new HashSet<>(players);
+        others.remove(vk);
+
+        for (int version = 1; version <= Messages.broadcastVersion; version++) {
+            MockNetwork network = new MockNetwork(
+                    new Bytestring(("testBroadcastPackets" + version).getBytes()), me, keys, 100,
+                    Messages.broadcastVersion, version);
+
+            Messages messages = network.messages(vk);
+            Mailbox mailbox = new Mailbox(vk, players, messages);
+
+            // We have not heard from anyone, so nobody is sent a broadcast.
+            mailbox.broadcast(messages.make(), Phase.Announcement);
+
+            // Everyone else tells us which version they speak.
+            for (VerificationKey k : others) {
+                network.messages(k).make().send(Phase.Announcement, vk);
+            }
+            for (VerificationKey k : others) {
+                Assert.assertNotNull(messages.receive());
+            }
+
+            mailbox.broadcast(messages.make(), Phase.Shuffling);
+
+            Set<Integer> numbers = new HashSet<>();
+            Bytestring signature = null;
+            for (Inbox.Envelope<VerificationKey, Signed<Packet<VerificationKey, Payload>>> sent
+                    : network.getResponses()) {
+
+                Packet<VerificationKey, Payload> packet = sent.payload.message;
+                Assert.assertTrue(others.contains(sent.from));
+
+                // No two packets of ours are given the same number.
+                Assert.assertTrue(numbers.add(packet.sequenceNumber) || packet.broadcast());
+
+                if (packet.payload.phase == Phase.Announcement) {
+                    Assert.assertFalse(packet.broadcast());
+                    continue;
+                }
+
+                // Everyone is answered in the version they speak.
+                Assert.assertEquals(version, packet.payload.version);
+                Assert.assertEquals(version >= Messages.broadcastVersion, packet.broadcast());
+                if (!packet.broadcast()) continue;
+
+                if (signature == null) {
+                    signature = sent.payload.signature;
+                } else {
+                    Assert.assertSame(signature, sent.payload.signature);
+                }
+            }
+
+            Assert.assertEquals(version >= Messages.broadcastVersion, signature != null);
+        }
+    }
+
     static class SendToTestCase {
         public final int sender;
         public final int recipient;
@@ -383,4 +459,78 @@ public class TestMailbox {
             i++;
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    // Players who run ahead leave a lot of packets in the mailbox, which have to be
+    // found again by phase when we catch up.
+    public void testManyPackets()
+            throws InvalidParticipantSetException, InterruptedException, BlameException,
+            FormatException, IOException, NoSuchAlgorithmException, TimeoutException {
+
+        int rounds = 100;
+        Phase[] phases = new Phase[]{Phase.Announcement, Phase.Shuffling,
+                Phase.BroadcastOutput, Phase.EquivocationCheck, Phase.VerificationAndSubmission};
+
+        SortedSet<SigningKey> keys = new TreeSet<>();
+        for (int i = 0; i < 10; i++) {
+            keys.add(new MockSigningKey(i + 1));
+        }
+
+        SigningKey sk = new MockSigningKey(1);
+        VerificationKey vk = sk.VerificationKey();
+
+        Set<VerificationKey> players = new HashSet<>();
+        for (SigningKey k : keys) {
+            players.add(k.VerificationKey());
+        }
+
+        Set<VerificationKey> others = new HashSet<>(players);
+        others.remove(vk);
+
+        int packets = rounds * phases.length * others.size();
+        MockNetwork network = new MockNetwork(
+                new Bytestring("testManyPackets".getBytes()), sk, keys, packets + others.size());
+
+        // Everyone else sends all their messages before we receive any of them.
+        for (int r = 0; r < rounds; r++) {
+            for (Phase phase : phases) {
+                for (VerificationKey k : others) {
+                    network.messages(k).make().send(phase, vk);
+                }
+            }
+        }
+
+        Mailbox mailbox = new Mailbox(vk, players, network.messages(vk));
+
+        // Receive the last phase first, so that everything else is left waiting.
+        for (int p = phases.length - 1; p >= 0; p--) {
+            for (int r = 0; r < rounds; r++) {
+                Map<VerificationKey, com.shuffle.protocol.message.Message> received
+                        = mailbox.receiveFromMultiple(new HashSet<>(others), phases[p]);
+
+                Assert.assertEquals(others, received.keySet());
+            }
+        }
+
+        for (Phase phase : phases) {
+            Assert.assertEquals(rounds * others.size(), mailbox.getPacketsByPhase(phase).size());
+        }
+
+        // Now everyone sends blame.
+        Assert.assertFalse(mailbox.blame());
+        for (VerificationKey k : others) {
+            network.messages(k).make().attach(Blame.InsufficientFunds(k)).send(Phase.Blame, vk);
+        }
+        mailbox.broadcast(network.messages(vk).make().attach(Blame.InsufficientFunds(vk)), Phase.Blame);
+
+        Map<VerificationKey, Queue<com.shuffle.protocol.message.Packet>> blame
+                = mailbox.receiveAllBlame();
+
+        Assert.assertTrue(mailbox.blame(Reason.InsufficientFunds));
+        Assert.assertEquals(players, blame.keySet());
+        for (Queue<com.shuffle.protocol.message.Packet> sent : blame.values()) {
+            Assert.assertEquals(1, sent.size());
+        }
+        Assert.assertEquals(players.size(), mailbox.getPacketsByPhase(Phase.Blame).size());
+    }
+}
@@ -102,7 +102,7 @@ public class TestShuffleMachine {
 
         @Override
         protected Protobuf proto() {
-            return new CryptoProtobuf();
+            return new CryptoProtobuf(((BitcoinCrypto) crypto).getParams());
         }
     }
 
@@ -42,6 +42,9 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Tests the methods in the shuffle machine other than the main ones.
@@ -265,11 +268,11 @@ public class TestShuffleMachineMethods {
 
             Message input = messages.make();
             for (int i : test.input) {
-                input = input.attach(new MockAddress(i).toString());
+                input = input.attach(new Bytestring(new MockAddress(i).toString().getBytes()));
             }
             Message expected = messages.make();
             for (int i : test.expected) {
-                expected = expected.attach(new MockAddress(i).toString());
+                expected = expected.attach(new Bytestring(new MockAddress(i).toString().getBytes()));
             }
 
             Message result = machine.shuffle(input);
@@ -383,6 +386,17 @@ public class TestShuffleMachineMethods {
             SortedSet<SigningKey> others,
             Crypto crypto, Mailbox mailbox) throws InvalidParticipantSetException, NoSuchAlgorithmException {
 
+        return standardTestInitialization(session, me, addr, others, crypto, mailbox, null);
+    }
+
+    private CoinShuffle.Round standardTestInitialization(
+            Bytestring session,
+            int me,
+            Address addr,
+            SortedSet<SigningKey> others,
+            Crypto crypto, Mailbox mailbox, Executor decryptor)
+            throws InvalidParticipantSetException, NoSuchAlgorithmException {
+
         int i = 1;
         Map<Integer, VerificationKey> players = new HashMap<>();
         for (SigningKey key : others) {
@@ -398,7 +412,7 @@ public class TestShuffleMachineMethods {
         MockNetwork net = new MockNetwork(session, sk, others, 100);
 
         CoinShuffle shuffle = new CoinShuffle(net.messages(sk.VerificationKey()),
-                crypto, new MockCoin());
+                crypto, new MockCoin(), decryptor);
 
         return shuffle.new Round(
                 new CoinShuffle.CurrentPhase(), amount, fee, sk, players, addr, null, mailbox
@@ -407,6 +421,21 @@ public class TestShuffleMachineMethods {
 
     @Test
     public void testDecryptAll() throws TimeoutException, InterruptedException, IOException, NoSuchAlgorithmException {
+        decryptAll(null);
+    }
+
+    // The results must come back in the same order when decrypted in parallel.
+    @Test
+    public void testDecryptAllParallel() throws TimeoutException, InterruptedException, IOException, NoSuchAlgorithmException {
+        ExecutorService decryptor = new ForkJoinPool(4);
+        try {
+            decryptAll(decryptor);
+        } finally {
+            decryptor.shutdown();
+        }
+    }
+
+    private void decryptAll(Executor decryptor) throws TimeoutException, InterruptedException, IOException, NoSuchAlgorithmException {
 
         MockCrypto crypto = new MockCrypto(new InsecureRandom(56));
 
@@ -440,14 +469,15 @@ public class TestShuffleMachineMethods {
                     playersPublic.add(key);
                     Address addr = key.address();
 
-                    output = output.attach(addr.toString());
-                    input = input.attach(dk.EncryptionKey().encrypt(addr.toString()));
+                    Bytestring plain = new Bytestring(addr.toString().getBytes());
+                    output = output.attach(plain);
+                    input = input.attach(dk.EncryptionKey().encrypt(plain));
                 }
 
                 Mailbox mailbox = new Mailbox(sk.VerificationKey(), playersPublic, messages);
 
                 CoinShuffle.Round round = standardTestInitialization(
-                        session, 1, new MockAddress(-1), players, crypto, mailbox
+                        session, 1, new MockAddress(-1), players, crypto, mailbox, decryptor
                 );
 
                 Message result = round.decryptAll(input, dk, i + 1);
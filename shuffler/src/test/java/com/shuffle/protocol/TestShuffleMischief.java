@@ -11,12 +11,17 @@ package com.shuffle.protocol;
 import com.google.common.collect.ImmutableMap;
 import com.shuffle.bitcoin.impl.BitcoinCrypto;
 
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 
 /**
@@ -27,10 +32,26 @@ import java.util.concurrent.ExecutionException;
  */
 public class TestShuffleMischief extends TestShuffleMachine {
 
+    // For running each case with EventShuffle as well.
+    private ScheduledExecutorService scheduler;
+    private ExecutorService io;
+
     public TestShuffleMischief() {
         super(99, 1);
     }
 
+    @Before
+    public void startScheduler() {
+        scheduler = Executors.newScheduledThreadPool(2);
+        io = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void stopScheduler() {
+        scheduler.shutdownNow();
+        io.shutdownNow();
+    }
+
     // Run a test case for a player who drops an address in phase 2.
     private void DropAddress(
             int numPlayers,
@@ -46,6 +67,9 @@ public class TestShuffleMischief extends TestShuffleMachine {
         check(newTestCase(description).dropAddressTestCase(
                 numPlayers, drop, replaceNew, replaceDuplicate
         ));
+        check(newTestCase(description + " (events)").dropAddressTestCase(
+                numPlayers, drop, replaceNew, replaceDuplicate
+        ).events(scheduler, io));
     }
 
     @Test